@@ -228,6 +228,7 @@ CTX.INPUT['executors'] = """
  deleteexecutor.cpp
  distinctexecutor.cpp
  executorutil.cpp
+ hashjoinexecutor.cpp
  indexscanexecutor.cpp
  indexcountexecutor.cpp
  tablecountexecutor.cpp
@@ -262,6 +263,7 @@ CTX.INPUT['plannodes'] = """
  aggregatenode.cpp
  deletenode.cpp
  distinctnode.cpp
+ hashjoinnode.cpp
  indexscannode.cpp
  indexcountnode.cpp
  tablecountnode.cpp
@@ -414,6 +416,7 @@ if whichtests in ("${eetestsuite}", "storage"):
 
 if whichtests in ("${eetestsuite}", "structures"):
     CTX.TESTS['structures'] = """
+     BTreeMapTest
      CompactingMapTest
      CompactingMapIndexCountTest
      CompactingHashTest
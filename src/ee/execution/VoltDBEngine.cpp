@@ -1596,6 +1596,22 @@ size_t VoltDBEngine::tableHashCode(int32_t tableId) {
     return table->hashCode();
 }
 
+int64_t VoltDBEngine::tableModificationCount(int32_t tableId) {
+    Table* found = getTable(tableId);
+    if (! found) {
+        throwFatalException("Tried to get the modification count of a table that doesn't exist with id %d\n",
+                            tableId);
+    }
+
+    PersistentTable *table = dynamic_cast<PersistentTable*>(found);
+    if (table == NULL) {
+        throwFatalException(
+                "Tried to get the modification count of a table that is not a persistent table id %d\n",
+                tableId);
+    }
+    return table->modificationCount();
+}
+
 void VoltDBEngine::updateHashinator(HashinatorType type, const char *config) {
     switch (type) {
     case HASHINATOR_LEGACY:
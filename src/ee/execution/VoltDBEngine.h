@@ -391,6 +391,11 @@ class __attribute__((visibility("default"))) VoltDBEngine {
          */
         size_t tableHashCode(int32_t tableId);
 
+        /**
+         * Retrieve the modification count of the specified table
+         */
+        int64_t tableModificationCount(int32_t tableId);
+
         void updateHashinator(HashinatorType type, const char *config);
 
         /*
@@ -0,0 +1,326 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "hashjoinexecutor.h"
+
+#include "common/debuglog.h"
+#include "common/common.h"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
+#include "expressions/abstractexpression.h"
+#include "expressions/tuplevalueexpression.h"
+#include "plannodes/hashjoinnode.h"
+#include "storage/table.h"
+#include "storage/temptable.h"
+#include "storage/tableiterator.h"
+#include "storage/TempTableLimits.h"
+
+#include "boost/unordered_map.hpp"
+
+#include <stack>
+#include <string>
+#include <vector>
+
+using namespace std;
+using namespace voltdb;
+
+namespace
+{
+    // Duplicated from nestloopexecutor along with its FUTURE note:
+    // tuple index 0 is always the outer table, 1 the inner table.
+    bool
+    assignTupleValueIndex(AbstractExpression *ae,
+                          const string &oname,
+                          const string &iname)
+    {
+        TupleValueExpression *tve = dynamic_cast<TupleValueExpression*>(ae);
+        string tname = tve->getTableName();
+
+        if (oname == "temp" && iname == "temp") {
+            VOLT_ERROR("Unsupported join on two temp tables.");
+            return false;
+        }
+
+        if (tname == oname)
+            tve->setTupleIndex(0);
+        else if (tname == iname)
+            tve->setTupleIndex(1);
+        else if (oname == "temp")
+            tve->setTupleIndex(0);
+        else if (iname == "temp")
+            tve->setTupleIndex(1);
+        else {
+            VOLT_ERROR("TableTupleValue in join with unknown table name.");
+            return false;
+        }
+
+        return true;
+    }
+
+    bool
+    assignTupleValueIndexes(AbstractExpression* expression,
+                            const string& outer_name,
+                            const string& inner_name)
+    {
+        const AbstractExpression* predicate = expression;
+        stack<const AbstractExpression*> stack;
+        while (predicate != NULL) {
+            const AbstractExpression *left = predicate->getLeft();
+            const AbstractExpression *right = predicate->getRight();
+
+            if (right != NULL) {
+                if (right->getExpressionType() == EXPRESSION_TYPE_VALUE_TUPLE) {
+                    if (!assignTupleValueIndex(const_cast<AbstractExpression*>(right),
+                                               outer_name,
+                                               inner_name))
+                    {
+                        return false;
+                    }
+                }
+                // remember the right node - must visit its children
+                stack.push(right);
+            }
+            if (left != NULL) {
+                if (left->getExpressionType() == EXPRESSION_TYPE_VALUE_TUPLE) {
+                    if (!assignTupleValueIndex(const_cast<AbstractExpression*>(left),
+                                               outer_name,
+                                               inner_name))
+                    {
+                        return false;
+                    }
+                }
+            }
+
+            predicate = left;
+            if (!predicate && !stack.empty()) {
+                predicate = stack.top();
+                stack.pop();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash a tuple's key values. Each key only references columns of the
+     * tuple's own table, already resolved against its schema, so the tuple
+     * is passed as both eval() arguments whatever its tuple index.
+     * Integers are widened so that equal values of different widths hash alike.
+     * Returns false if any key is NULL: such a tuple can't match anything.
+     */
+    inline bool
+    hashKeys(const vector<AbstractExpression*>& keys, const TableTuple& tuple, size_t& seed)
+    {
+        seed = 0;
+        for (size_t ii = 0; ii < keys.size(); ii++) {
+            NValue value = keys[ii]->eval(&tuple, &tuple);
+            if (value.isNull()) {
+                return false;
+            }
+            ValueType type = ValuePeeker::peekValueType(value);
+            if (type != VALUE_TYPE_BIGINT && isIntegralType(type)) {
+                value = value.castAs(VALUE_TYPE_BIGINT);
+            }
+            value.hashCombine(seed);
+        }
+        return true;
+    }
+
+    typedef boost::unordered_multimap<size_t, TableTuple> HashJoinMapType;
+
+    // Rough heap cost of one entry: its node plus its share of the bucket array.
+    const int HASH_ENTRY_SIZE = static_cast<int>(sizeof(HashJoinMapType::value_type) + 3 * sizeof(void*));
+    // Entries counted against the temp table limits at a time.
+    const int HASH_ENTRIES_PER_CHARGE = 1024;
+
+    /**
+     * Counts the hash table's memory against the fragment's temp table limits
+     * and gives it back however the join ends.
+     */
+    class HashTableAllocation {
+    public:
+        HashTableAllocation(TempTableLimits* limits) : m_limits(limits), m_bytes(0) { }
+        ~HashTableAllocation() {
+            if (m_limits != NULL && m_bytes > 0) {
+                m_limits->reduceAllocated(m_bytes);
+            }
+        }
+        void increase(int bytes) {
+            if (m_limits != NULL) {
+                // limits count the bytes before throwing on overflow, so record them first
+                m_bytes += bytes;
+                m_limits->increaseAllocated(bytes);
+            }
+        }
+    private:
+        TempTableLimits* m_limits;
+        int m_bytes;
+    };
+}
+
+bool HashJoinExecutor::p_init(AbstractPlanNode* abstract_node,
+                              TempTableLimits* limits)
+{
+    VOLT_TRACE("init HashJoin Executor");
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(abstract_node);
+    assert(node);
+    assert(node->getOuterHashKeys().size() == node->getInnerHashKeys().size());
+
+    // Create output table based on output schema from the plan
+    setTempOutputTable(limits);
+    m_limits = limits;
+
+    // NULL tuple for outer join
+    if (node->getJoinType() == JOIN_TYPE_LEFT) {
+        Table* inner_table = node->getInputTables()[1];
+        assert(inner_table);
+        m_null_tuple.init(inner_table->schema());
+    }
+
+    // The predicates are evaluated on an outer and inner tuple pair,
+    // see NestLoopExecutor::p_init.
+    bool retval = assignTupleValueIndexes(node->getPreJoinPredicate(),
+                                          node->getInputTables()[0]->name(),
+                                          node->getInputTables()[1]->name());
+    if (retval) {
+        retval = assignTupleValueIndexes(node->getJoinPredicate(),
+                                          node->getInputTables()[0]->name(),
+                                          node->getInputTables()[1]->name());
+    }
+    if (retval) {
+        retval = assignTupleValueIndexes(node->getWherePredicate(),
+                                          node->getInputTables()[0]->name(),
+                                          node->getInputTables()[1]->name());
+    }
+    return retval;
+}
+
+
+bool HashJoinExecutor::p_execute(const NValueArray &params) {
+    VOLT_DEBUG("executing HashJoin...");
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(m_abstractNode);
+    assert(node);
+    assert(node->getInputTables().size() == 2);
+
+    // output table must be a temp table
+    TempTable* output_table = dynamic_cast<TempTable*>(node->getOutputTable());
+    assert(output_table);
+
+    Table* outer_table = node->getInputTables()[0];
+    assert(outer_table);
+
+    Table* inner_table = node->getInputTables()[1];
+    assert(inner_table);
+
+    VOLT_TRACE ("input table left:\n %s", outer_table->debug().c_str());
+    VOLT_TRACE ("input table right:\n %s", inner_table->debug().c_str());
+
+    AbstractExpression *preJoinPredicate = node->getPreJoinPredicate();
+    if (preJoinPredicate) {
+        preJoinPredicate->substitute(params);
+    }
+    AbstractExpression *joinPredicate = node->getJoinPredicate();
+    if (joinPredicate) {
+        joinPredicate->substitute(params);
+    }
+    AbstractExpression *wherePredicate = node->getWherePredicate();
+    if (wherePredicate) {
+        wherePredicate->substitute(params);
+    }
+    const vector<AbstractExpression*>& outerKeys = node->getOuterHashKeys();
+    const vector<AbstractExpression*>& innerKeys = node->getInnerHashKeys();
+    for (size_t ii = 0; ii < outerKeys.size(); ii++) {
+        outerKeys[ii]->substitute(params);
+        innerKeys[ii]->substitute(params);
+    }
+
+    JoinType join_type = node->getJoinType();
+    assert(join_type == JOIN_TYPE_INNER || join_type == JOIN_TYPE_LEFT);
+
+    int outer_cols = outer_table->columnCount();
+    int inner_cols = inner_table->columnCount();
+    TableTuple outer_tuple(outer_table->schema());
+    TableTuple inner_tuple(inner_table->schema());
+    TableTuple &joined = output_table->tempTuple();
+    TableTuple null_tuple = m_null_tuple;
+
+    //
+    // Build: hash every inner tuple that has non-NULL keys.
+    //
+    HashTableAllocation allocation(m_limits);
+    HashJoinMapType hash;
+    hash.rehash(static_cast<size_t>(inner_table->activeTupleCount()));
+    int uncharged = 0;
+    size_t seed;
+    TableIterator iterator1 = inner_table->iterator();
+    while (iterator1.next(inner_tuple)) {
+        if (!hashKeys(innerKeys, inner_tuple, seed)) {
+            continue;
+        }
+        hash.insert(HashJoinMapType::value_type(seed, inner_tuple));
+        if (++uncharged == HASH_ENTRIES_PER_CHARGE) {
+            allocation.increase(uncharged * HASH_ENTRY_SIZE);
+            uncharged = 0;
+        }
+    }
+    allocation.increase(uncharged * HASH_ENTRY_SIZE);
+
+    //
+    // Probe: each outer tuple only visits the inner tuples with the same hash.
+    //
+    TableIterator iterator0 = outer_table->iterator();
+    while (iterator0.next(outer_tuple)) {
+
+        // did this loop body find at least one match for this tuple?
+        bool match = false;
+        joined.setNValues(0, outer_tuple, 0, outer_cols);
+        // For outer joins if outer tuple fails pre-join predicate
+        // (join expression based on the outer table only)
+        // it can't match any of inner tuples
+        if ((preJoinPredicate == NULL || preJoinPredicate->eval(&outer_tuple, NULL).isTrue()) &&
+            hashKeys(outerKeys, outer_tuple, seed)) {
+
+            pair<HashJoinMapType::const_iterator, HashJoinMapType::const_iterator> range =
+                hash.equal_range(seed);
+            for (HashJoinMapType::const_iterator it = range.first; it != range.second; ++it) {
+                inner_tuple = it->second;
+                // The join predicate rechecks the key equalities, which also
+                // weeds out hash collisions.
+                if (joinPredicate == NULL || joinPredicate->eval(&outer_tuple, &inner_tuple).isTrue()) {
+                    match = true;
+                    if (wherePredicate == NULL || wherePredicate->eval(&outer_tuple, &inner_tuple).isTrue()) {
+                        joined.setNValues(outer_cols, inner_tuple, 0, inner_cols);
+                        output_table->insertTupleNonVirtual(joined);
+                    }
+                }
+            }
+        }
+        //
+        // Left Outer Join
+        //
+        if (join_type == JOIN_TYPE_LEFT && !match) {
+            // Still needs to pass the filter
+            if (wherePredicate == NULL || wherePredicate->eval(&outer_tuple, &null_tuple).isTrue()) {
+                joined.setNValues(outer_cols, null_tuple, 0, inner_cols);
+                output_table->insertTupleNonVirtual(joined);
+            }
+        }
+    }
+
+    return (true);
+}
@@ -0,0 +1,50 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef HASHJOINEXECUTOR_H
+#define HASHJOINEXECUTOR_H
+
+#include "common/common.h"
+#include "common/valuevector.h"
+#include "executors/abstractexecutor.h"
+
+namespace voltdb {
+
+class TempTableLimits;
+
+/**
+ * Joins its two input tables by hashing every inner tuple on the
+ * inner hash keys, then probing with each outer tuple's outer hash keys.
+ * The memory for the hash table is counted against the fragment's
+ * TempTableLimits while the join runs.
+ */
+class HashJoinExecutor : public AbstractExecutor {
+    public:
+        HashJoinExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node) :
+            AbstractExecutor(engine, abstract_node), m_limits(NULL) { }
+    protected:
+        bool p_init(AbstractPlanNode*,
+                    TempTableLimits* limits);
+        bool p_execute(const NValueArray &params);
+
+        StandAloneTupleStorage m_null_tuple;
+        TempTableLimits* m_limits;
+};
+
+}
+
+#endif
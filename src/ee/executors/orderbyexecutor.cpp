@@ -161,18 +161,47 @@ OrderByExecutor::p_execute(const NValueArray &params)
 
     VOLT_TRACE("Running OrderBy '%s'", m_abstractNode->debug().c_str());
     VOLT_TRACE("Input Table:\n '%s'", input_table->debug().c_str());
+    TupleComparer comparer(node->getSortExpressions(), node->getSortDirections());
     TableIterator iterator = input_table->iterator();
     TableTuple tuple(input_table->schema());
     vector<TableTuple> xs;
-    while (iterator.next(tuple))
+    if (limit >= 0)
     {
-        assert(tuple.isActive());
-        xs.push_back(tuple);
+        //
+        // TOP N: only the first limit + offset tuples in sort order can be
+        // output, so keep those in a heap whose top is the last of them and
+        // never hold or sort the rest of the input.
+        //
+        size_t topN = static_cast<size_t>(limit) + (offset > 0 ? offset : 0);
+        if (topN > 0) {
+            xs.reserve(std::min(topN, static_cast<size_t>(input_table->activeTupleCount())));
+        }
+        while (topN > 0 && iterator.next(tuple))
+        {
+            assert(tuple.isActive());
+            if (xs.size() < topN) {
+                xs.push_back(tuple);
+                push_heap(xs.begin(), xs.end(), comparer);
+            }
+            else if (comparer(tuple, xs.front())) {
+                pop_heap(xs.begin(), xs.end(), comparer);
+                xs.back() = tuple;
+                push_heap(xs.begin(), xs.end(), comparer);
+            }
+        }
+        sort_heap(xs.begin(), xs.end(), comparer);
+    }
+    else
+    {
+        while (iterator.next(tuple))
+        {
+            assert(tuple.isActive());
+            xs.push_back(tuple);
+        }
+        VOLT_TRACE("\n***** Input Table PreSort:\n '%s'",
+                   input_table->debug().c_str());
+        sort(xs.begin(), xs.end(), comparer);
     }
-    VOLT_TRACE("\n***** Input Table PreSort:\n '%s'",
-               input_table->debug().c_str());
-    sort(xs.begin(), xs.end(), TupleComparer(node->getSortExpressions(),
-                                             node->getSortDirections()));
 
     int tuple_ctr = 0;
     int tuple_skipped = 0;
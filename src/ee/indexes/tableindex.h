@@ -405,6 +405,15 @@ public:
         return m_scheme.columnIndices;
     }
 
+    /**
+     * Tree indexes can be scanned in key order from a partial key,
+     * hash indexes can only be probed with a complete one.
+     */
+    TableIndexType getIndexType() const
+    {
+        return m_scheme.type;
+    }
+
     // Provide an empty expressions vector to indicate a simple columns-only index.
     static const std::vector<AbstractExpression*>& simplyIndexColumns() {
         static std::vector<AbstractExpression*> emptyExpressionVector;
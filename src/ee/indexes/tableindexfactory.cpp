@@ -56,6 +56,8 @@
 #include "indexes/CompactingTreeMultiMapIndex.h"
 #include "indexes/CompactingHashUniqueIndex.h"
 #include "indexes/CompactingHashMultiMapIndex.h"
+#include "indexes/BTreeUniqueIndex.h"
+#include "indexes/BTreeMultiMapIndex.h"
 
 namespace voltdb {
 
@@ -64,8 +66,10 @@ class TableIndexPicker
     template <class TKeyType>
     TableIndex *getInstanceForKeyType() const
     {
-           if (m_scheme.unique) {
-            if (m_type != BALANCED_TREE_INDEX) {
+        if (m_scheme.unique) {
+            if (m_type == BTREE_INDEX) {
+                return new BTreeUniqueIndex<TKeyType >(m_keySchema, m_scheme);
+            } else if (m_type != BALANCED_TREE_INDEX) {
                 return new CompactingHashUniqueIndex<TKeyType >(m_keySchema, m_scheme);
             } else if (m_scheme.countable) {
                 return new CompactingTreeUniqueIndex<TKeyType, true>(m_keySchema, m_scheme);
@@ -73,7 +77,9 @@ class TableIndexPicker
                 return new CompactingTreeUniqueIndex<TKeyType, false>(m_keySchema, m_scheme);
             }
         } else {
-            if (m_type != BALANCED_TREE_INDEX) {
+            if (m_type == BTREE_INDEX) {
+                return new BTreeMultiMapIndex<TKeyType >(m_keySchema, m_scheme);
+            } else if (m_type != BALANCED_TREE_INDEX) {
                 return new CompactingHashMultiMapIndex<TKeyType >(m_keySchema, m_scheme);
             } else if (m_scheme.countable) {
                 return new CompactingTreeMultiMapIndex<TKeyType, true>(m_keySchema, m_scheme);
@@ -101,6 +107,14 @@ class TableIndexPicker
                       m_scheme.name.c_str());
             m_type = BALANCED_TREE_INDEX;
         }
+        // B+tree nodes keep copies of keys that outlive the entries they came from,
+        // which would dangle if they pointed to out-of-line values.
+        if (m_type == BTREE_INDEX && m_keySchema->getUninlinedObjectColumnCount() != 0) {
+            VOLT_INFO("Producing a tree index for %s: "
+                      "B+tree index not currently supported for keys with out-of-line values.\n",
+                      m_scheme.name.c_str());
+            m_type = BALANCED_TREE_INDEX;
+        }
         // If any indexed expression value can not either be stored "inline" within a (GenericKey) key tuple
         // or specifically in a non-inlined object shared with the base table (because it is a simple column value),
         // then the GenericKey will have to reference and maintain its own persistent non-inline storage.
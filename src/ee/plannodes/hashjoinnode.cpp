@@ -0,0 +1,97 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "hashjoinnode.h"
+
+#include "expressions/abstractexpression.h"
+#include "storage/table.h"
+
+#include <sstream>
+
+using namespace std;
+using namespace voltdb;
+
+HashJoinPlanNode::HashJoinPlanNode(CatalogId id)
+  : AbstractJoinPlanNode(id)
+{
+    // Do nothing
+}
+
+HashJoinPlanNode::HashJoinPlanNode()
+  : AbstractJoinPlanNode()
+{
+    // Do nothing
+}
+
+HashJoinPlanNode::~HashJoinPlanNode()
+{
+    // must delete the output table that was created in the
+    // executor (and stored here in the plannode).
+    delete getOutputTable();
+    for (size_t ii = 0; ii < m_outerHashKeys.size(); ii++) {
+        delete m_outerHashKeys[ii];
+    }
+    for (size_t ii = 0; ii < m_innerHashKeys.size(); ii++) {
+        delete m_innerHashKeys[ii];
+    }
+}
+
+PlanNodeType
+HashJoinPlanNode::getPlanNodeType() const
+{
+    return PLAN_NODE_TYPE_HASHJOIN;
+}
+
+const vector<AbstractExpression*>&
+HashJoinPlanNode::getOuterHashKeys() const
+{
+    return m_outerHashKeys;
+}
+
+const vector<AbstractExpression*>&
+HashJoinPlanNode::getInnerHashKeys() const
+{
+    return m_innerHashKeys;
+}
+
+string HashJoinPlanNode::debugInfo(const string& spacer) const
+{
+    ostringstream buffer;
+    buffer << AbstractJoinPlanNode::debugInfo(spacer);
+    for (size_t ii = 0; ii < m_outerHashKeys.size(); ii++) {
+        buffer << spacer << "Outer Hash Key[" << ii << "]\n";
+        buffer << m_outerHashKeys[ii]->debug(spacer);
+        buffer << spacer << "Inner Hash Key[" << ii << "]\n";
+        buffer << m_innerHashKeys[ii]->debug(spacer);
+    }
+    return (buffer.str());
+}
+
+void
+HashJoinPlanNode::loadFromJSONObject(PlannerDomValue obj)
+{
+    AbstractJoinPlanNode::loadFromJSONObject(obj);
+
+    PlannerDomValue outerKeysArray = obj.valueForKey("OUTER_HASH_KEYS");
+    for (int i = 0; i < outerKeysArray.arrayLen(); i++) {
+        m_outerHashKeys.push_back(AbstractExpression::buildExpressionTree(outerKeysArray.valueAtIndex(i)));
+    }
+    PlannerDomValue innerKeysArray = obj.valueForKey("INNER_HASH_KEYS");
+    for (int i = 0; i < innerKeysArray.arrayLen(); i++) {
+        m_innerHashKeys.push_back(AbstractExpression::buildExpressionTree(innerKeysArray.valueAtIndex(i)));
+    }
+}
@@ -0,0 +1,58 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef HASHJOINNODE_H
+#define HASHJOINNODE_H
+
+#include "abstractjoinnode.h"
+
+#include <vector>
+
+namespace voltdb
+{
+
+/**
+ * Equi-join that hashes the inner (second) input table on the inner hash
+ * keys and probes it with the outer hash keys of each outer tuple.
+ * The join predicate is still applied to every candidate pair.
+ */
+class HashJoinPlanNode : public AbstractJoinPlanNode
+{
+public:
+    HashJoinPlanNode(CatalogId id);
+    HashJoinPlanNode();
+    ~HashJoinPlanNode();
+
+    virtual PlanNodeType getPlanNodeType() const;
+
+    const std::vector<AbstractExpression*>& getOuterHashKeys() const;
+
+    const std::vector<AbstractExpression*>& getInnerHashKeys() const;
+
+    virtual std::string debugInfo(const std::string& spacer) const;
+
+protected:
+    virtual void loadFromJSONObject(PlannerDomValue obj);
+
+    // The i-th outer key equals the i-th inner key in any joined pair.
+    std::vector<AbstractExpression*> m_outerHashKeys;
+    std::vector<AbstractExpression*> m_innerHashKeys;
+};
+
+}
+
+#endif
@@ -15,6 +15,7 @@
  * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+#include <algorithm>
 #include <cassert>
 #include <cstdio>
 #include "common/types.h"
@@ -28,15 +29,17 @@
 #include "expressions/abstractexpression.h"
 #include "indexes/tableindex.h"
 #include "storage/persistenttable.h"
+#include "storage/tableiterator.h"
 #include "storage/MaterializedViewMetadata.h"
 #include "boost/foreach.hpp"
+#include "boost/scoped_ptr.hpp"
 #include "boost/shared_array.hpp"
 
 namespace voltdb {
 
 MaterializedViewMetadata::MaterializedViewMetadata(
         PersistentTable *srcTable, PersistentTable *destTable, catalog::MaterializedViewInfo *metadata)
-        : m_target(destTable), m_filterPredicate(NULL)
+        : m_srcTable(srcTable), m_target(destTable), m_filterPredicate(NULL)
 {
 // DEBUG_STREAM_HERE("New mat view on source table " << srcTable->name() << " @" << srcTable << " view table " << m_target->name() << " @" << m_target);
     // best not to have to worry about the destination table disappearing out from under the source table that feeds it.
@@ -225,6 +228,23 @@ void MaterializedViewMetadata::processTupleInsert(TableTuple &newTuple, bool fal
         else if (m_outputColumnAggTypes[i] == EXPRESSION_TYPE_AGGREGATE_COUNT) {
             m_updatedTuple.setNValue(i, existingValue.op_increment());
         }
+        else if (m_outputColumnAggTypes[i] == EXPRESSION_TYPE_AGGREGATE_MIN ||
+                 m_outputColumnAggTypes[i] == EXPRESSION_TYPE_AGGREGATE_MAX) {
+            // NULLs never become the extreme, and a new group starts from its first value.
+            // Ties keep the existing value, so an out-of-line string isn't copied again.
+            if (!exists || existingValue.isNull()) {
+                m_updatedTuple.setNValue(i, newValue);
+            }
+            else if (newValue.isNull()) {
+                m_updatedTuple.setNValue(i, existingValue);
+            }
+            else if (m_outputColumnAggTypes[i] == EXPRESSION_TYPE_AGGREGATE_MIN) {
+                m_updatedTuple.setNValue(i, newValue.op_min(existingValue));
+            }
+            else {
+                m_updatedTuple.setNValue(i, newValue.op_max(existingValue));
+            }
+        }
         else {
             char message[128];
             snprintf(message, 128, "Error in materialized view table update for"
@@ -286,6 +306,9 @@ void MaterializedViewMetadata::processTupleDelete(TableTuple &oldTuple, bool fal
     m_updatedTuple.setNValue(colindex, count);
     colindex++;
 
+    // MIN/MAX columns whose extreme is being deleted
+    std::vector<int> extremeColumns;
+
     // set values for the other columns
     for (int i = colindex; i < m_outputColumnCount; i++) {
         NValue oldValue = oldTuple.getNValue(m_outputColumnSrcTableIndexes[i]);
@@ -297,6 +320,17 @@ void MaterializedViewMetadata::processTupleDelete(TableTuple &oldTuple, bool fal
         else if (m_outputColumnAggTypes[i] == EXPRESSION_TYPE_AGGREGATE_COUNT) {
             m_updatedTuple.setNValue(i, existingValue.op_decrement());
         }
+        else if (m_outputColumnAggTypes[i] == EXPRESSION_TYPE_AGGREGATE_MIN ||
+                 m_outputColumnAggTypes[i] == EXPRESSION_TYPE_AGGREGATE_MAX) {
+            if (oldValue.isNull() || existingValue.isNull() || oldValue.compare(existingValue) != 0) {
+                m_updatedTuple.setNValue(i, existingValue);
+            }
+            else {
+                // start over from NULL in case no other tuple has a value
+                m_updatedTuple.setNValue(i, NValue::getNullValue(m_target->schema()->columnType(i)));
+                extremeColumns.push_back(i);
+            }
+        }
         else {
             throw SerializableEEException(VOLT_EE_EXCEPTION_TYPE_EEEXCEPTION,
                                           "Error in materialized view table"
@@ -304,6 +338,10 @@ void MaterializedViewMetadata::processTupleDelete(TableTuple &oldTuple, bool fal
         }
     }
 
+    if ( ! extremeColumns.empty()) {
+        findExtremesInGroup(oldTuple, extremeColumns);
+    }
+
     // update the row
     // Shouldn't need to update group-key-only indexes such as the primary key
     // since their keys shouldn't ever change, but do update other indexes.
@@ -334,4 +372,124 @@ bool MaterializedViewMetadata::findExistingTuple(TableTuple &oldTuple, bool expe
     }
 }
 
+void MaterializedViewMetadata::findExtremesInGroup(const TableTuple &oldTuple,
+                                                   const std::vector<int> &columns) {
+    bool exactMatch = false;
+    TableIndex *index = findGroupByIndex(exactMatch);
+    TableTuple tuple(m_srcTable->schema());
+    boost::scoped_ptr<TableIterator> iterator;
+    boost::shared_array<char> searchKeyBackingStore;
+    if (index) {
+        // the group's key, followed by NULLs to start a partial key scan at the group
+        const TupleSchema *keySchema = index->getKeySchema();
+        searchKeyBackingStore.reset(new char[keySchema->tupleLength() + 1]);
+        memset(searchKeyBackingStore.get(), 0, keySchema->tupleLength() + 1);
+        TableTuple searchKey(searchKeyBackingStore.get(), keySchema);
+        searchKey.setAllNulls();
+        const std::vector<int> &indexColumns = index->getColumnIndices();
+        for (int i = 0; i < m_groupByColumnCount; i++) {
+            searchKey.setNValue(i, oldTuple.getNValue(indexColumns[i]));
+        }
+        if (exactMatch) {
+            index->moveToKey(&searchKey);
+        }
+        else {
+            index->moveToKeyOrGreater(&searchKey);
+        }
+    }
+    else {
+        // a private iterator, since the caller may be iterating the source table
+        iterator.reset(m_srcTable->makeIterator());
+    }
+
+    while (true) {
+        if (index == NULL) {
+            if ( ! iterator->next(tuple)) {
+                break;
+            }
+            if ( ! isInGroup(oldTuple, tuple)) {
+                continue;
+            }
+        }
+        else if (exactMatch) {
+            tuple = index->nextValueAtKey();
+            if (tuple.isNullTuple()) {
+                break;
+            }
+        }
+        else {
+            tuple = index->nextValue();
+            if (tuple.isNullTuple() || ! isInGroup(oldTuple, tuple)) {
+                break;
+            }
+        }
+
+        // The deleted tuple may still be in the table or the index,
+        // and an updated tuple still has its old values.
+        if (tuple.address() == oldTuple.address()) {
+            continue;
+        }
+        if (m_filterPredicate && (m_filterPredicate->eval(&tuple, NULL).isFalse())) {
+            continue;
+        }
+
+        BOOST_FOREACH(int i, columns) {
+            NValue value = tuple.getNValue(m_outputColumnSrcTableIndexes[i]);
+            if (value.isNull()) {
+                continue;
+            }
+            NValue extreme = m_updatedTuple.getNValue(i);
+            if (extreme.isNull()) {
+                m_updatedTuple.setNValue(i, value);
+            }
+            else if (m_outputColumnAggTypes[i] == EXPRESSION_TYPE_AGGREGATE_MIN) {
+                m_updatedTuple.setNValue(i, value.op_min(extreme));
+            }
+            else {
+                m_updatedTuple.setNValue(i, value.op_max(extreme));
+            }
+        }
+    }
+}
+
+TableIndex *MaterializedViewMetadata::findGroupByIndex(bool &exactMatch) const {
+    TableIndex *prefixIndex = NULL;
+    BOOST_FOREACH(TableIndex *index, m_srcTable->allIndexes()) {
+        const std::vector<int> &indexColumns = index->getColumnIndices();
+        if ( ! index->getIndexedExpressions().empty() ||
+            indexColumns.size() < static_cast<size_t>(m_groupByColumnCount)) {
+            continue;
+        }
+        bool leadsWithGroupBy = true;
+        for (int i = 0; i < m_groupByColumnCount; i++) {
+            if (std::find(m_groupByColumns, m_groupByColumns + m_groupByColumnCount,
+                          indexColumns[i]) == m_groupByColumns + m_groupByColumnCount) {
+                leadsWithGroupBy = false;
+                break;
+            }
+        }
+        if ( ! leadsWithGroupBy) {
+            continue;
+        }
+        if (indexColumns.size() == static_cast<size_t>(m_groupByColumnCount)) {
+            exactMatch = true;
+            return index;
+        }
+        if (prefixIndex == NULL && index->getIndexType() != HASH_TABLE_INDEX) {
+            prefixIndex = index;
+        }
+    }
+    exactMatch = false;
+    return prefixIndex;
+}
+
+bool MaterializedViewMetadata::isInGroup(const TableTuple &oldTuple, const TableTuple &tuple) const {
+    for (int i = 0; i < m_groupByColumnCount; i++) {
+        if (tuple.getNValue(m_groupByColumns[i]).compare(oldTuple.getNValue(m_groupByColumns[i])) != 0) {
+            return false;
+        }
+    }
+    return true;
+}
+
 } // namespace voltdb
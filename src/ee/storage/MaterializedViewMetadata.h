@@ -35,6 +35,11 @@ class TableIndex;
  * a source table. An instance sits between the two tables translasting changes in one table
  * into changes in another table. It loads all this information from the catalog in its
  * constructor.
+ *
+ * SUM and COUNT columns are adjusted by each change. MIN and MAX columns only need the
+ * change itself until the current extreme of a group is deleted, then the group is
+ * searched in the source table for the next one, using a source index that leads with
+ * the group by columns if there is one.
  */
 class MaterializedViewMetadata {
 public:
@@ -71,6 +76,23 @@ private:
      */
     bool findExistingTuple(TableTuple &oldTuple, bool expected = false);
 
+    /**
+     * set the given MIN/MAX columns of the updated view tuple to the extremes of the
+     * group of the deleted tuple, among the source tuples other than the deleted one
+     */
+    void findExtremesInGroup(const TableTuple &oldTuple, const std::vector<int> &columns);
+
+    /**
+     * find a source table index whose leading columns are the group by columns,
+     * preferring one that has no other columns
+     */
+    TableIndex *findGroupByIndex(bool &exactMatch) const;
+
+    bool isInGroup(const TableTuple &oldTuple, const TableTuple &tuple) const;
+
+    // the table the view is aggregated from
+    PersistentTable *m_srcTable;
+
     // the materialized view table
     PersistentTable *m_target;
     // space to hold the search key for the view table
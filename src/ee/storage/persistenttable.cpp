@@ -91,7 +91,8 @@ PersistentTable::PersistentTable(int partitionColumn, int tableAllocationTargetS
     m_partitionColumn(partitionColumn),
     stats_(this),
     m_failedCompactionCount(0),
-    m_invisibleTuplesPendingDeleteCount(0)
+    m_invisibleTuplesPendingDeleteCount(0),
+    m_modificationCount(0)
 {
     for (int ii = 0; ii < TUPLE_BLOCK_NUM_BUCKETS; ii++) {
         m_blocksNotPendingSnapshotLoad.push_back(TBBucketPtr(new TBBucket()));
@@ -152,6 +153,7 @@ void PersistentTable::nextFreeTuple(TableTuple *tuple) {
 
         tuple->move(retval.first);
         ++m_tupleCount;
+        ++m_modificationCount;
         if (!block->hasFreeTuples()) {
             m_blocksWithSpace.erase(block);
         }
@@ -188,6 +190,7 @@ void PersistentTable::nextFreeTuple(TableTuple *tuple) {
 
     tuple->move(retval.first);
     ++m_tupleCount;
+    ++m_modificationCount;
     if (block->hasFreeTuples()) {
         m_blocksWithSpace.insert(block);
     }
@@ -359,6 +362,7 @@ bool PersistentTable::updateTupleWithSpecificIndexes(TableTuple &targetTupleToUp
     if (m_tableStreamer != NULL) {
         m_tableStreamer->notifyTupleUpdate(targetTupleToUpdate);
     }
+    ++m_modificationCount;
 
     /**
      * Remove the current tuple from any indexes.
@@ -526,6 +530,7 @@ bool PersistentTable::deleteTuple(TableTuple &target, bool fallible) {
 
     // Just like insert, we want to remove this tuple from all of our indexes
     deleteFromAllIndexes(&target);
+    ++m_modificationCount;
 
     // handle any materialized views
     for (int i = 0; i < m_views.size(); i++) {
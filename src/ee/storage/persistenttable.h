@@ -257,6 +257,16 @@ class PersistentTable : public Table, public UndoQuantumReleaseInterest,
      */
     size_t hashCode();
 
+    /**
+     * Number of inserts, updates and deletes applied to the table since it
+     * was created. Snapshots that skip unchanged tables compare it against the
+     * value seen by the previous snapshot to tell whether the table needs to
+     * be written.
+     */
+    int64_t modificationCount() const {
+        return m_modificationCount;
+    }
+
     size_t getBlocksNotPendingSnapshotCount() {
         return m_blocksNotPendingSnapshot.size();
     }
@@ -410,6 +420,7 @@ class PersistentTable : public Table, public UndoQuantumReleaseInterest,
     TBMap m_data;
     int m_failedCompactionCount;
     int m_invisibleTuplesPendingDeleteCount;
+    int64_t m_modificationCount;
 };
 
 inline TableTuple& PersistentTable::getTempTupleInlined(TableTuple &source) {
@@ -434,6 +445,7 @@ inline void PersistentTable::deleteTupleStorage(TableTuple &tuple, TBPtr block)
     }
 
     tuple.setActiveFalse();
+    ++m_modificationCount;
 
     // add to the free list
     m_tupleCount--;
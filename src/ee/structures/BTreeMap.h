@@ -0,0 +1,705 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef BTREEMAP_H_
+#define BTREEMAP_H_
+
+#include <cstdlib>
+#include <stdint.h>
+#include <utility>
+#include <cassert>
+
+namespace voltdb {
+
+/**
+ * B+tree with the loose stl::map-like interface of CompactingMap.
+ *
+ * Entries live only in the leaves, which are linked in both directions,
+ * so a range scan walks along the leaves instead of climbing back up
+ * the tree. Nodes have a fixed size of a few cache lines and pack their
+ * keys into an array of their own, so a lookup binary searches contiguous
+ * memory and touches one node per level, where the red-black tree takes a
+ * pointer and likely a cache miss per comparison.
+ *
+ * Issues to be aware of:
+ * 1. Inner nodes keep copies of keys to separate their children, and
+ *    those copies outlive the entries they were taken from. Keys must
+ *    not refer to storage owned by the entry (or by anything else that
+ *    can go away), and must copy cleanly through assignment.
+ * 2. Nodes are allocated one at a time and freed when merged away. They
+ *    are not kept contiguous like the nodes of CompactingMap.
+ * 3. Iterators are invalidated by any mutation, as in CompactingMap.
+ * 4. Iterators have no overloaded operators. Use equals().
+ */
+template<typename Key, typename Data, typename Compare>
+class BTreeMap {
+protected:
+    enum {
+        // Target size of a node in bytes
+        NODE_SIZE = 512,
+        LEAF_FIT = (NODE_SIZE - 4 * sizeof(void*)) / (sizeof(Key) + sizeof(Data)),
+        LEAF_CAPACITY = LEAF_FIT > 4 ? LEAF_FIT : 4,
+        LEAF_MIN = LEAF_CAPACITY / 2,
+        // Odd, so that splitting a full inner node leaves half on each side
+        INNER_FIT = (NODE_SIZE - 3 * sizeof(void*)) / (sizeof(Key) + sizeof(void*)),
+        INNER_CAPACITY = INNER_FIT > 5 ? ((INNER_FIT - 1) | 1) : 5,
+        INNER_MIN = INNER_CAPACITY / 2
+    };
+
+    struct Inner;
+
+    struct Node {
+        Inner *parent;
+        int32_t count;
+        bool leaf;
+    };
+
+    // count is the number of entries
+    struct Leaf : public Node {
+        Leaf *prev;
+        Leaf *next;
+        Key keys[LEAF_CAPACITY];
+        Data values[LEAF_CAPACITY];
+    };
+
+    // count is the number of keys, one less than the number of children.
+    // All keys under children[i] are <= keys[i] <= all keys under children[i + 1].
+    struct Inner : public Node {
+        Key keys[INNER_CAPACITY];
+        Node *children[INNER_CAPACITY + 1];
+    };
+
+    int64_t m_count;
+    Node *m_root;
+    Leaf *m_first;
+    Leaf *m_last;
+    int64_t m_leafCount;
+    int64_t m_innerCount;
+    bool m_unique;
+
+    // templated comparison function object
+    // follows STL conventions
+    Compare m_comper;
+
+public:
+
+    class iterator {
+        friend class BTreeMap<Key, Data, Compare>;
+    protected:
+        Leaf *m_leaf;
+        int m_index;
+        iterator(Leaf *leaf, int index) : m_leaf(leaf), m_index(index) {}
+    public:
+        iterator() : m_leaf(NULL), m_index(0) {}
+        iterator(const iterator &iter) : m_leaf(iter.m_leaf), m_index(iter.m_index) {}
+        Key &key() const { return m_leaf->keys[m_index]; }
+        Data &value() const { return m_leaf->values[m_index]; }
+        void setValue(const Data &value) { m_leaf->values[m_index] = value; }
+        void moveNext() {
+            if (m_leaf && ++m_index == m_leaf->count) {
+                m_leaf = m_leaf->next;
+                m_index = 0;
+            }
+        }
+        void movePrev() {
+            if (m_leaf && m_index-- == 0) {
+                m_leaf = m_leaf->prev;
+                m_index = m_leaf ? m_leaf->count - 1 : 0;
+            }
+        }
+        bool isEnd() const { return m_leaf == NULL; }
+        bool equals(const iterator &iter) const {
+            if (isEnd()) return iter.isEnd();
+            return m_leaf == iter.m_leaf && m_index == iter.m_index;
+        }
+    };
+
+    BTreeMap(bool unique, Compare comper);
+    ~BTreeMap();
+
+    bool insert(std::pair<Key, Data> value) { return insert(value.first, value.second); }
+    bool insert(const Key &key, const Data &data);
+    bool erase(const Key &key);
+    bool erase(iterator &iter);
+    iterator find(const Key &key);
+    int64_t size() const { return m_count; }
+    iterator begin() const { return iterator(m_first, 0); }
+    iterator rbegin() const {
+        if (!m_last) return iterator();
+        return iterator(m_last, m_last->count - 1);
+    }
+
+    iterator lowerBound(const Key &key);
+    iterator upperBound(const Key &key);
+
+    std::pair<iterator, iterator> equalRange(const Key &key);
+
+    size_t bytesAllocated() const {
+        return m_leafCount * sizeof(Leaf) + m_innerCount * sizeof(Inner);
+    }
+
+    /**
+     * For debugging: verify the B+tree constraints are met. SLOW.
+     */
+    bool verify() const;
+
+protected:
+    // index of the first key >= key, or count if there is none
+    int lowerIndex(const Key *keys, int count, const Key &key) const;
+    // index of the first key > key, or count if there is none
+    int upperIndex(const Key *keys, int count, const Key &key) const;
+    Leaf *findLeaf(const Key &key, bool upper) const;
+    int childIndex(const Inner *parent, const Node *child) const;
+
+    void insertAt(Leaf *leaf, int index, const Key &key, const Data &data);
+    void insertIntoParent(Node *left, const Key &separator, Node *right);
+    void insertChild(Inner *node, int index, const Key &separator, Node *child);
+
+    void eraseAt(Leaf *leaf, int index);
+    void rebalanceLeaf(Leaf *leaf);
+    void rebalanceInner(Inner *node);
+    void removeChild(Inner *node, int index);
+
+    Leaf *newLeaf();
+    Inner *newInner();
+    void deleteLeaf(Leaf *leaf);
+    void deleteInner(Inner *inner);
+    void deleteTree(Node *node);
+
+    int verify(const Node *node, const Inner *parent, const Key *lower, const Key *upper) const;
+};
+
+template<typename Key, typename Data, typename Compare>
+BTreeMap<Key, Data, Compare>::BTreeMap(bool unique, Compare comper)
+    : m_count(0),
+      m_root(NULL),
+      m_first(NULL),
+      m_last(NULL),
+      m_leafCount(0),
+      m_innerCount(0),
+      m_unique(unique),
+      m_comper(comper)
+{}
+
+template<typename Key, typename Data, typename Compare>
+BTreeMap<Key, Data, Compare>::~BTreeMap() {
+    if (m_root) {
+        deleteTree(m_root);
+    }
+}
+
+template<typename Key, typename Data, typename Compare>
+bool BTreeMap<Key, Data, Compare>::insert(const Key &key, const Data &data) {
+    if (!m_root) {
+        m_root = m_first = m_last = newLeaf();
+    }
+    Leaf *leaf;
+    int index;
+    if (m_unique) {
+        leaf = findLeaf(key, false);
+        index = lowerIndex(leaf->keys, leaf->count, key);
+        // an equal key is either at the index or first in the next leaf
+        if (index < leaf->count) {
+            if (m_comper(key, leaf->keys[index]) == 0) return false;
+        }
+        else if (leaf->next && m_comper(key, leaf->next->keys[0]) == 0) {
+            return false;
+        }
+    }
+    else {
+        // equal keys stay in insertion order
+        leaf = findLeaf(key, true);
+        index = upperIndex(leaf->keys, leaf->count, key);
+    }
+    insertAt(leaf, index, key, data);
+    m_count++;
+    return true;
+}
+
+template<typename Key, typename Data, typename Compare>
+bool BTreeMap<Key, Data, Compare>::erase(const Key &key) {
+    iterator iter = find(key);
+    if (iter.isEnd()) return false;
+    eraseAt(iter.m_leaf, iter.m_index);
+    return true;
+}
+
+template<typename Key, typename Data, typename Compare>
+bool BTreeMap<Key, Data, Compare>::erase(iterator &iter) {
+    assert(!iter.isEnd());
+    eraseAt(iter.m_leaf, iter.m_index);
+    return true;
+}
+
+template<typename Key, typename Data, typename Compare>
+typename BTreeMap<Key, Data, Compare>::iterator BTreeMap<Key, Data, Compare>::find(const Key &key) {
+    iterator iter = lowerBound(key);
+    if (!iter.isEnd() && m_comper(key, iter.key()) == 0) {
+        return iter;
+    }
+    return iterator();
+}
+
+template<typename Key, typename Data, typename Compare>
+typename BTreeMap<Key, Data, Compare>::iterator BTreeMap<Key, Data, Compare>::lowerBound(const Key &key) {
+    if (!m_root) return iterator();
+    Leaf *leaf = findLeaf(key, false);
+    int index = lowerIndex(leaf->keys, leaf->count, key);
+    if (index == leaf->count) {
+        return iterator(leaf->next, 0);
+    }
+    return iterator(leaf, index);
+}
+
+template<typename Key, typename Data, typename Compare>
+typename BTreeMap<Key, Data, Compare>::iterator BTreeMap<Key, Data, Compare>::upperBound(const Key &key) {
+    if (!m_root) return iterator();
+    Leaf *leaf = findLeaf(key, true);
+    int index = upperIndex(leaf->keys, leaf->count, key);
+    if (index == leaf->count) {
+        return iterator(leaf->next, 0);
+    }
+    return iterator(leaf, index);
+}
+
+template<typename Key, typename Data, typename Compare>
+typename std::pair<typename BTreeMap<Key, Data, Compare>::iterator, typename BTreeMap<Key, Data, Compare>::iterator> BTreeMap<Key, Data, Compare>::equalRange(const Key &key) {
+    return std::pair<iterator, iterator>(lowerBound(key), upperBound(key));
+}
+
+template<typename Key, typename Data, typename Compare>
+int BTreeMap<Key, Data, Compare>::lowerIndex(const Key *keys, int count, const Key &key) const {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+        int mid = (low + high) / 2;
+        if (m_comper(keys[mid], key) < 0) low = mid + 1;
+        else high = mid;
+    }
+    return low;
+}
+
+template<typename Key, typename Data, typename Compare>
+int BTreeMap<Key, Data, Compare>::upperIndex(const Key *keys, int count, const Key &key) const {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+        int mid = (low + high) / 2;
+        if (m_comper(keys[mid], key) <= 0) low = mid + 1;
+        else high = mid;
+    }
+    return low;
+}
+
+/**
+ * Descend to the leaf where the first key >= key (or > key if upper) is,
+ * unless it is the first key of the following leaf.
+ */
+template<typename Key, typename Data, typename Compare>
+typename BTreeMap<Key, Data, Compare>::Leaf *BTreeMap<Key, Data, Compare>::findLeaf(const Key &key, bool upper) const {
+    Node *node = m_root;
+    while (!node->leaf) {
+        Inner *inner = static_cast<Inner*>(node);
+        int index = upper ? upperIndex(inner->keys, inner->count, key)
+                          : lowerIndex(inner->keys, inner->count, key);
+        node = inner->children[index];
+    }
+    return static_cast<Leaf*>(node);
+}
+
+template<typename Key, typename Data, typename Compare>
+int BTreeMap<Key, Data, Compare>::childIndex(const Inner *parent, const Node *child) const {
+    int index = 0;
+    while (parent->children[index] != child) {
+        index++;
+        assert(index <= parent->count);
+    }
+    return index;
+}
+
+template<typename Key, typename Data, typename Compare>
+void BTreeMap<Key, Data, Compare>::insertAt(Leaf *leaf, int index, const Key &key, const Data &data) {
+    if (leaf->count == LEAF_CAPACITY) {
+        // Split the leaf in half, except when appending past the last key.
+        // Keys that arrive in ascending order then fill their leaves.
+        int half = LEAF_CAPACITY / 2;
+        if (index == LEAF_CAPACITY && !leaf->next) {
+            half = LEAF_CAPACITY;
+        }
+        Leaf *right = newLeaf();
+        for (int i = half; i < leaf->count; ++i) {
+            right->keys[i - half] = leaf->keys[i];
+            right->values[i - half] = leaf->values[i];
+        }
+        right->count = leaf->count - half;
+        leaf->count = half;
+
+        right->prev = leaf;
+        right->next = leaf->next;
+        if (leaf->next) leaf->next->prev = right;
+        else m_last = right;
+        leaf->next = right;
+
+        if (index > half || half == LEAF_CAPACITY) {
+            insertAt(right, index - half, key, data);
+        }
+        else {
+            insertAt(leaf, index, key, data);
+        }
+        insertIntoParent(leaf, right->keys[0], right);
+        return;
+    }
+
+    for (int i = leaf->count; i > index; --i) {
+        leaf->keys[i] = leaf->keys[i - 1];
+        leaf->values[i] = leaf->values[i - 1];
+    }
+    leaf->keys[index] = key;
+    leaf->values[index] = data;
+    leaf->count++;
+}
+
+template<typename Key, typename Data, typename Compare>
+void BTreeMap<Key, Data, Compare>::insertIntoParent(Node *left, const Key &separator, Node *right) {
+    Inner *parent = left->parent;
+    if (!parent) {
+        Inner *root = newInner();
+        root->keys[0] = separator;
+        root->children[0] = left;
+        root->children[1] = right;
+        root->count = 1;
+        left->parent = right->parent = root;
+        m_root = root;
+        return;
+    }
+
+    int index = childIndex(parent, left);
+    if (parent->count < INNER_CAPACITY) {
+        insertChild(parent, index, separator, right);
+        return;
+    }
+
+    // Split the parent around its middle key, which moves up a level
+    const int mid = INNER_CAPACITY / 2;
+    Inner *sibling = newInner();
+    Key up = parent->keys[mid];
+    for (int i = mid + 1; i < INNER_CAPACITY; ++i) {
+        sibling->keys[i - mid - 1] = parent->keys[i];
+    }
+    for (int i = mid + 1; i <= INNER_CAPACITY; ++i) {
+        sibling->children[i - mid - 1] = parent->children[i];
+        parent->children[i]->parent = sibling;
+    }
+    sibling->count = INNER_CAPACITY - mid - 1;
+    parent->count = mid;
+
+    if (index <= mid) {
+        insertChild(parent, index, separator, right);
+    }
+    else {
+        insertChild(sibling, index - mid - 1, separator, right);
+    }
+    insertIntoParent(parent, up, sibling);
+}
+
+/**
+ * Insert child to the right of children[index], separated from it by separator.
+ */
+template<typename Key, typename Data, typename Compare>
+void BTreeMap<Key, Data, Compare>::insertChild(Inner *node, int index, const Key &separator, Node *child) {
+    assert(node->count < INNER_CAPACITY);
+    for (int i = node->count; i > index; --i) {
+        node->keys[i] = node->keys[i - 1];
+        node->children[i + 1] = node->children[i];
+    }
+    node->keys[index] = separator;
+    node->children[index + 1] = child;
+    child->parent = node;
+    node->count++;
+}
+
+template<typename Key, typename Data, typename Compare>
+void BTreeMap<Key, Data, Compare>::eraseAt(Leaf *leaf, int index) {
+    for (int i = index + 1; i < leaf->count; ++i) {
+        leaf->keys[i - 1] = leaf->keys[i];
+        leaf->values[i - 1] = leaf->values[i];
+    }
+    leaf->count--;
+    // release whatever the vacated slot holds
+    leaf->keys[leaf->count] = Key();
+    m_count--;
+
+    if (!leaf->parent) {
+        if (leaf->count == 0) {
+            deleteLeaf(leaf);
+            m_root = m_first = m_last = NULL;
+        }
+        return;
+    }
+    if (leaf->count < LEAF_MIN) {
+        rebalanceLeaf(leaf);
+    }
+}
+
+/**
+ * Refill a leaf that dropped below half full from a sibling, or merge the two.
+ */
+template<typename Key, typename Data, typename Compare>
+void BTreeMap<Key, Data, Compare>::rebalanceLeaf(Leaf *leaf) {
+    Inner *parent = leaf->parent;
+    int index = childIndex(parent, leaf);
+    Leaf *left = index > 0 ? static_cast<Leaf*>(parent->children[index - 1]) : NULL;
+    Leaf *right = index < parent->count ? static_cast<Leaf*>(parent->children[index + 1]) : NULL;
+
+    if (left && left->count > LEAF_MIN) {
+        for (int i = leaf->count; i > 0; --i) {
+            leaf->keys[i] = leaf->keys[i - 1];
+            leaf->values[i] = leaf->values[i - 1];
+        }
+        left->count--;
+        leaf->keys[0] = left->keys[left->count];
+        leaf->values[0] = left->values[left->count];
+        leaf->count++;
+        parent->keys[index - 1] = leaf->keys[0];
+    }
+    else if (right && right->count > LEAF_MIN) {
+        leaf->keys[leaf->count] = right->keys[0];
+        leaf->values[leaf->count] = right->values[0];
+        leaf->count++;
+        for (int i = 1; i < right->count; ++i) {
+            right->keys[i - 1] = right->keys[i];
+            right->values[i - 1] = right->values[i];
+        }
+        right->count--;
+        parent->keys[index] = right->keys[0];
+    }
+    else {
+        // merge the right one of the pair into the left one
+        if (left) {
+            right = leaf;
+            index--;
+        }
+        else {
+            left = leaf;
+        }
+        for (int i = 0; i < right->count; ++i) {
+            left->keys[left->count + i] = right->keys[i];
+            left->values[left->count + i] = right->values[i];
+        }
+        left->count += right->count;
+        left->next = right->next;
+        if (right->next) right->next->prev = left;
+        else m_last = left;
+        deleteLeaf(right);
+        removeChild(parent, index);
+    }
+}
+
+/**
+ * Refill an inner node that dropped below half full by rotating a child
+ * through the parent from a sibling, or merge the two.
+ */
+template<typename Key, typename Data, typename Compare>
+void BTreeMap<Key, Data, Compare>::rebalanceInner(Inner *node) {
+    Inner *parent = node->parent;
+    int index = childIndex(parent, node);
+    Inner *left = index > 0 ? static_cast<Inner*>(parent->children[index - 1]) : NULL;
+    Inner *right = index < parent->count ? static_cast<Inner*>(parent->children[index + 1]) : NULL;
+
+    if (left && left->count > INNER_MIN) {
+        node->children[node->count + 1] = node->children[node->count];
+        for (int i = node->count; i > 0; --i) {
+            node->keys[i] = node->keys[i - 1];
+            node->children[i] = node->children[i - 1];
+        }
+        node->keys[0] = parent->keys[index - 1];
+        node->children[0] = left->children[left->count];
+        node->children[0]->parent = node;
+        node->count++;
+        parent->keys[index - 1] = left->keys[left->count - 1];
+        left->count--;
+    }
+    else if (right && right->count > INNER_MIN) {
+        node->keys[node->count] = parent->keys[index];
+        node->children[node->count + 1] = right->children[0];
+        node->children[node->count + 1]->parent = node;
+        node->count++;
+        parent->keys[index] = right->keys[0];
+        for (int i = 1; i < right->count; ++i) {
+            right->keys[i - 1] = right->keys[i];
+        }
+        for (int i = 1; i <= right->count; ++i) {
+            right->children[i - 1] = right->children[i];
+        }
+        right->count--;
+    }
+    else {
+        // merge the right one of the pair into the left one, pulling down their separator
+        if (left) {
+            right = node;
+            index--;
+        }
+        else {
+            left = node;
+        }
+        left->keys[left->count] = parent->keys[index];
+        for (int i = 0; i < right->count; ++i) {
+            left->keys[left->count + 1 + i] = right->keys[i];
+        }
+        for (int i = 0; i <= right->count; ++i) {
+            left->children[left->count + 1 + i] = right->children[i];
+            right->children[i]->parent = left;
+        }
+        left->count += right->count + 1;
+        deleteInner(right);
+        removeChild(parent, index);
+    }
+}
+
+/**
+ * Remove keys[index] and children[index + 1] after the child was merged away.
+ */
+template<typename Key, typename Data, typename Compare>
+void BTreeMap<Key, Data, Compare>::removeChild(Inner *node, int index) {
+    for (int i = index + 1; i < node->count; ++i) {
+        node->keys[i - 1] = node->keys[i];
+        node->children[i] = node->children[i + 1];
+    }
+    node->count--;
+
+    if (!node->parent) {
+        // the root goes away once it is down to one child
+        if (node->count == 0) {
+            m_root = node->children[0];
+            m_root->parent = NULL;
+            deleteInner(node);
+        }
+        return;
+    }
+    if (node->count < INNER_MIN) {
+        rebalanceInner(node);
+    }
+}
+
+template<typename Key, typename Data, typename Compare>
+typename BTreeMap<Key, Data, Compare>::Leaf *BTreeMap<Key, Data, Compare>::newLeaf() {
+    Leaf *leaf = new Leaf();
+    leaf->parent = NULL;
+    leaf->count = 0;
+    leaf->leaf = true;
+    leaf->prev = leaf->next = NULL;
+    m_leafCount++;
+    return leaf;
+}
+
+template<typename Key, typename Data, typename Compare>
+typename BTreeMap<Key, Data, Compare>::Inner *BTreeMap<Key, Data, Compare>::newInner() {
+    Inner *inner = new Inner();
+    inner->parent = NULL;
+    inner->count = 0;
+    inner->leaf = false;
+    m_innerCount++;
+    return inner;
+}
+
+template<typename Key, typename Data, typename Compare>
+void BTreeMap<Key, Data, Compare>::deleteLeaf(Leaf *leaf) {
+    delete leaf;
+    m_leafCount--;
+}
+
+template<typename Key, typename Data, typename Compare>
+void BTreeMap<Key, Data, Compare>::deleteInner(Inner *inner) {
+    delete inner;
+    m_innerCount--;
+}
+
+template<typename Key, typename Data, typename Compare>
+void BTreeMap<Key, Data, Compare>::deleteTree(Node *node) {
+    if (node->leaf) {
+        deleteLeaf(static_cast<Leaf*>(node));
+        return;
+    }
+    Inner *inner = static_cast<Inner*>(node);
+    for (int i = 0; i <= inner->count; ++i) {
+        deleteTree(inner->children[i]);
+    }
+    deleteInner(inner);
+}
+
+template<typename Key, typename Data, typename Compare>
+bool BTreeMap<Key, Data, Compare>::verify() const {
+    if (!m_root) {
+        return m_count == 0 && !m_first && !m_last && m_leafCount == 0 && m_innerCount == 0;
+    }
+    if (m_root->parent) return false;
+    if (verify(m_root, NULL, NULL, NULL) < 0) return false;
+
+    // walk the leaves, which must hold every entry in order
+    int64_t count = 0;
+    int64_t leaves = 0;
+    const Leaf *prev = NULL;
+    for (const Leaf *leaf = m_first; leaf; leaf = leaf->next) {
+        if (leaf->prev != prev) return false;
+        if (prev && m_comper(prev->keys[prev->count - 1], leaf->keys[0]) > (m_unique ? -1 : 0)) {
+            return false;
+        }
+        count += leaf->count;
+        leaves++;
+        prev = leaf;
+    }
+    if (prev != m_last) return false;
+    return count == m_count && leaves == m_leafCount;
+}
+
+/**
+ * Check the subtree and return its height, or -1 if it is broken.
+ */
+template<typename Key, typename Data, typename Compare>
+int BTreeMap<Key, Data, Compare>::verify(const Node *node, const Inner *parent,
+                                         const Key *lower, const Key *upper) const {
+    if (node->parent != parent) return -1;
+    const int capacity = node->leaf ? LEAF_CAPACITY : INNER_CAPACITY;
+    if (node->count > capacity) return -1;
+    if (parent && node->count < 1) return -1;
+
+    const Key *keys = node->leaf ? static_cast<const Leaf*>(node)->keys
+                                 : static_cast<const Inner*>(node)->keys;
+    for (int i = 0; i < node->count; ++i) {
+        if (lower && m_comper(*lower, keys[i]) > 0) return -1;
+        if (upper && m_comper(keys[i], *upper) > 0) return -1;
+        if (i > 0 && m_comper(keys[i - 1], keys[i]) > 0) return -1;
+        if (i > 0 && m_unique && node->leaf && m_comper(keys[i - 1], keys[i]) == 0) return -1;
+    }
+    if (node->leaf) return 0;
+
+    const Inner *inner = static_cast<const Inner*>(node);
+    int height = -1;
+    for (int i = 0; i <= inner->count; ++i) {
+        int childHeight = verify(inner->children[i], inner,
+                                 i > 0 ? &inner->keys[i - 1] : lower,
+                                 i < inner->count ? &inner->keys[i] : upper);
+        if (childHeight < 0) return -1;
+        if (height >= 0 && childHeight != height) return -1;
+        height = childHeight;
+    }
+    return height + 1;
+}
+
+}
+
+#endif // BTREEMAP_H_
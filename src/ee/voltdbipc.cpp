@@ -341,6 +341,10 @@ bool VoltDBIPC::execute(struct ipc_command *cmd) {
           executeTask(cmd);
           result = kErrorCode_None;
           break;
+      case 29:
+          tableModificationCount(cmd);
+          result = kErrorCode_None;
+          break;
       default:
         result = stub(cmd);
     }
@@ -1060,6 +1064,16 @@ void VoltDBIPC::tableHashCode( struct ipc_command *cmd) {
     writeOrDie(m_fd, (unsigned char*)response, 9);
 }
 
+void VoltDBIPC::tableModificationCount( struct ipc_command *cmd) {
+    table_hash_code *request = (table_hash_code*) cmd;
+    const int32_t tableId = ntohl(request->tableId);
+    int64_t modificationCount = m_engine->tableModificationCount(tableId);
+    char response[9];
+    response[0] = kErrorCode_Success;
+    *reinterpret_cast<int64_t*>(&response[1]) = htonll(modificationCount);
+    writeOrDie(m_fd, (unsigned char*)response, 9);
+}
+
 void VoltDBIPC::exportAction(struct ipc_command *cmd) {
     export_action *action = (export_action*)cmd;
 
@@ -128,6 +128,8 @@ private:
 
     void tableHashCode( struct ipc_command *cmd);
 
+    void tableModificationCount( struct ipc_command *cmd);
+
     void hashinate(struct ipc_command* cmd);
 
     void updateHashinator(struct ipc_command *cmd);
@@ -1075,6 +1075,24 @@ SHAREDLIB_JNIEXPORT jlong JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeTabl
     return -2;
 }
 
+/*
+ * Class:     org_voltdb_jni_ExecutionEngine
+ * Method:    nativeTableModificationCount
+ * Signature: (JI)J
+ */
+SHAREDLIB_JNIEXPORT jlong JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeTableModificationCount
+  (JNIEnv *env, jobject obj, jlong engine_ptr, jint tableId) {
+    VOLT_DEBUG("nativeTableModificationCount in C++ called");
+    VoltDBEngine *engine = castToEngine(engine_ptr);
+    Topend *topend = static_cast<JNITopend*>(engine->getTopend())->updateJNIEnv(env);
+    try {
+        return engine->tableModificationCount(tableId);
+    } catch (const FatalException &e) {
+        topend->crashVoltDB(e);
+    }
+    return 0;
+}
+
 /*
  * Class:     org_voltdb_jni_ExecutionEngine
  * Method:    nativeTableHashCode
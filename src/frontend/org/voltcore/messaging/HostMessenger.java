@@ -86,6 +86,8 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
         public VoltMessageFactory factory = new VoltMessageFactory();
         public int networkThreads =  Math.max(2, CoreUtils.availableProcessors() / 4);
         public Queue<String> coreBindIds;;
+        public boolean epollNetwork = false;
+        public int networkBusyPollMicros = 0;
 
         public Config(String coordIp, int coordPort) {
             if (coordIp == null || coordIp.length() == 0) {
@@ -118,6 +120,12 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
                     this.networkThreads = networkThreadConfig;
                     logger.info("Overridden network thread count: " + this.networkThreads);
                 }
+                if (Boolean.getBoolean("networkEPoll")) {
+                    this.epollNetwork = true;
+                    this.networkBusyPollMicros = Integer.getInteger("networkBusyPollMicros", 0);
+                    logger.info("Network threads will use epoll, busy polling for " +
+                            this.networkBusyPollMicros + " microseconds");
+                }
 
             } catch (Exception e) {
                 logger.error("Error setting network thread count", e);
@@ -136,6 +144,8 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
                 js.key("deadhosttimeout").value(deadHostTimeout);
                 js.key("backwardstimeforgivenesswindow").value(backwardsTimeForgivenessWindow);
                 js.key("networkThreads").value(networkThreads);
+                js.key("epollNetwork").value(epollNetwork);
+                js.key("networkBusyPollMicros").value(networkBusyPollMicros);
                 js.endObject();
 
                 return js.toString();
@@ -209,7 +219,9 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
             Config config)
     {
         m_config = config;
-        m_network = new VoltNetworkPool( m_config.networkThreads, m_config.coreBindIds);
+        m_network = new VoltNetworkPool(
+                m_config.networkThreads, m_config.coreBindIds,
+                m_config.epollNetwork, m_config.networkBusyPollMicros);
         m_joiner = new SocketJoiner(
                 m_config.coordinatorIp,
                 m_config.internalInterface,
@@ -0,0 +1,99 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.network;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+
+/**
+ * JNA bindings for the Linux epoll and eventfd calls used by EPollSelector.
+ * Registration is attempted once; check isLoaded() before calling anything.
+ */
+final class EPoll {
+    private static final boolean m_loaded;
+    static {
+        boolean loaded = false;
+        if (System.getProperty("os.name").equals("Linux")) {
+            try {
+                Native.register("c");
+                loaded = true;
+            } catch (Throwable t) {
+                // Reported by EPollSelector when it is asked for
+            }
+        }
+        m_loaded = loaded;
+    }
+
+    static final int EPOLL_CLOEXEC = 02000000;
+    static final int EPOLL_CTL_ADD = 1;
+    static final int EPOLL_CTL_DEL = 2;
+    static final int EPOLL_CTL_MOD = 3;
+
+    static final int EPOLLIN = 0x001;
+    static final int EPOLLOUT = 0x004;
+    static final int EPOLLERR = 0x008;
+    static final int EPOLLHUP = 0x010;
+    static final int EPOLLRDHUP = 0x2000;
+    static final int EPOLLET = 1 << 31;
+
+    static final int EFD_NONBLOCK = 04000;
+    static final int EFD_CLOEXEC = 02000000;
+
+    static final int SOL_SOCKET = 1;
+    static final int SO_BUSY_POLL = 46;
+
+    static final int EINTR = 4;
+    static final int ENOENT = 2;
+    static final int EBADF = 9;
+    static final int EEXIST = 17;
+
+    /*
+     * struct epoll_event is a 32-bit event mask followed by 64 bits of user data.
+     * It is packed on x86, everywhere else the data is 8 byte aligned.
+     */
+    static final int EVENT_SIZE;
+    static final int EVENT_DATA_OFFSET;
+    static {
+        final String arch = System.getProperty("os.arch");
+        if (arch.equals("amd64") || arch.equals("x86_64") || arch.matches("i[3-6]86") || arch.equals("x86")) {
+            EVENT_SIZE = 12;
+            EVENT_DATA_OFFSET = 4;
+        } else {
+            EVENT_SIZE = 16;
+            EVENT_DATA_OFFSET = 8;
+        }
+    }
+
+    static boolean isLoaded() {
+        return m_loaded;
+    }
+
+    static native int epoll_create1(int flags) throws LastErrorException;
+    static native int epoll_ctl(int epfd, int op, int fd, Pointer event) throws LastErrorException;
+    static native int epoll_wait(int epfd, Pointer events, int maxevents, int timeout) throws LastErrorException;
+    static native int eventfd(int initval, int flags) throws LastErrorException;
+    static native NativeLong read(int fd, Pointer buf, NativeLong count) throws LastErrorException;
+    static native NativeLong write(int fd, Pointer buf, NativeLong count) throws LastErrorException;
+    static native int close(int fd) throws LastErrorException;
+    static native int setsockopt(int fd, int level, int optname, Pointer optval, int optlen)
+        throws LastErrorException;
+
+    private EPoll() {}
+}
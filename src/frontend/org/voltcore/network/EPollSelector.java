@@ -0,0 +1,535 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.network;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.AbstractSelectableChannel;
+import java.nio.channels.spi.AbstractSelectionKey;
+import java.nio.channels.spi.AbstractSelector;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.voltcore.logging.VoltLogger;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Memory;
+import com.sun.jna.NativeLong;
+
+/**
+ * A Selector for socket channels that waits on an edge-triggered Linux epoll
+ * set through JNA instead of the level-triggered JDK implementation.
+ *
+ * A socket is registered for input once for its lifetime, and for output only
+ * while a write is backed up, so turning interest on and off around every
+ * dispatch costs no system calls. Since the kernel only reports changes, the
+ * key remembers what was reported until the port shows it consumed it: output
+ * readiness is consumed by any write attempt, input readiness only by a read
+ * that came up short of its budget. Keys with readiness left over are selected
+ * again without waiting.
+ *
+ * With busy polling the selecting thread polls without blocking for a while
+ * before it goes to sleep, and sockets are asked to busy poll the device
+ * queue when they read (SO_BUSY_POLL). Both trade CPU for latency.
+ *
+ * Channels are registered with register(SocketChannel, int, Object) rather
+ * than SelectableChannel.register(), which only accepts selectors of the
+ * channel's own provider. Keys and interest ops must only be used from the
+ * selecting thread, as VoltNetwork does.
+ */
+class EPollSelector extends AbstractSelector {
+    private static final VoltLogger networkLog = new VoltLogger("NETWORK");
+
+    private static final int MAX_EVENTS = 1024;
+
+    private static final Method m_getFDVal;
+    private static final String m_unavailableReason;
+    static {
+        Method getFDVal = null;
+        String reason = null;
+        if (!EPoll.isLoaded()) {
+            reason = "epoll is only available through libc on Linux";
+        } else {
+            try {
+                getFDVal = Class.forName("sun.nio.ch.SelChImpl").getMethod("getFDVal");
+                getFDVal.setAccessible(true);
+            } catch (Throwable t) {
+                reason = "socket file descriptors are not accessible: " + t;
+            }
+        }
+        m_getFDVal = getFDVal;
+        m_unavailableReason = reason;
+    }
+
+    /** Selection key for a socket registered with the epoll set */
+    static final class Key extends AbstractSelectionKey {
+        private final EPollSelector m_selector;
+        private final SocketChannel m_channel;
+        private final int m_fd;
+        private int m_interestOps;
+        private int m_readyOps;
+        // Readiness reported by the kernel and not consumed yet
+        private int m_pendingOps;
+        // Events the fd is registered for
+        private int m_events;
+
+        private Key(EPollSelector selector, SocketChannel channel, int fd, int ops) {
+            m_selector = selector;
+            m_channel = channel;
+            m_fd = fd;
+            m_interestOps = ops;
+        }
+
+        @Override
+        public SelectableChannel channel() {
+            return m_channel;
+        }
+
+        @Override
+        public Selector selector() {
+            return m_selector;
+        }
+
+        @Override
+        public int interestOps() {
+            ensureValid();
+            return m_interestOps;
+        }
+
+        @Override
+        public SelectionKey interestOps(int ops) {
+            ensureValid();
+            if ((ops & ~m_channel.validOps()) != 0) {
+                throw new IllegalArgumentException("Invalid interest ops " + ops);
+            }
+            m_interestOps = ops;
+            if ((m_pendingOps & ops) != 0) {
+                m_selector.m_readyKeys.add(this);
+            }
+            if (desiredEvents() != m_events) {
+                m_selector.m_updatedKeys.add(this);
+            }
+            return this;
+        }
+
+        @Override
+        public int readyOps() {
+            ensureValid();
+            return m_readyOps;
+        }
+
+        /**
+         * Record that the port was run with the ready ops of this key.
+         * @param inputDrained true if the port read until the socket had no
+         * more input for it
+         */
+        void consumed(int readyOps, boolean inputDrained) {
+            if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+                m_pendingOps &= ~SelectionKey.OP_WRITE;
+            }
+            if ((readyOps & SelectionKey.OP_READ) != 0 && inputDrained) {
+                m_pendingOps &= ~SelectionKey.OP_READ;
+            }
+            if ((m_pendingOps & m_interestOps) != 0) {
+                m_selector.m_readyKeys.add(this);
+            }
+        }
+
+        private int desiredEvents() {
+            int events = EPoll.EPOLLIN | EPoll.EPOLLRDHUP | EPoll.EPOLLET;
+            if ((m_interestOps & SelectionKey.OP_WRITE) != 0) {
+                events |= EPoll.EPOLLOUT;
+            }
+            return events;
+        }
+
+        private void ensureValid() {
+            if (!isValid()) {
+                throw new CancelledKeyException();
+            }
+        }
+    }
+
+    private final int m_epfd;
+    private final int m_eventfd;
+    private final long m_busyPollNanos;
+    private final int m_busyPollMicros;
+    private boolean m_warnedBusyPoll = false;
+
+    private final Memory m_events = new Memory(MAX_EVENTS * EPoll.EVENT_SIZE);
+    private final Memory m_ctlEvent = new Memory(EPoll.EVENT_SIZE);
+    private final Memory m_eventfdBuffer = new Memory(8);
+    private final Memory m_wakeupValue = new Memory(8);
+    private final AtomicBoolean m_wakeupPending = new AtomicBoolean();
+
+    // Registered keys indexed by file descriptor
+    private Key m_fdKeys[] = new Key[1024];
+    private final Set<SelectionKey> m_keys = new HashSet<SelectionKey>();
+    private final Set<SelectionKey> m_publicKeys = Collections.unmodifiableSet(m_keys);
+    private final Set<SelectionKey> m_selectedKeys = new HashSet<SelectionKey>();
+    // Keys that may have both pending and interesting readiness
+    private final Set<Key> m_readyKeys = new HashSet<Key>();
+    // Keys whose epoll registration has to change before the next wait
+    private final ArrayList<Key> m_updatedKeys = new ArrayList<Key>();
+
+    /**
+     * @return why epoll can't be used, or null if it can
+     */
+    static String unavailableReason() {
+        return m_unavailableReason;
+    }
+
+    /**
+     * Open an epoll selector.
+     * @param busyPollMicros microseconds to poll without blocking before
+     * waiting, and the SO_BUSY_POLL setting of registered sockets, 0 to
+     * not busy poll
+     */
+    static EPollSelector open(int busyPollMicros) throws IOException {
+        if (m_unavailableReason != null) {
+            throw new IOException(m_unavailableReason);
+        }
+        return new EPollSelector(busyPollMicros);
+    }
+
+    private EPollSelector(int busyPollMicros) throws IOException {
+        super(SelectorProvider.provider());
+        if (busyPollMicros < 0) {
+            throw new IllegalArgumentException("Busy poll time must not be negative");
+        }
+        m_busyPollMicros = busyPollMicros;
+        m_busyPollNanos = TimeUnit.MICROSECONDS.toNanos(busyPollMicros);
+        m_wakeupValue.setLong(0, 1);
+        try {
+            m_epfd = EPoll.epoll_create1(EPoll.EPOLL_CLOEXEC);
+        } catch (LastErrorException e) {
+            throw new IOException("epoll_create1 failed with errno " + e.getErrorCode());
+        }
+        try {
+            m_eventfd = EPoll.eventfd(0, EPoll.EFD_NONBLOCK | EPoll.EFD_CLOEXEC);
+        } catch (LastErrorException e) {
+            EPoll.close(m_epfd);
+            throw new IOException("eventfd failed with errno " + e.getErrorCode());
+        }
+        try {
+            ctl(EPoll.EPOLL_CTL_ADD, m_eventfd, EPoll.EPOLLIN);
+        } catch (IOException e) {
+            EPoll.close(m_eventfd);
+            EPoll.close(m_epfd);
+            throw e;
+        }
+    }
+
+    /**
+     * Register a connected socket channel for the given interest ops.
+     */
+    Key register(SocketChannel channel, int ops, Object attachment) throws IOException {
+        if (!isOpen()) {
+            throw new ClosedSelectorException();
+        }
+        if (channel.isBlocking()) {
+            throw new IllegalBlockingModeException();
+        }
+        processCancelledKeys();
+
+        int fd;
+        try {
+            fd = (Integer)m_getFDVal.invoke(channel);
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        if (fd >= m_fdKeys.length) {
+            Key fdKeys[] = new Key[Math.max(fd + 1, m_fdKeys.length * 2)];
+            System.arraycopy(m_fdKeys, 0, fdKeys, 0, m_fdKeys.length);
+            m_fdKeys = fdKeys;
+        }
+        // A key left behind by a channel closed without cancelling it
+        if (m_fdKeys[fd] != null) {
+            forget(m_fdKeys[fd]);
+        }
+
+        Key key = new Key(this, channel, fd, 0);
+        key.interestOps(ops);
+        key.attach(attachment);
+        key.m_events = key.desiredEvents();
+        m_updatedKeys.remove(key);
+        ctl(EPoll.EPOLL_CTL_ADD, fd, key.m_events);
+        m_fdKeys[fd] = key;
+        m_keys.add(key);
+
+        if (m_busyPollMicros > 0) {
+            setBusyPoll(fd);
+        }
+        return key;
+    }
+
+    private void setBusyPoll(int fd) {
+        Memory value = new Memory(4);
+        value.setInt(0, m_busyPollMicros);
+        try {
+            EPoll.setsockopt(fd, EPoll.SOL_SOCKET, EPoll.SO_BUSY_POLL, value, 4);
+        } catch (LastErrorException e) {
+            if (!m_warnedBusyPoll) {
+                m_warnedBusyPoll = true;
+                networkLog.warn("Unable to set SO_BUSY_POLL on sockets, errno " + e.getErrorCode() +
+                        ". Raising it above net.core.busy_read requires CAP_NET_ADMIN." +
+                        " Only the network thread will busy poll.");
+            }
+        }
+    }
+
+    private void ctl(int op, int fd, int events) throws IOException {
+        m_ctlEvent.setInt(0, events);
+        m_ctlEvent.setLong(EPoll.EVENT_DATA_OFFSET, fd);
+        try {
+            EPoll.epoll_ctl(m_epfd, op, fd, m_ctlEvent);
+        } catch (LastErrorException e) {
+            throw new IOException("epoll_ctl(" + op + ") of fd " + fd + " failed with errno " + e.getErrorCode());
+        }
+    }
+
+    @Override
+    public Set<SelectionKey> keys() {
+        if (!isOpen()) {
+            throw new ClosedSelectorException();
+        }
+        return m_publicKeys;
+    }
+
+    @Override
+    public Set<SelectionKey> selectedKeys() {
+        if (!isOpen()) {
+            throw new ClosedSelectorException();
+        }
+        return m_selectedKeys;
+    }
+
+    @Override
+    public int selectNow() throws IOException {
+        return doSelect(0);
+    }
+
+    @Override
+    public int select(long timeout) throws IOException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Negative timeout");
+        }
+        return doSelect(timeout == 0 ? -1 : Math.min(timeout, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public int select() throws IOException {
+        return doSelect(-1);
+    }
+
+    /**
+     * @param timeout milliseconds to wait, -1 to wait indefinitely
+     */
+    private int doSelect(long timeout) throws IOException {
+        if (!isOpen()) {
+            throw new ClosedSelectorException();
+        }
+        processCancelledKeys();
+        updateRegistrations();
+
+        if (!m_readyKeys.isEmpty()) {
+            timeout = 0;
+        }
+
+        int count = 0;
+        if (timeout == 0) {
+            count = epollWait(0);
+        } else {
+            if (m_busyPollNanos > 0) {
+                final long start = System.nanoTime();
+                long elapsed = 0;
+                do {
+                    count = epollWait(0);
+                    elapsed = System.nanoTime() - start;
+                } while (count == 0 && elapsed < m_busyPollNanos);
+                if (timeout > 0) {
+                    timeout = Math.max(0, timeout - TimeUnit.NANOSECONDS.toMillis(elapsed));
+                }
+            }
+            if (count == 0) {
+                try {
+                    begin();
+                    count = epollWait((int)timeout);
+                } finally {
+                    end();
+                }
+            }
+        }
+
+        processEvents(count);
+        processCancelledKeys();
+        return selectReadyKeys();
+    }
+
+    private int epollWait(int timeout) throws IOException {
+        try {
+            return EPoll.epoll_wait(m_epfd, m_events, MAX_EVENTS, timeout);
+        } catch (LastErrorException e) {
+            if (e.getErrorCode() == EPoll.EINTR) {
+                return 0;
+            }
+            throw new IOException("epoll_wait failed with errno " + e.getErrorCode());
+        }
+    }
+
+    private void processEvents(int count) {
+        for (int ii = 0; ii < count; ii++) {
+            final long offset = (long)ii * EPoll.EVENT_SIZE;
+            final int events = m_events.getInt(offset);
+            final int fd = (int)m_events.getLong(offset + EPoll.EVENT_DATA_OFFSET);
+            if (fd == m_eventfd) {
+                try {
+                    EPoll.read(m_eventfd, m_eventfdBuffer, new NativeLong(8));
+                } catch (LastErrorException e) {
+                    // Already reset
+                }
+                m_wakeupPending.set(false);
+                continue;
+            }
+            final Key key = fd < m_fdKeys.length ? m_fdKeys[fd] : null;
+            if (key == null) {
+                continue;
+            }
+            int ops = 0;
+            if ((events & (EPoll.EPOLLIN | EPoll.EPOLLRDHUP | EPoll.EPOLLHUP | EPoll.EPOLLERR)) != 0) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if ((events & (EPoll.EPOLLOUT | EPoll.EPOLLHUP | EPoll.EPOLLERR)) != 0) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.m_pendingOps |= ops;
+            m_readyKeys.add(key);
+        }
+    }
+
+    private int selectReadyKeys() {
+        int selected = 0;
+        for (Key key : m_readyKeys) {
+            if (!key.isValid()) {
+                continue;
+            }
+            final int readyOps = key.m_pendingOps & key.m_interestOps;
+            if (readyOps != 0) {
+                key.m_readyOps = readyOps;
+                if (m_selectedKeys.add(key)) {
+                    selected++;
+                }
+            }
+        }
+        m_readyKeys.clear();
+        return selected;
+    }
+
+    private void updateRegistrations() throws IOException {
+        for (Key key : m_updatedKeys) {
+            if (!key.isValid()) {
+                continue;
+            }
+            final int events = key.desiredEvents();
+            if (events != key.m_events) {
+                key.m_events = events;
+                ctl(EPoll.EPOLL_CTL_MOD, key.m_fd, events);
+            }
+        }
+        m_updatedKeys.clear();
+    }
+
+    private void processCancelledKeys() {
+        Set<SelectionKey> cancelled = cancelledKeys();
+        synchronized (cancelled) {
+            if (cancelled.isEmpty()) {
+                return;
+            }
+            Iterator<SelectionKey> iter = cancelled.iterator();
+            while (iter.hasNext()) {
+                Key key = (Key)iter.next();
+                iter.remove();
+                if (m_fdKeys[key.m_fd] == key) {
+                    try {
+                        ctl(EPoll.EPOLL_CTL_DEL, key.m_fd, 0);
+                    } catch (IOException e) {
+                        // The channel is already closed, which removed it from the set
+                    }
+                }
+                forget(key);
+            }
+        }
+    }
+
+    private void forget(Key key) {
+        if (m_fdKeys[key.m_fd] == key) {
+            m_fdKeys[key.m_fd] = null;
+        }
+        m_keys.remove(key);
+        m_selectedKeys.remove(key);
+        m_readyKeys.remove(key);
+        m_updatedKeys.remove(key);
+    }
+
+    @Override
+    public Selector wakeup() {
+        if (m_wakeupPending.compareAndSet(false, true)) {
+            try {
+                EPoll.write(m_eventfd, m_wakeupValue, new NativeLong(8));
+            } catch (LastErrorException e) {
+                // The counter can't overflow from wakeups, so the selector is closed
+            }
+        }
+        return this;
+    }
+
+    @Override
+    protected void implCloseSelector() throws IOException {
+        wakeup();
+        for (SelectionKey key : new ArrayList<SelectionKey>(m_keys)) {
+            key.cancel();
+        }
+        m_keys.clear();
+        m_selectedKeys.clear();
+        m_readyKeys.clear();
+        m_updatedKeys.clear();
+        Arrays.fill(m_fdKeys, null);
+        EPoll.close(m_eventfd);
+        EPoll.close(m_epfd);
+    }
+
+    @Override
+    protected SelectionKey register(AbstractSelectableChannel ch, int ops, Object att) {
+        // Channels only hand selectors of their own provider to this
+        throw new UnsupportedOperationException("Register socket channels with register(SocketChannel, int, Object)");
+    }
+}
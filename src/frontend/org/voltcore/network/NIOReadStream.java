@@ -45,6 +45,7 @@
 package org.voltcore.network;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayDeque;
 
@@ -62,13 +63,25 @@ public class NIOReadStream {
     }
 
     int getInt() {
-        // TODO: Optimize?
-        byte[] intbytes = new byte[4];
-        getBytes(intbytes);
+        if (m_totalAvailable < 4) {
+            throw new IllegalStateException("Requested 4 bytes; only have "
+                    + m_totalAvailable + " bytes; call tryRead() first");
+        }
+
+        // Common case: the length prefix does not straddle two read buffers
+        BBContainer first = firstReadBuffer();
+        if (first.b.remaining() >= 4) {
+            final int output = first.b.getInt();
+            consumed(first, 4);
+            return output;
+        }
+
         int output = 0;
-        for (int i = 0; i < intbytes.length; ++i) {
+        for (int i = 0; i < 4; ++i) {
+            first = firstReadBuffer();
             output <<= 8;
-            output |= (intbytes[i]) & 0xff;
+            output |= first.b.get() & 0xff;
+            consumed(first, 1);
         }
         return output;
     }
@@ -81,15 +94,7 @@ public class NIOReadStream {
 
         int bytesCopied = 0;
         while (bytesCopied < output.length) {
-            BBContainer first = m_readBuffers.peekFirst();
-            if (first == null) {
-                // Steal the write buffer
-                m_writeBuffer.b.flip();
-                m_readBuffers.add(m_writeBuffer);
-                first = m_writeBuffer;
-                m_writeBuffer = null;
-            }
-            assert first.b.remaining() > 0;
+            BBContainer first = firstReadBuffer();
 
             // Copy bytes from first into output
             int bytesRemaining = first.b.remaining();
@@ -97,12 +102,90 @@ public class NIOReadStream {
             if (bytesToCopy > bytesRemaining) bytesToCopy = bytesRemaining;
             first.b.get(output, bytesCopied, bytesToCopy);
             bytesCopied += bytesToCopy;
-            m_totalAvailable -= bytesToCopy;
+            consumed(first, bytesToCopy);
+        }
+    }
+
+    /**
+     * Consume the next length bytes without copying them, if they lie within a
+     * single read buffer. The returned container holds a reference on the pooled
+     * buffer backing it, which is not returned to the pool until both the stream
+     * and the slice have discarded it. The slice must be discarded on the network
+     * thread that owns this stream because the pool is not thread safe.
+     * @return a slice of exactly length bytes, or null if the bytes span read
+     * buffers, in which case nothing is consumed and the caller should copy them
+     * out with getBytes().
+     */
+    BBContainer getSlice(int length) {
+        if (m_totalAvailable < length) {
+            throw new IllegalStateException("Requested " + length + " bytes; only have "
+                    + m_totalAvailable + " bytes; call tryRead() first");
+        }
+
+        final SharedContainer first = firstReadBuffer();
+        if (first.b.remaining() < length) {
+            return null;
+        }
+        final BBContainer slice = first.slice(length);
+        consumed(first, length);
+        return slice;
+    }
+
+    private SharedContainer firstReadBuffer() {
+        SharedContainer first = m_readBuffers.peekFirst();
+        if (first == null) {
+            // Steal the write buffer
+            m_writeBuffer.b.flip();
+            m_readBuffers.add(m_writeBuffer);
+            first = m_writeBuffer;
+            m_writeBuffer = null;
+        }
+        assert first.b.remaining() > 0;
+        return first;
+    }
+
+    private void consumed(BBContainer first, int bytes) {
+        m_totalAvailable -= bytes;
+        if (first.b.remaining() == 0) {
+            // read an entire block: move it to the empty buffers list
+            m_readBuffers.poll();
+            first.discard();
+        }
+    }
+
+    /**
+     * Pooled read buffer shared by the stream and the slices handed out by
+     * getSlice(). The stream holds the initial reference.
+     */
+    private static final class SharedContainer extends BBContainer {
+        private final BBContainer m_pooled;
+        private int m_refCount = 1;
+
+        SharedContainer(BBContainer pooled) {
+            super(pooled.b, pooled.address);
+            m_pooled = pooled;
+        }
+
+        BBContainer slice(int length) {
+            // capacity is the message length, which readers take as its size
+            ByteBuffer slice = b.slice();
+            slice.limit(length);
+            slice = slice.slice();
+            b.position(b.position() + length);
+            m_refCount++;
+            return new BBContainer(slice, 0) {
+                @Override
+                public void discard() {
+                    SharedContainer.this.discard();
+                }
+            };
+        }
 
-            if (first.b.remaining() == 0) {
-                // read an entire block: move it to the empty buffers list
-                m_readBuffers.poll();
-                first.discard();
+        @Override
+        public void discard() {
+            assert(m_refCount > 0);
+            if (--m_refCount == 0) {
+                m_pooled.discard();
             }
         }
     }
@@ -120,7 +203,7 @@ public class NIOReadStream {
         try {
             while (bytesRead < maxBytes && lastRead > 0) {
                 if (m_writeBuffer == null) {
-                    m_writeBuffer = pool.acquire();
+                    m_writeBuffer = new SharedContainer(pool.acquire());
                     m_writeBuffer.b.clear();
                 }
 
@@ -161,7 +244,7 @@ public class NIOReadStream {
     }
 
     void shutdown() {
-        for (BBContainer c : m_readBuffers) {
+        for (SharedContainer c : m_readBuffers) {
             c.discard();
         }
         if (m_writeBuffer != null) {
@@ -171,8 +254,8 @@ public class NIOReadStream {
         m_writeBuffer = null;
     }
 
-    private final ArrayDeque<BBContainer> m_readBuffers = new ArrayDeque<BBContainer>();
-    private BBContainer m_writeBuffer = null;
+    private final ArrayDeque<SharedContainer> m_readBuffers = new ArrayDeque<SharedContainer>();
+    private SharedContainer m_writeBuffer = null;
     private int m_totalAvailable = 0;
     private long m_bytesRead = 0;
     private long m_lastBytesRead = 0;
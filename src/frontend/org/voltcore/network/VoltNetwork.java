@@ -109,12 +109,30 @@ class VoltNetwork implements Runnable
      * and runOnce should be called periodically
      **/
     VoltNetwork(int networkId, String coreBindId) {
+        this(networkId, coreBindId, false, 0);
+    }
+
+    /**
+     * Initialize a network that selects with epoll when useEPoll is set and epoll
+     * is available, and with the JDK selector otherwise.
+     * @param busyPollMicros how long the epoll selector busy polls before blocking
+     */
+    VoltNetwork(int networkId, String coreBindId, boolean useEPoll, int busyPollMicros) {
         m_thread = new Thread(this, "Volt Network - " + networkId);
         m_networkId = networkId;
         m_thread.setDaemon(true);
         m_coreBindId = coreBindId;
+        Selector selector = null;
+        if (useEPoll) {
+            try {
+                selector = EPollSelector.open(busyPollMicros);
+            } catch (IOException ex) {
+                networkLog.warn("Unable to use epoll for network thread " + networkId +
+                        ", falling back to the JDK selector: " + ex.getMessage());
+            }
+        }
         try {
-            m_selector = Selector.open();
+            m_selector = selector != null ? selector : Selector.open();
         } catch (IOException ex) {
             m_logger.fatal(null, ex);
             throw new RuntimeException(ex);
@@ -172,7 +190,12 @@ class VoltNetwork implements Runnable
                 }
 
                 try {
-                    SelectionKey key = channel.register (m_selector, interestOps, null);
+                    SelectionKey key;
+                    if (m_selector instanceof EPollSelector) {
+                        key = ((EPollSelector)m_selector).register(channel, interestOps, null);
+                    } else {
+                        key = channel.register (m_selector, interestOps, null);
+                    }
 
                     port.setKey (key);
                     port.registered();
@@ -387,6 +410,9 @@ class VoltNetwork implements Runnable
             port.lockForHandlingWork();
             port.getKey().interestOps(0);
             port.run();
+            if (port.getKey() instanceof EPollSelector.Key) {
+                ((EPollSelector.Key)port.getKey()).consumed(port.readyOps(), port.isInputDrained());
+            }
         } catch (CancelledKeyException e) {
             port.m_running = false;
             e.printStackTrace();
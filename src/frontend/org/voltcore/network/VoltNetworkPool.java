@@ -45,19 +45,30 @@ public class VoltNetworkPool {
     }
 
     public VoltNetworkPool(int numThreads, Queue<String> coreBindIds) {
+        this(numThreads, coreBindIds, false, 0);
+    }
+
+    /**
+     * @param useEPoll select with edge triggered epoll instead of the JDK
+     * selector. Networks fall back to the JDK selector where epoll is unavailable.
+     * @param busyPollMicros microseconds the epoll selector polls without
+     * blocking before it waits for events, also applied to sockets as SO_BUSY_POLL.
+     * 0 to not busy poll.
+     */
+    public VoltNetworkPool(int numThreads, Queue<String> coreBindIds, boolean useEPoll, int busyPollMicros) {
         if (numThreads < 1) {
             throw new IllegalArgumentException("Must specify a postive number of threads");
         }
         if (coreBindIds == null || coreBindIds.isEmpty()) {
             m_networks = new VoltNetwork[numThreads];
             for (int ii = 0; ii < numThreads; ii++) {
-                m_networks[ii] = new VoltNetwork(ii, null);
+                m_networks[ii] = new VoltNetwork(ii, null, useEPoll, busyPollMicros);
             }
         } else {
             final int coreBindIdsSize = coreBindIds.size();
             m_networks = new VoltNetwork[coreBindIdsSize];
             for (int ii = 0; ii < coreBindIdsSize; ii++) {
-                m_networks[ii] = new VoltNetwork(ii, coreBindIds.poll());
+                m_networks[ii] = new VoltNetwork(ii, coreBindIds.poll(), useEPoll, busyPollMicros);
             }
         }
     }
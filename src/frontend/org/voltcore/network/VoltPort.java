@@ -63,6 +63,9 @@ public class VoltPort implements Connection
 
     private volatile boolean m_isDead = false;
 
+    /** True when the last run read until the channel had no more input for it */
+    private boolean m_inputDrained = false;
+
     private boolean m_isShuttingDown = false;
 
     /** Used internally to make operation changes atomic.
@@ -167,6 +170,7 @@ public class VoltPort implements Connection
         synchronized(m_lock) {
             assert m_running == false;
             m_running = true;
+            m_inputDrained = false;
             m_readyOps = 0;
             m_readyOps = m_selectionKey.readyOps();      // runnable.run() doesn't accept parameters
         }
@@ -180,7 +184,7 @@ public class VoltPort implements Connection
             if (readyForRead()) {
                 final int maxRead = m_handler.getMaxRead();
                 if (maxRead > 0) {
-                    fillReadStream( maxRead);
+                    m_inputDrained = fillReadStream( maxRead) < maxRead;
                     ByteBuffer message;
 
                     /*
@@ -323,6 +327,14 @@ public class VoltPort implements Connection
         return (readyOps() & SelectionKey.OP_READ) != 0 && (m_interestOps & SelectionKey.OP_READ) != 0;
     }
 
+    /**
+     * Whether the last run read everything available. An edge triggered selector
+     * won't report input again until more arrives, so it needs to know.
+     */
+    boolean isInputDrained() {
+        return m_inputDrained;
+    }
+
     boolean isRunning() {
         return m_running;
     }
@@ -21,6 +21,8 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.nio.ByteBuffer;
 import java.io.IOException;
 
+import org.voltcore.utils.DBBPool.BBContainer;
+
 public abstract class VoltProtocolHandler implements InputHandler {
     /** VoltProtocolPorts each have a unique id */
     private static AtomicLong m_globalConnectionCounter = new AtomicLong(0);
@@ -30,6 +32,8 @@ public abstract class VoltProtocolHandler implements InputHandler {
     /** serial number of this VoltPort */
     private final long m_connectionId;
     private int m_nextLength;
+    /** pooled slice backing the last message handed out, released on the next retrieve */
+    private BBContainer m_sharedMessage;
 
     public VoltProtocolHandler() {
         m_sequenceId = 0;
@@ -39,6 +43,7 @@ public abstract class VoltProtocolHandler implements InputHandler {
     @Override
     public ByteBuffer retrieveNextMessage(Connection c) throws IOException {
         final NIOReadStream inputStream = c.readStream();
+        releaseSharedMessage();
 
         /*
          * Note that access to the read stream is not synchronized. In this application
@@ -63,14 +68,41 @@ public abstract class VoltProtocolHandler implements InputHandler {
             assert m_nextLength > 0;
         }
         if (m_nextLength > 0 && inputStream.dataAvailable() >= m_nextLength) {
-            result = ByteBuffer.allocate(m_nextLength);
-            inputStream.getBytes(result.array());
+            if (useSharedReadBuffers()) {
+                m_sharedMessage = inputStream.getSlice(m_nextLength);
+                if (m_sharedMessage != null) {
+                    result = m_sharedMessage.b;
+                }
+            }
+            if (result == null) {
+                result = ByteBuffer.allocate(m_nextLength);
+                inputStream.getBytes(result.array());
+            }
             m_nextLength = 0;
             m_sequenceId++;
         }
         return result;
     }
 
+    /**
+     * Handlers that are done with each message by the time handleMessage returns
+     * can return true to be handed slices of the pooled network read buffers
+     * instead of heap copies whenever a message lies within one read buffer. The
+     * slice is only valid until handleMessage returns; anything kept past that,
+     * including buffers or VoltTables deserialized from it, has to be copied.
+     * Subclasses that opt in must call super.stopped().
+     */
+    protected boolean useSharedReadBuffers() {
+        return false;
+    }
+
+    private void releaseSharedMessage() {
+        if (m_sharedMessage != null) {
+            m_sharedMessage.discard();
+            m_sharedMessage = null;
+        }
+    }
+
     @Override
     public void started(Connection c) {
     }
@@ -81,6 +113,7 @@ public abstract class VoltProtocolHandler implements InputHandler {
 
     @Override
     public void stopped(Connection c) {
+        releaseSharedMessage();
     }
 
     @Override
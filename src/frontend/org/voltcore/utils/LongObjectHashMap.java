@@ -0,0 +1,199 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltcore.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Map from primitive long keys to object values using open addressing with
+ * linear probing. Avoids boxing the key and allocating an entry per mapping,
+ * which matters on paths that add and remove a mapping per transaction.
+ *
+ * Null values are not allowed, a null value slot marks an empty bucket.
+ * Not thread safe.
+ */
+public class LongObjectHashMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] m_keys;
+    private Object[] m_values;
+    private int m_mask;
+    private int m_size = 0;
+    private int m_resizeThreshold;
+
+    public LongObjectHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongObjectHashMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        m_keys = new long[capacity];
+        m_values = new Object[capacity];
+        m_mask = capacity - 1;
+        m_resizeThreshold = (int)(capacity * LOAD_FACTOR);
+    }
+
+    /*
+     * Handles and ids tend to differ only in their low bits or only in their
+     * high bits, so mix everything before masking (murmur3 finalizer).
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int)key;
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    public boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int idx = hash(key) & m_mask;
+        Object value;
+        while ((value = m_values[idx]) != null) {
+            if (m_keys[idx] == key) {
+                return (V)value;
+            }
+            idx = (idx + 1) & m_mask;
+        }
+        return null;
+    }
+
+    /**
+     * Associate value with key.
+     * @return the previous value for the key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("LongObjectHashMap does not accept null values");
+        }
+        int idx = hash(key) & m_mask;
+        Object existing;
+        while ((existing = m_values[idx]) != null) {
+            if (m_keys[idx] == key) {
+                m_values[idx] = value;
+                return (V)existing;
+            }
+            idx = (idx + 1) & m_mask;
+        }
+        m_keys[idx] = key;
+        m_values[idx] = value;
+        if (++m_size > m_resizeThreshold) {
+            rehash(m_keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Remove the mapping for key.
+     * @return the removed value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int idx = hash(key) & m_mask;
+        Object value;
+        while ((value = m_values[idx]) != null) {
+            if (m_keys[idx] == key) {
+                m_size--;
+                shiftBack(idx);
+                return (V)value;
+            }
+            idx = (idx + 1) & m_mask;
+        }
+        return null;
+    }
+
+    /*
+     * Close the hole left at idx by moving back any later entry in the same
+     * run whose home bucket does not lie between the hole and itself.
+     * Keeps probe sequences intact without tombstones.
+     */
+    private void shiftBack(int idx) {
+        int hole = idx;
+        int next = (idx + 1) & m_mask;
+        while (m_values[next] != null) {
+            int home = hash(m_keys[next]) & m_mask;
+            // distance from home to next must cover the hole for the move to be legal
+            if (((next - home) & m_mask) >= ((next - hole) & m_mask)) {
+                m_keys[hole] = m_keys[next];
+                m_values[hole] = m_values[next];
+                hole = next;
+            }
+            next = (next + 1) & m_mask;
+        }
+        m_values[hole] = null;
+    }
+
+    public void clear() {
+        if (m_size == 0) return;
+        Arrays.fill(m_values, null);
+        m_size = 0;
+    }
+
+    /**
+     * A copy of the values currently in the map, in no particular order.
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> retval = new ArrayList<V>(m_size);
+        for (Object value : m_values) {
+            if (value != null) {
+                retval.add((V)value);
+            }
+        }
+        return retval;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = m_keys;
+        Object[] oldValues = m_values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int idx = hash(oldKeys[i]) & m_mask;
+                while (m_values[idx] != null) {
+                    idx = (idx + 1) & m_mask;
+                }
+                m_keys[idx] = oldKeys[i];
+                m_values[idx] = oldValues[i];
+            }
+        }
+    }
+}
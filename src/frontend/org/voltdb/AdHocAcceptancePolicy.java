@@ -19,6 +19,7 @@ package org.voltdb;
 import org.voltdb.AuthSystem.AuthUser;
 import org.voltdb.SystemProcedureCatalog.Config;
 import org.voltdb.catalog.Procedure;
+import org.voltdb.utils.MiscUtils;
 
 /**
  * Check ad hoc query parameters.
@@ -38,6 +39,21 @@ public class AdHocAcceptancePolicy extends InvocationAcceptancePolicy {
         }
 
         ParameterSet params = invocation.getParams();
+        // SQL written with parameter markers is followed by exactly one value per marker
+        if (params.toArray().length > 1 && params.toArray()[0] instanceof String) {
+            int markers = MiscUtils.countSQLParameterMarkers((String) params.toArray()[0]);
+            if (markers > 0) {
+                if (params.toArray().length - 1 != markers) {
+                    return new ClientResponseImpl(ClientResponseImpl.GRACEFUL_FAILURE,
+                            new VoltTable[0], "Adhoc system procedure expected " + markers +
+                            " parameter values for the SQL statement but received " +
+                            (params.toArray().length - 1) + ".",
+                            invocation.clientHandle);
+                }
+                return null;
+            }
+        }
+
         // Make sure there is at least 1 parameter!  ENG-4921
         // Note the second secret param, so 1 or 2 params is legal.
         if (params.toArray().length < 1 || params.toArray().length > 2) {
@@ -28,10 +28,13 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -80,6 +83,7 @@ import org.voltdb.catalog.SnapshotSchedule;
 import org.voltdb.catalog.Statement;
 import org.voltdb.catalog.Table;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureInvocation;
 import org.voltdb.client.ProcedureInvocationType;
 import org.voltdb.common.Constants;
 import org.voltdb.compiler.AdHocPlannedStatement;
@@ -94,6 +98,7 @@ import org.voltdb.dtxn.LatencyStats.LatencyInfo;
 import org.voltdb.export.ExportManager;
 import org.voltdb.iv2.Cartographer;
 import org.voltdb.iv2.Iv2Trace;
+import org.voltdb.iv2.Iv2TraceRing;
 import org.voltdb.iv2.MpInitiator;
 import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.messaging.FastSerializer;
@@ -222,6 +227,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
     private final boolean m_isIV2Enabled;
 
     final Mailbox m_mailbox;
+    private final Iv2TraceRing m_traceRing;
 
     private final QueueMonitor m_clientQueueMonitor = new QueueMonitor() {
         private final int MAX_QUEABLE = 33554432;
@@ -799,6 +805,11 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         @Override
         public void handleMessage(ByteBuffer message, Connection c) {
             try {
+                if (message.remaining() > 0 &&
+                        message.get(message.position()) == ProcedureInvocation.BATCH_VERSION) {
+                    handleBatch(message, c);
+                    return;
+                }
                 final ClientResponseImpl error = handleRead(message, this, c);
                 if (error != null) {
                     ByteBuffer buf = ByteBuffer.allocate(error.getSerializedSize() + 4);
@@ -811,6 +822,56 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             }
         }
 
+        /**
+         * Handle a batch of invocations sent in one message. Each invocation
+         * is handled as if it had arrived in a message of its own, and the
+         * responses are sent individually as the transactions complete.
+         * Responses for invocations rejected up front are sent together.
+         * The framing of the whole batch is checked before any invocation is
+         * dispatched, and the mode, catalog, user and permission lookups are
+         * made once for the batch rather than once per invocation.
+         */
+        private void handleBatch(ByteBuffer message, Connection c) throws IOException {
+            message.get();
+            final int count = message.getInt();
+            if (count < 0 || count > message.remaining() / 4) {
+                throw new IOException("Batch has a bad invocation count " + count +
+                        " with " + message.remaining() + " bytes remaining in the message");
+            }
+            final ByteBuffer[] invocations = new ByteBuffer[count];
+            for (int ii = 0; ii < count; ii++) {
+                final int length = message.remaining() >= 4 ? message.getInt() : -1;
+                if (length < 0 || length > message.remaining()) {
+                    throw new IOException("Invocation " + ii + " of a batch of " + count +
+                            " has a bad length " + length + " with " + message.remaining() +
+                            " bytes remaining in the message");
+                }
+                // handleRead sizes the invocation by the capacity of its buffer
+                ByteBuffer invocation = message.slice();
+                invocation.limit(length);
+                invocations[ii] = invocation.slice();
+                message.position(message.position() + length);
+            }
+
+            final InvocationContext ctx = createInvocationContext(this);
+            ArrayList<ByteBuffer> errors = null;
+            for (ByteBuffer invocation : invocations) {
+                final ClientResponseImpl error = handleRead(invocation, this, c, ctx);
+                if (error != null) {
+                    ByteBuffer buf = ByteBuffer.allocate(error.getSerializedSize() + 4);
+                    buf.putInt(buf.capacity() - 4);
+                    error.flattenToBuffer(buf).flip();
+                    if (errors == null) {
+                        errors = new ArrayList<ByteBuffer>();
+                    }
+                    errors.add(buf);
+                }
+            }
+            if (errors != null) {
+                c.writeStream().enqueue(errors.toArray(new ByteBuffer[errors.size()]));
+            }
+        }
+
         @Override
         public void started(final Connection c) {
             m_connection = c;
@@ -830,8 +891,14 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             m_connections.remove(c);
         }
 
+        @Override
+        protected boolean useSharedReadBuffers() {
+            return true;
+        }
+
         @Override
         public void stopped(Connection c) {
+            super.stopped(c);
             m_numConnections.decrementAndGet();
             /*
              * It's necessary to free all the resources held by the IV2 ACG tracking.
@@ -1197,7 +1264,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                     connectionId,
                     isForReplay);
 
-        Iv2Trace.logCreateTransaction(workRequest);
+        Iv2Trace.logCreateTransaction(m_traceRing, workRequest);
         m_mailbox.send(initiatorHSId, workRequest);
         return true;
     }
@@ -1262,7 +1329,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                         // forward response; copy is annoying. want slice of response.
                         InitiateResponseMessage response = (InitiateResponseMessage)message;
                         StoredProcedureInvocation invocation = response.getInvocation();
-                        Iv2Trace.logFinishTransaction(response, m_mailbox.getHSId());
+                        Iv2Trace.logFinishTransaction(m_traceRing, response, m_mailbox.getHSId());
                         ClientInterfaceHandleManager cihm = m_cihm.get(response.getClientConnectionId());
                         Procedure procedure = null;
 
@@ -1296,6 +1363,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                 return m_d.poll();
             }
         };
+        m_traceRing = Iv2TraceRing.create(m_mailbox.getHSId());
         m_isIV2Enabled = VoltDB.instance().isIV2Enabled();
         messenger.createMailbox(m_mailbox.getHSId(), m_mailbox);
         m_plannerSiteId = messenger.getHSIdForLocalSite(HostMessenger.ASYNC_COMPILER_SITE_ID);
@@ -1390,10 +1458,24 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
     private ClientResponseImpl checkPolicies(String name, AuthSystem.AuthUser user,
                                   final StoredProcedureInvocation task,
                                   final Procedure catProc) {
+        return checkPolicies(name, user, task, catProc, false);
+    }
+
+    /**
+     * @param permitted True if the user is already known to have permission to
+     *                  invoke the procedure, which skips the permission policy.
+     */
+    private ClientResponseImpl checkPolicies(String name, AuthSystem.AuthUser user,
+                                  final StoredProcedureInvocation task,
+                                  final Procedure catProc,
+                                  boolean permitted) {
         List<InvocationAcceptancePolicy> policies = m_policies.get(name);
         ClientResponseImpl error = null;
         if (policies != null) {
             for (InvocationAcceptancePolicy policy : policies) {
+                if (permitted && policy instanceof InvocationPermissionPolicy) {
+                    continue;
+                }
                 if ((error = policy.shouldAccept(user, task, catProc)) != null) {
                     return error;
                 }
@@ -1624,10 +1706,25 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         ParameterSet params = task.getParams();
         String sql = (String) params.toArray()[0];
 
+        List<String> sqlStatements = MiscUtils.splitSQLStatements(sql);
+
+        // SQL with parameter markers carries its values after the SQL text,
+        // otherwise the optional second param is the partition param
+        Object[] userParams = null;
+        if (params.toArray().length > 1 && MiscUtils.countSQLParameterMarkers(sql) > 0) {
+            if (sqlStatements.size() != 1) {
+                return new ClientResponseImpl(ClientResponseImpl.GRACEFUL_FAILURE,
+                        new VoltTable[0],
+                        "Adhoc SQL with parameter values must contain exactly one statement.",
+                        task.clientHandle);
+            }
+            userParams = Arrays.copyOfRange(params.toArray(), 1, params.toArray().length);
+        }
+
         // get the partition param if it exists
         // null means MP-txn
         Object partitionParam = null;
-        if (params.toArray().length > 1) {
+        if (userParams == null && params.toArray().length > 1) {
             if (params.toArray()[1] == null) {
                 // nulls map to zero
                 partitionParam = new Long(0);
@@ -1638,8 +1735,6 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             }
         }
 
-        List<String> sqlStatements = MiscUtils.splitSQLStatements(sql);
-
         AdHocPlannerWork ahpw = new AdHocPlannerWork(
                 m_siteId,
                 false, task.clientHandle, handler.connectionId(),
@@ -1647,6 +1742,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                 sql, sqlStatements, partitionParam, null, false, true,
                 task.type, task.originalTxnId, task.originalUniqueId,
                 m_adhocCompletionHandler);
+        ahpw.setUserParams(userParams);
         if( isExplain ){
             ahpw.setIsExplainWork();
         }
@@ -1839,20 +1935,60 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         return null;
     }
 
+    /**
+     * What handleRead() looks up once per message rather than once per
+     * invocation: the arrival time, the operation mode, the catalog and the
+     * connection's user, plus the procedures already resolved and
+     * permission-checked for that user. The invocations of a batch share one.
+     */
+    static final class InvocationContext {
+        final long now;
+        final boolean paused;
+        final CatalogContext catalogContext;
+        final AuthSystem.AuthUser user;
+        final Map<String, Procedure> procedures = new HashMap<String, Procedure>();
+        final Set<String> permitted = new HashSet<String>();
+
+        InvocationContext(long now, boolean paused, CatalogContext catalogContext,
+                          AuthSystem.AuthUser user) {
+            this.now = now;
+            this.paused = paused;
+            this.catalogContext = catalogContext;
+            this.user = user;
+        }
+    }
+
+    private InvocationContext createInvocationContext(ClientInputHandler handler) {
+        final CatalogContext catalogContext = m_catalogContext.get();
+        return new InvocationContext(System.currentTimeMillis(),
+                VoltDB.instance().getMode() == OperationMode.PAUSED,
+                catalogContext,
+                catalogContext.authSystem.getUser(handler.m_username));
+    }
+
     /**
      *
      * @param port
      * * return True if an error was generated and needs to be returned to the client
      */
     final ClientResponseImpl handleRead(ByteBuffer buf, ClientInputHandler handler, Connection ccxn) throws IOException {
-        final long now = System.currentTimeMillis();
+        return handleRead(buf, handler, ccxn, createInvocationContext(handler));
+    }
+
+    private ClientResponseImpl handleRead(ByteBuffer buf, ClientInputHandler handler, Connection ccxn,
+                                          InvocationContext ctx) throws IOException {
+        final long now = ctx.now;
         final FastDeserializer fds = new FastDeserializer(buf);
         final StoredProcedureInvocation task = fds.readObject(StoredProcedureInvocation.class);
+        if (buf.isDirect()) {
+            // A pooled network read buffer, reused once handleMessage returns. The
+            // parameters are the only part of the message that outlives it.
+            task.copySerializedParams();
+        }
         ClientResponseImpl error = null;
 
         // Check for admin mode restrictions before proceeding any further
-        VoltDBInterface instance = VoltDB.instance();
-        if (instance.getMode() == OperationMode.PAUSED && !handler.isAdmin())
+        if (ctx.paused && !handler.isAdmin())
         {
             return new ClientResponseImpl(ClientResponseImpl.SERVER_UNAVAILABLE,
                     new VoltTable[0], "Server is currently unavailable; try again later",
@@ -1866,9 +2002,12 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         }
 
         // Deserialize the client's request and map to a catalog stored procedure
-        final CatalogContext catalogContext = m_catalogContext.get();
-        AuthSystem.AuthUser user = catalogContext.authSystem.getUser(handler.m_username);
-        Procedure catProc = catalogContext.procedures.get(task.procName);
+        AuthSystem.AuthUser user = ctx.user;
+        Procedure catProc = ctx.procedures.get(task.procName);
+
+        if (catProc == null) {
+            catProc = ctx.catalogContext.procedures.get(task.procName);
+        }
 
         if (catProc == null) {
             Config sysProc = SystemProcedureCatalog.listing.get(task.procName);
@@ -1914,11 +2053,14 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                     new VoltTable[0], errorMessage, task.clientHandle);
         }
 
+        ctx.procedures.put(task.procName, catProc);
+
         // Check procedure policies
-        error = checkPolicies(null, user, task, catProc);
+        error = checkPolicies(null, user, task, catProc, ctx.permitted.contains(task.procName));
         if (error != null) {
             return error;
         }
+        ctx.permitted.add(task.procName);
 
         error = checkPolicies(task.procName, user, task, catProc);
         if (error != null) {
@@ -20,17 +20,14 @@ package org.voltdb;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Iterator;
 import java.util.List;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.network.Connection;
-
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableMap.Builder;
+import org.voltcore.utils.LongObjectHashMap;
 
 /**
  * This manages per-partition handles used to identify responses for
@@ -62,7 +59,7 @@ public class ClientInterfaceHandleManager
 
     private HandleGenerator m_shortCircuitHG = new HandleGenerator(SHORT_CIRCUIT_PART_ID);
 
-    private final Map<Long, Iv2InFlight> m_shortCircuitReads = new HashMap<Long, Iv2InFlight>();
+    private final LongObjectHashMap<Iv2InFlight> m_shortCircuitReads = new LongObjectHashMap<Iv2InFlight>();
 
     private static class HandleGenerator
     {
@@ -93,6 +90,15 @@ public class ClientInterfaceHandleManager
         return handle & SEQNUM_MAX;
     }
 
+    /**
+     * Short circuit handles carry SHORT_CIRCUIT_PART_ID, which is one bit wider than
+     * what getPartIdFromHandle() returns, so check for them with the raw high bits.
+     */
+    static boolean isShortCircuitHandle(long handle)
+    {
+        return (unsetReadBit(handle) >>> PART_ID_SHIFT) == SHORT_CIRCUIT_PART_ID;
+    }
+
     public static String handleToString(long handle)
     {
         return "(pid " + getPartIdFromHandle(handle) + " seq " + getSeqNumFromHandle(handle) + ")";
@@ -128,8 +134,38 @@ public class ClientInterfaceHandleManager
         }
     }
 
-    private ImmutableMap<Integer, PartitionData> m_partitionStuff =
-            new Builder<Integer, PartitionData>().build();
+    /*
+     * Indexed by partition id and grown on demand. Partition ids are small and dense
+     * so this stays compact and avoids a boxed map lookup per response. MP work
+     * gets its own slot so MP_PART_ID doesn't size the array.
+     */
+    private PartitionData[] m_partitionStuff = new PartitionData[0];
+    private PartitionData m_mpPartitionStuff = null;
+
+    private PartitionData getPartitionData(int partitionId)
+    {
+        if (partitionId == MP_PART_ID) {
+            return m_mpPartitionStuff;
+        }
+        if (partitionId < 0 || partitionId >= m_partitionStuff.length) {
+            return null;
+        }
+        return m_partitionStuff[partitionId];
+    }
+
+    private PartitionData addPartitionData(int partitionId)
+    {
+        PartitionData partitionStuff = new PartitionData(partitionId);
+        if (partitionId == MP_PART_ID) {
+            m_mpPartitionStuff = partitionStuff;
+        } else {
+            if (partitionId >= m_partitionStuff.length) {
+                m_partitionStuff = Arrays.copyOf(m_partitionStuff, partitionId + 1);
+            }
+            m_partitionStuff[partitionId] = partitionStuff;
+        }
+        return partitionStuff;
+    }
 
     ClientInterfaceHandleManager(boolean isAdmin, Connection connection, AdmissionControlGroup acg)
     {
@@ -212,13 +248,9 @@ public class ClientInterfaceHandleManager
             throw new RuntimeException("Can't short circuit read a multi-part transaction");
         }
 
-        PartitionData partitionStuff = m_partitionStuff.get(partitionId);
+        PartitionData partitionStuff = getPartitionData(partitionId);
         if (partitionStuff == null) {
-            partitionStuff = new PartitionData(partitionId);
-            m_partitionStuff =
-                    new Builder<Integer, PartitionData>().
-                        putAll(m_partitionStuff).
-                        put(partitionId, partitionStuff).build();
+            partitionStuff = addPartitionData(partitionId);
         }
 
         long ciHandle =
@@ -281,10 +313,14 @@ public class ClientInterfaceHandleManager
         /*
          * Check for a short circuit read
          */
-        Iv2InFlight inflight = m_shortCircuitReads.remove(ciHandle);
-        if (inflight != null) {
-            m_acg.reduceBackpressure(inflight.m_messageSize);
-            m_outstandingTxns--;
+        if (isShortCircuitHandle(ciHandle)) {
+            Iv2InFlight inflight = m_shortCircuitReads.remove(ciHandle);
+            if (inflight != null) {
+                m_acg.reduceBackpressure(inflight.m_messageSize);
+                m_outstandingTxns--;
+            } else {
+                tmLog.debug("Unable to find Client data for short circuit read handle: " + ciHandle);
+            }
             return inflight;
         }
 
@@ -293,7 +329,7 @@ public class ClientInterfaceHandleManager
          * queue of handles
          */
         int partitionId = getPartIdFromHandle(ciHandle);
-        PartitionData partitionStuff = m_partitionStuff.get(partitionId);
+        PartitionData partitionStuff = getPartitionData(partitionId);
         if (partitionStuff == null) {
             // whoa, bad
             tmLog.error("Unable to find handle list for partition: " + partitionId);
@@ -350,10 +386,14 @@ public class ClientInterfaceHandleManager
         // Shouldn't see any reads in this path, since the whole point of this
         // method is to remove writes during replay which aren't going to get
         // done.  However, this is logically correct, so go ahead and allow it.
-        Iv2InFlight inflight = m_shortCircuitReads.remove(ciHandle);
-        if (inflight != null) {
-            m_acg.reduceBackpressure(inflight.m_messageSize);
-            m_outstandingTxns--;
+        if (isShortCircuitHandle(ciHandle)) {
+            Iv2InFlight inflight = m_shortCircuitReads.remove(ciHandle);
+            if (inflight != null) {
+                m_acg.reduceBackpressure(inflight.m_messageSize);
+                m_outstandingTxns--;
+            } else {
+                tmLog.error("Unable to find Client data to remove short circuit read handle: " + ciHandle);
+            }
             return inflight;
         }
 
@@ -362,7 +402,7 @@ public class ClientInterfaceHandleManager
          * queue of handles
          */
         int partitionId = getPartIdFromHandle(ciHandle);
-        PartitionData partitionStuff = m_partitionStuff.get(partitionId);
+        PartitionData partitionStuff = getPartitionData(partitionId);
         if (partitionStuff == null) {
             // whoa, bad
             tmLog.error("Unable to find handle list for partition: " + partitionId);
@@ -404,33 +444,39 @@ public class ClientInterfaceHandleManager
      */
     void freeOutstandingTxns() {
         assert(!shouldCheckThreadIdAssertion() || m_expectedThreadId == Thread.currentThread().getId());
-        for (PartitionData pd : m_partitionStuff.values()) {
-            for (Iv2InFlight inflight : pd.m_reads) {
-                m_outstandingTxns--;
-                m_acg.reduceBackpressure(inflight.m_messageSize);
-            }
-            for (Iv2InFlight inflight : pd.m_writes) {
-                m_outstandingTxns--;
-                m_acg.reduceBackpressure(inflight.m_messageSize);
-            }
+        for (PartitionData pd : m_partitionStuff) {
+            freeOutstandingTxns(pd);
         }
+        freeOutstandingTxns(m_mpPartitionStuff);
         for (Iv2InFlight inflight : m_shortCircuitReads.values()) {
             m_outstandingTxns--;
             m_acg.reduceBackpressure(inflight.m_messageSize);
         }
     }
 
+    private void freeOutstandingTxns(PartitionData pd) {
+        if (pd == null) return;
+        for (Iv2InFlight inflight : pd.m_reads) {
+            m_outstandingTxns--;
+            m_acg.reduceBackpressure(inflight.m_messageSize);
+        }
+        for (Iv2InFlight inflight : pd.m_writes) {
+            m_outstandingTxns--;
+            m_acg.reduceBackpressure(inflight.m_messageSize);
+        }
+    }
+
     List<Iv2InFlight> removeHandlesForPartitionAndInitiator(Integer partitionId,
             Long initiatorHSId) {
         assert(!shouldCheckThreadIdAssertion() || m_expectedThreadId == Thread.currentThread().getId());
         List<Iv2InFlight> retval = new ArrayList<Iv2InFlight>();
 
-        if (!m_partitionStuff.containsKey(partitionId)) return retval;
+        PartitionData partitionStuff = getPartitionData(partitionId);
+        if (partitionStuff == null) return retval;
 
         /*
          * First clear the pending reads
          */
-        PartitionData partitionStuff = m_partitionStuff.get(partitionId);
         Deque<Iv2InFlight> inFlight = partitionStuff.m_reads;
         Iterator<Iv2InFlight> i = inFlight.iterator();
         while (i.hasNext()) {
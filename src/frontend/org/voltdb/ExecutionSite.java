@@ -1725,6 +1725,12 @@ implements Runnable, SiteProcedureConnection, SiteSnapshotConnection
         return ee.getUSOForExportTable(signature);
     }
 
+    @Override
+    public long getTableModificationCount(int tableId)
+    {
+        return ee.tableModificationCount(tableId);
+    }
+
     @Override
     public void toggleProfiler(int toggle)
     {
@@ -0,0 +1,501 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.voltcore.logging.VoltLogger;
+
+/**
+ * Calls a procedure's run method with an already converted parameter list.
+ *
+ * {@link #forMethod(Method)} generates a small class per run method that casts
+ * and unboxes each parameter and makes a direct virtual call, so the per-call
+ * cost is the same as hand written code calling run(). Methods the generated
+ * class can't link against (non-public classes) fall back to reflection.
+ * Generated invokers are shared by every runner of the same procedure class.
+ *
+ * Both implementations report errors the way Method.invoke does: arguments
+ * that don't match the run method throw IllegalArgumentException, and anything
+ * run() throws comes wrapped in an InvocationTargetException.
+ */
+public abstract class ProcedureInvoker {
+
+    private static final VoltLogger hostLog = new VoltLogger("HOST");
+
+    private static final String INVOKER_NAME = ProcedureInvoker.class.getName();
+    private static final String GENERATED_INVOKER_NAME = GeneratedInvoker.class.getName();
+    private static final AtomicInteger s_nextId = new AtomicInteger();
+
+    /*
+     * Generated invokers by procedure class. Both the key and the value are
+     * weak, since the invoker's class loader holds the procedure class; an
+     * invoker lives as long as some runner uses it, and a procedure class
+     * replaced by a catalog update can be unloaded.
+     */
+    private static final Map<Class<?>, WeakReference<GeneratedInvoker>> s_invokers =
+        new WeakHashMap<Class<?>, WeakReference<GeneratedInvoker>>();
+
+    /**
+     * Call run() on procedure with params, which must already match the run
+     * method's parameter types (see {@link ParameterConverter#tryToMakeCompatible}).
+     * @return whatever run() returned, boxed if primitive, null if void
+     * @throws IllegalArgumentException if procedure or params don't fit the run method
+     * @throws InvocationTargetException wrapping whatever run() threw
+     */
+    public abstract Object invoke(Object procedure, Object[] params)
+        throws InvocationTargetException;
+
+    /**
+     * Get an invoker for the given public run method.
+     */
+    public static ProcedureInvoker forMethod(Method method) {
+        if (isLinkable(method)) {
+            try {
+                return generatedInvokerFor(method);
+            } catch (Throwable t) {
+                hostLog.warn("Unable to generate an invoker for " + method +
+                        ", calling it through reflection", t);
+            }
+        }
+        return new ReflectiveInvoker(method);
+    }
+
+    private static GeneratedInvoker generatedInvokerFor(Method method) throws Exception {
+        final Class<?> procClass = method.getDeclaringClass();
+        synchronized (s_invokers) {
+            WeakReference<GeneratedInvoker> ref = s_invokers.get(procClass);
+            GeneratedInvoker invoker = ref == null ? null : ref.get();
+            if (invoker == null || !invoker.m_method.equals(method)) {
+                invoker = generate(method);
+                s_invokers.put(procClass, new WeakReference<GeneratedInvoker>(invoker));
+            }
+            return invoker;
+        }
+    }
+
+    static class ReflectiveInvoker extends ProcedureInvoker {
+        private final Method m_method;
+
+        ReflectiveInvoker(Method method) {
+            m_method = method;
+        }
+
+        @Override
+        public Object invoke(Object procedure, Object[] params) throws InvocationTargetException {
+            try {
+                return m_method.invoke(procedure, params);
+            } catch (IllegalAccessException e) {
+                // If reflection fails, report it like anything else run() throws
+                throw new InvocationTargetException(e);
+            }
+        }
+    }
+
+    /**
+     * Superclass of the generated invokers. The generated call() casts its
+     * arguments blindly, so invoke() first checks them the way Method.invoke
+     * does; a ClassCastException can then only have come from run().
+     */
+    public static abstract class GeneratedInvoker extends ProcedureInvoker {
+        private Method m_method;
+        private Class<?> m_procClass;
+        // parameter types, boxed
+        private Class<?>[] m_paramTypes;
+        private boolean[] m_primitive;
+
+        private void bind(Method method) {
+            m_method = method;
+            m_procClass = method.getDeclaringClass();
+            Class<?>[] types = method.getParameterTypes();
+            m_paramTypes = new Class<?>[types.length];
+            m_primitive = new boolean[types.length];
+            for (int i = 0; i < types.length; i++) {
+                m_primitive[i] = types[i].isPrimitive();
+                m_paramTypes[i] = m_primitive[i] ? boxFor(types[i]) : types[i];
+            }
+        }
+
+        @Override
+        public final Object invoke(Object procedure, Object[] params) throws InvocationTargetException {
+            if (!m_procClass.isInstance(procedure)) {
+                throw new IllegalArgumentException("object is not an instance of declaring class");
+            }
+            if (params.length != m_paramTypes.length) {
+                throw new IllegalArgumentException("wrong number of arguments");
+            }
+            for (int i = 0; i < params.length; i++) {
+                if (params[i] == null ? m_primitive[i] : !m_paramTypes[i].isInstance(params[i])) {
+                    throw new IllegalArgumentException("argument type mismatch");
+                }
+            }
+            try {
+                return call(procedure, params);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        /**
+         * Implemented by the generated class.
+         */
+        protected abstract Object call(Object procedure, Object[] params) throws Throwable;
+    }
+
+    /*
+     * The generated class lives in its own loader, so everything it names
+     * has to be public.
+     */
+    static boolean isLinkable(Method method) {
+        if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())) {
+            return false;
+        }
+        if (!isPublicType(method.getDeclaringClass()) || !isPublicType(method.getReturnType())) {
+            return false;
+        }
+        for (Class<?> type : method.getParameterTypes()) {
+            if (!isPublicType(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPublicType(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        for (Class<?> c = type; c != null; c = c.getEnclosingClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static GeneratedInvoker generate(Method method) throws Exception {
+        final Class<?> procClass = method.getDeclaringClass();
+        final String className = "org.voltdb.invokers." +
+                procClass.getName().replace('.', '_').replace('$', '_') +
+                "_Invoker" + s_nextId.incrementAndGet();
+        final byte[] bytes = new InvokerWriter(className.replace('.', '/'), method).toByteArray();
+
+        InvokerLoader loader = new InvokerLoader(procClass.getClassLoader());
+        Class<?> invokerClass = loader.define(className, bytes);
+        GeneratedInvoker invoker = (GeneratedInvoker) invokerClass.newInstance();
+        invoker.bind(method);
+        return invoker;
+    }
+
+    /*
+     * Resolves the procedure's classes through the loader that loaded the
+     * procedure, and the invoker classes through the loader that loaded VoltDB.
+     */
+    private static class InvokerLoader extends ClassLoader {
+        InvokerLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.equals(INVOKER_NAME)) {
+                return ProcedureInvoker.class;
+            }
+            if (name.equals(GENERATED_INVOKER_NAME)) {
+                return GeneratedInvoker.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Writes the class file for one invoker. The call method is straight
+     * line code, which keeps it within what a version 49 class file can
+     * express without stack map frames:
+     *
+     *   return ((Proc) procedure).run((long) (Long) params[0], (String) params[1], ...);
+     */
+    private static class InvokerWriter {
+        private static final int ACC_PUBLIC = 0x0001;
+        private static final int ACC_FINAL = 0x0010;
+        private static final int ACC_SUPER = 0x0020;
+
+        private static final int CONSTANT_Utf8 = 1;
+        private static final int CONSTANT_Class = 7;
+        private static final int CONSTANT_Methodref = 10;
+        private static final int CONSTANT_NameAndType = 12;
+
+        private static final int ICONST_0 = 0x03;
+        private static final int BIPUSH = 0x10;
+        private static final int SIPUSH = 0x11;
+        private static final int ACONST_NULL = 0x01;
+        private static final int ALOAD_0 = 0x2a;
+        private static final int ALOAD_1 = 0x2b;
+        private static final int ALOAD_2 = 0x2c;
+        private static final int AALOAD = 0x32;
+        private static final int ARETURN = 0xb0;
+        private static final int RETURN = 0xb1;
+        private static final int INVOKEVIRTUAL = 0xb6;
+        private static final int INVOKESPECIAL = 0xb7;
+        private static final int INVOKESTATIC = 0xb8;
+        private static final int CHECKCAST = 0xc0;
+
+        private final ByteArrayOutputStream m_poolBytes = new ByteArrayOutputStream();
+        private final DataOutputStream m_pool = new DataOutputStream(m_poolBytes);
+        private final Map<String, Integer> m_poolIndex = new HashMap<String, Integer>();
+        private int m_poolCount = 1;
+
+        private final String m_className;
+        private final Method m_method;
+
+        InvokerWriter(String className, Method method) {
+            m_className = className;
+            m_method = method;
+        }
+
+        byte[] toByteArray() throws IOException {
+            final String superName = GENERATED_INVOKER_NAME.replace('.', '/');
+            // write the methods first so the constant pool is complete
+            ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+            DataOutputStream methods = new DataOutputStream(methodBytes);
+            writeConstructor(methods, superName);
+            writeCall(methods);
+            int thisIndex = classRef(m_className);
+            int superIndex = classRef(superName);
+            m_pool.flush();
+            methods.flush();
+
+            ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(classBytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(m_poolCount);
+            m_poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(2); // methods
+            methodBytes.writeTo(out);
+            out.writeShort(0); // attributes
+            out.flush();
+            return classBytes.toByteArray();
+        }
+
+        private void writeConstructor(DataOutputStream out, String superName) throws IOException {
+            ByteArrayOutputStream code = new ByteArrayOutputStream();
+            code.write(ALOAD_0);
+            code.write(INVOKESPECIAL);
+            writeShort(code, methodRef(superName, "<init>", "()V"));
+            code.write(RETURN);
+            writeMethod(out, "<init>", "()V", 1, 1, code.toByteArray());
+        }
+
+        private void writeCall(DataOutputStream out) throws IOException {
+            final Class<?> procClass = m_method.getDeclaringClass();
+            final Class<?>[] paramTypes = m_method.getParameterTypes();
+            final Class<?> returnType = m_method.getReturnType();
+
+            ByteArrayOutputStream code = new ByteArrayOutputStream();
+            code.write(ALOAD_1);
+            code.write(CHECKCAST);
+            writeShort(code, classRef(internalName(procClass)));
+
+            // the receiver, the arguments pushed so far and the array and index
+            int slots = 1;
+            int maxStack = 1;
+            for (int i = 0; i < paramTypes.length; i++) {
+                Class<?> type = paramTypes[i];
+                code.write(ALOAD_2);
+                if (i <= 5) {
+                    code.write(ICONST_0 + i);
+                } else if (i <= Byte.MAX_VALUE) {
+                    code.write(BIPUSH);
+                    code.write(i);
+                } else {
+                    code.write(SIPUSH);
+                    writeShort(code, i);
+                }
+                code.write(AALOAD);
+                maxStack = Math.max(maxStack, slots + 2);
+                if (type.isPrimitive()) {
+                    Class<?> box = boxFor(type);
+                    code.write(CHECKCAST);
+                    writeShort(code, classRef(internalName(box)));
+                    code.write(INVOKEVIRTUAL);
+                    writeShort(code, methodRef(internalName(box), type.getName() + "Value",
+                            "()" + descriptor(type)));
+                } else if (type != Object.class) {
+                    code.write(CHECKCAST);
+                    writeShort(code, classRef(internalName(type)));
+                }
+                slots += (type == long.class || type == double.class) ? 2 : 1;
+                maxStack = Math.max(maxStack, slots);
+            }
+
+            code.write(INVOKEVIRTUAL);
+            writeShort(code, methodRef(internalName(procClass), m_method.getName(), methodDescriptor(m_method)));
+
+            if (returnType == void.class) {
+                code.write(ACONST_NULL);
+            } else if (returnType.isPrimitive()) {
+                Class<?> box = boxFor(returnType);
+                code.write(INVOKESTATIC);
+                writeShort(code, methodRef(internalName(box), "valueOf",
+                        "(" + descriptor(returnType) + ")" + descriptor(box)));
+            }
+            maxStack = Math.max(maxStack, 2);
+            code.write(ARETURN);
+
+            writeMethod(out, "call", "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;",
+                    maxStack, 3, code.toByteArray());
+        }
+
+        private void writeMethod(DataOutputStream out, String name, String desc,
+                int maxStack, int maxLocals, byte[] code) throws IOException {
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(desc));
+            out.writeShort(1);
+            out.writeShort(utf8("Code"));
+            out.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+        }
+
+        private static void writeShort(ByteArrayOutputStream out, int value) {
+            out.write((value >>> 8) & 0xff);
+            out.write(value & 0xff);
+        }
+
+        private int utf8(String value) throws IOException {
+            String key = "U" + value;
+            Integer index = m_poolIndex.get(key);
+            if (index == null) {
+                m_pool.writeByte(CONSTANT_Utf8);
+                m_pool.writeUTF(value);
+                index = m_poolCount++;
+                m_poolIndex.put(key, index);
+            }
+            return index;
+        }
+
+        private int classRef(String internalName) throws IOException {
+            String key = "C" + internalName;
+            Integer index = m_poolIndex.get(key);
+            if (index == null) {
+                int nameIndex = utf8(internalName);
+                m_pool.writeByte(CONSTANT_Class);
+                m_pool.writeShort(nameIndex);
+                index = m_poolCount++;
+                m_poolIndex.put(key, index);
+            }
+            return index;
+        }
+
+        private int methodRef(String owner, String name, String desc) throws IOException {
+            String key = "M" + owner + "." + name + desc;
+            Integer index = m_poolIndex.get(key);
+            if (index == null) {
+                int classIndex = classRef(owner);
+                int nameIndex = utf8(name);
+                int descIndex = utf8(desc);
+                m_pool.writeByte(CONSTANT_NameAndType);
+                m_pool.writeShort(nameIndex);
+                m_pool.writeShort(descIndex);
+                int nameAndTypeIndex = m_poolCount++;
+                m_pool.writeByte(CONSTANT_Methodref);
+                m_pool.writeShort(classIndex);
+                m_pool.writeShort(nameAndTypeIndex);
+                index = m_poolCount++;
+                m_poolIndex.put(key, index);
+            }
+            return index;
+        }
+    }
+
+    /*
+     * Class file names: arrays are referenced by descriptor, classes by
+     * slash separated name.
+     */
+    static String internalName(Class<?> type) {
+        if (type.isArray()) {
+            return descriptor(type);
+        }
+        return type.getName().replace('.', '/');
+    }
+
+    static String descriptor(Class<?> type) {
+        if (type.isArray()) {
+            return "[" + descriptor(type.getComponentType());
+        }
+        if (type == long.class) return "J";
+        if (type == int.class) return "I";
+        if (type == short.class) return "S";
+        if (type == byte.class) return "B";
+        if (type == double.class) return "D";
+        if (type == float.class) return "F";
+        if (type == boolean.class) return "Z";
+        if (type == char.class) return "C";
+        if (type == void.class) return "V";
+        return "L" + type.getName().replace('.', '/') + ";";
+    }
+
+    static String methodDescriptor(Method method) {
+        StringBuilder sb = new StringBuilder("(");
+        for (Class<?> type : method.getParameterTypes()) {
+            sb.append(descriptor(type));
+        }
+        sb.append(')').append(descriptor(method.getReturnType()));
+        return sb.toString();
+    }
+
+    static Class<?> boxFor(Class<?> primitive) {
+        if (primitive == long.class) return Long.class;
+        if (primitive == int.class) return Integer.class;
+        if (primitive == short.class) return Short.class;
+        if (primitive == byte.class) return Byte.class;
+        if (primitive == double.class) return Double.class;
+        if (primitive == float.class) return Float.class;
+        if (primitive == boolean.class) return Boolean.class;
+        if (primitive == char.class) return Character.class;
+        throw new IllegalArgumentException("Not a primitive type: " + primitive);
+    }
+}
@@ -27,6 +27,7 @@ import java.lang.reflect.Modifier;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -75,6 +76,25 @@ public class ProcedureRunner {
     protected final ArrayList<QueuedSQL> m_batch = new ArrayList<QueuedSQL>(100);
     // cached fake SQLStmt array for single statement non-java procs
     QueuedSQL m_cachedSingleStmt = new QueuedSQL(); // never null
+
+    // SQL strings queued through voltQueueSQL(String, ...) and their plans.
+    // Owned by the site thread, so planning each string once per site keeps
+    // the site from waiting on the planner for SQL it has already seen.
+    static final int MAX_INLINE_ADHOC_CACHE_ENTRIES = 64;
+    static class InlineAdHocStmt {
+        SQLStmt stmt;
+        // constants the planner pulled out of the sql, null if it had none
+        Object[] extractedParams = null;
+    }
+    private final Map<String, InlineAdHocStmt> m_inlineAdHocCache =
+        new LinkedHashMap<String, InlineAdHocStmt>(MAX_INLINE_ADHOC_CACHE_ENTRIES * 2, .75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, InlineAdHocStmt> eldest) {
+                return size() > MAX_INLINE_ADHOC_CACHE_ENTRIES;
+            }
+        };
     boolean m_seenFinalBatch = false;
 
     // reflected info
@@ -82,6 +102,7 @@ public class ProcedureRunner {
     protected final String m_procedureName;
     protected final VoltProcedure m_procedure;
     protected Method m_procMethod;
+    protected ProcedureInvoker m_procInvoker;
     protected Class<?>[] m_paramTypes;
 
     // per txn state (are reset after call)
@@ -249,13 +270,8 @@ public class ProcedureRunner {
                     if (log.isTraceEnabled()) {
                         log.trace("invoking... procMethod=" + m_procMethod.getName() + ", class=" + getClass().getName());
                     }
-                    try {
-                        Object rawResult = m_procMethod.invoke(m_procedure, paramList);
-                        results = getResultsFromRawResults(rawResult);
-                    } catch (IllegalAccessException e) {
-                        // If reflection fails, invoke the same error handling that other exceptions do
-                        throw new InvocationTargetException(e);
-                    }
+                    Object rawResult = m_procInvoker.invoke(m_procedure, paramList);
+                    results = getResultsFromRawResults(rawResult);
                     log.trace("invoked");
                 }
                 catch (InvocationTargetException itex) {
@@ -485,42 +501,22 @@ public class ProcedureRunner {
         }
 
         try {
-            AdHocPlannedStmtBatch paw = m_csp.plan( sql, !m_catProc.getSinglepartition(),
-                    ProcedureInvocationType.ORIGINAL, 0, 0).get();
-            if (paw.errorMsg != null) {
-                throw new VoltAbortException("Failed to plan sql '" + sql + "' error: " + paw.errorMsg);
+            InlineAdHocStmt planned = m_inlineAdHocCache.get(sql);
+            if (planned == null) {
+                planned = planInlineAdHoc(sql);
+                m_inlineAdHocCache.put(sql, planned);
+            }
+            else {
+                m_statsCollector.inlineAdHocCacheHit();
             }
 
-            if (m_catProc.getReadonly() && !paw.isReadOnly()) {
+            if (m_catProc.getReadonly() && !planned.stmt.isReadOnly) {
                 throw new VoltAbortException("Attempted to queue DML adhoc sql '" + sql + "' from read only procedure");
             }
 
-            assert(1 == paw.plannedStatements.size());
-
             QueuedSQL queuedSQL = new QueuedSQL();
-            AdHocPlannedStatement plannedStatement = paw.plannedStatements.get(0);
-
-            long aggFragId = ActivePlanRepository.loadOrAddRefPlanFragment(
-                    plannedStatement.core.aggregatorHash, plannedStatement.core.aggregatorFragment);
-            long collectorFragId = 0;
-            if (plannedStatement.core.collectorFragment != null) {
-                collectorFragId = ActivePlanRepository.loadOrAddRefPlanFragment(
-                        plannedStatement.core.collectorHash, plannedStatement.core.collectorFragment);
-            }
-
-            queuedSQL.stmt = SQLStmtAdHocHelper.createWithPlan(
-                    plannedStatement.sql,
-                    aggFragId,
-                    plannedStatement.core.aggregatorHash,
-                    true,
-                    collectorFragId,
-                    plannedStatement.core.collectorHash,
-                    true,
-                    plannedStatement.core.isReplicatedTableDML,
-                    plannedStatement.core.readOnly,
-                    plannedStatement.core.parameterTypes,
-                    m_site);
-            if (plannedStatement.extractedParamValues.size() == 0) {
+            queuedSQL.stmt = planned.stmt;
+            if (planned.extractedParams == null) {
                 // case handles if there were parameters OR
                 // if there were no constants to pull out
                 queuedSQL.params = getCleanParams(queuedSQL.stmt, args);
@@ -531,12 +527,7 @@ public class ProcedureRunner {
                             "Number of arguments provided was " + args.length  +
                             " where 0 were expected for statement " + sql);
                 }
-                Object[] extractedParams = plannedStatement.extractedParamValues.toArray();
-                if (extractedParams.length != queuedSQL.stmt.statementParamJavaTypes.length) {
-                    String msg = String.format("Wrong number of extracted param for parameterized statement: %s", sql);
-                    throw new VoltAbortException(msg);
-                }
-                queuedSQL.params = getCleanParams(queuedSQL.stmt, extractedParams);
+                queuedSQL.params = getCleanParams(queuedSQL.stmt, planned.extractedParams);
             }
 
             updateCRC(queuedSQL);
@@ -553,6 +544,62 @@ public class ProcedureRunner {
         }
     }
 
+    /**
+     * Plan sql for voltQueueSQL(String, ...). The site thread waits here for the
+     * planner, so the time is charged to the procedure's stats.
+     */
+    private InlineAdHocStmt planInlineAdHoc(String sql) throws Exception {
+        final long start = System.nanoTime();
+        AdHocPlannedStmtBatch paw;
+        try {
+            paw = m_csp.plan( sql, !m_catProc.getSinglepartition(),
+                    ProcedureInvocationType.ORIGINAL, 0, 0).get();
+        }
+        finally {
+            m_statsCollector.inlineAdHocPlannerWait(System.nanoTime() - start);
+        }
+        if (paw.errorMsg != null) {
+            throw new VoltAbortException("Failed to plan sql '" + sql + "' error: " + paw.errorMsg);
+        }
+
+        assert(1 == paw.plannedStatements.size());
+
+        AdHocPlannedStatement plannedStatement = paw.plannedStatements.get(0);
+
+        long aggFragId = ActivePlanRepository.loadOrAddRefPlanFragment(
+                plannedStatement.core.aggregatorHash, plannedStatement.core.aggregatorFragment);
+        long collectorFragId = 0;
+        if (plannedStatement.core.collectorFragment != null) {
+            collectorFragId = ActivePlanRepository.loadOrAddRefPlanFragment(
+                    plannedStatement.core.collectorHash, plannedStatement.core.collectorFragment);
+        }
+
+        // the statement holds a reference to its fragments until it is collected,
+        // so cached statements keep their plans loaded in the EE
+        InlineAdHocStmt planned = new InlineAdHocStmt();
+        planned.stmt = SQLStmtAdHocHelper.createWithPlan(
+                plannedStatement.sql,
+                aggFragId,
+                plannedStatement.core.aggregatorHash,
+                true,
+                collectorFragId,
+                plannedStatement.core.collectorHash,
+                true,
+                plannedStatement.core.isReplicatedTableDML,
+                plannedStatement.core.readOnly,
+                plannedStatement.core.parameterTypes,
+                m_site);
+        if (plannedStatement.extractedParamValues.size() != 0) {
+            Object[] extractedParams = plannedStatement.extractedParamValues.toArray();
+            if (extractedParams.length != planned.stmt.statementParamJavaTypes.length) {
+                String msg = String.format("Wrong number of extracted param for parameterized statement: %s", sql);
+                throw new VoltAbortException(msg);
+            }
+            planned.extractedParams = extractedParams;
+        }
+        return planned;
+    }
+
     public VoltTable[] voltExecuteSQL(boolean isFinalSQL) {
         try {
             if (m_seenFinalBatch) {
@@ -806,6 +853,7 @@ public class ProcedureRunner {
             if (m_procMethod == null) {
                 throw new RuntimeException("No \"run\" method found in: " + m_procedure.getClass().getName());
             }
+            m_procInvoker = ProcedureInvoker.forMethod(m_procMethod);
         }
 
         // iterate through the fields and deal with sql statements
@@ -119,6 +119,24 @@ class ProcedureStatsCollector extends SiteStatsSource {
     private long m_totalParameterSetSize = 0;
     private long m_lastTotalParameterSetSize = 0;
 
+    /**
+     * Inline ad hoc SQL found in the runner's plan cache
+     */
+    private long m_inlineAdHocCacheHits = 0;
+    private long m_lastInlineAdHocCacheHits = 0;
+
+    /**
+     * Times the site thread waited on the planner for inline ad hoc SQL
+     */
+    private long m_inlineAdHocPlannerWaits = 0;
+    private long m_lastInlineAdHocPlannerWaits = 0;
+
+    /**
+     * Total nanoseconds the site thread spent waiting on the planner
+     */
+    private long m_inlineAdHocPlannerWaitTime = 0;
+    private long m_lastInlineAdHocPlannerWaitTime = 0;
+
     /**
      * Whether to return results in intervals since polling or since the beginning
      */
@@ -210,6 +228,21 @@ class ProcedureStatsCollector extends SiteStatsSource {
         m_invocations++;
     }
 
+    /**
+     * Called when inline ad hoc SQL queued by the procedure was already planned.
+     */
+    public final void inlineAdHocCacheHit() {
+        m_inlineAdHocCacheHits++;
+    }
+
+    /**
+     * Called after the site thread waited on the planner for inline ad hoc SQL.
+     */
+    public final void inlineAdHocPlannerWait(long nanos) {
+        m_inlineAdHocPlannerWaits++;
+        m_inlineAdHocPlannerWaitTime += nanos;
+    }
+
     /**
      * Update the rowValues array with the latest statistical information.
      * This method is overrides the super class version
@@ -234,6 +267,9 @@ class ProcedureStatsCollector extends SiteStatsSource {
         long minParameterSetSize = m_minParameterSetSize;
         long maxParameterSetSize = m_maxParameterSetSize;
         long totalParameterSetSize = m_totalParameterSetSize;
+        long inlineAdHocCacheHits = m_inlineAdHocCacheHits;
+        long inlineAdHocPlannerWaits = m_inlineAdHocPlannerWaits;
+        long inlineAdHocPlannerWaitTime = m_inlineAdHocPlannerWaitTime;
 
         if (m_interval) {
             invocations = m_invocations - m_lastInvocations;
@@ -266,6 +302,15 @@ class ProcedureStatsCollector extends SiteStatsSource {
 
             totalParameterSetSize = m_totalParameterSetSize - m_lastTotalParameterSetSize;
             m_lastTotalParameterSetSize = m_totalParameterSetSize;
+
+            inlineAdHocCacheHits = m_inlineAdHocCacheHits - m_lastInlineAdHocCacheHits;
+            m_lastInlineAdHocCacheHits = m_inlineAdHocCacheHits;
+
+            inlineAdHocPlannerWaits = m_inlineAdHocPlannerWaits - m_lastInlineAdHocPlannerWaits;
+            m_lastInlineAdHocPlannerWaits = m_inlineAdHocPlannerWaits;
+
+            inlineAdHocPlannerWaitTime = m_inlineAdHocPlannerWaitTime - m_lastInlineAdHocPlannerWaitTime;
+            m_lastInlineAdHocPlannerWaitTime = m_inlineAdHocPlannerWaitTime;
         }
 
         rowValues[columnNameToIndex.get("INVOCATIONS")] = invocations;
@@ -290,6 +335,9 @@ class ProcedureStatsCollector extends SiteStatsSource {
         rowValues[columnNameToIndex.get("MAX_RESULT_SIZE")] = maxResultSize;
         rowValues[columnNameToIndex.get("MIN_PARAMETER_SET_SIZE")] = minParameterSetSize;
         rowValues[columnNameToIndex.get("MAX_PARAMETER_SET_SIZE")] = maxParameterSetSize;
+        rowValues[columnNameToIndex.get("INLINE_ADHOC_CACHE_HITS")] = inlineAdHocCacheHits;
+        rowValues[columnNameToIndex.get("INLINE_ADHOC_PLANNER_WAITS")] = inlineAdHocPlannerWaits;
+        rowValues[columnNameToIndex.get("INLINE_ADHOC_PLANNER_WAIT_TIME")] = inlineAdHocPlannerWaitTime;
     }
 
     /**
@@ -314,6 +362,9 @@ class ProcedureStatsCollector extends SiteStatsSource {
         columns.add(new VoltTable.ColumnInfo("AVG_PARAMETER_SET_SIZE", VoltType.INTEGER));
         columns.add(new VoltTable.ColumnInfo("ABORTS", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("FAILURES", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("INLINE_ADHOC_CACHE_HITS", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("INLINE_ADHOC_PLANNER_WAITS", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("INLINE_ADHOC_PLANNER_WAIT_TIME", VoltType.BIGINT));
     }
 
     @Override
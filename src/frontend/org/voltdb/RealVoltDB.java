@@ -117,6 +117,7 @@ import org.voltdb.utils.CatalogUtil;
 import org.voltdb.utils.Encoder;
 import org.voltdb.utils.HTTPAdminListener;
 import org.voltdb.utils.LogKeys;
+import org.voltdb.utils.MetricsExporter;
 import org.voltdb.utils.MiscUtils;
 import org.voltdb.utils.PlatformProperties;
 import org.voltdb.utils.SystemStatsCollector;
@@ -985,6 +986,25 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback
                 SystemStatsCollector.asyncSampleSystemNow(true, true);
             }
         }, 0, 6, TimeUnit.MINUTES);
+
+        // statistics history samples
+        scheduleWork(new Runnable() {
+            @Override
+            public void run() {
+                getStatsAgent().sampleHistory();
+            }
+        }, 0, StatsHistory.SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        // metrics endpoint snapshot
+        scheduleWork(new Runnable() {
+            @Override
+            public void run() {
+                HTTPAdminListener adminListener = m_adminListener;
+                if (adminListener != null) {
+                    adminListener.refreshMetrics();
+                }
+            }
+        }, 0, MetricsExporter.REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
         GCInspector.instance.start(m_periodicPriorityWorkThread);
     }
 
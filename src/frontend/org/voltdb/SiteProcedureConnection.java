@@ -143,6 +143,8 @@ public interface SiteProcedureConnection {
 
     public long[] getUSOForExportTable(String signature);
 
+    public long getTableModificationCount(int tableId);
+
     public void toggleProfiler(int toggle);
 
     public void tick();
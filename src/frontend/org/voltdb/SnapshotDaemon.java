@@ -117,6 +117,9 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
     private long m_frequencyInMillis;
     private int m_frequency;
     private int m_retain;
+    // Snapshots that skip unchanged tables to take between full ones, and how many were taken since the last full one
+    private int m_skipUnchanged;
+    private int m_skipUnchangedSinceFull;
     private String m_path;
     private String m_prefix;
     private String m_prefixAndSeparator;
@@ -192,6 +195,8 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
 
         m_frequencyUnit = null;
         m_retain = 0;
+        m_skipUnchanged = 0;
+        m_skipUnchangedSinceFull = 0;
         m_frequency = 0;
         m_frequencyInMillis = 0;
         m_prefix = null;
@@ -1077,6 +1082,8 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
         if (schedule.getEnabled()) {
             m_frequency = schedule.getFrequencyvalue();
             m_retain = schedule.getRetain();
+            m_skipUnchanged = schedule.getSkipunchanged();
+            m_skipUnchangedSinceFull = m_skipUnchanged;
             m_path = schedule.getPath();
             m_prefix = schedule.getPrefix();
             m_prefixAndSeparator = m_prefix + "_";
@@ -1233,6 +1240,15 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
             jsObj.put("path", m_path);
             jsObj.put("nonce", nonce);
             jsObj.put("perPartitionTxnIds", retrievePerPartitionTransactionIds());
+            if (m_skipUnchangedSinceFull < m_skipUnchanged) {
+                // Only write the tables that changed since the previous snapshot
+                JSONObject jsData = new JSONObject();
+                jsData.put("skipUnchangedTables", true);
+                jsObj.put("data", jsData.toString());
+                m_skipUnchangedSinceFull++;
+            } else {
+                m_skipUnchangedSinceFull = 0;
+            }
             m_snapshots.offer(new Snapshot(m_path, nonce, now));
             long handle = m_nextCallbackHandle++;
             m_procedureCallbacks.put(handle, new ProcedureCallback() {
@@ -19,7 +19,9 @@ package org.voltdb;
 import java.io.File;
 import java.io.FileFilter;
 import java.nio.ByteBuffer;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
@@ -27,6 +29,7 @@ import org.voltcore.logging.VoltLogger;
 import org.voltcore.network.Connection;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.sysprocs.saverestore.SnapshotUtil;
 import org.voltdb.utils.VoltFile;
 
 /**
@@ -179,12 +182,32 @@ public class SnapshotDeleteAgent extends OpsAgent
                 for (int ii = 0; ii < paths.length; ii++) {
                     List<File> relevantFiles = retrieveRelevantFiles(paths[ii], nonces[ii]);
                     if (relevantFiles != null) {
+                        /*
+                         * Snapshots that skipped unchanged tables may still use some
+                         * of the table files, and files this snapshot kept alive for an
+                         * earlier snapshot may not be needed anymore.
+                         */
+                        final File path = new VoltFile(paths[ii]);
+                        Set<File> reusedFiles = retrieveUnchangedTableFiles(path, nonces[ii], true);
+                        Set<File> stillReferenced = retrieveUnchangedTableFiles(path, nonces[ii], false);
                         for (final File f : relevantFiles) {
+                            if (stillReferenced.contains(f)) {
+                                continue;
+                            }
                             sb.append(f.getPath());
                             sb.append(',');
                             //long size = f.length();
                             f.delete();
                         }
+                        for (final File f : reusedFiles) {
+                            String nonce = SnapshotUtil.parseNonceFromSnapshotFilename(f.getName());
+                            if (stillReferenced.contains(f) || hasDigest(path, nonce)) {
+                                continue;
+                            }
+                            sb.append(f.getPath());
+                            sb.append(',');
+                            f.delete();
+                        }
                     }
                 }
                 SNAP_LOG.info(sb.toString());
@@ -250,6 +273,52 @@ public class SnapshotDeleteAgent extends OpsAgent
         }));
     }
 
+    /**
+     * Collect the table files that snapshots in the directory reuse from
+     * earlier snapshots for unchanged tables, either from the digests of the
+     * given snapshot or from the digests of all the others.
+     */
+    private final Set<File> retrieveUnchangedTableFiles(File path, String nonce, boolean ofNonce) {
+        Set<File> files = new HashSet<File>();
+        File[] digests = path.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.getName().endsWith(".digest");
+            }
+        });
+        if (digests == null) {
+            return files;
+        }
+        for (File digestFile : digests) {
+            String digestNonce = SnapshotUtil.parseNonceFromDigestFilename(digestFile.getName());
+            if (digestNonce.equals(nonce) != ofNonce) {
+                continue;
+            }
+            try {
+                JSONObject digest = SnapshotUtil.CRCCheck(digestFile, SNAP_LOG);
+                if (digest != null) {
+                    files.addAll(SnapshotUtil.retrieveUnchangedTableFiles(
+                                path.getPath(), digestNonce, digest).values());
+                }
+            } catch (Exception e) {
+                SNAP_LOG.warn("Unable to read snapshot digest " + digestFile, e);
+            }
+        }
+        return files;
+    }
+
+    private final boolean hasDigest(File path, final String nonce) {
+        File[] digests = path.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.getName().equals(nonce + ".digest") ||
+                    (pathname.getName().startsWith(nonce + "-host_") &&
+                     pathname.getName().endsWith(".digest"));
+            }
+        });
+        return digests != null && digests.length > 0;
+    }
+
     private VoltTable constructFragmentResultsTable() {
         ColumnInfo[] result_columns = new ColumnInfo[9];
         int ii = 0;
@@ -52,6 +52,7 @@ import org.voltdb.dtxn.SiteTracker;
 import org.voltdb.iv2.TxnEgo;
 
 import org.voltdb.sysprocs.saverestore.CSVSnapshotWritePlan;
+import org.voltdb.sysprocs.saverestore.UnchangedTableState;
 import org.voltdb.sysprocs.saverestore.NativeSnapshotWritePlan;
 import org.voltdb.sysprocs.saverestore.SnapshotWritePlan;
 import org.voltdb.sysprocs.saverestore.StreamSnapshotWritePlan;
@@ -186,6 +187,12 @@ public class SnapshotSaveAPI
         boolean runPostTasks = false;
         VoltTable earlyResultTable = null;
         try {
+            if (format == SnapshotFormat.NATIVE) {
+                //Record the table modification counts, which decide which unchanged tables
+                //a snapshot can skip, as this site arrives at the setup barrier. The setup
+                //run by the barrier only takes the counts recorded for this snapshot.
+                UnchangedTableState.recordModificationCounts(context, multiPartTxnId);
+            }
             SnapshotSiteProcessor.m_snapshotCreateSetupBarrier.await();
             try {
                 synchronized (m_createLock) {
@@ -216,53 +216,11 @@ public class SnapshotScanAgent extends OpsAgent
         } else {
             for (final File f : relevantFiles) {
                 if (f.getName().endsWith(".digest")) {
+                    addUnchangedTableRows(results, f);
                     continue;
                 }
                 if (f.canRead()) {
-                    try {
-                        FileInputStream savefile_input = new FileInputStream(f);
-                        try {
-                            TableSaveFile savefile =
-                                new TableSaveFile(
-                                        savefile_input.getChannel(),
-                                        1,
-                                        null);
-                            String partitions = "";
-
-                            for (int partition : savefile.getPartitionIds()) {
-                                partitions = partitions + "," + partition;
-                            }
-
-                            if (partitions.startsWith(",")) {
-                                partitions = partitions.substring(1);
-                            }
-
-                            results.addRow(
-                                    m_messenger.getHostId(),
-                                    m_hostname,
-                                    f.getParent(),
-                                    f.getName(),
-                                    savefile.getTxnId(),
-                                    org.voltdb.TransactionIdManager.getTimestampFromTransactionId(
-                                        savefile.getTxnId()),
-                                    savefile.getTableName(),
-                                    savefile.getCompleted() ? "TRUE" : "FALSE",
-                                    f.length(),
-                                    savefile.isReplicated() ? "TRUE" : "FALSE",
-                                    partitions,
-                                    savefile.getTotalPartitions(),
-                                    f.canRead() ? "TRUE" : "FALSE",
-                                    "SUCCESS",
-                                    ""
-                                    );
-                        } catch (IOException e) {
-                            SNAP_LOG.warn(e);
-                        } finally {
-                            savefile_input.close();
-                        }
-                    } catch (IOException e) {
-                        SNAP_LOG.warn(e);
-                    }
+                    addTableFileRow(results, f, f.getName(), null);
                 } else {
                     results.addRow(
                             m_messenger.getHostId(),
@@ -287,6 +245,84 @@ public class SnapshotScanAgent extends OpsAgent
         return results;
     }
 
+    /**
+     * Describe a table file. The txnId defaults to the one recorded in the file.
+     */
+    private void addTableFileRow(VoltTable results, File f, String name, Long txnId)
+    {
+        try {
+            FileInputStream savefile_input = new FileInputStream(f);
+            try {
+                TableSaveFile savefile =
+                    new TableSaveFile(
+                            savefile_input.getChannel(),
+                            1,
+                            null);
+                String partitions = "";
+
+                for (int partition : savefile.getPartitionIds()) {
+                    partitions = partitions + "," + partition;
+                }
+
+                if (partitions.startsWith(",")) {
+                    partitions = partitions.substring(1);
+                }
+
+                if (txnId == null) {
+                    txnId = savefile.getTxnId();
+                }
+                results.addRow(
+                        m_messenger.getHostId(),
+                        m_hostname,
+                        f.getParent(),
+                        name,
+                        txnId,
+                        org.voltdb.TransactionIdManager.getTimestampFromTransactionId(txnId),
+                        savefile.getTableName(),
+                        savefile.getCompleted() ? "TRUE" : "FALSE",
+                        f.length(),
+                        savefile.isReplicated() ? "TRUE" : "FALSE",
+                        partitions,
+                        savefile.getTotalPartitions(),
+                        f.canRead() ? "TRUE" : "FALSE",
+                        "SUCCESS",
+                        ""
+                        );
+            } catch (IOException e) {
+                SNAP_LOG.warn(e);
+            } finally {
+                savefile_input.close();
+            }
+        } catch (IOException e) {
+            SNAP_LOG.warn(e);
+        }
+    }
+
+    /**
+     * A snapshot that skips unchanged tables reuses the files of earlier
+     * snapshots for them. Report them again under the skipping snapshot's
+     * name and txnId so that it aggregates as a complete snapshot.
+     */
+    private void addUnchangedTableRows(VoltTable results, File digestFile)
+    {
+        if (!digestFile.canRead()) {
+            return;
+        }
+        try {
+            JSONObject digest = SnapshotUtil.CRCCheck(digestFile, SNAP_LOG);
+            if (digest == null) {
+                return;
+            }
+            String nonce = SnapshotUtil.parseNonceFromDigestFilename(digestFile.getName());
+            for (Map.Entry<String, File> e :
+                    SnapshotUtil.retrieveUnchangedTableFiles(digestFile.getParent(), nonce, digest).entrySet()) {
+                addTableFileRow(results, e.getValue(), e.getKey(), digest.getLong("txnId"));
+            }
+        } catch (Exception e) {
+            SNAP_LOG.warn(e);
+        }
+    }
+
     private VoltTable getSnapshotDigestScanResults(String path)
     {
         VoltTable results = constructDigestResultsTable();
@@ -206,6 +206,12 @@ public class SnapshotSiteProcessor {
 
     private final IdlePredicate m_idlePredicate;
 
+    /*
+     * Paces snapshot work against a target latency if one is configured,
+     * and keeps the statistics on how much snapshot work delays transactions
+     */
+    private final SnapshotThrottle m_throttle;
+
     /*
      * Synchronization is handled by SnapshotSaveAPI.startSnapshotting
      * Store the export sequence numbers for every table and partition. This will
@@ -250,13 +256,15 @@ public class SnapshotSiteProcessor {
             public boolean idle(long now) {
                 throw new UnsupportedOperationException();
             }
-        });
+        }, new SnapshotThrottle(-1, 0, siteQueue));
     }
 
-    public SnapshotSiteProcessor(SiteTaskerQueue siteQueue, int snapshotPriority, IdlePredicate idlePredicate) {
+    public SnapshotSiteProcessor(SiteTaskerQueue siteQueue, int snapshotPriority, IdlePredicate idlePredicate,
+                                 SnapshotThrottle throttle) {
         m_siteTaskerQueue = siteQueue;
         m_snapshotPriority = snapshotPriority;
         m_idlePredicate = idlePredicate;
+        m_throttle = throttle;
     }
 
     public void shutdown() throws InterruptedException {
@@ -315,8 +323,27 @@ public class SnapshotSiteProcessor {
                  *
                  * If snapshot priority is 0 then running the jigger immediately is the specified
                  * policy anyways. 10 would be the largest delay
+                 *
+                 * With a target latency the throttle picks the delay instead of the priority
                  */
-                if (m_snapshotPriority > 0) {
+                if (m_throttle.isAdaptive()) {
+                    final long delay = m_throttle.getDelay();
+                    if (delay == 0) {
+                        m_siteTaskerQueue.offer(new SnapshotTask());
+                    } else {
+                        VoltDB.instance().schedulePriorityWork(
+                                new Runnable() {
+                                    @Override
+                                    public void run()
+                                    {
+                                        m_siteTaskerQueue.offer(new SnapshotTask());
+                                    }
+                                },
+                                delay,
+                                0,
+                                TimeUnit.MILLISECONDS);
+                    }
+                } else if (m_snapshotPriority > 0) {
                     final long now = System.currentTimeMillis();
                     //Ask if the site is idle, and if it is queue the work immediately
                     if (m_idlePredicate.idle(now)) {
@@ -451,6 +478,7 @@ public class SnapshotSiteProcessor {
 
     private void queueInitialSnapshotTasks(int count, long now)
     {
+        final long spacing = m_throttle.isAdaptive() ? m_throttle.getDelay() : 5 * m_snapshotPriority;
         for (int ii = 0; ii < count; ii++) {
             VoltDB.instance().schedulePriorityWork(
                     new Runnable() {
@@ -460,10 +488,10 @@ public class SnapshotSiteProcessor {
                             m_siteTaskerQueue.offer(new SnapshotTask());
                         }
                     },
-                    (m_quietUntil + (5 * m_snapshotPriority) - now),
+                    (m_quietUntil + spacing - now),
                     0,
                     TimeUnit.MILLISECONDS);
-            m_quietUntil += 5 * m_snapshotPriority;
+            m_quietUntil += spacing;
         }
     }
 
@@ -604,6 +632,7 @@ public class SnapshotSiteProcessor {
                 valueForTarget = filter.filter(valueForTarget);
             }
 
+            final long writeStart = System.nanoTime();
             ListenableFuture<?> writeFuture = task.m_target.write(valueForTarget, task);
             if (writeFuture != null) {
                 writeFutures.add(writeFuture);
@@ -613,6 +642,7 @@ public class SnapshotSiteProcessor {
                     public void run() {
                         try {
                             retvalFinal.get();
+                            m_throttle.writeCompleted(System.nanoTime() - writeStart);
                         } catch (Throwable t) {
                             if (m_lastSnapshotSucceded) {
                                 SNAP_LOG.error("Error while attempting to write snapshot data to file " +
@@ -647,53 +677,64 @@ public class SnapshotSiteProcessor {
 
         /*
          * Try to serialize a block from a table, if the table is finished,
-         * remove the tasks from the task map and move on to the next table. If a block is
-         * successfully serialized, break out of the loop and release the site thread for more
-         * transaction work.
+         * remove the tasks from the task map and move on to the next table. Once the
+         * throttle's quantum of blocks is serialized, break out of the loop and release
+         * the site thread for more transaction work.
          */
+        final long startTime = System.nanoTime();
+        final int quantum = m_throttle.getQuantum();
+        final List<ListenableFuture<?>> writeFutures = new ArrayList<ListenableFuture<?>>(quantum);
+        boolean outOfBuffers = false;
         Iterator<Map.Entry<Integer, Collection<SnapshotTableTask>>> taskIter =
             m_snapshotTableTasks.asMap().entrySet().iterator();
-        while (taskIter.hasNext()) {
+        while (!outOfBuffers && writeFutures.size() < quantum && taskIter.hasNext()) {
             Map.Entry<Integer, Collection<SnapshotTableTask>> taskEntry = taskIter.next();
             final int tableId = taskEntry.getKey();
             final Collection<SnapshotTableTask> tableTasks = taskEntry.getValue();
 
-            final List<BBContainer> outputBuffers = getOutputBuffers(tableTasks);
-            if (outputBuffers == null) {
-                // Not enough buffers available
-                break;
-            }
+            while (writeFutures.size() < quantum) {
+                final List<BBContainer> outputBuffers = getOutputBuffers(tableTasks);
+                if (outputBuffers == null) {
+                    // Not enough buffers available
+                    outOfBuffers = true;
+                    break;
+                }
 
-            final int[] serialized = ee.tableStreamSerializeMore(tableId,
-                                                                 TableStreamType.SNAPSHOT,
-                                                                 outputBuffers);
-            for (int serializedBytes : serialized) {
-                if (serializedBytes < 0) {
-                    VoltDB.crashLocalVoltDB("Failure while serialize data from a table for COW snapshot", false, null);
+                final int[] serialized = ee.tableStreamSerializeMore(tableId,
+                                                                     TableStreamType.SNAPSHOT,
+                                                                     outputBuffers);
+                for (int serializedBytes : serialized) {
+                    if (serializedBytes < 0) {
+                        VoltDB.crashLocalVoltDB("Failure while serialize data from a table for COW snapshot", false, null);
+                    }
                 }
-            }
 
-            /**
-             * The EE will return 0 when there is no more data left to pull from that table.
-             * The enclosing loop ensures that the next table is then addressed.
-             */
-            if (serialized[0] == 0) {
-                asyncTerminateReplicatedTableTasks(tableTasks);
-                // XXX: Guava's multimap will clear the tableTasks collection when the entry is
-                // removed from the containing map, so don't use the collection after removal!
-                taskIter.remove();
-                SNAP_LOG.debug("Finished snapshot tasks for table " + tableId +
-                               ": " + tableTasks);
-
-                // Return all allocated snapshot output buffers
-                for (BBContainer container : outputBuffers) {
-                    m_availableSnapshotBuffers.offer(container);
+                /**
+                 * The EE will return 0 when there is no more data left to pull from that table.
+                 * The enclosing loop ensures that the next table is then addressed.
+                 */
+                if (serialized[0] == 0) {
+                    asyncTerminateReplicatedTableTasks(tableTasks);
+                    // XXX: Guava's multimap will clear the tableTasks collection when the entry is
+                    // removed from the containing map, so don't use the collection after removal!
+                    taskIter.remove();
+                    SNAP_LOG.debug("Finished snapshot tasks for table " + tableId +
+                                   ": " + tableTasks);
+
+                    // Return all allocated snapshot output buffers
+                    for (BBContainer container : outputBuffers) {
+                        m_availableSnapshotBuffers.offer(container);
+                    }
+                    break;
+                } else {
+                    writeFutures.add(writeSnapshotBlocksToTargets(tableId, outputBuffers, serialized));
                 }
-            } else {
-                retval = writeSnapshotBlocksToTargets(tableId, outputBuffers, serialized);
-                break;
             }
         }
+        if (!writeFutures.isEmpty()) {
+            retval = writeFutures.size() == 1 ? writeFutures.get(0) : Futures.allAsList(writeFutures);
+            m_throttle.quantumCompleted(writeFutures.size(), System.nanoTime() - startTime);
+        }
 
         /**
          * If there are no more tasks then this particular EE is finished doing snapshot work
@@ -0,0 +1,250 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.iv2.SiteTaskerQueue;
+
+/**
+ * Paces the snapshot work of a site and reports how much latency it adds to
+ * transactions.
+ *
+ * A site serializes snapshot data a quantum of blocks at a time, and while
+ * it does, transactions queued behind it wait. With a target latency
+ * configured, the quantum and the delay between quanta adapt to the load of
+ * the site. When transactions are waiting and a quantum takes longer than the
+ * target, the quantum shrinks, and once it is down to a single block the
+ * delay grows so fewer transactions run into one. While the site is idle the
+ * delay shrinks and the quantum grows as long as it stays within the target.
+ * The delay never drops below the pace at which the disk hands buffers back,
+ * since serializing faster than that only queues up writes.
+ *
+ * Without a target latency the fixed snapshot priority paces the work as
+ * before, and only the statistics are kept.
+ *
+ * The quantum is adjusted by the site thread. Write latencies are reported
+ * by the threads completing the writes.
+ */
+public class SnapshotThrottle extends SiteStatsSource {
+
+    /** Most blocks serialized in one quantum, the size of the buffer pool */
+    static final int MAX_QUANTUM = SnapshotSiteProcessor.m_bufferCountMultiplier;
+    /** Longest delay between quanta in milliseconds */
+    static final long MAX_DELAY = 200;
+    /** A site idle less than this fraction of the time is busy even if its queue is empty */
+    static final double BUSY_IDLE_FRACTION = 0.2;
+
+    private final SiteTaskerQueue m_queue;
+    private final long m_targetLatency;
+
+    private volatile int m_quantum = 1;
+    private volatile long m_delay = 0;
+
+    // Moving average of the time writing a block takes, in nanoseconds
+    private volatile long m_writeLatency = 0;
+
+    // Share of the time the site was idle between the last two quanta
+    private double m_idleFraction = 1.0;
+    private long m_lastQuantumTime;
+    private long m_lastStarvedTime;
+
+    private long m_quanta = 0;
+    private long m_lastQuanta = 0;
+    // Quanta that finished with transactions waiting, and how long they kept them
+    private long m_waitingQuanta = 0;
+    private long m_lastWaitingQuanta = 0;
+    private long m_totalWait = 0;
+    private long m_lastTotalWait = 0;
+    private long m_maxWait = 0;
+    private long m_lastMaxWait = 0;
+
+    private boolean m_interval;
+
+    /**
+     * @param targetLatency milliseconds of latency snapshot work may add to a
+     * transaction, or 0 to pace snapshot work by the fixed priority
+     */
+    public SnapshotThrottle(long siteId, int targetLatency, SiteTaskerQueue queue) {
+        super(siteId, false);
+        m_targetLatency = TimeUnit.MILLISECONDS.toNanos(targetLatency);
+        m_queue = queue;
+        m_lastQuantumTime = System.nanoTime();
+    }
+
+    public boolean isAdaptive() {
+        return m_targetLatency > 0;
+    }
+
+    /**
+     * @return how many blocks to serialize before yielding the site
+     */
+    public int getQuantum() {
+        return isAdaptive() ? m_quantum : 1;
+    }
+
+    /**
+     * @return milliseconds to wait before the next quantum
+     */
+    public long getDelay() {
+        return m_delay;
+    }
+
+    /**
+     * Report that a block finished writing.
+     */
+    public void writeCompleted(long latency) {
+        // Racing writers may lose a sample, which the average can live with
+        final long average = m_writeLatency;
+        m_writeLatency = average == 0 ? latency : average + (latency - average) / 8;
+    }
+
+    /**
+     * Report a quantum of snapshot work done by the site thread and adjust
+     * the pacing of the following ones.
+     * @param blocks number of blocks serialized
+     * @param duration nanoseconds spent serializing them
+     */
+    public void quantumCompleted(int blocks, long duration) {
+        final long now = System.nanoTime();
+        final boolean waiting = m_queue.hasWaitingWork();
+        StarvationTracker tracker = m_queue.getStarvationTracker();
+        if (tracker != null) {
+            final long starvedTime = tracker.getStarvedTime();
+            final long elapsed = now - m_lastQuantumTime;
+            if (elapsed > 0) {
+                m_idleFraction = Math.min(1.0, (starvedTime - m_lastStarvedTime) / (double)elapsed);
+            }
+            m_lastStarvedTime = starvedTime;
+        }
+        m_lastQuantumTime = now;
+
+        m_quanta++;
+        if (waiting) {
+            m_waitingQuanta++;
+            m_totalWait += duration;
+            m_maxWait = Math.max(m_maxWait, duration);
+            m_lastMaxWait = Math.max(m_lastMaxWait, duration);
+        }
+
+        if (!isAdaptive()) {
+            return;
+        }
+
+        int quantum = m_quantum;
+        long delay = m_delay;
+        if (waiting || m_idleFraction < BUSY_IDLE_FRACTION) {
+            if (duration > m_targetLatency) {
+                if (quantum > 1) {
+                    quantum = Math.max(1, quantum / 2);
+                } else {
+                    delay = Math.min(MAX_DELAY, Math.max(1, delay * 2));
+                }
+            } else if (delay > 0) {
+                delay--;
+            }
+        } else {
+            delay /= 2;
+            final long blockTime = duration / blocks;
+            if (quantum < MAX_QUANTUM &&
+                blockTime * (quantum + 1) <= m_targetLatency &&
+                m_writeLatency <= m_targetLatency) {
+                quantum++;
+            }
+        }
+        final long diskDelay =
+            TimeUnit.NANOSECONDS.toMillis(m_writeLatency) * quantum / MAX_QUANTUM;
+        m_quantum = quantum;
+        m_delay = Math.min(MAX_DELAY, Math.max(delay, diskDelay));
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("TARGET_LATENCY", VoltType.INTEGER));
+        columns.add(new ColumnInfo("QUANTUM", VoltType.INTEGER));
+        columns.add(new ColumnInfo("DELAY", VoltType.INTEGER));
+        columns.add(new ColumnInfo("IDLE_PERCENT", VoltType.FLOAT));
+        columns.add(new ColumnInfo("WRITE_LATENCY", VoltType.BIGINT));
+        columns.add(new ColumnInfo("QUANTA", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WAITING_QUANTA", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG_WAIT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MAX_WAIT", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        long quanta = m_quanta;
+        long waitingQuanta = m_waitingQuanta;
+        long totalWait = m_totalWait;
+        long maxWait = m_maxWait;
+        if (m_interval) {
+            quanta = m_quanta - m_lastQuanta;
+            waitingQuanta = m_waitingQuanta - m_lastWaitingQuanta;
+            totalWait = m_totalWait - m_lastTotalWait;
+            maxWait = m_lastMaxWait;
+            m_lastQuanta = m_quanta;
+            m_lastWaitingQuanta = m_waitingQuanta;
+            m_lastTotalWait = m_totalWait;
+            m_lastMaxWait = 0;
+        }
+        rowValues[columnNameToIndex.get("TARGET_LATENCY")] =
+            (int)TimeUnit.NANOSECONDS.toMillis(m_targetLatency);
+        rowValues[columnNameToIndex.get("QUANTUM")] = getQuantum();
+        rowValues[columnNameToIndex.get("DELAY")] = (int)m_delay;
+        rowValues[columnNameToIndex.get("IDLE_PERCENT")] = m_idleFraction * 100.0;
+        rowValues[columnNameToIndex.get("WRITE_LATENCY")] = m_writeLatency / 1000;
+        rowValues[columnNameToIndex.get("QUANTA")] = quanta;
+        rowValues[columnNameToIndex.get("WAITING_QUANTA")] = waitingQuanta;
+        rowValues[columnNameToIndex.get("AVG_WAIT")] =
+            waitingQuanta > 0 ? (totalWait / waitingQuanta) / 1000 : 0L;
+        rowValues[columnNameToIndex.get("MAX_WAIT")] = maxWait / 1000;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(final boolean interval) {
+        m_interval = interval;
+        return new Iterator<Object>() {
+            boolean returnRow = true;
+            @Override
+            public boolean hasNext() {
+                return returnRow;
+            }
+
+            @Override
+            public Object next() {
+                if (returnRow) {
+                    returnRow = false;
+                    return new Object();
+                } else {
+                    return null;
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+        };
+    }
+}
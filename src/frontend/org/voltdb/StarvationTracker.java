@@ -81,6 +81,14 @@ public class StarvationTracker extends SiteStatsSource {
         m_lastMin = Math.min(m_lastMin, delta);
     }
 
+    /**
+     * Nanoseconds spent starved so far, not counting a starvation in progress.
+     * Only up to date for the thread reporting starvation.
+     */
+    public long getStarvedTime() {
+        return m_totalTime;
+    }
+
     @Override
     protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
         super.populateColumnSchema(columns);
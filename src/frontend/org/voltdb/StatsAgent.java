@@ -16,8 +16,8 @@
  */
 package org.voltdb;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.json_voltpatches.JSONObject;
 import org.voltcore.network.Connection;
@@ -26,20 +26,32 @@ import org.voltcore.utils.Pair;
 import org.voltdb.TheHashinator.HashinatorType;
 import org.voltdb.client.ClientResponse;
 
+import com.google.common.collect.ImmutableList;
+
 /**
  * Agent responsible for collecting stats on this host.
+ *
+ * The sources registered for each selector are kept as an immutable list
+ * that is replaced whenever a source is registered or dropped. Aggregation
+ * reads the current list without taking a lock, so any number of stats
+ * requests can aggregate at once and none of them wait on registration.
+ * Only changes to the lists are serialized.
  */
 public class StatsAgent extends OpsAgent
 {
-    private final HashMap<StatsSelector, HashMap<Long, ArrayList<StatsSource>>> registeredStatsSources =
-        new HashMap<StatsSelector, HashMap<Long, ArrayList<StatsSource>>>();
+    private final EnumMap<StatsSelector, AtomicReference<ImmutableList<StatsSource>>> registeredStatsSources =
+        new EnumMap<StatsSelector, AtomicReference<ImmutableList<StatsSource>>>(StatsSelector.class);
+    private final Object m_registrationLock = new Object();
+
+    private final StatsHistory m_history = new StatsHistory();
 
     public StatsAgent()
     {
         super("StatsAgent");
         StatsSelector selectors[] = StatsSelector.values();
         for (int ii = 0; ii < selectors.length; ii++) {
-            registeredStatsSources.put(selectors[ii], new HashMap<Long, ArrayList<StatsSource>>());
+            registeredStatsSources.put(selectors[ii],
+                    new AtomicReference<ImmutableList<StatsSource>>(ImmutableList.<StatsSource>of()));
         }
     }
 
@@ -86,10 +98,10 @@ public class StatsAgent extends OpsAgent
      * Need to release references to catalog related stats sources
      * to avoid hoarding references to the catalog.
      */
-    public synchronized void notifyOfCatalogUpdate() {
-        final HashMap<Long, ArrayList<StatsSource>> siteIdToStatsSources =
-            registeredStatsSources.get(StatsSelector.PROCEDURE);
-        siteIdToStatsSources.clear();
+    public void notifyOfCatalogUpdate() {
+        synchronized (m_registrationLock) {
+            registeredStatsSources.get(StatsSelector.PROCEDURE).set(ImmutableList.<StatsSource>of());
+        }
     }
 
     @Override
@@ -114,7 +126,10 @@ public class StatsAgent extends OpsAgent
 
         // Some selectors can provide a single answer based on global data.
         // Intercept them and respond before doing the distributed stuff.
-        if (subselector.equalsIgnoreCase("TOPO")) {
+        if (obj.has("historyFrom")) {
+            // History is kept on every host, fall through to the distributed stuff
+        }
+        else if (subselector.equalsIgnoreCase("TOPO")) {
             PendingOpsRequest psr = new PendingOpsRequest(
                 selector,
                 subselector,
@@ -148,10 +163,13 @@ public class StatsAgent extends OpsAgent
     // Parse the provided parameter set object and fill in subselector and interval into
     // the provided JSONObject.  If there's an error, return that in the String, otherwise
     // return null.  Yes, ugly.  Bang it out, then refactor later.
+    // A time range in milliseconds may follow the interval, which asks for the kept
+    // history of the selector instead of its current values.
     private String parseParamsForStatistics(ParameterSet params, JSONObject obj) throws Exception
     {
-        if ((params.toArray().length < 1) || (params.toArray().length > 2)) {
-            return "Incorrect number of arguments to @Statistics (expects 2, received " +
+        if ((params.toArray().length < 1) || (params.toArray().length > 4) ||
+            (params.toArray().length == 3)) {
+            return "Incorrect number of arguments to @Statistics (expects 1, 2, or 4 with a time range, received " +
                     params.toArray().length + ")";
         }
         Object first = params.toArray()[0];
@@ -170,12 +188,26 @@ public class StatsAgent extends OpsAgent
         }
 
         boolean interval = false;
-        if (params.toArray().length == 2) {
+        if (params.toArray().length >= 2) {
             interval = ((Number)(params.toArray()[1])).longValue() == 1L;
         }
         obj.put("subselector", subselector);
         obj.put("interval", interval);
 
+        if (params.toArray().length == 4) {
+            if (!(params.toArray()[2] instanceof Number) || !(params.toArray()[3] instanceof Number)) {
+                return "Time range arguments to @Statistics must be millisecond timestamps";
+            }
+            if (interval) {
+                return "History from @Statistics is cumulative, the interval argument must be 0";
+            }
+            if (!StatsHistory.isKept(StatsSelector.valueOf(subselector))) {
+                return "No history is kept for @Statistics selector " + subselector;
+            }
+            obj.put("historyFrom", ((Number)(params.toArray()[2])).longValue());
+            obj.put("historyTo", ((Number)(params.toArray()[3])).longValue());
+        }
+
         return null;
     }
 
@@ -242,6 +274,10 @@ public class StatsAgent extends OpsAgent
         String subselectorString = obj.getString("subselector");
         boolean interval = obj.getBoolean("interval");
         StatsSelector subselector = StatsSelector.valueOf(subselectorString);
+        if (obj.has("historyFrom")) {
+            VoltTable history = m_history.get(subselector, obj.getLong("historyFrom"), obj.getLong("historyTo"));
+            return history == null ? null : new VoltTable[] { history };
+        }
         switch (subselector) {
             case DR:
                 stats = collectDRStats();
@@ -277,6 +313,9 @@ public class StatsAgent extends OpsAgent
             case STARVATION:
                 stats = collectStarvationStats(interval);
                 break;
+            case SNAPSHOTTHROTTLE:
+                stats = collectSnapshotThrottleStats(interval);
+                break;
             case PLANNER:
                 stats = collectPlannerStats(interval);
                 break;
@@ -445,6 +484,19 @@ public class StatsAgent extends OpsAgent
         return stats;
     }
 
+    private VoltTable[] collectSnapshotThrottleStats(boolean interval)
+    {
+        Long now = System.currentTimeMillis();
+        VoltTable[] stats = null;
+
+        VoltTable tStats = getStatsAggregate(StatsSelector.SNAPSHOTTHROTTLE, interval, now);
+        if (tStats != null) {
+            stats = new VoltTable[1];
+            stats[0] = tStats;
+        }
+        return stats;
+    }
+
     private VoltTable[] collectPlannerStats(boolean interval)
     {
         Long now = System.currentTimeMillis();
@@ -519,17 +571,37 @@ public class StatsAgent extends OpsAgent
         return stats;
     }
 
-    public synchronized void registerStatsSource(StatsSelector selector, long siteId, StatsSource source) {
+    /**
+     * Take a sample of every selector that keeps history. Called periodically,
+     * every StatsHistory.SAMPLE_INTERVAL_MS.
+     */
+    public void sampleHistory()
+    {
+        final Long now = System.currentTimeMillis();
+        for (StatsSelector selector : StatsHistory.SELECTORS) {
+            VoltTable table = getStatsAggregate(selector, false, now);
+            if (table == null) {
+                continue;
+            }
+            try {
+                m_history.add(selector, now, table);
+            } catch (Exception e) {
+                hostLog.warn("Unable to keep history of " + selector + " statistics", e);
+            }
+        }
+    }
+
+    public void registerStatsSource(StatsSelector selector, long siteId, StatsSource source) {
         assert selector != null;
         assert source != null;
-        final HashMap<Long, ArrayList<StatsSource>> siteIdToStatsSources = registeredStatsSources.get(selector);
-        assert siteIdToStatsSources != null;
-        ArrayList<StatsSource> statsSources = siteIdToStatsSources.get(siteId);
-        if (statsSources == null) {
-            statsSources = new ArrayList<StatsSource>();
-            siteIdToStatsSources.put(siteId, statsSources);
-        }
-        statsSources.add(source);
+        final AtomicReference<ImmutableList<StatsSource>> statsSources = registeredStatsSources.get(selector);
+        assert statsSources != null;
+        synchronized (m_registrationLock) {
+            statsSources.set(ImmutableList.<StatsSource>builder()
+                    .addAll(statsSources.get())
+                    .add(source)
+                    .build());
+        }
     }
 
     /**
@@ -537,35 +609,25 @@ public class StatsAgent extends OpsAgent
      * If you need both site-wise and node-wise stats, register the appropriate StatsSources for that
      * selector with each siteId and then some other value for the node-level stats (PLANNER stats uses -1).
      * This call will automagically aggregate every StatsSource registered for every 'site'ID for that selector.
+     * It takes no lock of its own and may be called by many threads at once.
      *
      * @param selector    @Statistics selector keyword
      * @param interval    true if processing a reporting interval
      * @param now         current timestamp
      * @return  statistics VoltTable results
      */
-    public synchronized VoltTable getStatsAggregate(
+    public VoltTable getStatsAggregate(
             final StatsSelector selector,
             final boolean interval,
             final Long now) {
-        return getStatsAggregateInternal(selector, interval, now, null);
-    }
-
-    private synchronized VoltTable getStatsAggregateInternal(
-            final StatsSelector selector,
-            final boolean interval,
-            final Long now,
-            VoltTable prevResults)
-    {
         assert selector != null;
-        final HashMap<Long, ArrayList<StatsSource>> siteIdToStatsSources = registeredStatsSources.get(selector);
+        final ImmutableList<StatsSource> statsSources = registeredStatsSources.get(selector).get();
 
         // There are cases early in rejoin where we can get polled before the server is ready to provide
         // stats.  Just return null for now, which will result in no tables from this node.
-        if (siteIdToStatsSources == null || siteIdToStatsSources.isEmpty()) {
+        if (statsSources.isEmpty()) {
             return null;
         }
-        // Just need a random site's list to do some things
-        ArrayList<StatsSource> sSources = siteIdToStatsSources.entrySet().iterator().next().getValue();
 
         /*
          * Some sources like TableStats use VoltTable to keep track of
@@ -573,10 +635,10 @@ public class StatsAgent extends OpsAgent
          * case.
          */
         VoltTable.ColumnInfo columns[] = null;
-        if (!sSources.get(0).isEEStats())
-            columns = sSources.get(0).getColumnSchema().toArray(new VoltTable.ColumnInfo[0]);
+        if (!statsSources.get(0).isEEStats())
+            columns = statsSources.get(0).getColumnSchema().toArray(new VoltTable.ColumnInfo[0]);
         else {
-            final VoltTable table = sSources.get(0).getStatsTable();
+            final VoltTable table = statsSources.get(0).getStatsTable();
             if (table == null)
                 return null;
             columns = new VoltTable.ColumnInfo[table.getColumnCount()];
@@ -585,32 +647,30 @@ public class StatsAgent extends OpsAgent
                                                       table.getColumnType(i));
         }
 
-         // Append to previous results if provided.
-        final VoltTable resultTable = prevResults != null ? prevResults : new VoltTable(columns);
-
-        for (ArrayList<StatsSource> statsSources : siteIdToStatsSources.values()) {
-            assert statsSources != null;
-            for (final StatsSource ss : statsSources) {
-                assert ss != null;
-                /*
-                 * Some sources like TableStats use VoltTable to keep track of
-                 * statistics
-                 */
-                if (ss.isEEStats()) {
-                    final VoltTable table = ss.getStatsTable();
-                    // this table can be null during recovery, at least
-                    if (table != null) {
-                        while (table.advanceRow()) {
-                            resultTable.add(table);
-                        }
-                        table.resetRowPosition();
-                    }
-                } else {
-                    Object statsRows[][] = ss.getStatsRows(interval, now);
-                    for (Object[] row : statsRows) {
-                        resultTable.addRow(row);
+        final VoltTable resultTable = new VoltTable(columns);
+
+        for (final StatsSource ss : statsSources) {
+            assert ss != null;
+            /*
+             * Some sources like TableStats use VoltTable to keep track of
+             * statistics
+             */
+            if (ss.isEEStats()) {
+                final VoltTable table = ss.getStatsTable();
+                // this table can be null during recovery, at least
+                if (table != null) {
+                    // Read through a private view, other requests may be reading the same table
+                    final VoltTable view =
+                        PrivateVoltTableFactory.createVoltTableFromBuffer(table.getBuffer(), true);
+                    while (view.advanceRow()) {
+                        resultTable.add(view);
                     }
                 }
+            } else {
+                Object statsRows[][] = ss.getStatsRows(interval, now);
+                for (Object[] row : statsRows) {
+                    resultTable.addRow(row);
+                }
             }
         }
         return resultTable;
@@ -0,0 +1,263 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.voltdb.utils.CompressionService;
+
+/**
+ * Bounded in-memory history of the statistics tables of this host, kept
+ * per selector. Samples are taken by StatsAgent.sampleHistory() on a fixed
+ * interval. The newest FINE_SAMPLES samples are all kept; as they age out,
+ * every COARSE_EVERY-th sample moves to a second buffer holding
+ * COARSE_SAMPLES more, so by default there is one sample a second for the
+ * last hour and one a minute for the day before that. Counters in the
+ * tables are cumulative, so the rate between any two kept samples can
+ * still be computed after downsampling.
+ *
+ * To stay compact, every sample that will be kept as a coarse sample is a
+ * keyframe and is stored as the serialized table compressed with Snappy.
+ * The samples in between are stored as the XOR of their serialized table
+ * with the preceding keyframe, compressed. The layout of a stats table
+ * rarely changes between samples and most counters of an idle system
+ * don't move, so the XOR is mostly zeros.
+ *
+ * There is one series per selector for the whole host, not one per site. A
+ * sample holds the rows of every site on the host, each with its SITE_ID,
+ * so one site's history can be picked out of the result but is always kept
+ * and returned together with the others.
+ */
+public class StatsHistory {
+
+    /** Milliseconds between samples */
+    public static final int SAMPLE_INTERVAL_MS = Integer.getInteger("STATS_HISTORY_INTERVAL_MS", 1000);
+    /** Number of samples kept at full resolution */
+    public static final int FINE_SAMPLES = Integer.getInteger("STATS_HISTORY_FINE_SAMPLES", 3600);
+    /** One of this many samples is kept once it ages out of the fine buffer */
+    public static final int COARSE_EVERY = 60;
+    /** Number of downsampled samples kept after the fine ones */
+    public static final int COARSE_SAMPLES = Integer.getInteger("STATS_HISTORY_COARSE_SAMPLES", 1440);
+
+    /** Largest serialized table a history query will return */
+    static final int MAX_RESULT_BYTES = 32 * 1024 * 1024;
+
+    /**
+     * Selectors with history. These track throughput and latency and are
+     * small enough to sample every second.
+     */
+    static final StatsSelector[] SELECTORS = new StatsSelector[] {
+        StatsSelector.MEMORY,
+        StatsSelector.IOSTATS,
+        StatsSelector.INITIATOR,
+        StatsSelector.PROCEDURE,
+        StatsSelector.STARVATION,
+        StatsSelector.PLANNER,
+        StatsSelector.LIVECLIENTS
+    };
+
+    private static class Sample {
+        final long timestamp;
+        final int length;
+        final byte[] compressed;
+        // Keyframe this sample is XORed with, null for keyframes
+        final Sample keyframe;
+
+        Sample(long timestamp, int length, byte[] compressed, Sample keyframe) {
+            this.timestamp = timestamp;
+            this.length = length;
+            this.compressed = compressed;
+            this.keyframe = keyframe;
+        }
+    }
+
+    private static class Series {
+        final ArrayDeque<Sample> fine = new ArrayDeque<Sample>();
+        final ArrayDeque<Sample> coarse = new ArrayDeque<Sample>();
+        Sample lastKeyframe = null;
+        long added = 0;
+    }
+
+    private final int m_fineSamples;
+    private final int m_coarseEvery;
+    private final int m_coarseSamples;
+    private final EnumMap<StatsSelector, Series> m_series =
+        new EnumMap<StatsSelector, Series>(StatsSelector.class);
+
+    public StatsHistory() {
+        this(FINE_SAMPLES, COARSE_EVERY, COARSE_SAMPLES);
+    }
+
+    StatsHistory(int fineSamples, int coarseEvery, int coarseSamples) {
+        m_fineSamples = fineSamples;
+        m_coarseEvery = coarseEvery;
+        m_coarseSamples = coarseSamples;
+        for (StatsSelector selector : SELECTORS) {
+            m_series.put(selector, new Series());
+        }
+    }
+
+    public static boolean isKept(StatsSelector selector) {
+        for (StatsSelector s : SELECTORS) {
+            if (s == selector) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add a sample of a selector's table taken at the given time.
+     */
+    public synchronized void add(StatsSelector selector, long timestamp, VoltTable table) throws IOException {
+        Series series = m_series.get(selector);
+        if (series == null) {
+            throw new IllegalArgumentException("No history is kept for selector " + selector);
+        }
+
+        ByteBuffer buf = table.getBuffer();
+        byte[] raw = new byte[buf.remaining()];
+        buf.get(raw);
+
+        Sample sample;
+        if (series.added % m_coarseEvery == 0) {
+            sample = new Sample(timestamp, raw.length, CompressionService.compressBytes(raw), null);
+            series.lastKeyframe = sample;
+        }
+        else {
+            byte[] base = CompressionService.decompressBytes(series.lastKeyframe.compressed);
+            xor(raw, base);
+            sample = new Sample(timestamp, raw.length, CompressionService.compressBytes(raw), series.lastKeyframe);
+        }
+        series.added++;
+
+        series.fine.addLast(sample);
+        if (series.fine.size() > m_fineSamples) {
+            Sample aged = series.fine.removeFirst();
+            if (aged.keyframe == null) {
+                series.coarse.addLast(aged);
+                if (series.coarse.size() > m_coarseSamples) {
+                    series.coarse.removeFirst();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get every kept sample of a selector taken within [from, to], as one
+     * table in time order. Rows keep the schema of the selector, and the
+     * TIMESTAMP column of each row is the time of its sample. If the
+     * samples in range would exceed MAX_RESULT_BYTES, the oldest are left
+     * out.
+     * @return the samples, or null if no sample of the selector was ever taken
+     */
+    public VoltTable get(StatsSelector selector, long from, long to) throws IOException {
+        List<Sample> samples = new ArrayList<Sample>();
+        Sample newest = null;
+        synchronized (this) {
+            Series series = m_series.get(selector);
+            if (series == null) {
+                throw new IllegalArgumentException("No history is kept for selector " + selector);
+            }
+            newest = series.fine.peekLast();
+            addInRange(samples, series.coarse, from, to);
+            addInRange(samples, series.fine, from, to);
+        }
+        if (newest == null) {
+            return null;
+        }
+
+        // Keep the newest samples that fit
+        int first = samples.size();
+        long bytes = 0;
+        while (first > 0 && bytes + samples.get(first - 1).length <= MAX_RESULT_BYTES) {
+            bytes += samples.get(first - 1).length;
+            first--;
+        }
+
+        Map<Sample, byte[]> keyframes = new IdentityHashMap<Sample, byte[]>();
+        VoltTable result = null;
+        for (int i = first; i < samples.size(); i++) {
+            VoltTable table = decode(samples.get(i), keyframes);
+            if (result == null) {
+                result = table.clone((int)bytes);
+            }
+            else if (!sameSchema(result, table)) {
+                // The stats source changed, only report the newest layout
+                result = table.clone(0);
+            }
+            while (table.advanceRow()) {
+                result.add(table);
+            }
+        }
+        if (result == null) {
+            result = decode(newest, keyframes).clone(0);
+        }
+        return result;
+    }
+
+    private static void addInRange(List<Sample> out, ArrayDeque<Sample> samples, long from, long to) {
+        Iterator<Sample> iter = samples.iterator();
+        while (iter.hasNext()) {
+            Sample sample = iter.next();
+            if (sample.timestamp >= from && sample.timestamp <= to) {
+                out.add(sample);
+            }
+        }
+    }
+
+    private static VoltTable decode(Sample sample, Map<Sample, byte[]> keyframes) throws IOException {
+        byte[] raw = CompressionService.decompressBytes(sample.compressed);
+        if (sample.keyframe != null) {
+            byte[] base = keyframes.get(sample.keyframe);
+            if (base == null) {
+                base = CompressionService.decompressBytes(sample.keyframe.compressed);
+                keyframes.put(sample.keyframe, base);
+            }
+            xor(raw, base);
+        }
+        return PrivateVoltTableFactory.createVoltTableFromBuffer(ByteBuffer.wrap(raw), true);
+    }
+
+    private static void xor(byte[] target, byte[] base) {
+        final int length = Math.min(target.length, base.length);
+        for (int i = 0; i < length; i++) {
+            target[i] ^= base[i];
+        }
+    }
+
+    private static boolean sameSchema(VoltTable a, VoltTable b) {
+        if (a.getColumnCount() != b.getColumnCount()) {
+            return false;
+        }
+        for (int i = 0; i < a.getColumnCount(); i++) {
+            if (a.getColumnType(i) != b.getColumnType(i) ||
+                !a.getColumnName(i).equals(b.getColumnName(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -31,6 +31,7 @@ public enum StatsSelector {
     MANAGEMENT,       // Returns pretty much everything
     PROCEDUREPROFILE, // performs an aggregation of the procedure statistics
     SNAPSHOTSTATUS,
+    SNAPSHOTTHROTTLE, // pacing of snapshot work and the latency it adds
 
     /*
      * DRPARTITION and DRNODE are internal names
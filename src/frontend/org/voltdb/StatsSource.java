@@ -32,7 +32,7 @@ public abstract class StatsSource {
      * Statistics from ee are already formatted in VoltTable
      */
     private final boolean m_isEEStats;
-    private VoltTable m_table = null;
+    private volatile VoltTable m_table = null;
 
     /**
      * Column schema for statistical result rows
@@ -110,11 +110,11 @@ public abstract class StatsSource {
      * @return Array of Arrays of objects containing the latest values
      */
     public Object[][] getStatsRows(boolean interval, final Long now) {
-        this.now = now;
         /*
          * Synchronizing on this allows derived classes to maintain thread safety
          */
         synchronized (this) {
+            this.now = now;
             Iterator<Object> i = getStatsRowKeyIterator(interval);
             ArrayList<Object[]> rows = new ArrayList<Object[]>();
             while (i.hasNext()) {
@@ -270,15 +270,7 @@ public class StoredProcedureInvocation implements FastSerializable, JSONString {
         procName = in.readString().intern();
         clientHandle = in.readLong();
         // do not deserialize parameters in ClientInterface context
-        serializedParams = in.remainder();
-        final ByteBuffer duplicate = serializedParams.duplicate();
-        params = new FutureTask<ParameterSet>(new Callable<ParameterSet>() {
-            @Override
-            public ParameterSet call() throws Exception {
-                FastDeserializer fds = new FastDeserializer(duplicate);
-                return ParameterSet.fromFastDeserializer(fds);
-            }
-        });
+        setLazyParams(in.remainder());
     }
 
     @Override
@@ -299,7 +291,26 @@ public class StoredProcedureInvocation implements FastSerializable, JSONString {
         procName = in.readString().intern();
         clientHandle = in.readLong();
         // do not deserialize parameters in ClientInterface context
-        serializedParams = in.remainder();
+        setLazyParams(in.remainder());
+    }
+
+    /**
+     * Give the invocation a heap copy of its serialized parameters. For an
+     * invocation read from a buffer that is reused once the read returns, such
+     * as a pooled network read buffer. Must be called before the parameters
+     * are deserialized.
+     */
+    public void copySerializedParams() {
+        if (serializedParams != null) {
+            ByteBuffer copy = ByteBuffer.allocate(serializedParams.remaining());
+            copy.put(serializedParams.duplicate());
+            copy.flip();
+            setLazyParams(copy);
+        }
+    }
+
+    private void setLazyParams(ByteBuffer buf) {
+        serializedParams = buf;
         final ByteBuffer duplicate = serializedParams.duplicate();
         params = new FutureTask<ParameterSet>(new Callable<ParameterSet>() {
             @Override
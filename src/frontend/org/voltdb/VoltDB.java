@@ -36,6 +36,7 @@ import java.util.TimeZone;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.messaging.HostMessenger;
 import org.voltcore.utils.PortGenerator;
+import org.voltdb.iv2.Iv2TraceRing;
 import org.voltdb.types.TimestampType;
 import org.voltdb.utils.MiscUtils;
 import org.voltdb.utils.PlatformProperties;
@@ -768,6 +769,10 @@ public class VoltDB {
 
                     printStackTraces(writer, currentStacktrace);
                     writer.close();
+
+                    // Keep the last transaction events of every site next to the dump
+                    Iv2TraceRing.dump(new File(root + "voltdb_crash" + ts.toString().replace(' ', '-') + ".iv2trace"),
+                                      Iv2TraceRing.getRings());
                 }
                 catch (Throwable err)
                 {
@@ -0,0 +1,140 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+/**
+ * Limits the transactions outstanding on one connection so that a percentile
+ * of their round trip latency stays at a target, admitting as many
+ * transactions as the target allows.
+ *
+ * The limit is adjusted once per interval using the latencies of the
+ * responses received in it (additive increase, multiplicative decrease). It
+ * is cut when the percentile is over the target or the connection ran into
+ * backpressure, and grows when the percentile is under the target and the
+ * limit was actually reached. Until the first cut the limit doubles instead
+ * of growing linearly, so it ramps up quickly from a cold start.
+ * Transactions sent before a cut don't count towards the percentile after
+ * it, since their latency reflects the old limit.
+ */
+class AdaptiveLimiter {
+
+    static final int INTERVAL = 100; // ms
+    static final int MIN_SAMPLES = 20;
+    static final int INITIAL_LIMIT = 20;
+    static final int INCREASE = 5;
+    static final double DECREASE = 0.75;
+
+    private final int m_targetLatency;
+    private final double m_percentile;
+    private final int m_maxLimit;
+
+    private int m_limit;
+    private int m_outstanding = 0;
+    private boolean m_slowStart = true;
+
+    private long m_intervalStart = -1;
+    private long m_lastDecrease = -1;
+    private boolean m_limitReached = false;
+    private boolean m_backpressure = false;
+    // Latencies of the responses received in the current interval
+    private ClientStats m_interval = new ClientStats();
+
+    /**
+     * @param targetLatency milliseconds of round trip latency to stay under
+     * @param percentile share of the transactions that should meet the target
+     * @param maxLimit most transactions the limit will ever allow outstanding
+     */
+    AdaptiveLimiter(int targetLatency, double percentile, int maxLimit) {
+        m_targetLatency = targetLatency;
+        m_percentile = percentile;
+        m_maxLimit = maxLimit;
+        m_limit = Math.min(INITIAL_LIMIT, maxLimit);
+    }
+
+    synchronized int getLimit() {
+        return m_limit;
+    }
+
+    /**
+     * Wait until the connection is under its limit, then count a new
+     * outstanding transaction.
+     * @param timestamp The time as measured when the call is made.
+     * @param ignoreBackpressure If true, never block.
+     * @return The time as measured when the call returns.
+     */
+    synchronized long sendTxnWithOptionalBlockAndReturnCurrentTime(long timestamp, boolean ignoreBackpressure) {
+        if (m_outstanding >= m_limit && !ignoreBackpressure) {
+            while (m_outstanding >= m_limit) {
+                try { wait(INTERVAL); } catch (InterruptedException e) {}
+            }
+            timestamp = System.currentTimeMillis();
+        }
+        if (++m_outstanding >= m_limit) {
+            m_limitReached = true;
+        }
+        return timestamp;
+    }
+
+    /**
+     * Count a transaction as done, ending the interval if it is over.
+     * @param roundTrip milliseconds the transaction took, or -1 if it never
+     * got a response
+     */
+    synchronized void transactionResponseReceived(long timestamp, int roundTrip) {
+        --m_outstanding;
+        assert(m_outstanding >= 0);
+        adjustLimit(timestamp);
+        if (roundTrip >= 0 && timestamp - roundTrip >= m_lastDecrease) {
+            m_interval.update(roundTrip, roundTrip, 0, false, false);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Report that the connection has more queued up than the network can
+     * take. The limit is cut at the end of the interval.
+     */
+    synchronized void backpressure() {
+        m_backpressure = true;
+    }
+
+    private void adjustLimit(long timestamp) {
+        if (m_intervalStart == -1) {
+            m_intervalStart = timestamp;
+        }
+        if (timestamp - m_intervalStart < INTERVAL ||
+            (m_interval.getInvocationsCompleted() < MIN_SAMPLES && !m_backpressure)) {
+            return;
+        }
+
+        if (m_backpressure ||
+            (m_interval.getInvocationsCompleted() >= MIN_SAMPLES &&
+             m_interval.kPercentileLatency(m_percentile) > m_targetLatency)) {
+            m_limit = Math.max(1, (int)(m_limit * DECREASE));
+            m_slowStart = false;
+            m_lastDecrease = timestamp;
+        } else if (m_limitReached) {
+            m_limit = Math.min(m_maxLimit, m_slowStart ? m_limit * 2 : m_limit + INCREASE);
+        }
+
+        m_intervalStart = timestamp;
+        m_limitReached = false;
+        m_backpressure = false;
+        m_interval = new ClientStats();
+    }
+}
@@ -121,6 +121,24 @@ public interface Client {
     public boolean callProcedure(ProcedureCallback callback, String procName, Object... parameters)
     throws IOException, NoConnectionsException;
 
+    /**
+     * Asynchronously invoke a batch of procedures. Invocations bound for the same
+     * connection are sent to the server in a single message, which saves per-message
+     * work on both ends when there are many small transactions. Each invocation is
+     * still its own transaction and its callback is invoked with its own response.
+     * The whole batch is queued or none of it is. If there is backpressure
+     * this call will block until the batch is queued. If configureBlocking(false) is invoked
+     * then it will return immediately. Check the return value to determine if queuing actually took place.
+     * Servers that predate batches can't read them.
+     * @param callbacks ProcedureCallbacks that will be invoked with the results of each procedure,
+     *                  null entries discard the results.
+     * @param procNames class names (not qualified by package) of the procedures to execute.
+     * @param parameters list of parameter values for each procedure.
+     * @return <code>true</code> if the batch was queued and <code>false</code> otherwise
+     */
+    public boolean callProcedures(ProcedureCallback callbacks[], String procNames[], Object[]... parameters)
+    throws IOException, NoConnectionsException;
+
     /**
      * Deprecated because hinting at the serialized size no longer has any effect
      *
@@ -37,6 +37,11 @@ public class ClientConfig {
     long m_procedureCallTimeoutMS = DEFAULT_PROCEDURE_TIMOUT_MS;
     long m_connectionResponseTimeoutMS = DEFAULT_CONNECTION_TIMOUT_MS;
     boolean m_useClientAffinity = true;
+    boolean m_useEPoll = false;
+    int m_busyPollMicros = 0;
+    int m_callbackThreads = 0;
+    int m_adaptiveTargetLatency = 0;
+    double m_adaptivePercentile = 0.99;
 
     /**
      * Configuration for a client with no authentication credentials that will
@@ -166,6 +171,41 @@ public class ClientConfig {
         m_heavyweight = heavyweight;
     }
 
+    /**
+     * By default responses are deserialized and callbacks invoked by the network thread
+     * that read them, so slow callbacks or large results hold up reading from the
+     * connection. With callback threads the network threads only read, and each
+     * connection's responses are handed to one of the callback threads, which
+     * deserializes them and invokes their callbacks in the order they arrived.
+     * {@link ClientStats#getAverageCallbackQueueTime()} reports how long responses
+     * waited for a callback thread.
+     * @param threads Number of callback threads, 0 to use the network threads.
+     */
+    public void setCallbackThreads(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException(
+                    "Callback thread count must not be negative, " + threads + " was specified");
+        }
+        m_callbackThreads = threads;
+    }
+
+    /**
+     * Do network IO with Linux epoll in edge triggered mode instead of the JDK selector.
+     * Falls back to the JDK selector where epoll can't be used. For latency sensitive
+     * clients the network threads can busy poll for a while before blocking, at the
+     * cost of a core spinning while the client is idle.
+     * @param on Whether to use epoll.
+     * @param busyPollMicros Microseconds to poll without blocking, 0 to not busy poll.
+     */
+    public void setEPoll(boolean on, int busyPollMicros) {
+        if (busyPollMicros < 0) {
+            throw new IllegalArgumentException(
+                    "Busy poll time must not be negative, " + busyPollMicros + " was specified");
+        }
+        m_useEPoll = on;
+        m_busyPollMicros = busyPollMicros;
+    }
+
     /**
      * Deprecated and has no effect
      * Provide a hint indicating how large messages will be once serialized. Ensures
@@ -216,6 +256,39 @@ public class ClientConfig {
         m_autoTune = true;
     }
 
+    /**
+     * Enable adaptive limiting of outstanding transactions, with a target for
+     * the 99th percentile of round trip latency.
+     * {@see ClientConfig#enableAdaptiveLimiting(int, double) enableAdaptiveLimiting}
+     * @param targetLatency Target round trip latency in milliseconds.
+     */
+    public void enableAdaptiveLimiting(int targetLatency) {
+        enableAdaptiveLimiting(targetLatency, 0.99);
+    }
+
+    /**
+     * Enable adaptive limiting of outstanding transactions, which keeps a percentile
+     * of round trip latency, as measured by the client, at a target. Each connection
+     * gets its own limit, which grows while latency is under the target and is cut
+     * when latency goes over it or the connection runs into backpressure. Calls block
+     * while a connection is at its limit. The limit never exceeds the maximum set
+     * with {@link #setMaxOutstandingTxns(int)}, and the other limits still apply.
+     * @param targetLatency Target round trip latency in milliseconds.
+     * @param percentile Share of the transactions that should meet the target, in (0.0, 1.0].
+     */
+    public void enableAdaptiveLimiting(int targetLatency, double percentile) {
+        if (targetLatency < 1) {
+            throw new IllegalArgumentException(
+                    "Adaptive target latency must be greater than 0, " + targetLatency + " was specified");
+        }
+        if (percentile <= 0.0 || percentile > 1.0) {
+            throw new IllegalArgumentException(
+                    "Adaptive latency percentile must be in (0.0, 1.0], " + percentile + " was specified");
+        }
+        m_adaptiveTargetLatency = targetLatency;
+        m_adaptivePercentile = percentile;
+    }
+
     /**
      * Only works with IV2 enabled, is on by default and harmless if IV2 is not enable.
      *
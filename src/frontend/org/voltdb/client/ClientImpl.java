@@ -90,7 +90,10 @@ public final class ClientImpl implements Client, ReplicaProcCaller {
                 config.m_heavyweight,
                 config.m_procedureCallTimeoutMS,
                 config.m_connectionResponseTimeoutMS,
-                config.m_useClientAffinity);
+                config.m_useClientAffinity,
+                config.m_useEPoll,
+                config.m_busyPollMicros,
+                config.m_callbackThreads);
         m_distributer.addClientStatusListener(new CSL());
         m_username = config.m_username;
 
@@ -112,6 +115,10 @@ public final class ClientImpl implements Client, ReplicaProcCaller {
             m_distributer.m_rateLimiter.setLimits(
                     config.m_maxTransactionsPerSecond, config.m_maxOutstandingTxns);
         }
+        if (config.m_adaptiveTargetLatency > 0) {
+            m_distributer.enableAdaptiveLimiting(config.m_adaptiveTargetLatency,
+                    config.m_adaptivePercentile, config.m_maxOutstandingTxns);
+        }
     }
 
     private boolean verifyCredentialsAreAlwaysTheSame(String username, byte[] hashedPassword) {
@@ -345,6 +352,56 @@ public final class ClientImpl implements Client, ReplicaProcCaller {
         }
     }
 
+    @Override
+    public final boolean callProcedures(
+            ProcedureCallback callbacks[],
+            String procNames[],
+            Object[]... parameters)
+            throws NoConnectionsException, IOException {
+        if (callbacks.length != procNames.length || procNames.length != parameters.length) {
+            throw new IllegalArgumentException("Batch has " + callbacks.length + " callbacks, " +
+                    procNames.length + " procedures and " + parameters.length + " parameter lists");
+        }
+        if (m_isShutdown) {
+            return false;
+        }
+
+        final ProcedureInvocation invocations[] = new ProcedureInvocation[procNames.length];
+        final ProcedureCallback batchCallbacks[] = new ProcedureCallback[procNames.length];
+        for (int ii = 0; ii < procNames.length; ii++) {
+            ProcedureCallback callback = callbacks[ii];
+            if (callback == null) {
+                callback = new NullCallback();
+            } else if (callback instanceof ProcedureArgumentCacher) {
+                ((ProcedureArgumentCacher)callback).setArgs(parameters[ii]);
+            }
+            batchCallbacks[ii] = callback;
+            invocations[ii] =
+                new ProcedureInvocation(m_handle.getAndIncrement(), procNames[ii], parameters[ii]);
+        }
+
+        //Blessed threads (the ones that invoke callbacks) are not subject to backpressure
+        boolean isBlessed = m_blessedThreadIds.contains(Thread.currentThread().getId());
+        if (m_blockingQueue) {
+            while (!m_distributer.queueBatch(
+                    invocations,
+                    batchCallbacks,
+                    isBlessed)) {
+                try {
+                    backpressureBarrier();
+                } catch (InterruptedException e) {
+                    throw new java.io.InterruptedIOException("Interrupted while invoking procedures asynchronously");
+                }
+            }
+            return true;
+        } else {
+            return m_distributer.queueBatch(
+                    invocations,
+                    batchCallbacks,
+                    isBlessed);
+        }
+    }
+
     /**
      * Serializes catalog and deployment file for UpdateApplicationCatalog.
      * Catalog is serialized into byte array, deployment file is serialized into
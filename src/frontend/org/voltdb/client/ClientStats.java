@@ -54,6 +54,8 @@ public class ClientStats {
     // cumulative latency measured by the cluster, used to calculate avg lat.
     long m_clusterRoundTripTime; // microsecs
 
+    long m_callbackQueueTime; // microsecs
+
     /** The number of buckets tracking latency with 1ms granularity. */
     final public static int ONE_MS_BUCKET_COUNT = 50;
     /** The number of buckets tracking latency with 10ms granularity. */
@@ -77,6 +79,7 @@ public class ClientStats {
         m_endTS = Long.MIN_VALUE;
         m_invocationsCompleted = m_invocationAborts = m_invocationErrors = 0;
         m_roundTripTime = m_clusterRoundTripTime = 0;
+        m_callbackQueueTime = 0;
         m_latencyBy1ms = new LatencyBucketSet(1, ONE_MS_BUCKET_COUNT);
         m_latencyBy10ms = new LatencyBucketSet(10, TEN_MS_BUCKET_COUNT);
         m_latencyBy100ms = new LatencyBucketSet(100, HUNDRED_MS_BUCKET_COUNT);
@@ -95,6 +98,7 @@ public class ClientStats {
         m_invocationErrors = other.m_invocationErrors;
         m_roundTripTime = other.m_roundTripTime;
         m_clusterRoundTripTime = other.m_clusterRoundTripTime;
+        m_callbackQueueTime = other.m_callbackQueueTime;
         m_latencyBy1ms = (LatencyBucketSet) other.m_latencyBy1ms.clone();
         m_latencyBy10ms = (LatencyBucketSet) other.m_latencyBy10ms.clone();
         m_latencyBy100ms = (LatencyBucketSet) other.m_latencyBy100ms.clone();
@@ -124,6 +128,7 @@ public class ClientStats {
 
         retval.m_roundTripTime = newer.m_roundTripTime - older.m_roundTripTime;
         retval.m_clusterRoundTripTime = newer.m_clusterRoundTripTime - older.m_clusterRoundTripTime;
+        retval.m_callbackQueueTime = newer.m_callbackQueueTime - older.m_callbackQueueTime;
 
         retval.m_latencyBy1ms = LatencyBucketSet.diff(newer.m_latencyBy1ms, older.m_latencyBy1ms);
         retval.m_latencyBy10ms = LatencyBucketSet.diff(newer.m_latencyBy10ms, older.m_latencyBy10ms);
@@ -173,6 +178,7 @@ public class ClientStats {
 
         m_roundTripTime += other.m_roundTripTime;
         m_clusterRoundTripTime += other.m_clusterRoundTripTime;
+        m_callbackQueueTime += other.m_callbackQueueTime;
 
         m_latencyBy1ms.add(other.m_latencyBy1ms);
         m_latencyBy10ms.add(other.m_latencyBy10ms);
@@ -182,12 +188,14 @@ public class ClientStats {
         m_bytesReceived += other.m_bytesReceived;
     }
 
-    void update(int roundTripTime, int clusterRoundTripTime, boolean abort, boolean error) {
+    void update(int roundTripTime, int clusterRoundTripTime, long callbackQueueTime,
+                boolean abort, boolean error) {
         m_invocationsCompleted++;
         if (abort) m_invocationAborts++;
         if (error) m_invocationErrors++;
         m_roundTripTime += roundTripTime;
         m_clusterRoundTripTime += clusterRoundTripTime;
+        m_callbackQueueTime += callbackQueueTime;
 
         // calculate the latency buckets to increment and increment.
         m_latencyBy1ms.update(roundTripTime);
@@ -329,6 +337,21 @@ public class ClientStats {
         return (double)m_clusterRoundTripTime / (double)m_invocationsCompleted;
     }
 
+    /**
+     * <p>Get the average time in milliseconds responses waited for a callback thread
+     * during the time period covered by this stats instance. It is part of the
+     * client-measured latency.</p>
+     *
+     * <p>Always 0 unless the client was configured with
+     * {@link ClientConfig#setCallbackThreads(int) callback threads}.</p>
+     *
+     * @return Average callback queue time in milliseconds.
+     */
+    public double getAverageCallbackQueueTime() {
+        if (m_invocationsCompleted == 0) return 0;
+        return m_callbackQueueTime / 1000.0 / m_invocationsCompleted;
+    }
+
     /**
      * <p>Get the raw buckets used for latency tracking in 1ms increments. For example, if
      * a transaction returns in 3.2ms, then the array at index 3 will be incremented by
@@ -557,6 +580,9 @@ public class ClientStats {
         if (m_invocationsCompleted > 0) {
             sb.append(String.format("    avg latency client/internal: %d/%d\n",
                     m_roundTripTime / m_invocationsCompleted, m_clusterRoundTripTime / m_invocationsCompleted));
+            if (m_callbackQueueTime > 0) {
+                sb.append(String.format("    avg callback queue time: %.3f\n", getAverageCallbackQueueTime()));
+            }
             sb.append(m_latencyBy1ms).append("\n");
             sb.append(m_latencyBy10ms).append("\n");
             sb.append(m_latencyBy100ms).append("\n");
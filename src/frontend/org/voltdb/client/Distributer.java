@@ -26,11 +26,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -85,6 +88,13 @@ class Distributer {
     private final boolean m_useMultipleThreads;
     private final boolean m_useClientAffinity;
 
+    // Threads that deserialize responses and invoke callbacks,
+    // null to do it on the network threads
+    private final ExecutorService m_callbackExecutors[];
+    private final AtomicLong m_nextCallbackExecutor = new AtomicLong();
+    // Ids of the callback threads, which may not block on the client either
+    private final List<Long> m_callbackThreadIds = new ArrayList<Long>();
+
     private static final class Procedure {
         final static int PARAMETER_NONE = -1;
         private final boolean multiPart;
@@ -116,6 +126,11 @@ class Distributer {
 
     public final RateLimiter m_rateLimiter = new RateLimiter();
 
+    // Adaptive limiting of each connection's outstanding transactions, off if the target is 0
+    private volatile int m_adaptiveTargetLatency = 0;
+    private volatile double m_adaptivePercentile;
+    private volatile int m_adaptiveMaxOutstanding;
+
     //private final Timer m_timer;
     private final ScheduledExecutorService m_ex =
         Executors.newSingleThreadScheduledExecutor(
@@ -243,6 +258,9 @@ class Distributer {
                                 }
                                 iter.remove();
                                 m_rateLimiter.transactionResponseReceived(now, -1);
+                                if (c.m_limiter != null) {
+                                    c.m_limiter.transactionResponseReceived(now, -1);
+                                }
                                 int callbacksToInvoke = c.m_callbacksToInvoke.decrementAndGet();
                                 assert(callbacksToInvoke >= 0);
                             }
@@ -269,6 +287,9 @@ class Distributer {
 
     class NodeConnection extends VoltProtocolHandler implements org.voltcore.network.QueueMonitor {
         private final AtomicInteger m_callbacksToInvoke = new AtomicInteger(0);
+        private final ExecutorService m_callbackExecutor;
+        // Limits the transactions outstanding on this connection, if adaptive limiting is on
+        private final AdaptiveLimiter m_limiter;
         private final HashMap<Long, CallbackBookeeping> m_callbacks;
         private final HashMap<String, ClientStats> m_stats = new HashMap<String, ClientStats>();
         private Connection m_connection;
@@ -286,14 +307,42 @@ class Distributer {
 
             m_callbacks = new HashMap<Long, CallbackBookeeping>();
             m_socketAddress = socketAddress;
+            // A connection's responses are handled by one thread, in the order they arrive
+            if (m_callbackExecutors != null) {
+                m_callbackExecutor = m_callbackExecutors[
+                        (int)(m_nextCallbackExecutor.getAndIncrement() % m_callbackExecutors.length)];
+            } else {
+                m_callbackExecutor = null;
+            }
+            if (m_adaptiveTargetLatency > 0) {
+                m_limiter = new AdaptiveLimiter(
+                        m_adaptiveTargetLatency, m_adaptivePercentile, m_adaptiveMaxOutstanding);
+            } else {
+                m_limiter = null;
+            }
         }
 
         public void createWork(long handle, String name, ByteBuffer c,
                 ProcedureCallback callback, boolean ignoreBackpressure) {
+            if (registerWork(handle, name, callback, ignoreBackpressure)) {
+                m_connection.writeStream().enqueue(c);
+            }
+        }
+
+        /**
+         * Set up the callback for an invocation about to be sent, or invoke
+         * it right away if the connection is already lost.
+         * @return true if the invocation should be sent
+         */
+        boolean registerWork(long handle, String name,
+                ProcedureCallback callback, boolean ignoreBackpressure) {
             assert(callback != null);
             long now = System.currentTimeMillis();
             now = m_rateLimiter.sendTxnWithOptionalBlockAndReturnCurrentTime(
                     now, ignoreBackpressure);
+            if (m_limiter != null) {
+                now = m_limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(now, ignoreBackpressure);
+            }
             synchronized (this) {
                 if (!m_isConnected) {
                     final ClientResponse r = new ClientResponseImpl(
@@ -307,14 +356,17 @@ class Distributer {
                     }
                     // for bookkeeping, but it feels dishonest to call this here
                     m_rateLimiter.transactionResponseReceived(now, -1);
-                    return;
+                    if (m_limiter != null) {
+                        m_limiter.transactionResponseReceived(now, -1);
+                    }
+                    return false;
                 }
 
                 assert(m_callbacks.containsKey(handle) == false);
                 m_callbacks.put(handle, new CallbackBookeeping(now, callback, name));
                 m_callbacksToInvoke.incrementAndGet();
             }
-            m_connection.writeStream().enqueue(c);
+            return true;
         }
 
         void sendPing() {
@@ -336,6 +388,7 @@ class Distributer {
          * @param procName Name of procedure being updated
          * @param roundTrip round trip from client queued to client response callback invocation
          * @param clusterRoundTrip round trip measured within the VoltDB cluster
+         * @param callbackQueueTime microseconds the response waited for a callback thread
          * @param abort true of the procedure was aborted
          * @param failure true if the procedure failed
          */
@@ -343,6 +396,7 @@ class Distributer {
                 String procName,
                 int roundTrip,
                 int clusterRoundTrip,
+                long callbackQueueTime,
                 boolean abort,
                 boolean failure) {
             ClientStats stats = m_stats.get(procName);
@@ -356,12 +410,49 @@ class Distributer {
                 stats.m_endTS = Long.MIN_VALUE;
                 m_stats.put(procName, stats);
             }
-            stats.update(roundTrip, clusterRoundTrip, abort, failure);
+            stats.update(roundTrip, clusterRoundTrip, callbackQueueTime, abort, failure);
         }
 
         @Override
-        public void handleMessage(ByteBuffer buf, Connection c) {
-            long now = System.currentTimeMillis();
+        public void handleMessage(final ByteBuffer buf, Connection c) {
+            final long now = System.currentTimeMillis();
+            // The handle follows the version byte
+            final long handle = buf.getLong(buf.position() + 1);
+            final CallbackBookeeping stuff;
+            synchronized (this) {
+                // track the timestamp of the most recent read on this connection
+                m_lastResponseTime = now;
+
+                // handle ping response and get out
+                if (handle == PING_HANDLE) {
+                    m_outstandingPing = false;
+                    return;
+                }
+
+                stuff = m_callbacks.remove(handle);
+            }
+
+            if (m_callbackExecutor == null) {
+                handleResponse(buf, now, stuff, 0);
+            } else {
+                // Messages are heap copies, not pooled network buffers, so they can be handed off
+                final long queued = System.nanoTime();
+                m_callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handleResponse(buf, System.currentTimeMillis(), stuff,
+                                (System.nanoTime() - queued) / 1000);
+                    }
+                });
+            }
+        }
+
+        /**
+         * Deserialize a response and invoke its callback
+         * @param stuff bookkeeping of the invocation, null if it already timed out
+         * @param callbackQueueTime microseconds the response waited for a callback thread
+         */
+        private void handleResponse(ByteBuffer buf, long now, CallbackBookeeping stuff, long callbackQueueTime) {
             ClientResponseImpl response = new ClientResponseImpl();
             try {
                 response.initFromBuffer(buf);
@@ -374,16 +465,6 @@ class Distributer {
             int delta = 0;
             long handle = response.getClientHandle();
             synchronized (this) {
-                // track the timestamp of the most recent read on this connection
-                m_lastResponseTime = now;
-
-                // handle ping response and get out
-                if (response.getClientHandle() == PING_HANDLE) {
-                    m_outstandingPing = false;
-                    return;
-                }
-
-                CallbackBookeeping stuff = m_callbacks.remove(response.getClientHandle());
                 // presumably (hopefully) this is a response for a timed-out message
                 if (stuff == null) {
                     // also ignore internal (topology and procedure) calls
@@ -410,7 +491,10 @@ class Distributer {
                     }
                     int clusterRoundTrip = response.getClusterRoundtrip();
                     m_rateLimiter.transactionResponseReceived(now, clusterRoundTrip);
-                    updateStats(stuff.name, delta, clusterRoundTrip, abort, error);
+                    if (m_limiter != null) {
+                        m_limiter.transactionResponseReceived(now, delta);
+                    }
+                    updateStats(stuff.name, delta, clusterRoundTrip, callbackQueueTime, abort, error);
                 }
             }
 
@@ -496,22 +580,41 @@ class Distributer {
                 m_isConnected = false;
 
                 //Invoke callbacks for all queued invocations with a failure response
-                final ClientResponse r =
-                    new ClientResponseImpl(
-                            ClientResponse.CONNECTION_LOST, new VoltTable[0],
-                            "Connection to database host (" + m_socketAddress +
-                    ") was lost before a response was received");
-                for (final CallbackBookeeping callBk : m_callbacks.values()) {
-                    try {
-                        callBk.callback.clientCallback(r);
-                    }
-                    catch (Exception e) {
-                        uncaughtException(callBk.callback, r, e);
-                    }
-                    m_rateLimiter.transactionResponseReceived(System.currentTimeMillis(), -1);
-                    m_callbacksToInvoke.decrementAndGet();
-                }
+                final ArrayList<CallbackBookeeping> lost = new ArrayList<CallbackBookeeping>(m_callbacks.values());
                 m_callbacks.clear();
+                if (m_callbackExecutor == null) {
+                    connectionLost(lost);
+                } else {
+                    // after the responses that arrived before the connection went away
+                    m_callbackExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            connectionLost(lost);
+                        }
+                    });
+                }
+            }
+        }
+
+        private void connectionLost(List<CallbackBookeeping> lost) {
+            final ClientResponse r =
+                new ClientResponseImpl(
+                        ClientResponse.CONNECTION_LOST, new VoltTable[0],
+                        "Connection to database host (" + m_socketAddress +
+                ") was lost before a response was received");
+            for (final CallbackBookeeping callBk : lost) {
+                try {
+                    callBk.callback.clientCallback(r);
+                }
+                catch (Exception e) {
+                    uncaughtException(callBk.callback, r, e);
+                }
+                final long now = System.currentTimeMillis();
+                m_rateLimiter.transactionResponseReceived(now, -1);
+                if (m_limiter != null) {
+                    m_limiter.transactionResponseReceived(now, -1);
+                }
+                m_callbacksToInvoke.decrementAndGet();
             }
         }
 
@@ -536,7 +639,15 @@ class Distributer {
 
         @Override
         public Runnable onBackPressure() {
-            return null;
+            if (m_limiter == null) {
+                return null;
+            }
+            return new Runnable() {
+                @Override
+                public void run() {
+                    m_limiter.backpressure();
+                }
+            };
         }
 
         @Override
@@ -594,9 +705,43 @@ class Distributer {
             long procedureCallTimeoutMS,
             long connectionResponseTimeoutMS,
             boolean useClientAffinity) {
+        this(useMultipleThreads, procedureCallTimeoutMS, connectionResponseTimeoutMS,
+                useClientAffinity, false, 0, 0);
+    }
+
+    Distributer(
+            boolean useMultipleThreads,
+            long procedureCallTimeoutMS,
+            long connectionResponseTimeoutMS,
+            boolean useClientAffinity,
+            boolean useEPoll,
+            int busyPollMicros,
+            int callbackThreads) {
         m_useMultipleThreads = useMultipleThreads;
+        if (callbackThreads > 0) {
+            m_callbackExecutors = new ExecutorService[callbackThreads];
+            for (int ii = 0; ii < callbackThreads; ii++) {
+                m_callbackExecutors[ii] = CoreUtils.getSingleThreadExecutor(
+                        "VoltDB Client Callback Thread - " + ii, 1024 * 1024);
+            }
+            for (ExecutorService es : m_callbackExecutors) {
+                try {
+                    m_callbackThreadIds.add(es.submit(new Callable<Long>() {
+                        @Override
+                        public Long call() {
+                            return Thread.currentThread().getId();
+                        }
+                    }).get());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        } else {
+            m_callbackExecutors = null;
+        }
         m_network = new VoltNetworkPool(
-                m_useMultipleThreads ? Math.max(2, CoreUtils.availableProcessors()) / 4 : 1, null);
+                m_useMultipleThreads ? Math.max(2, CoreUtils.availableProcessors()) / 4 : 1, null,
+                useEPoll, busyPollMicros);
         m_network.start();
         m_procedureCallTimeoutMS = procedureCallTimeoutMS;
         m_connectionResponseTimeoutMS = connectionResponseTimeoutMS;
@@ -690,77 +835,19 @@ class Distributer {
         assert(cb != null);
 
         NodeConnection cxn = null;
-        boolean backpressure = true;
 
         /*
          * Synchronization is necessary to ensure that m_connections is not modified
          * as well as to ensure that backpressure is reported correctly
          */
         synchronized (this) {
-            final int totalConnections = m_connections.size();
-
-            if (totalConnections == 0) {
+            if (m_connections.size() == 0) {
                 throw new NoConnectionsException("No connections.");
             }
 
-            /*
-             * Check if the master for the partition is known. No back pressure check to ensure correct
-             * routing, but backpressure will be managed anyways.
-             */
-            if (m_useClientAffinity && m_hashinatorInitialized) {
-                final Procedure procedureInfo = m_procedureInfo.get(invocation.getProcName());
-
-                if (procedureInfo != null) {
-                    Integer hashedPartition = MpInitiator.MP_INIT_PID;
-                    if (!procedureInfo.multiPart) {
-                        hashedPartition =
-                            invocation.getHashinatedParam(procedureInfo.partitionParameterType,
-                                procedureInfo.partitionParameter);
-                    }
-                    /*
-                     * If the procedure is read only and single part, load balance across replicas
-                     */
-                    if (!procedureInfo.multiPart && procedureInfo.readOnly) {
-                        NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
-                        if (partitionReplicas != null && partitionReplicas.length > 0) {
-                            cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
-                            if (cxn.hadBackPressure()) {
-                                //See if there is one without backpressure
-                                for (NodeConnection nc : partitionReplicas) {
-                                    if (!nc.hadBackPressure()) {
-                                        cxn = nc;
-                                        break;
-                                    }
-                                }
-                            }
-                            if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                                backpressure = false;
-                            }
-                        }
-                    } else {
-                        /*
-                         * Writes have to go to the master
-                         */
-                        cxn = m_partitionMasters.get(hashedPartition);
-                        if (cxn != null && !cxn.hadBackPressure() || ignoreBackpressure) {
-                            backpressure = false;
-                        }
-                    }
-                }
-            }
-            if (cxn == null) {
-                for (int i=0; i < totalConnections; ++i) {
-                    cxn = m_connections.get(Math.abs(++m_nextConnection % totalConnections));
-                    if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                        // serialize and queue the invocation
-                        backpressure = false;
-                        break;
-                    }
-                }
-            }
+            cxn = selectConnection(invocation, ignoreBackpressure);
 
-            if (backpressure) {
-                cxn = null;
+            if (cxn == null) {
                 for (ClientStatusListenerExt s : m_listeners) {
                     s.backpressure(true);
                 }
@@ -783,7 +870,165 @@ class Distributer {
             cxn.createWork(invocation.getHandle(), invocation.getProcName(), buf, cb, ignoreBackpressure);
         }
 
-        return !backpressure;
+        return cxn != null;
+    }
+
+    /**
+     * Queue a batch of invocations, sending the ones routed to the same
+     * connection in a single message. Either the whole batch is queued or,
+     * if any of the invocations runs into backpressure, none of it is.
+     */
+    boolean queueBatch(
+            ProcedureInvocation invocations[],
+            ProcedureCallback callbacks[],
+            final boolean ignoreBackpressure)
+    throws NoConnectionsException {
+        assert(invocations.length == callbacks.length);
+
+        // Invocations for each connection, in the order the connections were picked
+        final Map<NodeConnection, List<Integer>> routed = new LinkedHashMap<NodeConnection, List<Integer>>();
+        synchronized (this) {
+            if (m_connections.size() == 0) {
+                throw new NoConnectionsException("No connections.");
+            }
+
+            for (int ii = 0; ii < invocations.length; ii++) {
+                final NodeConnection cxn = selectConnection(invocations[ii], ignoreBackpressure);
+                if (cxn == null) {
+                    for (ClientStatusListenerExt s : m_listeners) {
+                        s.backpressure(true);
+                    }
+                    return false;
+                }
+                List<Integer> indexes = routed.get(cxn);
+                if (indexes == null) {
+                    indexes = new ArrayList<Integer>();
+                    routed.put(cxn, indexes);
+                }
+                indexes.add(ii);
+            }
+        }
+
+        for (Map.Entry<NodeConnection, List<Integer>> e : routed.entrySet()) {
+            final NodeConnection cxn = e.getKey();
+            final List<Integer> indexes = e.getValue();
+            final List<ProcedureInvocation> batch = new ArrayList<ProcedureInvocation>(indexes.size());
+            for (int ii : indexes) {
+                batch.add(invocations[ii]);
+            }
+
+            ByteBuffer buf;
+            try {
+                if (batch.size() == 1) {
+                    // a lone invocation goes in a message of its own
+                    final ProcedureInvocation invocation = batch.get(0);
+                    buf = ByteBuffer.allocate(4 + invocation.getSerializedSize());
+                    buf.putInt(buf.capacity() - 4);
+                    invocation.flattenToBuffer(buf);
+                    buf.flip();
+                } else {
+                    buf = ProcedureInvocation.flattenBatchToBuffer(batch);
+                }
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+
+            /*
+             * Only the first invocation waits for the limits. The rest can't,
+             * since they don't go out until all of them are registered.
+             */
+            boolean registered = false;
+            for (int ii : indexes) {
+                registered |= cxn.registerWork(invocations[ii].getHandle(),
+                        invocations[ii].getProcName(), callbacks[ii],
+                        ignoreBackpressure || ii != indexes.get(0));
+            }
+            if (registered) {
+                cxn.m_connection.writeStream().enqueue(buf);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Pick the connection to send an invocation to, preferring the one client
+     * affinity routes it to. Must be called while synchronized on the
+     * distributer.
+     * @return the connection, or null if the invocation has to wait out backpressure
+     */
+    private NodeConnection selectConnection(ProcedureInvocation invocation, boolean ignoreBackpressure) {
+        final int totalConnections = m_connections.size();
+        NodeConnection cxn = null;
+        boolean backpressure = true;
+
+        /*
+         * Check if the master for the partition is known. No back pressure check to ensure correct
+         * routing, but backpressure will be managed anyways.
+         */
+        if (m_useClientAffinity && m_hashinatorInitialized) {
+            final Procedure procedureInfo = m_procedureInfo.get(invocation.getProcName());
+
+            if (procedureInfo != null) {
+                Integer hashedPartition = MpInitiator.MP_INIT_PID;
+                if (!procedureInfo.multiPart) {
+                    hashedPartition =
+                        invocation.getHashinatedParam(procedureInfo.partitionParameterType,
+                            procedureInfo.partitionParameter);
+                }
+                /*
+                 * If the procedure is read only and single part, load balance across replicas
+                 */
+                if (!procedureInfo.multiPart && procedureInfo.readOnly) {
+                    NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
+                    if (partitionReplicas != null && partitionReplicas.length > 0) {
+                        cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
+                        if (cxn.hadBackPressure()) {
+                            //See if there is one without backpressure
+                            for (NodeConnection nc : partitionReplicas) {
+                                if (!nc.hadBackPressure()) {
+                                    cxn = nc;
+                                    break;
+                                }
+                            }
+                        }
+                        if (!cxn.hadBackPressure() || ignoreBackpressure) {
+                            backpressure = false;
+                        }
+                    }
+                } else {
+                    /*
+                     * Writes have to go to the master
+                     */
+                    cxn = m_partitionMasters.get(hashedPartition);
+                    if (cxn != null && !cxn.hadBackPressure() || ignoreBackpressure) {
+                        backpressure = false;
+                    }
+                }
+            }
+        }
+        if (cxn == null) {
+            for (int i=0; i < totalConnections; ++i) {
+                cxn = m_connections.get(Math.abs(++m_nextConnection % totalConnections));
+                if (!cxn.hadBackPressure() || ignoreBackpressure) {
+                    // serialize and queue the invocation
+                    backpressure = false;
+                    break;
+                }
+            }
+        }
+
+        return backpressure ? null : cxn;
+    }
+
+    /**
+     * Limit the transactions outstanding on each connection made from now on
+     * to keep a percentile of the round trip latency at a target.
+     */
+    void enableAdaptiveLimiting(int targetLatency, double percentile, int maxOutstanding) {
+        m_adaptivePercentile = percentile;
+        m_adaptiveMaxOutstanding = maxOutstanding;
+        m_adaptiveTargetLatency = targetLatency;
     }
 
     /**
@@ -798,6 +1043,16 @@ class Distributer {
         m_ex.awaitTermination(1, TimeUnit.SECONDS);
 
         m_network.shutdown();
+
+        // after the network, which may still hand them responses
+        if (m_callbackExecutors != null) {
+            for (ExecutorService es : m_callbackExecutors) {
+                es.shutdown();
+            }
+            for (ExecutorService es : m_callbackExecutors) {
+                es.awaitTermination(1, TimeUnit.SECONDS);
+            }
+        }
     }
 
     private void uncaughtException(ProcedureCallback cb, ClientResponse r, Throwable t) {
@@ -890,7 +1145,9 @@ class Distributer {
     }
 
     public List<Long> getThreadIds() {
-        return m_network.getThreadIds();
+        List<Long> ids = new ArrayList<Long>(m_network.getThreadIds());
+        ids.addAll(m_callbackThreadIds);
+        return ids;
     }
 
     public List<InetSocketAddress> getConnectedHostList() {
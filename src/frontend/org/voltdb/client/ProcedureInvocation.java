@@ -19,6 +19,7 @@ package org.voltdb.client;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import org.voltdb.ParameterSet;
 import org.voltdb.messaging.FastSerializer;
@@ -29,6 +30,15 @@ import org.voltdb.messaging.FastSerializer;
  */
 public class ProcedureInvocation {
 
+    /**
+     * Version byte that starts a message carrying a batch of invocations
+     * instead of a single one. It is followed by the number of invocations
+     * and then each invocation prefixed by its length. The high bit is clear
+     * so the byte can't be mistaken for a replicated invocation. Servers
+     * that predate batches can't read these messages.
+     */
+    public static final byte BATCH_VERSION = 0x40;
+
     private final long m_clientHandle;
     private final String m_procName;
     private byte m_procNameBytes[];
@@ -94,4 +104,26 @@ public class ProcedureInvocation {
         m_parameters.flattenToBuffer(buf);
         return buf;
     }
+
+    /**
+     * Serialize a batch of invocations into one length prefixed message.
+     */
+    static ByteBuffer flattenBatchToBuffer(List<ProcedureInvocation> invocations) throws IOException {
+        int size = 4 + 1 + 4;
+        for (ProcedureInvocation invocation : invocations) {
+            size += 4 + invocation.getSerializedSize();
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(size - 4);
+        buf.put(BATCH_VERSION);
+        buf.putInt(invocations.size());
+        for (ProcedureInvocation invocation : invocations) {
+            final int lengthPosition = buf.position();
+            buf.position(lengthPosition + 4);
+            invocation.flattenToBuffer(buf);
+            buf.putInt(lengthPosition, buf.position() - lengthPosition - 4);
+        }
+        buf.flip();
+        return buf;
+    }
 }
@@ -77,6 +77,9 @@ public class AdHocCompilerCache implements Serializable {
 
     /** cache of literals to full plans */
     final Map<String, AdHocPlannedStatement> m_literalCache;
+    /** cache of SQL with parameter markers to plans that take their values from the user.
+     *  Kept apart from the literal cache, whose plans are complete as they are. */
+    final Map<String, AdHocPlannedStatement> m_userParamCache;
     /** cache of parameterized plan descriptions to one or more core parameterized plans,
      *  each plan optionally has its own requirements for which parameters need to be bound
      *  to what values to enable its specialized (expression-indexed) plan. */
@@ -128,6 +131,21 @@ public class AdHocCompilerCache implements Serializable {
             }
         };
 
+        // an LRU cache map
+        m_userParamCache = new LinkedHashMap<String, AdHocPlannedStatement>(MAX_LITERAL_ENTRIES * 2, .75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            // This method is called just after a new entry has been added
+            @Override
+            public boolean removeEldestEntry(Map.Entry<String, AdHocPlannedStatement> eldest) {
+                if (size() > MAX_LITERAL_ENTRIES) {
+                    ++m_literalEvictions;
+                    return true;
+                }
+                return false;
+            }
+        };
+
         // an LRU cache map
         m_coreCache = new LinkedHashMap<String, List<BoundPlan> >(MAX_CORE_ENTRIES * 2, .75f, true) {
             private static final long serialVersionUID = 1L;
@@ -183,6 +201,19 @@ public class AdHocCompilerCache implements Serializable {
         return retval;
     }
 
+    /**
+     * @param sql SQL with parameter markers
+     * @return plan that still needs the user's values bound to it
+     */
+    public synchronized AdHocPlannedStatement getWithUserParamSQL(String sql) {
+        ++m_literalQueries;
+        AdHocPlannedStatement retval = m_userParamCache.get(sql);
+        if (retval != null) {
+            ++m_literalHits;
+        }
+        return retval;
+    }
+
     /**
      * @param parsedToken String representing a parameterized and parsed
      * SQL statement
@@ -208,6 +239,18 @@ public class AdHocCompilerCache implements Serializable {
     public synchronized void put(String sql,
                                  String parsedToken,
                                  AdHocPlannedStatement planIn)
+    {
+        put(sql, parsedToken, planIn, false);
+    }
+
+    /**
+     * @param userParams true if the plan's parameters are bound to values sent
+     * by the user, so the plan is cached apart from the literal plans
+     */
+    public synchronized void put(String sql,
+                                 String parsedToken,
+                                 AdHocPlannedStatement planIn,
+                                 boolean userParams)
     {
         assert(sql != null);
         assert(parsedToken != null);
@@ -257,9 +300,11 @@ public class AdHocCompilerCache implements Serializable {
         }
 
         // then deal with the
-        AdHocPlannedStatement cachedPlan = m_literalCache.get(sql);
+        final Map<String, AdHocPlannedStatement> literalCache =
+            userParams ? m_userParamCache : m_literalCache;
+        AdHocPlannedStatement cachedPlan = literalCache.get(sql);
         if (cachedPlan == null) {
-            m_literalCache.put(sql, plan);
+            literalCache.put(sql, plan);
             ++m_literalInsertions;
         }
         else {
@@ -36,6 +36,8 @@ public class AdHocPlannerWork extends AsyncCompilerWork {
     final long originalTxnId;
     final long originalUniqueId;
     private boolean isExplainWork = false;
+    // values for the parameter markers of a single statement, null if none
+    Object[] userParams = null;
 
     public AdHocPlannerWork(long replySiteId, boolean shouldShutdown, long clientHandle,
             long connectionId, String hostname, boolean adminConnection, Object clientData,
@@ -74,6 +76,10 @@ public class AdHocPlannerWork extends AsyncCompilerWork {
         return retval;
     }
 
+    public void setUserParams(Object[] userParams) {
+        this.userParams = userParams;
+    }
+
     public void setIsExplainWork() {
         isExplainWork = true;
     }
@@ -166,7 +166,8 @@ public class AsyncCompilerAgent {
             try {
                 String sqlStatement = work.sqlStatements[0];
                 AdHocPlannedStatement result = ptool.planSql(sqlStatement, work.partitionParam,
-                                                             work.inferSinglePartition, work.allowParameterization);
+                                                             work.inferSinglePartition, work.allowParameterization,
+                                                             work.userParams);
                 // The planning tool may have optimized for the single partition case
                 // and generated a partition parameter.
                 plannedStmtBatch.partitionParam = result.partitionParam;
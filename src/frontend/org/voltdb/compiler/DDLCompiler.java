@@ -1269,7 +1269,12 @@ public class DDLCompiler {
         // set the type of the index based on the index name and column types
         // Currently, only int types can use hash or array indexes
         String indexNameNoCase = name.toLowerCase();
-        if (indexNameNoCase.contains("tree"))
+        if (indexNameNoCase.contains("btree"))
+        {
+            // B+tree indexes don't keep the subtree counts needed for counting
+            index.setType(IndexType.BTREE.getValue());
+        }
+        else if (indexNameNoCase.contains("tree"))
         {
             index.setType(IndexType.BALANCED_TREE.getValue());
             index.setCountable(true);
@@ -1423,7 +1428,11 @@ public class DDLCompiler {
         if (catalog_index != null) {
             // if the constraint name contains index type hints, exercise them (giant hack)
             String constraintNameNoCase = name.toLowerCase();
-            if (constraintNameNoCase.contains("tree"))
+            if (constraintNameNoCase.contains("btree")) {
+                catalog_index.setType(IndexType.BTREE.getValue());
+                catalog_index.setCountable(false);
+            }
+            else if (constraintNameNoCase.contains("tree"))
                 catalog_index.setType(IndexType.BALANCED_TREE.getValue());
             if (constraintNameNoCase.contains("hash"))
                 catalog_index.setType(IndexType.HASH_TABLE.getValue());
@@ -1618,9 +1627,12 @@ public class DDLCompiler {
 
         for (i++; i < displayColCount; i++) {
             ParsedSelectStmt.ParsedColInfo outcol = stmt.displayColumns.get(i);
-            if ((outcol.expression.getExpressionType() != ExpressionType.AGGREGATE_COUNT) &&
-                    (outcol.expression.getExpressionType() != ExpressionType.AGGREGATE_SUM)) {
-                msg += "must have non-group by columns aggregated by sum or count.";
+            ExpressionType aggType = outcol.expression.getExpressionType();
+            if ((aggType != ExpressionType.AGGREGATE_COUNT) &&
+                    (aggType != ExpressionType.AGGREGATE_SUM) &&
+                    (aggType != ExpressionType.AGGREGATE_MIN) &&
+                    (aggType != ExpressionType.AGGREGATE_MAX)) {
+                msg += "must have non-group by columns aggregated by sum, count, min or max.";
                 throw m_compiler.new VoltCompilerException(msg);
             }
             if (outcol.expression.getLeft().getExpressionType() != ExpressionType.VALUE_TUPLE) {
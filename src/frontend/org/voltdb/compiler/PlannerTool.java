@@ -23,12 +23,14 @@ import org.hsqldb_voltpatches.HSQLInterface;
 import org.hsqldb_voltpatches.HSQLInterface.HSQLParseException;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.Pair;
+import org.voltdb.ParameterConverter;
 import org.voltdb.ParameterSet;
 import org.voltdb.PlannerStatsCollector;
 import org.voltdb.PlannerStatsCollector.CacheUse;
 import org.voltdb.StatsAgent;
 import org.voltdb.StatsSelector;
 import org.voltdb.VoltDB;
+import org.voltdb.VoltType;
 import org.voltdb.catalog.Cluster;
 import org.voltdb.catalog.Database;
 import org.voltdb.common.Constants;
@@ -102,6 +104,16 @@ public class PlannerTool {
     }
 
     public AdHocPlannedStatement planSql(String sqlIn, Object partitionParam, boolean inferSP, boolean allowParameterization) {
+        return planSql(sqlIn, partitionParam, inferSP, allowParameterization, null);
+    }
+
+    /**
+     * Plan a statement. If userParams is non-empty the statement was written with
+     * parameter markers and the values are bound to the cached plan for its text,
+     * so repeated executions with different values don't need the planner.
+     */
+    public AdHocPlannedStatement planSql(String sqlIn, Object partitionParam, boolean inferSP,
+                                         boolean allowParameterization, Object[] userParams) {
         CacheUse cacheUse = CacheUse.FAIL;
         if (m_plannerStats != null) {
             m_plannerStats.startStatsCollection();
@@ -117,12 +129,18 @@ public class PlannerTool {
 
             // no caching for forced single or forced multi SQL
             boolean cacheable = (partitionParam == null) && (inferSP);
+            boolean hasUserParams = (userParams != null) && (userParams.length > 0);
 
             // check the literal cache for a match
             if (cacheable) {
-                AdHocPlannedStatement cachedPlan = m_cache.getWithSQL(sqlIn);
+                AdHocPlannedStatement cachedPlan =
+                    hasUserParams ? m_cache.getWithUserParamSQL(sqlIn) : m_cache.getWithSQL(sqlIn);
                 if (cachedPlan != null) {
                     cacheUse = CacheUse.HIT1;
+                    if (hasUserParams) {
+                        return bindUserParams(cachedPlan, userParams);
+                    }
+                    checkParametersBound(cachedPlan, allowParameterization);
                     return cachedPlan;
                 }
                 else {
@@ -160,12 +178,30 @@ public class PlannerTool {
                         assert( ! boundVariants.isEmpty());
                         BoundPlan matched = null;
                         for (BoundPlan boundPlan : boundVariants) {
-                            if (boundPlan.allowsParams(extractedLiterals)) {
+                            // there are no literals to check bound parameters against
+                            // when the values come from the user
+                            if (hasUserParams ? (boundPlan.constants == null) :
+                                                boundPlan.allowsParams(extractedLiterals)) {
                                 matched = boundPlan;
                                 break;
                             }
                         }
-                        if (matched != null) {
+                        if (matched != null && hasUserParams) {
+                            AdHocPlannedStatement ahps = new AdHocPlannedStatement(sql.getBytes(Constants.UTF8ENCODING),
+                                                                                   matched.core,
+                                                                                   ParameterSet.emptyParameterSet(),
+                                                                                   null,
+                                                                                   null,
+                                                                                   null);
+                            m_cache.put(sql, parsedToken, ahps, true);
+                            cacheUse = CacheUse.HIT2;
+                            return bindUserParams(ahps, userParams);
+                        }
+                        // a plan for the same text with markers in place of the literals
+                        // can't be completed from the literals there are
+                        if (matched != null &&
+                            (extractedLiterals == null ? 0 : extractedLiterals.length) >=
+                                matched.core.parameterTypes.length) {
                             CorePlan core = matched.core;
                             Pair<Integer, Object[]> info =
                                     planner.buildParameterSetFromExtractedLiteralsAndReturnPartitionIndex(
@@ -200,6 +236,15 @@ public class PlannerTool {
                 throw new RuntimeException("Null plan received in PlannerTool.planSql");
             }
 
+            if (hasUserParams) {
+                AdHocPlannedStatement ahps = new AdHocPlannedStatement(plan, m_catalogVersion, null);
+                if (cacheable) {
+                    assert(parsedToken != null);
+                    m_cache.put(sqlIn, parsedToken, ahps, true);
+                }
+                return bindUserParams(ahps, userParams);
+            }
+
             if (!allowParameterization &&
                 (plan.extractedParamValues.size() == 0) &&
                 (plan.parameters.length > 0))
@@ -227,4 +272,57 @@ public class PlannerTool {
             }
         }
     }
+
+    /**
+     * Reject a plan with parameters that have no values, which happens when
+     * SQL with parameter markers is sent without values for them.
+     */
+    private static void checkParametersBound(AdHocPlannedStatement plan, boolean allowParameterization) {
+        if (!allowParameterization &&
+            (plan.extractedParamValues.size() == 0) &&
+            (plan.core.parameterTypes.length > 0))
+        {
+            throw new RuntimeException("ERROR: PARAMETERIZATION IN AD HOC QUERY");
+        }
+    }
+
+    /**
+     * Copy a plan for SQL with parameter markers, adding the user's parameter values
+     * converted to the types the planner inferred and picking out the partitioning value.
+     */
+    static AdHocPlannedStatement bindUserParams(AdHocPlannedStatement plan, Object[] userParams) {
+        VoltType[] paramTypes = plan.core.parameterTypes;
+        if (paramTypes.length != userParams.length) {
+            throw new RuntimeException(String.format(
+                    "Incorrect number of parameters passed: expected %d, passed %d",
+                    paramTypes.length, userParams.length));
+        }
+        Object[] paramArray = new Object[userParams.length];
+        for (int i = 0; i < userParams.length; i++) {
+            if (paramTypes[i] == VoltType.NULL || paramTypes[i] == VoltType.INVALID) {
+                paramArray[i] = userParams[i];
+                continue;
+            }
+            try {
+                paramArray[i] = ParameterConverter.tryToMakeCompatible(paramTypes[i].classFromType(), userParams[i]);
+            }
+            catch (Exception e) {
+                throw new RuntimeException("Unable to bind parameter " + (i + 1) + ": " + e.getMessage(), e);
+            }
+            // the EE needs a typed null
+            if (paramArray[i] == null) {
+                paramArray[i] = paramTypes[i].getNullValue();
+            }
+        }
+        Object partitionKey = null;
+        if (plan.core.partitioningParamIndex >= 0) {
+            partitionKey = paramArray[plan.core.partitioningParamIndex];
+        }
+        return new AdHocPlannedStatement(plan.sql,
+                                         plan.core,
+                                         ParameterSet.fromArrayNoCopy(paramArray),
+                                         null,
+                                         null,
+                                         partitionKey);
+    }
 }
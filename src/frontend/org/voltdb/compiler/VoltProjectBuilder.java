@@ -267,6 +267,7 @@ public class VoltProjectBuilder {
     private Integer m_commandLogMaxTxnsBeforeFsync;
 
     private Integer m_snapshotPriority;
+    private Integer m_snapshotTargetLatency;
 
     private Integer m_maxTempTableMemory = 100;
 
@@ -317,6 +318,10 @@ public class VoltProjectBuilder {
         m_snapshotPriority = priority;
     }
 
+    public void setSnapshotTargetLatency(int targetLatency) {
+        m_snapshotTargetLatency = targetLatency;
+    }
+
     public void addAllDefaults() {
         // does nothing in the base class
     }
@@ -1048,9 +1053,14 @@ public class VoltProjectBuilder {
         Temptables temptables = factory.createSystemSettingsTypeTemptables();
         temptables.setMaxsize(m_maxTempTableMemory);
         systemSettingType.setTemptables(temptables);
-        if (m_snapshotPriority != null) {
+        if (m_snapshotPriority != null || m_snapshotTargetLatency != null) {
             SystemSettingsType.Snapshot snapshot = factory.createSystemSettingsTypeSnapshot();
-            snapshot.setPriority(m_snapshotPriority);
+            if (m_snapshotPriority != null) {
+                snapshot.setPriority(m_snapshotPriority);
+            }
+            if (m_snapshotTargetLatency != null) {
+                snapshot.setTargetlatency(m_snapshotTargetLatency);
+            }
             systemSettingType.setSnapshot(snapshot);
         }
         deployment.setSystemsettings(systemSettingType);
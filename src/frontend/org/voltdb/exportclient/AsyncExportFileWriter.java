@@ -0,0 +1,420 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.xerial.snappy.SnappyOutputStream;
+
+/**
+ * A Writer for export data files that moves encoding, compression and disk
+ * I/O off of the thread producing the rows.
+ *
+ * Characters are accumulated in a fixed size buffer owned by the caller.
+ * Full buffers are handed to a small per-file queue that is drained, in
+ * order, by a task on a shared I/O executor which issues one large sequential
+ * write per buffer. The number of buffers a file may have outstanding is
+ * bounded, so a caller that outruns the disk blocks in write() instead of
+ * growing the heap.
+ *
+ * Errors encountered by the I/O thread are remembered and rethrown to the
+ * caller on the next write, flush or close.
+ *
+ * Binary formats can bypass character encoding with writeBytes(). A file
+ * should be written either as bytes or as characters, not both.
+ */
+public class AsyncExportFileWriter extends Writer {
+
+    public static enum Compression {
+        NONE(""),
+        GZIP(".gz"),
+        SNAPPY(".snappy");
+
+        private final String m_extension;
+
+        private Compression(String extension) {
+            m_extension = extension;
+        }
+
+        public String getExtension() {
+            return m_extension;
+        }
+    }
+
+    /**
+     * When to force written data to the storage device.
+     * ROLL syncs once when the file is closed, BLOCK also syncs each time
+     * the writer is flushed (at the end of every export block).
+     */
+    public static enum SyncPolicy {
+        NONE,
+        ROLL,
+        BLOCK
+    }
+
+    // size, in chars, of each buffer handed to the I/O thread
+    static final int BUFFER_CHARS = 128 * 1024;
+    // buffers a single file may have queued before the caller blocks
+    static final int MAX_PENDING_BUFFERS = 8;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File m_file;
+    private final SyncPolicy m_syncPolicy;
+    private final Executor m_ioExecutor;
+    private final AtomicLong m_bytesWritten;
+
+    private final FileOutputStream m_fos;
+    private final OutputStream m_out;
+
+    // buffers being filled by the caller, guarded by lock
+    private CharBuffer m_current;
+    private ByteBuffer m_currentBytes;
+    private boolean m_closed = false;
+
+    private final Semaphore m_permits = new Semaphore(MAX_PENDING_BUFFERS);
+    private final ConcurrentLinkedQueue<Buffer> m_pending = new ConcurrentLinkedQueue<Buffer>();
+    private final ConcurrentLinkedQueue<CharBuffer> m_free = new ConcurrentLinkedQueue<CharBuffer>();
+    private final ConcurrentLinkedQueue<ByteBuffer> m_freeBytes = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicBoolean m_drainScheduled = new AtomicBoolean(false);
+    private volatile IOException m_error = null;
+
+    // only touched by the drain task, which never runs concurrently with itself
+    private final CharsetEncoder m_encoder;
+    private final ByteBuffer m_encoded;
+
+    private final Runnable m_drainTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                Buffer buf;
+                while ((buf = m_pending.poll()) != null) {
+                    try {
+                        if (m_error == null) {
+                            if (buf instanceof CharBuffer) {
+                                writeBuffer((CharBuffer)buf);
+                            } else {
+                                writeBuffer((ByteBuffer)buf);
+                            }
+                        }
+                    } catch (IOException e) {
+                        m_error = e;
+                    } catch (Throwable t) {
+                        m_error = new IOException("Failed writing export file " + m_file, t);
+                    } finally {
+                        buf.clear();
+                        if (buf instanceof CharBuffer) {
+                            m_free.offer((CharBuffer)buf);
+                        } else {
+                            m_freeBytes.offer((ByteBuffer)buf);
+                        }
+                        m_permits.release();
+                    }
+                }
+            } finally {
+                m_drainScheduled.set(false);
+                // a buffer may have been queued after the last poll
+                if (!m_pending.isEmpty()) {
+                    scheduleDrain();
+                }
+            }
+        }
+    };
+
+    public AsyncExportFileWriter(
+            File file,
+            Compression compression,
+            SyncPolicy syncPolicy,
+            Executor ioExecutor,
+            AtomicLong bytesWritten) throws IOException {
+        m_file = file;
+        m_syncPolicy = syncPolicy;
+        m_ioExecutor = ioExecutor;
+        m_bytesWritten = bytesWritten;
+
+        m_encoder = UTF8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        m_encoded = ByteBuffer.allocate((int)Math.ceil(BUFFER_CHARS * m_encoder.maxBytesPerChar()));
+        m_current = CharBuffer.allocate(BUFFER_CHARS);
+        m_currentBytes = null;
+
+        m_fos = new FileOutputStream(file, false);
+        try {
+            switch (compression) {
+            case GZIP:
+                m_out = new GZIPOutputStream(m_fos, 64 * 1024);
+                break;
+            case SNAPPY:
+                m_out = new SnappyOutputStream(m_fos);
+                break;
+            default:
+                m_out = m_fos;
+            }
+        } catch (IOException e) {
+            m_fos.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return m_file;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            while (len > 0) {
+                if (!m_current.hasRemaining()) {
+                    handOff();
+                }
+                int count = Math.min(len, m_current.remaining());
+                m_current.put(cbuf, off, count);
+                off += count;
+                len -= count;
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            while (len > 0) {
+                if (!m_current.hasRemaining()) {
+                    handOff();
+                }
+                int count = Math.min(len, m_current.remaining());
+                m_current.put(str, off, off + count);
+                off += count;
+                len -= count;
+            }
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            if (!m_current.hasRemaining()) {
+                handOff();
+            }
+            m_current.put((char)c);
+        }
+    }
+
+    /**
+     * Append bytes to the file as is, without character encoding.
+     */
+    public void writeBytes(byte[] b, int off, int len) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            if (m_currentBytes == null) {
+                m_currentBytes = ByteBuffer.allocate(BUFFER_CHARS);
+            }
+            while (len > 0) {
+                if (!m_currentBytes.hasRemaining()) {
+                    handOffBytes();
+                }
+                int count = Math.min(len, m_currentBytes.remaining());
+                m_currentBytes.put(b, off, count);
+                off += count;
+                len -= count;
+            }
+        }
+    }
+
+    /**
+     * Append a record, a big-endian int length followed by that many bytes,
+     * without character encoding. The length and the body go in under one
+     * lock, so records written by several threads never interleave.
+     */
+    public void writeRecord(int len, byte[] b, int off) throws IOException {
+        synchronized (lock) {
+            writeBytesInt(len);
+            writeBytes(b, off, len);
+        }
+    }
+
+    private void writeBytesInt(int v) throws IOException {
+        ensureOpen();
+        if (m_currentBytes == null) {
+            m_currentBytes = ByteBuffer.allocate(BUFFER_CHARS);
+        }
+        if (m_currentBytes.remaining() < 4) {
+            handOffBytes();
+        }
+        m_currentBytes.putInt(v);
+    }
+
+    /**
+     * Queue any buffered characters for writing. Unless the sync policy is
+     * BLOCK this does not wait for the data to reach the file.
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            handOff();
+            handOffBytes();
+            if (m_syncPolicy == SyncPolicy.BLOCK) {
+                drainAndSync(false);
+            }
+            checkError();
+        }
+    }
+
+    /**
+     * Write out everything queued, finish the compressed stream if any,
+     * sync according to the policy and close the file. Idempotent.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (m_closed) return;
+            m_closed = true;
+            try {
+                handOff();
+                handOffBytes();
+                drainAndSync(true);
+            } finally {
+                m_out.close();
+            }
+            checkError();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (m_closed) {
+            throw new IOException("Export file " + m_file + " is closed");
+        }
+        checkError();
+    }
+
+    private void checkError() throws IOException {
+        IOException error = m_error;
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Pass the current buffer to the I/O thread, blocking if this file
+     * already has the maximum number of buffers outstanding.
+     */
+    private void handOff() {
+        if (m_current.position() == 0) return;
+
+        // never split a surrogate pair across two independently encoded buffers
+        char carry = 0;
+        boolean hasCarry = false;
+        char last = m_current.get(m_current.position() - 1);
+        if (Character.isHighSurrogate(last)) {
+            if (m_current.position() == 1) return;
+            m_current.position(m_current.position() - 1);
+            carry = last;
+            hasCarry = true;
+        }
+
+        m_permits.acquireUninterruptibly();
+        m_current.flip();
+        m_pending.offer(m_current);
+
+        CharBuffer next = m_free.poll();
+        m_current = next != null ? next : CharBuffer.allocate(BUFFER_CHARS);
+        if (hasCarry) {
+            m_current.put(carry);
+        }
+        scheduleDrain();
+    }
+
+    private void handOffBytes() {
+        if (m_currentBytes == null || m_currentBytes.position() == 0) return;
+
+        m_permits.acquireUninterruptibly();
+        m_currentBytes.flip();
+        m_pending.offer(m_currentBytes);
+
+        ByteBuffer next = m_freeBytes.poll();
+        m_currentBytes = next != null ? next : ByteBuffer.allocate(BUFFER_CHARS);
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (m_drainScheduled.compareAndSet(false, true)) {
+            m_ioExecutor.execute(m_drainTask);
+        }
+    }
+
+    /**
+     * Wait for every queued buffer to be written by taking all the permits,
+     * then flush (or finish) the output stream and force it to disk if the
+     * policy asks for it. Holding all permits excludes the drain task.
+     */
+    private void drainAndSync(boolean finish) throws IOException {
+        m_permits.acquireUninterruptibly(MAX_PENDING_BUFFERS);
+        try {
+            if (m_error != null) return;
+            if (finish && m_out instanceof GZIPOutputStream) {
+                ((GZIPOutputStream)m_out).finish();
+            }
+            m_out.flush();
+            if (m_syncPolicy != SyncPolicy.NONE) {
+                m_fos.getChannel().force(false);
+            }
+        } finally {
+            m_permits.release(MAX_PENDING_BUFFERS);
+        }
+    }
+
+    private void writeBuffer(CharBuffer buf) throws IOException {
+        m_encoder.reset();
+        m_encoded.clear();
+        m_encoder.encode(buf, m_encoded, true);
+        m_encoder.flush(m_encoded);
+        m_encoded.flip();
+        m_out.write(m_encoded.array(), 0, m_encoded.limit());
+        if (m_bytesWritten != null) {
+            m_bytesWritten.addAndGet(m_encoded.limit());
+        }
+    }
+
+    private void writeBuffer(ByteBuffer buf) throws IOException {
+        m_out.write(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        if (m_bytesWritten != null) {
+            m_bytesWritten.addAndGet(buf.remaining());
+        }
+    }
+}
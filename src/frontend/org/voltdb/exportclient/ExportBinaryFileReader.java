@@ -0,0 +1,188 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.voltdb.VoltType;
+import org.voltdb.export.ExportProtoMessage.AdvertisedDataSource;
+import org.voltdb.utils.Encoder;
+import org.xerial.snappy.SnappyInputStream;
+
+import au.com.bytecode.opencsv_voltpatches.CSVWriter;
+
+/**
+ * Reads files written by ExportToFileClient in the binary format described
+ * by {@link ExportBinaryFormat}. Rows are decoded with the same column
+ * decoders the export client uses for the wire protocol.
+ *
+ * Run as a program it prints the given files as CSV on stdout:
+ *   java -cp voltdb.jar org.voltdb.exportclient.ExportBinaryFileReader file [file...]
+ */
+public class ExportBinaryFileReader implements Closeable {
+
+    private final DataInputStream m_in;
+    private final ExportBinaryFormat.Header m_header;
+    private final RowDecoder m_decoder;
+
+    static class RowDecoder extends ExportDecoderBase {
+        RowDecoder(AdvertisedDataSource source) {
+            super(source);
+        }
+
+        @Override
+        public boolean processRow(int rowSize, byte[] rowData) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void sourceNoLongerAdvertised(AdvertisedDataSource source) {
+        }
+    }
+
+    /**
+     * Open a file, decompressing it if its name ends in .gz or .snappy.
+     */
+    public ExportBinaryFileReader(File file) throws IOException {
+        this(openFile(file));
+    }
+
+    public ExportBinaryFileReader(InputStream in) throws IOException {
+        m_in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        m_header = ExportBinaryFormat.readHeader(m_in);
+        ArrayList<Integer> lengths =
+                new ArrayList<Integer>(Collections.nCopies(m_header.columnTypes.size(), 0));
+        AdvertisedDataSource source = new AdvertisedDataSource(0, "", m_header.tableName, 0,
+                m_header.generation, m_header.columnNames, m_header.columnTypes, lengths);
+        m_decoder = new RowDecoder(source);
+    }
+
+    private static InputStream openFile(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            if (file.getName().endsWith(AsyncExportFileWriter.Compression.GZIP.getExtension())) {
+                in = new GZIPInputStream(in, 64 * 1024);
+            }
+            else if (file.getName().endsWith(AsyncExportFileWriter.Compression.SNAPPY.getExtension())) {
+                in = new SnappyInputStream(in);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+
+    public String getTableName() {
+        return m_header.tableName;
+    }
+
+    public long getGeneration() {
+        return m_header.generation;
+    }
+
+    /**
+     * Number of leading export metadata columns the writer was asked to skip.
+     */
+    public int getFirstField() {
+        return m_header.firstField;
+    }
+
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(m_header.columnNames);
+    }
+
+    public List<VoltType> getColumnTypes() {
+        return Collections.unmodifiableList(m_header.columnTypes);
+    }
+
+    /**
+     * @return the next row as stored in the file, or null at end of file
+     */
+    public byte[] nextRawRow() throws IOException {
+        int length;
+        try {
+            length = m_in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        byte[] row = new byte[length];
+        m_in.readFully(row);
+        return row;
+    }
+
+    /**
+     * @return the next row decoded into one object per column, including
+     * the export metadata columns, or null at end of file
+     */
+    public Object[] nextRow() throws IOException {
+        byte[] row = nextRawRow();
+        if (row == null) {
+            return null;
+        }
+        return m_decoder.decodeRow(row);
+    }
+
+    @Override
+    public void close() throws IOException {
+        m_in.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ExportBinaryFileReader file [file...]");
+            System.exit(-1);
+        }
+        CSVWriter out = new CSVWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        for (String path : args) {
+            ExportBinaryFileReader reader = new ExportBinaryFileReader(new File(path));
+            try {
+                int firstField = reader.getFirstField();
+                String[] fields = new String[reader.getColumnTypes().size() - firstField];
+                Object[] row;
+                while ((row = reader.nextRow()) != null) {
+                    for (int i = firstField; i < row.length; i++) {
+                        if (row[i] == null) {
+                            fields[i - firstField] = "NULL";
+                        } else if (row[i] instanceof byte[]) {
+                            fields[i - firstField] = Encoder.hexEncode((byte[]) row[i]);
+                        } else {
+                            fields[i - firstField] = row[i].toString();
+                        }
+                    }
+                    out.writeNext(fields);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,129 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.voltdb.VoltType;
+import org.voltdb.export.ExportProtoMessage.AdvertisedDataSource;
+
+/**
+ * Layout of the binary export file format written by ExportToFileClient
+ * when run with --type binary.
+ *
+ * A file starts with a header:
+ *   8 bytes   magic "VOLTEXPB"
+ *   int       format version
+ *   string    table name
+ *   long      generation
+ *   int       first field, the number of leading export metadata columns
+ *             the reader should hide (0 unless --skipinternals was given)
+ *   int       column count, followed for each column by
+ *     string    column name
+ *     byte      VoltType value
+ *
+ * and is followed by rows, each an int length and that many bytes of row
+ * data exactly as produced by the export stream (null bitmap followed by
+ * the little-endian encoded non-null columns, see ExportDecoderBase).
+ * Header ints, longs and lengths are big-endian, strings are an int byte
+ * count followed by UTF-8 bytes.
+ */
+public class ExportBinaryFormat {
+
+    public static final String EXTENSION = ".vexp";
+    public static final int VERSION = 1;
+
+    static final byte[] MAGIC = new byte[] { 'V', 'O', 'L', 'T', 'E', 'X', 'P', 'B' };
+
+    /**
+     * The schema carried by a file header.
+     */
+    public static class Header {
+        public final String tableName;
+        public final long generation;
+        public final int firstField;
+        public final ArrayList<String> columnNames;
+        public final ArrayList<VoltType> columnTypes;
+
+        Header(String tableName, long generation, int firstField,
+                ArrayList<String> columnNames, ArrayList<VoltType> columnTypes) {
+            this.tableName = tableName;
+            this.generation = generation;
+            this.firstField = firstField;
+            this.columnNames = columnNames;
+            this.columnTypes = columnTypes;
+        }
+    }
+
+    public static byte[] encodeHeader(AdvertisedDataSource source, int firstField) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.write(MAGIC);
+        dos.writeInt(VERSION);
+        writeString(dos, source.tableName);
+        dos.writeLong(source.m_generation);
+        dos.writeInt(firstField);
+        dos.writeInt(source.columnNames.size());
+        for (int i = 0; i < source.columnNames.size(); i++) {
+            writeString(dos, source.columnNames.get(i));
+            dos.writeByte(source.columnTypes.get(i).getValue());
+        }
+        dos.flush();
+        return baos.toByteArray();
+    }
+
+    public static Header readHeader(DataInputStream dis) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        dis.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a binary export file");
+        }
+        int version = dis.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary export file version " + version);
+        }
+        String tableName = readString(dis);
+        long generation = dis.readLong();
+        int firstField = dis.readInt();
+        int columnCount = dis.readInt();
+        ArrayList<String> names = new ArrayList<String>(columnCount);
+        ArrayList<VoltType> types = new ArrayList<VoltType>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            names.add(readString(dis));
+            types.add(VoltType.get(dis.readByte()));
+        }
+        return new Header(tableName, generation, firstField, names, types);
+    }
+
+    private static void writeString(DataOutputStream dos, String s) throws IOException {
+        byte[] bytes = s.getBytes("UTF-8");
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+    }
+
+    private static String readString(DataInputStream dis) throws IOException {
+        byte[] bytes = new byte[dis.readInt()];
+        dis.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -37,9 +37,11 @@ import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.lang3.StringEscapeUtils;
@@ -50,6 +52,8 @@ import org.voltcore.utils.CoreUtils;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltType;
 import org.voltdb.export.ExportProtoMessage.AdvertisedDataSource;
+import org.voltdb.exportclient.AsyncExportFileWriter.Compression;
+import org.voltdb.exportclient.AsyncExportFileWriter.SyncPolicy;
 import org.voltdb.types.TimestampType;
 import org.voltdb.utils.Encoder;
 import org.voltdb.utils.VoltFile;
@@ -61,11 +65,13 @@ import com.google.common.base.Throwables;
 /**
  * Uses the Export feature of VoltDB to write exported tables to files.
  *
- * command line args: --servers {comma-separated list of VoltDB server to which to connect} --type [csv|tsv] csv for
- * comma-separated values, tsv for tab-separated values --outdir {path where output files should be written} --nonce
+ * command line args: --servers {comma-separated list of VoltDB server to which to connect} --type [csv|tsv|binary] csv
+ * for comma-separated values, tsv for tab-separated values, binary for the length-prefixed row format read by
+ * {@link ExportBinaryFileReader} --outdir {path where output files should be written} --nonce
  * {string-to-unique-ify output files} --user {username for cluster export user} --password {password for cluster export
  * user} --period {period (in minutes) to use when rolling the file over} --dateformat {format of the date/time stamp
- * added to each new rolling file}
+ * added to each new rolling file} --compression [none|gzip|snappy] --fsync [none|roll|block] --io-threads
+ * {number of threads writing files}
  *
  */
 public class ExportToFileClient extends ExportClientBase {
@@ -80,6 +86,8 @@ public class ExportToFileClient extends ExportClientBase {
     // use thread-local to avoid SimpleDateFormat thread-safety issues
     protected ThreadLocal<SimpleDateFormat> m_ODBCDateformat;
     protected char m_delimiter;
+    // write rows in ExportBinaryFormat instead of delimited text
+    protected boolean m_binary;
     protected char[] m_fullDelimiters;
     protected String m_extension;
     protected String m_nonce;
@@ -111,6 +119,16 @@ public class ExportToFileClient extends ExportClientBase {
     // timer used to roll batches
     protected ScheduledExecutorService m_ses;
 
+    // threads doing the actual file writes, shared by all open files
+    protected ExecutorService m_ioExecutor;
+    protected Compression m_compression = Compression.NONE;
+    protected SyncPolicy m_syncPolicy = SyncPolicy.NONE;
+
+    // write throughput counters, reported every m_statsPeriod seconds
+    protected final AtomicLong m_rowsWritten = new AtomicLong();
+    protected final AtomicLong m_bytesWritten = new AtomicLong();
+    protected int m_statsPeriod;
+
     public static enum BinaryEncoding {
         BASE64,
         HEX
@@ -125,7 +143,7 @@ public class ExportToFileClient extends ExportClientBase {
 
     class PeriodicExportContext {
         File m_dirContainingFiles;
-        final Map<FileHandle, CSVWriter> m_writers = new TreeMap<FileHandle, CSVWriter>();
+        final Map<FileHandle, AsyncExportFileWriter> m_writers = new TreeMap<FileHandle, AsyncExportFileWriter>();
         boolean m_hasClosed = false;
         protected Date start;
         protected final Set<String> m_batchSchemasWritten = new HashSet<String>();
@@ -255,8 +273,8 @@ public class ExportToFileClient extends ExportClientBase {
             if (m_hasClosed) return;
 
             // flush and close any files that are open
-            for (Entry<FileHandle, CSVWriter> entry : m_writers.entrySet()) {
-                CSVWriter writer = entry.getValue();
+            for (Entry<FileHandle, AsyncExportFileWriter> entry : m_writers.entrySet()) {
+                AsyncExportFileWriter writer = entry.getValue();
                 if (writer == null) continue;
                 try {
                     writer.flush();
@@ -351,9 +369,9 @@ public class ExportToFileClient extends ExportClientBase {
             notifyRollIsComplete(notifySet);
         }
 
-        CSVWriter getWriter(String tableName, long generation) {
+        AsyncExportFileWriter getWriter(AdvertisedDataSource source, String tableName, long generation) {
             FileHandle handle = new FileHandle(tableName, generation);
-            CSVWriter writer = m_writers.get(handle);
+            AsyncExportFileWriter writer = m_writers.get(handle);
             if (writer != null)
                 return writer;
 
@@ -366,17 +384,11 @@ public class ExportToFileClient extends ExportClientBase {
                 throw new RuntimeException();
             }
             try {
-                OutputStreamWriter osw = new OutputStreamWriter(new FileOutputStream(newFile, false), "UTF-8");
-                if (m_fullDelimiters != null) {
-                    writer = new CSVWriter(new BufferedWriter(osw, 4096 * 4),
-                            m_fullDelimiters[0], m_fullDelimiters[1], m_fullDelimiters[2], String.valueOf(m_fullDelimiters[3]));
-                }
-                else if (m_delimiter == ',')
-                    // CSV
-                    writer = new CSVWriter(new BufferedWriter(osw, 4096 * 4), m_delimiter);
-                else {
-                    // TSV
-                    writer = CSVWriter.getStrictTSVWriter(new BufferedWriter(osw, 4096 * 4));
+                writer = new AsyncExportFileWriter(
+                        newFile, m_compression, m_syncPolicy, m_ioExecutor, m_bytesWritten);
+                if (m_binary) {
+                    byte[] header = ExportBinaryFormat.encodeHeader(source, m_firstfield);
+                    writer.writeBytes(header, 0, header.length);
                 }
             }
             catch (Exception e) {
@@ -388,6 +400,20 @@ public class ExportToFileClient extends ExportClientBase {
             return writer;
         }
 
+        CSVWriter getCSVWriter(AsyncExportFileWriter fileWriter) {
+            if (m_fullDelimiters != null) {
+                return new CSVWriter(fileWriter,
+                        m_fullDelimiters[0], m_fullDelimiters[1], m_fullDelimiters[2], String.valueOf(m_fullDelimiters[3]));
+            }
+            else if (m_delimiter == ',')
+                // CSV
+                return new CSVWriter(fileWriter, m_delimiter);
+            else {
+                // TSV
+                return CSVWriter.getStrictTSVWriter(fileWriter);
+            }
+        }
+
         void writeSchema(String tableName, long generation, String schema) {
             // if no schema's enabled pretend like this worked
             if (!m_withSchema) return;
@@ -443,21 +469,24 @@ public class ExportToFileClient extends ExportClientBase {
     }
 
 
-    // This class outputs exported rows converted to CSV or TSV values
-    // for the table named in the constructor's AdvertisedDataSource
+    // This class outputs exported rows converted to CSV or TSV values,
+    // or copied as is in the binary format, for the table named in the
+    // constructor's AdvertisedDataSource
     class ExportToFileDecoder extends ExportDecoderBase {
         private final long m_generation;
         private final String m_tableName;
         protected String m_schemaString = "ERROR SERIALIZING SCHEMA";
         private final HashSet<AdvertisedDataSource> m_sources = new HashSet<AdvertisedDataSource>();
-        private FutureTask<CSVWriter> m_firstBlockTask;
+        private FutureTask<AsyncExportFileWriter> m_firstBlockTask;
+        private AsyncExportFileWriter m_fileWriter;
+        // null when writing the binary format
         private CSVWriter m_writer;
 
         private void resetWriter() {
-            m_firstBlockTask = new FutureTask<CSVWriter>(new Callable<CSVWriter>() {
+            m_firstBlockTask = new FutureTask<AsyncExportFileWriter>(new Callable<AsyncExportFileWriter>() {
                 @Override
-                public CSVWriter call() throws Exception {
-                    CSVWriter writer = m_current.getWriter(m_tableName, m_generation);
+                public AsyncExportFileWriter call() throws Exception {
+                    AsyncExportFileWriter writer = m_current.getWriter(m_source, m_tableName, m_generation);
                     m_current.writeSchema(m_tableName, m_generation, m_schemaString);
                     return writer;
                 }
@@ -512,6 +541,20 @@ public class ExportToFileClient extends ExportClientBase {
 
         @Override
         public boolean processRow(int rowSize, byte[] rowData) {
+            if (m_binary) {
+                // the export wire format is already compact, copy it without decoding,
+                // every partition of the table appends to the same file
+                try {
+                    m_fileWriter.writeRecord(rowData.length, rowData, 0);
+                    m_rowsWritten.incrementAndGet();
+                }
+                catch (Exception x) {
+                    x.printStackTrace();
+                    return false;
+                }
+                return true;
+            }
+
             // Grab the data row
             Object[] row = null;
             try {
@@ -543,6 +586,7 @@ public class ExportToFileClient extends ExportClientBase {
                     }
                 }
                 m_writer.writeNext(fields);
+                m_rowsWritten.incrementAndGet();
             }
             catch (Exception x) {
                 x.printStackTrace();
@@ -560,7 +604,11 @@ public class ExportToFileClient extends ExportClientBase {
             m_batchLock.readLock().lock();
             m_firstBlockTask.run();
             try {
-                m_writer = m_firstBlockTask.get();
+                AsyncExportFileWriter fileWriter = m_firstBlockTask.get();
+                if (fileWriter != m_fileWriter) {
+                    m_fileWriter = fileWriter;
+                    m_writer = m_binary ? null : m_current.getCSVWriter(fileWriter);
+                }
             } catch (Throwable e) {
                 Throwables.propagate(e);
             }
@@ -572,7 +620,12 @@ public class ExportToFileClient extends ExportClientBase {
         @Override
         public void onBlockCompletion() {
             try {
-                m_writer.flush();
+                // the file writer reports I/O failures through the CSVWriter's PrintWriter,
+                // don't let the block be acked if any of its rows didn't make it out
+                if (m_writer != null && m_writer.checkError()) {
+                    throw new IOException("Error writing export data for table " + m_tableName);
+                }
+                m_fileWriter.flush();
             } catch (Throwable t) {
                 Throwables.propagate(t);
             } finally {
@@ -632,6 +685,29 @@ public class ExportToFileClient extends ExportClientBase {
                               boolean autodiscoverTopology,
                               TimeZone tz,
                               BinaryEncoding be) {
+        this(delimiter, nonce, outdir, period, dateformatString, fullDelimiters,
+                firstfield, useAdminPorts, batched, withSchema, throughputMonitorPeriod,
+                autodiscoverTopology, tz, be, false, Compression.NONE, SyncPolicy.NONE, 1);
+    }
+
+    public ExportToFileClient(char delimiter,
+                              String nonce,
+                              File outdir,
+                              int period,
+                              String dateformatString,
+                              String fullDelimiters,
+                              int firstfield,
+                              boolean useAdminPorts,
+                              boolean batched,
+                              boolean withSchema,
+                              int throughputMonitorPeriod,
+                              boolean autodiscoverTopology,
+                              TimeZone tz,
+                              BinaryEncoding be,
+                              boolean binary,
+                              Compression compression,
+                              SyncPolicy syncPolicy,
+                              int ioThreads) {
         super(useAdminPorts, throughputMonitorPeriod, autodiscoverTopology);
         configureInternal(
                 delimiter,
@@ -644,7 +720,12 @@ public class ExportToFileClient extends ExportClientBase {
                 batched,
                 withSchema,
                 tz,
-                be);
+                be,
+                binary,
+                compression,
+                syncPolicy,
+                ioThreads,
+                throughputMonitorPeriod);
     }
 
     @Override
@@ -681,6 +762,30 @@ public class ExportToFileClient extends ExportClientBase {
         }
         m_batchLock.writeLock().lock();
         m_current.closeAllWriters();
+        m_ioExecutor.shutdown();
+        logWriteStatistics(0);
+    }
+
+    private long m_lastStatsRows = 0;
+    private long m_lastStatsBytes = 0;
+
+    /**
+     * Log rows and bytes written since startup and, when given a window
+     * length, the rates over the last window.
+     */
+    void logWriteStatistics(int windowSeconds) {
+        long rows = m_rowsWritten.get();
+        long bytes = m_bytesWritten.get();
+        if (windowSeconds > 0) {
+            m_logger.info(String.format(
+                    "In the previous %d s: wrote %.1f rows/s and %.4f MB/s of export data",
+                    windowSeconds,
+                    (rows - m_lastStatsRows) / (double) windowSeconds,
+                    (bytes - m_lastStatsBytes) / (double) windowSeconds / (1024.0 * 1024.0)));
+        }
+        m_logger.info(String.format("Since startup: wrote %d rows and %d bytes of export data", rows, bytes));
+        m_lastStatsRows = rows;
+        m_lastStatsBytes = bytes;
     }
 
     /**
@@ -728,7 +833,7 @@ public class ExportToFileClient extends ExportClientBase {
         }
 
         m_logger.info(String.format("Writing to disk in %s format",
-                (m_delimiter == ',') ? "CSV" : "TSV"));
+                m_binary ? "binary" : (m_delimiter == ',') ? "CSV" : "TSV"));
         m_logger.info(String.format("Prepending export data files with nonce: %s",
                 m_nonce));
         m_logger.info(String.format("Using date format for file names: %s",
@@ -737,6 +842,8 @@ public class ExportToFileClient extends ExportClientBase {
                 m_period, m_period == 1 ? "" : "s"));
         m_logger.info(String.format("Writing export files to dir: %s",
                 m_outDir));
+        m_logger.info(String.format("Using %s compression and %s fsync policy for export files",
+                m_compression.name().toLowerCase(), m_syncPolicy.name().toLowerCase()));
         if (m_firstfield == 0) {
             m_logger.info("Including VoltDB export metadata");
         }
@@ -751,7 +858,7 @@ public class ExportToFileClient extends ExportClientBase {
         System.out.println("java -cp <classpath> org.voltdb.exportclient.ExportToFileClient "
                         + "--servers server1[,server2,...,serverN] "
                         + "--connect (admin|client) "
-                        + "--type (csv|tsv) "
+                        + "--type (csv|tsv|binary) "
                         + "--nonce file_prefix "
                         + "[--batched] "
                         + "[--with-schema] "
@@ -763,7 +870,10 @@ public class ExportToFileClient extends ExportClientBase {
                         + "[--user export_username] "
                         + "[--password export_password]"
                         + "[--timezone GMT+0]"
-                        + "[--binaryencoding [ HEX | BASE64 ]]");
+                        + "[--binaryencoding [ HEX | BASE64 ]]"
+                        + "[--compression [ none | gzip | snappy ]]"
+                        + "[--fsync [ none | roll | block ]]"
+                        + "[--io-threads number_of_file_writing_threads]");
         System.out.println("Note that server hostnames may be appended with a specific port:");
         System.out.println("  --servers server1:port1[,server2:port2,...,serverN:portN]");
 
@@ -788,6 +898,10 @@ public class ExportToFileClient extends ExportClientBase {
         boolean autodiscoverTopolgy = true;
         TimeZone tz = VoltDB.GMT_TIMEZONE;
         BinaryEncoding be = BinaryEncoding.HEX;
+        Compression compression = Compression.NONE;
+        SyncPolicy syncPolicy = SyncPolicy.NONE;
+        int ioThreads = 1;
+        boolean binary = false;
 
         for (int ii = 0; ii < args.length; ii++) {
             String arg = args[ii];
@@ -836,8 +950,11 @@ public class ExportToFileClient extends ExportClientBase {
                     delimiter = ',';
                 } else if (type.equalsIgnoreCase("tsv")) {
                     delimiter = '\t';
+                } else if (type.equalsIgnoreCase("binary")) {
+                    delimiter = ',';
+                    binary = true;
                 } else {
-                    System.err.println("Error: --type must be one of CSV or TSV");
+                    System.err.println("Error: --type must be one of CSV, TSV or BINARY");
                     printHelpAndQuit(-1);
                 }
                 ii++;
@@ -958,6 +1075,44 @@ public class ExportToFileClient extends ExportClientBase {
                 }
                 ii++;
             }
+            else if (arg.equals("--compression")) {
+                if (args.length < ii + 1) {
+                    System.err.println("Error: Not enough args following --compression");
+                    printHelpAndQuit(-1);
+                }
+                try {
+                    compression = Compression.valueOf(args[ii + 1].trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Error: --compression must be one of none, gzip or snappy");
+                    printHelpAndQuit(-1);
+                }
+                ii++;
+            }
+            else if (arg.equals("--fsync")) {
+                if (args.length < ii + 1) {
+                    System.err.println("Error: Not enough args following --fsync");
+                    printHelpAndQuit(-1);
+                }
+                try {
+                    syncPolicy = SyncPolicy.valueOf(args[ii + 1].trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Error: --fsync must be one of none, roll or block");
+                    printHelpAndQuit(-1);
+                }
+                ii++;
+            }
+            else if (arg.equals("--io-threads")) {
+                if (args.length < ii + 1) {
+                    System.err.println("Error: Not enough args following --io-threads");
+                    printHelpAndQuit(-1);
+                }
+                ioThreads = Integer.parseInt(args[ii + 1].trim());
+                if (ioThreads < 1) {
+                    System.err.println("Error: Specified value for --io-threads must be >= 1.");
+                    printHelpAndQuit(-1);
+                }
+                ii++;
+            }
             else if (arg.equals("--disable-topology-autodiscovery")) {
                 autodiscoverTopolgy = false;
             }
@@ -1016,7 +1171,11 @@ public class ExportToFileClient extends ExportClientBase {
                                                            throughputMonitorPeriod,
                                                            autodiscoverTopolgy,
                                                            tz,
-                                                           be);
+                                                           be,
+                                                           binary,
+                                                           compression,
+                                                           syncPolicy,
+                                                           ioThreads);
 
         // add all of the servers specified
         for (String server : volt_servers) {
@@ -1052,14 +1211,18 @@ public class ExportToFileClient extends ExportClientBase {
             throw new IllegalArgumentException("ExportToFile: must provide a filename nonce");
         }
         char delimiter = '\0';
+        boolean binary = false;
         String type = conf.getProperty("type", "").trim();
         if (type != null) {
             if (type.equalsIgnoreCase("csv")) {
                 delimiter = ',';
             } else if (type.equalsIgnoreCase("tsv")) {
                 delimiter = '\t';
+            } else if (type.equalsIgnoreCase("binary")) {
+                delimiter = ',';
+                binary = true;
             } else {
-                throw new IllegalArgumentException("Error: --type must be one of CSV or TSV");
+                throw new IllegalArgumentException("Error: --type must be one of CSV, TSV or BINARY");
             }
         }
         if (delimiter == '\0') {
@@ -1107,6 +1270,17 @@ public class ExportToFileClient extends ExportClientBase {
         BinaryEncoding encoding = BinaryEncoding.valueOf(
                 conf.getProperty("binaryencoding", "HEX").trim().toUpperCase());
 
+        Compression compression = Compression.valueOf(
+                conf.getProperty("compression", "NONE").trim().toUpperCase());
+        SyncPolicy syncPolicy = SyncPolicy.valueOf(
+                conf.getProperty("fsync", "NONE").trim().toUpperCase());
+
+        int ioThreads = Integer.parseInt(conf.getProperty("io-threads", "1").trim());
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("Error: Specified value for io-threads must be >= 1.");
+        }
+        int statsPeriod = Integer.parseInt(conf.getProperty("throughput-monitor-period", "0").trim());
+
         configureInternal(
                 delimiter,
                 nonce,
@@ -1118,7 +1292,12 @@ public class ExportToFileClient extends ExportClientBase {
                 batched,
                 withSchema,
                 tz,
-                encoding);
+                encoding,
+                binary,
+                compression,
+                syncPolicy,
+                ioThreads,
+                statsPeriod);
     }
 
     private void configureInternal(
@@ -1132,9 +1311,23 @@ public class ExportToFileClient extends ExportClientBase {
                               boolean batched,
                               boolean withSchema,
                               final TimeZone tz,
-                              final BinaryEncoding be) {
+                              final BinaryEncoding be,
+                              boolean binary,
+                              Compression compression,
+                              SyncPolicy syncPolicy,
+                              int ioThreads,
+                              final int statsPeriod) {
         m_delimiter = delimiter;
-        m_extension = (delimiter == ',') ? ".csv" : ".tsv";
+        m_binary = binary;
+        m_compression = compression;
+        m_syncPolicy = syncPolicy;
+        m_statsPeriod = statsPeriod;
+        if (binary) {
+            m_extension = ExportBinaryFormat.EXTENSION + compression.getExtension();
+        }
+        else {
+            m_extension = ((delimiter == ',') ? ".csv" : ".tsv") + compression.getExtension();
+        }
         m_nonce = nonce;
         m_outDir = outdir;
         m_tableDecoders = new HashMap<Long, HashMap<String, ExportToFileDecoder>>();
@@ -1172,6 +1365,8 @@ public class ExportToFileClient extends ExportClientBase {
             m_fullDelimiters = null;
         }
 
+        m_ioExecutor = CoreUtils.getListeningExecutorService("Export file writer for nonce " + nonce, ioThreads);
+
         // init the batch system with the first batch
         assert(m_current == null);
         m_current = new PeriodicExportContext();
@@ -1192,5 +1387,15 @@ public class ExportToFileClient extends ExportClientBase {
                 CoreUtils.getScheduledThreadPoolExecutor(
                         "Export file rotate timer for nonce " + nonce, 1, CoreUtils.SMALL_STACK_SIZE);
         m_ses.scheduleWithFixedDelay(rotator, m_period, m_period, TimeUnit.MINUTES);
+
+        if (statsPeriod > 0) {
+            Runnable statsLogger = new Runnable() {
+                @Override
+                public void run() {
+                    logWriteStatistics(statsPeriod);
+                }
+            };
+            m_ses.scheduleAtFixedRate(statsLogger, statsPeriod, statsPeriod, TimeUnit.SECONDS);
+        }
     }
 }
@@ -104,6 +104,7 @@ public abstract class BaseInitiator implements Initiator
         m_repairLog.setHSId(m_initiatorMailbox.getHSId());
         StarvationTracker st = new StarvationTracker(getInitiatorHSId());
         m_scheduler.setStarvationTracker(st);
+        m_scheduler.setTraceRing(Iv2TraceRing.create(getInitiatorHSId()));
         m_scheduler.setLock(m_initiatorMailbox);
         agent.registerStatsSource(StatsSelector.STARVATION,
                                   getInitiatorHSId(),
@@ -130,9 +131,12 @@ public abstract class BaseInitiator implements Initiator
         throws KeeperException, ExecutionException, InterruptedException
     {
             int snapshotPriority = 6;
+            int snapshotTargetLatency = 0;
             if (catalogContext.cluster.getDeployment().get("deployment") != null) {
                 snapshotPriority = catalogContext.cluster.getDeployment().get("deployment").
                     getSystemsettings().get("systemsettings").getSnapshotpriority();
+                snapshotTargetLatency = catalogContext.cluster.getDeployment().get("deployment").
+                    getSystemsettings().get("systemsettings").getSnapshottargetlatency();
             }
 
             // demote rejoin to create for initiators that aren't rejoinable.
@@ -154,6 +158,7 @@ public abstract class BaseInitiator implements Initiator
                                        numberOfPartitions,
                                        startAction,
                                        snapshotPriority,
+                                       snapshotTargetLatency,
                                        m_initiatorMailbox,
                                        agent,
                                        memStats,
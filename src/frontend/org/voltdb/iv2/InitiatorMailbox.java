@@ -360,6 +360,7 @@ public class InitiatorMailbox implements Mailbox
 
     private void repairReplicasWithInternal(List<Long> needsRepair, VoltMessage repairWork) {
         assert(lockingVows());
+        Iv2Trace.logRepair(m_scheduler.getQueue().getTraceRing(), repairWork, needsRepair.size());
         if (repairWork instanceof Iv2InitiateTaskMessage) {
             Iv2InitiateTaskMessage m = (Iv2InitiateTaskMessage)repairWork;
             Iv2InitiateTaskMessage work = new Iv2InitiateTaskMessage(m.getInitiatorHSId(), getHSId(), m);
@@ -385,7 +386,7 @@ public class InitiatorMailbox implements Mailbox
 
     private void logRxMessage(VoltMessage message)
     {
-        Iv2Trace.logInitiatorRxMsg(message, m_hsId);
+        Iv2Trace.logInitiatorRxMsg(m_scheduler.getQueue().getTraceRing(), message, m_hsId);
     }
 
     private void logTxMessage(VoltMessage message)
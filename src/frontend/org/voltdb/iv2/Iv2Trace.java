@@ -20,10 +20,12 @@ package org.voltdb.iv2;
 import java.util.List;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.messaging.TransactionInfoBaseMessage;
 import org.voltcore.messaging.VoltMessage;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.ClientInterfaceHandleManager;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.dtxn.TransactionState;
 import org.voltdb.messaging.CompleteTransactionMessage;
 import org.voltdb.messaging.FragmentResponseMessage;
 import org.voltdb.messaging.FragmentTaskMessage;
@@ -31,6 +33,11 @@ import org.voltdb.messaging.InitiateResponseMessage;
 import org.voltdb.messaging.Iv2InitiateTaskMessage;
 import org.voltdb.messaging.MultiPartitionParticipantMessage;
 
+/**
+ * Transaction tracing for IV2. Every event is recorded in the binary
+ * Iv2TraceRing of the mailbox that saw it. The IV2TRACE and IV2QUEUETRACE
+ * loggers still produce the readable trace when enabled.
+ */
 public class Iv2Trace
 {
     private static VoltLogger iv2log = new VoltLogger("IV2TRACE");
@@ -45,8 +52,13 @@ public class Iv2Trace
         }
     }
 
-    public static void logCreateTransaction(Iv2InitiateTaskMessage msg)
+    public static void logCreateTransaction(Iv2TraceRing ring, Iv2InitiateTaskMessage msg)
     {
+        if (ring != null) {
+            ring.record(Iv2TraceRing.CREATE_TXN | flags(msg.isSinglePartition(), msg.isReadOnly()),
+                    msg.getTxnId(), msg.getSpHandle(), msg.getClientInterfaceHandle(),
+                    msg.getCoordinatorHSId(), 0);
+        }
         if (iv2log.isTraceEnabled()) {
             String logmsg = "createTxn %s ciHandle %s initHSId %s proc %s";
             iv2log.trace(String.format(logmsg, CoreUtils.hsIdToString(msg.getInitiatorHSId()),
@@ -56,8 +68,13 @@ public class Iv2Trace
         }
     }
 
-    public static void logFinishTransaction(InitiateResponseMessage msg, long localHSId)
+    public static void logFinishTransaction(Iv2TraceRing ring, InitiateResponseMessage msg, long localHSId)
     {
+        if (ring != null) {
+            ring.record(Iv2TraceRing.FINISH_TXN | status(msg.getClientResponseData().getStatus()),
+                    msg.getTxnId(), msg.getSpHandle(), msg.getClientInterfaceHandle(),
+                    msg.getCoordinatorHSId(), 0);
+        }
         if (iv2log.isTraceEnabled()) {
             String logmsg = "finishTxn %s ciHandle %s initHSId %s status %s";
             iv2log.trace(String.format(logmsg, CoreUtils.hsIdToString(localHSId),
@@ -68,6 +85,23 @@ public class Iv2Trace
         }
     }
 
+    private static int flags(boolean singlePartition, boolean readOnly)
+    {
+        int flags = 0;
+        if (singlePartition) {
+            flags |= Iv2TraceRing.FLAG_SINGLE_PARTITION;
+        }
+        if (readOnly) {
+            flags |= Iv2TraceRing.FLAG_READ_ONLY;
+        }
+        return flags;
+    }
+
+    private static int status(byte status)
+    {
+        return (status & 0xff) << Iv2TraceRing.STATUS_SHIFT;
+    }
+
     private static String txnIdToString(long txnId)
     {
         if (txnId == Long.MIN_VALUE) {
@@ -113,8 +147,21 @@ public class Iv2Trace
         return "UNKNOWN_STATUS_CODE!";
     }
 
-    public static void logInitiatorRxMsg(VoltMessage msg, long localHSId)
+    public static void logInitiatorRxMsg(Iv2TraceRing ring, VoltMessage msg, long localHSId)
     {
+        if (ring != null) {
+            if (msg instanceof InitiateResponseMessage) {
+                InitiateResponseMessage iresp = (InitiateResponseMessage)msg;
+                ring.record(Iv2TraceRing.RX_INIT_RSP | status(iresp.getClientResponseData().getStatus()),
+                        iresp.getTxnId(), iresp.getSpHandle(), iresp.getClientInterfaceHandle(),
+                        iresp.m_sourceHSId, 0);
+            }
+            else if (msg instanceof FragmentResponseMessage) {
+                FragmentResponseMessage fresp = (FragmentResponseMessage)msg;
+                ring.record(Iv2TraceRing.RX_FRAG_RSP | status(fresp.getStatusCode()),
+                        fresp.getTxnId(), fresp.getSpHandle(), 0, fresp.m_sourceHSId, 0);
+            }
+        }
         if (iv2log.isTraceEnabled()) {
             if (msg instanceof InitiateResponseMessage) {
                 InitiateResponseMessage iresp = (InitiateResponseMessage)msg;
@@ -138,9 +185,14 @@ public class Iv2Trace
         }
     }
 
-    public static void logIv2InitiateTaskMessage(Iv2InitiateTaskMessage itask, long localHSId, long txnid,
-            long spHandle)
+    public static void logIv2InitiateTaskMessage(Iv2TraceRing ring, Iv2InitiateTaskMessage itask,
+            long localHSId, long txnid, long spHandle)
     {
+        if (ring != null) {
+            ring.record(Iv2TraceRing.RX_INIT_MSG | flags(itask.isSinglePartition(), itask.isReadOnly()),
+                    txnid, spHandle, itask.getClientInterfaceHandle(), itask.m_sourceHSId,
+                    itask.getTruncationHandle());
+        }
         if (iv2log.isTraceEnabled()) {
             String logmsg = "rxInitMsg %s from %s ciHandle %s txnId %s spHandle %s trunc %s";
             if (itask.getTxnId() != Long.MIN_VALUE && itask.getTxnId() != txnid) {
@@ -160,9 +212,12 @@ public class Iv2Trace
         }
     }
 
-    public static void logIv2MultipartSentinel(MultiPartitionParticipantMessage message, long localHSId,
-            long txnId)
+    public static void logIv2MultipartSentinel(Iv2TraceRing ring, MultiPartitionParticipantMessage message,
+            long localHSId, long txnId)
     {
+        if (ring != null) {
+            ring.record(Iv2TraceRing.RX_SENTINEL_MSG, txnId, Long.MIN_VALUE, 0, message.m_sourceHSId, 0);
+        }
         if (iv2log.isTraceEnabled()) {
             String logmsg = "rxSntlMsg %s from %s txnId %s";
             iv2log.trace(String.format(logmsg, CoreUtils.hsIdToString(localHSId),
@@ -171,9 +226,14 @@ public class Iv2Trace
         }
     }
 
-    public static void logFragmentTaskMessage(FragmentTaskMessage ftask, long localHSId, long spHandle,
-            boolean borrow)
+    public static void logFragmentTaskMessage(Iv2TraceRing ring, FragmentTaskMessage ftask, long localHSId,
+            long spHandle, boolean borrow)
     {
+        if (ring != null) {
+            ring.record((borrow ? Iv2TraceRing.RX_BORROW_MSG : Iv2TraceRing.RX_FRAG_MSG) |
+                        flags(false, ftask.isReadOnly()),
+                    ftask.getTxnId(), spHandle, 0, ftask.m_sourceHSId, ftask.getTruncationHandle());
+        }
         if (iv2log.isTraceEnabled()) {
             String label = "rxFragMsg";
             if (borrow) {
@@ -193,8 +253,20 @@ public class Iv2Trace
         }
     }
 
-    public static void logCompleteTransactionMessage(CompleteTransactionMessage ctask, long localHSId)
+    public static void logCompleteTransactionMessage(Iv2TraceRing ring, CompleteTransactionMessage ctask,
+            long localHSId)
     {
+        if (ring != null) {
+            int flags = 0;
+            if (ctask.isRollback()) {
+                flags |= Iv2TraceRing.FLAG_ROLLBACK;
+            }
+            if (ctask.isRestart()) {
+                flags |= Iv2TraceRing.FLAG_RESTART;
+            }
+            ring.record(Iv2TraceRing.RX_COMPLETE_MSG | flags,
+                    ctask.getTxnId(), ctask.getSpHandle(), 0, ctask.m_sourceHSId, 0);
+        }
         if (iv2log.isTraceEnabled()) {
             String logmsg = "rxCompMsg %s from %s txnId %s %s %s";
             iv2log.trace(String.format(logmsg, CoreUtils.hsIdToString(localHSId),
@@ -205,8 +277,11 @@ public class Iv2Trace
         }
     }
 
-    public static void logTransactionTaskQueueOffer(TransactionTask task)
+    public static void logTransactionTaskQueueOffer(Iv2TraceRing ring, TransactionTask task)
     {
+        if (ring != null) {
+            logTask(ring, Iv2TraceRing.TXN_QUEUE_OFFER, task);
+        }
         if (iv2queuelog.isTraceEnabled()) {
             String logmsg = "txnQOffer txnId %s spHandle %s type %s";
             iv2queuelog.trace(String.format(logmsg, txnIdToString(task.getTxnId()),
@@ -215,8 +290,11 @@ public class Iv2Trace
         }
     }
 
-    public static void logSiteTaskerQueueOffer(TransactionTask task)
+    public static void logSiteTaskerQueueOffer(Iv2TraceRing ring, TransactionTask task)
     {
+        if (ring != null) {
+            logTask(ring, Iv2TraceRing.SITE_QUEUE_OFFER, task);
+        }
         if (iv2queuelog.isTraceEnabled()) {
             String logmsg = "tskQOffer txnId %s spHandle %s type %s";
             iv2queuelog.trace(String.format(logmsg, txnIdToString(task.getTxnId()),
@@ -224,4 +302,38 @@ public class Iv2Trace
                     task.m_txnState.isSinglePartition() ? "SP" : "MP"));
         }
     }
+
+    public static void logExecuteStart(Iv2TraceRing ring, TransactionTask task)
+    {
+        if (ring != null) {
+            logTask(ring, Iv2TraceRing.EXECUTE_START, task);
+        }
+    }
+
+    public static void logExecuteEnd(Iv2TraceRing ring, TransactionTask task)
+    {
+        if (ring != null) {
+            logTask(ring, Iv2TraceRing.EXECUTE_END, task);
+        }
+    }
+
+    public static void logRepair(Iv2TraceRing ring, VoltMessage repairWork, int replicasToRepair)
+    {
+        if (ring != null) {
+            long txnId = Long.MIN_VALUE;
+            long spHandle = Long.MIN_VALUE;
+            if (repairWork instanceof TransactionInfoBaseMessage) {
+                txnId = ((TransactionInfoBaseMessage)repairWork).getTxnId();
+                spHandle = ((TransactionInfoBaseMessage)repairWork).getSpHandle();
+            }
+            ring.record(Iv2TraceRing.REPAIR, txnId, spHandle, 0, repairWork.m_sourceHSId, replicasToRepair);
+        }
+    }
+
+    private static void logTask(Iv2TraceRing ring, int type, TransactionTask task)
+    {
+        TransactionState txnState = task.getTransactionState();
+        ring.record(type | flags(txnState.isSinglePartition(), txnState.isReadOnly()),
+                task.getTxnId(), task.getSpHandle(), 0, 0, 0);
+    }
 }
@@ -0,0 +1,263 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb.iv2;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.ClientInterfaceHandleManager;
+
+/**
+ * Offline reader for the files written by Iv2TraceRing, either by
+ * {@literal @}TraceDump or next to a crash file. Prints the events of all
+ * rings in the given files as one timeline.
+ *
+ * Usage: Iv2TraceDecoder [-txn txnId] file...
+ */
+public class Iv2TraceDecoder
+{
+    private static final String[] s_typeNames = new String[] {
+        "unknown", "createTxn", "finishTxn", "rxInitMsg", "rxFragMsg", "rxBrrwMsg",
+        "rxCompMsg", "rxSntlMsg", "rxInitRsp", "rxFragRsp", "txnQOffer", "tskQOffer",
+        "execStart", "execEnd", "repair"
+    };
+
+    /** One decoded event */
+    public static class Event
+    {
+        /** HSId of the mailbox whose ring held the event */
+        public final long hsId;
+        /** Position of the event in its ring */
+        public final long sequence;
+        /** Wall clock time of the event in nanoseconds since the epoch */
+        public final long wallNanos;
+        public final int header;
+        public final long txnId;
+        public final long spHandle;
+        public final long ciHandle;
+        public final long peerHSId;
+        public final long extra;
+
+        Event(long hsId, long sequence, long wallNanos, long[] fields)
+        {
+            this.hsId = hsId;
+            this.sequence = sequence;
+            this.wallNanos = wallNanos;
+            this.header = (int)fields[1];
+            this.txnId = fields[2];
+            this.spHandle = fields[3];
+            this.ciHandle = fields[4];
+            this.peerHSId = fields[5];
+            this.extra = fields[6];
+        }
+
+        public int getType()
+        {
+            return header & 0xff;
+        }
+
+        public boolean hasFlag(int flag)
+        {
+            return (header & flag) != 0;
+        }
+
+        public byte getStatus()
+        {
+            return (byte)(header >>> Iv2TraceRing.STATUS_SHIFT);
+        }
+    }
+
+    /**
+     * Read every event of every ring in a dump file, in ring order.
+     */
+    public static List<Event> read(File file) throws IOException
+    {
+        DataInputStream in =
+            new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        List<Event> events = new ArrayList<Event>();
+        try {
+            if (in.readInt() != Iv2TraceRing.MAGIC) {
+                throw new IOException(file + " is not a transaction trace file");
+            }
+            int version = in.readInt();
+            if (version != Iv2TraceRing.VERSION) {
+                throw new IOException("Unsupported transaction trace version " + version + " in " + file);
+            }
+            int rings = in.readInt();
+            long[] fields = new long[Iv2TraceRing.FIELDS];
+            for (int r = 0; r < rings; r++) {
+                long hsId = in.readLong();
+                long wallMillis = in.readLong();
+                long nanoTime = in.readLong();
+                in.readInt();  // capacity
+                in.readLong(); // next sequence
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    long sequence = in.readLong();
+                    for (int f = 0; f < fields.length; f++) {
+                        fields[f] = in.readLong();
+                    }
+                    long wallNanos = wallMillis * 1000000L + (fields[0] - nanoTime);
+                    events.add(new Event(hsId, sequence, wallNanos, fields));
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return events;
+    }
+
+    /**
+     * Sort events from any number of rings into one timeline.
+     */
+    public static void sortByTime(List<Event> events)
+    {
+        Collections.sort(events, new Comparator<Event>() {
+            @Override
+            public int compare(Event o1, Event o2)
+            {
+                if (o1.wallNanos != o2.wallNanos) {
+                    return o1.wallNanos < o2.wallNanos ? -1 : 1;
+                }
+                if (o1.hsId != o2.hsId) {
+                    return o1.hsId < o2.hsId ? -1 : 1;
+                }
+                return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+            }
+        });
+    }
+
+    public static String typeToString(int type)
+    {
+        if (type > 0 && type < s_typeNames.length) {
+            return s_typeNames[type];
+        }
+        return s_typeNames[0];
+    }
+
+    private static String idToString(long id)
+    {
+        return id == Long.MIN_VALUE ? "UNUSED" : TxnEgo.txnIdToString(id);
+    }
+
+    /**
+     * Format one event. The delta is the time since the previous event of
+     * the same transaction, or -1 for the first one.
+     */
+    public static String format(Event event, long deltaNanos)
+    {
+        SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss.SSS");
+        StringBuilder sb = new StringBuilder();
+        sb.append(sdf.format(new Date(event.wallNanos / 1000000L)));
+        sb.append(String.format("%06d ", event.wallNanos % 1000000L));
+        sb.append(String.format("%-10s", typeToString(event.getType())));
+        sb.append(' ').append(CoreUtils.hsIdToString(event.hsId));
+        sb.append(" txnId ").append(idToString(event.txnId));
+        sb.append(" spHandle ").append(idToString(event.spHandle));
+        if (event.ciHandle != 0) {
+            sb.append(" ciHandle ").append(ClientInterfaceHandleManager.handleToString(event.ciHandle));
+        }
+        if (event.peerHSId != 0) {
+            sb.append(" peer ").append(CoreUtils.hsIdToString(event.peerHSId));
+        }
+        switch (event.getType()) {
+        case Iv2TraceRing.RX_INIT_MSG:
+        case Iv2TraceRing.RX_FRAG_MSG:
+        case Iv2TraceRing.RX_BORROW_MSG:
+            sb.append(" trunc ").append(idToString(event.extra));
+            break;
+        case Iv2TraceRing.REPAIR:
+            sb.append(" replicas ").append(event.extra);
+            break;
+        case Iv2TraceRing.FINISH_TXN:
+        case Iv2TraceRing.RX_INIT_RSP:
+        case Iv2TraceRing.RX_FRAG_RSP:
+            sb.append(" status ").append(event.getStatus());
+            break;
+        }
+        if (event.hasFlag(Iv2TraceRing.FLAG_SINGLE_PARTITION)) {
+            sb.append(" SP");
+        }
+        if (event.hasFlag(Iv2TraceRing.FLAG_READ_ONLY)) {
+            sb.append(" RO");
+        }
+        if (event.hasFlag(Iv2TraceRing.FLAG_ROLLBACK)) {
+            sb.append(" ROLLBACK");
+        }
+        if (event.hasFlag(Iv2TraceRing.FLAG_RESTART)) {
+            sb.append(" RESTART");
+        }
+        if (deltaNanos >= 0) {
+            sb.append(String.format(" +%.3fms", deltaNanos / 1000000.0));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Print a timeline of the events, optionally only those of one transaction.
+     */
+    public static void printTimeline(List<Event> events, Long txnFilter, PrintStream out)
+    {
+        Map<Long, Long> lastSeen = new HashMap<Long, Long>();
+        for (Event event : events) {
+            if (txnFilter != null && event.txnId != txnFilter) {
+                continue;
+            }
+            long delta = -1;
+            if (event.txnId != Long.MIN_VALUE) {
+                Long last = lastSeen.put(event.txnId, event.wallNanos);
+                if (last != null) {
+                    delta = event.wallNanos - last;
+                }
+            }
+            out.println(format(event, delta));
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        Long txnFilter = null;
+        List<Event> events = new ArrayList<Event>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-txn") && i + 1 < args.length) {
+                txnFilter = Long.valueOf(args[++i]);
+            }
+            else {
+                events.addAll(read(new File(args[i])));
+            }
+        }
+        if (events.isEmpty()) {
+            System.err.println("Usage: Iv2TraceDecoder [-txn txnId] file...");
+            System.exit(-1);
+        }
+        sortByTime(events);
+        printTimeline(events, txnFilter, System.out);
+    }
+}
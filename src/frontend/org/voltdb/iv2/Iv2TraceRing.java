@@ -0,0 +1,220 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb.iv2;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.voltcore.utils.CoreUtils;
+
+/**
+ * Always-on record of the most recent transaction events seen by one
+ * mailbox (a site's initiator or the client interface). Events are fixed
+ * size and written into preallocated arrays, so recording one costs two
+ * atomic operations and no allocation. The oldest events are overwritten.
+ *
+ * Any thread may record. A dump copies whatever complete events the ring
+ * holds at that moment; an event being overwritten while it is copied is
+ * skipped. Iv2TraceDecoder turns dumps back into timelines.
+ */
+public class Iv2TraceRing
+{
+    public static final int MAGIC = 0x49563254; // "IV2T"
+    public static final int VERSION = 1;
+
+    // Event types, the low byte of an event's header
+    public static final int CREATE_TXN = 1;
+    public static final int FINISH_TXN = 2;
+    public static final int RX_INIT_MSG = 3;
+    public static final int RX_FRAG_MSG = 4;
+    public static final int RX_BORROW_MSG = 5;
+    public static final int RX_COMPLETE_MSG = 6;
+    public static final int RX_SENTINEL_MSG = 7;
+    public static final int RX_INIT_RSP = 8;
+    public static final int RX_FRAG_RSP = 9;
+    public static final int TXN_QUEUE_OFFER = 10;
+    public static final int SITE_QUEUE_OFFER = 11;
+    public static final int EXECUTE_START = 12;
+    public static final int EXECUTE_END = 13;
+    public static final int REPAIR = 14;
+
+    // Event flags, the second byte of an event's header
+    public static final int FLAG_SINGLE_PARTITION = 1 << 8;
+    public static final int FLAG_READ_ONLY = 1 << 9;
+    public static final int FLAG_ROLLBACK = 1 << 10;
+    public static final int FLAG_RESTART = 1 << 11;
+
+    // A response status is kept in the third byte of an event's header
+    static final int STATUS_SHIFT = 16;
+
+    /** Events kept by each ring, rounded up to a power of two */
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("IV2_TRACE_EVENTS", 8192);
+
+    // Fields of an event besides its sequence number:
+    // nanoTime, header, txnId, spHandle, ciHandle, peer HSId, extra
+    static final int FIELDS = 7;
+
+    private static final ConcurrentHashMap<Long, Iv2TraceRing> s_rings =
+        new ConcurrentHashMap<Long, Iv2TraceRing>();
+
+    private final long m_hsId;
+    private final int m_mask;
+    private final long[] m_events;
+    // Sequence number of the event in each slot, -1 while the slot is written
+    private final AtomicLongArray m_sequences;
+    private final AtomicLong m_next = new AtomicLong();
+
+    /**
+     * Create the ring for a mailbox and make it visible to dumps.
+     * A ring created again for the same HSId replaces the old one.
+     */
+    public static Iv2TraceRing create(long hsId)
+    {
+        Iv2TraceRing ring = new Iv2TraceRing(hsId, DEFAULT_CAPACITY);
+        s_rings.put(hsId, ring);
+        return ring;
+    }
+
+    /** @return the rings of the mailboxes on the given host */
+    public static List<Iv2TraceRing> getRings(int hostId)
+    {
+        List<Iv2TraceRing> rings = new ArrayList<Iv2TraceRing>();
+        for (Iv2TraceRing ring : s_rings.values()) {
+            if (CoreUtils.getHostIdFromHSId(ring.m_hsId) == hostId) {
+                rings.add(ring);
+            }
+        }
+        return rings;
+    }
+
+    /** @return the rings of every mailbox in this process */
+    public static Collection<Iv2TraceRing> getRings()
+    {
+        return new ArrayList<Iv2TraceRing>(s_rings.values());
+    }
+
+    Iv2TraceRing(long hsId, int capacity)
+    {
+        int slots = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        m_hsId = hsId;
+        m_mask = slots - 1;
+        m_events = new long[slots * FIELDS];
+        m_sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            m_sequences.set(i, -1);
+        }
+    }
+
+    public long getHSId()
+    {
+        return m_hsId;
+    }
+
+    public int getCapacity()
+    {
+        return m_mask + 1;
+    }
+
+    public void record(int header, long txnId, long spHandle, long ciHandle, long peerHSId, long extra)
+    {
+        final long seq = m_next.getAndIncrement();
+        final int slot = (int)(seq & m_mask);
+        final int base = slot * FIELDS;
+        m_sequences.set(slot, -1);
+        m_events[base] = System.nanoTime();
+        m_events[base + 1] = header;
+        m_events[base + 2] = txnId;
+        m_events[base + 3] = spHandle;
+        m_events[base + 4] = ciHandle;
+        m_events[base + 5] = peerHSId;
+        m_events[base + 6] = extra;
+        m_sequences.lazySet(slot, seq);
+    }
+
+    /**
+     * Write the ring's events, oldest first.
+     * The header carries the wall clock and nanoTime of the dump so the
+     * decoder can line up events from different processes.
+     * @return the number of events written
+     */
+    public int writeTo(DataOutputStream out) throws IOException
+    {
+        final long wallMillis = System.currentTimeMillis();
+        final long nanoTime = System.nanoTime();
+        final long next = m_next.get();
+        final long first = Math.max(0, next - getCapacity());
+
+        long[] copy = new long[(int)(next - first) * (FIELDS + 1)];
+        int count = 0;
+        long[] fields = new long[FIELDS];
+        for (long seq = first; seq < next; seq++) {
+            final int slot = (int)(seq & m_mask);
+            if (m_sequences.get(slot) != seq) {
+                continue;
+            }
+            System.arraycopy(m_events, slot * FIELDS, fields, 0, FIELDS);
+            if (m_sequences.get(slot) != seq) {
+                continue;
+            }
+            copy[count * (FIELDS + 1)] = seq;
+            System.arraycopy(fields, 0, copy, count * (FIELDS + 1) + 1, FIELDS);
+            count++;
+        }
+
+        out.writeLong(m_hsId);
+        out.writeLong(wallMillis);
+        out.writeLong(nanoTime);
+        out.writeInt(getCapacity());
+        out.writeLong(next);
+        out.writeInt(count);
+        for (int i = 0; i < count * (FIELDS + 1); i++) {
+            out.writeLong(copy[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Write a file holding the given rings.
+     * @return the number of events written
+     */
+    public static int dump(File file, Collection<Iv2TraceRing> rings) throws IOException
+    {
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        int events = 0;
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rings.size());
+            for (Iv2TraceRing ring : rings) {
+                events += ring.writeTo(out);
+            }
+        } finally {
+            out.close();
+        }
+        return events;
+    }
+}
@@ -247,6 +247,7 @@ public class MpInitiatorMailbox extends InitiatorMailbox
 
     private void repairReplicasWithInternal(List<Long> needsRepair, VoltMessage repairWork) {
         assert(lockingVows());
+        Iv2Trace.logRepair(m_scheduler.getQueue().getTraceRing(), repairWork, needsRepair.size());
         if (repairWork instanceof Iv2InitiateTaskMessage) {
             Iv2InitiateTaskMessage m = (Iv2InitiateTaskMessage)repairWork;
             Iv2InitiateTaskMessage work = new Iv2InitiateTaskMessage(m.getInitiatorHSId(), getHSId(), m);
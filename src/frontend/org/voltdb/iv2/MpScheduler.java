@@ -222,7 +222,7 @@ public class MpScheduler extends Scheduler
         }
 
         // Don't have an SP HANDLE at the MPI, so fill in the unused value
-        Iv2Trace.logIv2InitiateTaskMessage(message, m_mailbox.getHSId(), mpTxnId, Long.MIN_VALUE);
+        Iv2Trace.logIv2InitiateTaskMessage(m_tasks.getTraceRing(), message, m_mailbox.getHSId(), mpTxnId, Long.MIN_VALUE);
 
         // Handle every-site system procedures (at the MPI)
         final Config sysprocConfig = SystemProcedureCatalog.listing.get(procedureName);
@@ -152,6 +152,10 @@ abstract public class Scheduler implements InitiatorMessageHandler
         m_tasks.setStarvationTracker(tracker);
     }
 
+    public void setTraceRing(Iv2TraceRing ring) {
+        m_tasks.setTraceRing(ring);
+    }
+
     public void setLock(Object o) {
         m_lock = o;
     }
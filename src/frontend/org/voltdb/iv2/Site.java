@@ -48,6 +48,7 @@ import org.voltdb.SiteSnapshotConnection;
 import org.voltdb.SnapshotDataTarget;
 import org.voltdb.SnapshotSiteProcessor;
 import org.voltdb.SnapshotTableTask;
+import org.voltdb.SnapshotThrottle;
 import org.voltdb.StartAction;
 import org.voltdb.StatsAgent;
 import org.voltdb.StatsSelector;
@@ -90,6 +91,7 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
     final long m_siteId;
 
     final int m_snapshotPriority;
+    final SnapshotThrottle m_snapshotThrottle;
 
     // Partition count is important for some reason.
     int m_numberOfPartitions;
@@ -332,6 +334,7 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
             int numPartitions,
             StartAction startAction,
             int snapshotPriority,
+            int snapshotTargetLatency,
             InitiatorMailbox initiatorMailbox,
             StatsAgent agent,
             MemoryStats memStats,
@@ -349,6 +352,7 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                 .JOIN ? kStateRejoining :
                 kStateRunning;
         m_snapshotPriority = snapshotPriority;
+        m_snapshotThrottle = new SnapshotThrottle(m_siteId, snapshotTargetLatency, m_scheduler);
         // need this later when running in the final thread.
         m_startupConfig = new StartupConfig(serializedCatalog, context.m_uniqueId);
         m_lastCommittedTxnId = TxnEgo.makeZero(partitionId).getTxnId();
@@ -368,6 +372,9 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
             agent.registerStatsSource(StatsSelector.INDEX,
                                       m_siteId,
                                       m_indexStats);
+            agent.registerStatsSource(StatsSelector.SNAPSHOTTHROTTLE,
+                                      m_siteId,
+                                      m_snapshotThrottle);
             m_memStats = memStats;
         } else {
             // MPI doesn't need to track these stats
@@ -407,7 +414,8 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
             public boolean idle(long now) {
                 return (now - 5) > m_lastTxnTime;
             }
-        });
+        },
+        m_snapshotThrottle);
     }
 
     /** Create a native VoltDB execution engine */
@@ -476,8 +484,13 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                     if (task instanceof TransactionTask) {
                         m_currentTxnId = ((TransactionTask)task).getTxnId();
                         m_lastTxnTime = EstTime.currentTimeMillis();
+                        Iv2Trace.logExecuteStart(m_scheduler.getTraceRing(), (TransactionTask)task);
+                        task.run(getSiteProcedureConnection());
+                        Iv2Trace.logExecuteEnd(m_scheduler.getTraceRing(), (TransactionTask)task);
+                    }
+                    else {
+                        task.run(getSiteProcedureConnection());
                     }
-                    task.run(getSiteProcedureConnection());
                 }
                 else {
                     // Rejoin operation poll and try to do some catchup work. Tasks
@@ -774,6 +787,12 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         return m_ee.getUSOForExportTable(signature);
     }
 
+    @Override
+    public long getTableModificationCount(int tableId)
+    {
+        return m_ee.tableModificationCount(tableId);
+    }
+
     @Override
     public void toggleProfiler(int toggle)
     {
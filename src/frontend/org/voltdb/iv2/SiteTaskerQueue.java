@@ -17,6 +17,8 @@
 
 package org.voltdb.iv2;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import jsr166y.LinkedTransferQueue;
 
 import org.voltdb.StarvationTracker;
@@ -25,10 +27,16 @@ import org.voltdb.StarvationTracker;
 public class SiteTaskerQueue
 {
     private final LinkedTransferQueue<SiteTasker> m_tasks = new LinkedTransferQueue<SiteTasker>();
+    // Queued snapshot tasks, to tell them apart from the work they delay
+    private final AtomicInteger m_snapshotTasks = new AtomicInteger(0);
     private StarvationTracker m_starvationTracker;
+    private Iv2TraceRing m_traceRing;
 
     public boolean offer(SiteTasker task)
     {
+        if (task instanceof SnapshotTask) {
+            m_snapshotTasks.incrementAndGet();
+        }
         return m_tasks.offer(task);
     }
 
@@ -39,10 +47,10 @@ public class SiteTaskerQueue
         if (task == null) {
             m_starvationTracker.beginStarvation();
         } else {
-            return task;
+            return taken(task);
         }
         try {
-            return m_tasks.take();
+            return taken(m_tasks.take());
         } finally {
             m_starvationTracker.endStarvation();
         }
@@ -51,14 +59,40 @@ public class SiteTaskerQueue
     // Non-blocking poll on the site tasker queue.
     public SiteTasker poll()
     {
-        return m_tasks.poll();
+        return taken(m_tasks.poll());
+    }
+
+    private SiteTasker taken(SiteTasker task)
+    {
+        if (task instanceof SnapshotTask) {
+            m_snapshotTasks.decrementAndGet();
+        }
+        return task;
     }
 
     public boolean isEmpty() {
         return m_tasks.isEmpty();
     }
 
+    // Is anything other than snapshot work waiting? Walks the queue, so not for every task.
+    public boolean hasWaitingWork() {
+        return m_tasks.size() > m_snapshotTasks.get();
+    }
+
     public void setStarvationTracker(StarvationTracker tracker) {
         m_starvationTracker = tracker;
     }
+
+    public StarvationTracker getStarvationTracker() {
+        return m_starvationTracker;
+    }
+
+    public void setTraceRing(Iv2TraceRing ring) {
+        m_traceRing = ring;
+    }
+
+    // The trace ring of the site reading this queue, null until set.
+    public Iv2TraceRing getTraceRing() {
+        return m_traceRing;
+    }
 }
@@ -512,7 +512,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
             newSpHandle = msg.getSpHandle();
             uniqueId = msg.getUniqueId();
         }
-        Iv2Trace.logIv2InitiateTaskMessage(message, m_mailbox.getHSId(), msg.getTxnId(), newSpHandle);
+        Iv2Trace.logIv2InitiateTaskMessage(m_tasks.getTraceRing(), message, m_mailbox.getHSId(), msg.getTxnId(), newSpHandle);
         doLocalInitiateOffer(msg);
         return;
     }
@@ -674,7 +674,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         // move backwards anyway once the next message is received
         // from the SP leader.
         long newSpHandle = getCurrentTxnId();
-        Iv2Trace.logFragmentTaskMessage(message.getFragmentTaskMessage(),
+        Iv2Trace.logFragmentTaskMessage(m_tasks.getTraceRing(), message.getFragmentTaskMessage(),
                 m_mailbox.getHSId(), newSpHandle, true);
         TransactionState txn = m_outstandingTxns.get(message.getTxnId());
 
@@ -768,7 +768,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
             newSpHandle = msg.getSpHandle();
             setMaxSeenTxnId(newSpHandle);
         }
-        Iv2Trace.logFragmentTaskMessage(message, m_mailbox.getHSId(), newSpHandle, false);
+        Iv2Trace.logFragmentTaskMessage(m_tasks.getTraceRing(), message, m_mailbox.getHSId(), newSpHandle, false);
         doLocalFragmentOffer(msg);
     }
 
@@ -918,7 +918,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         // now, fix that later.
         if (txn != null)
         {
-            Iv2Trace.logCompleteTransactionMessage(message, m_mailbox.getHSId());
+            Iv2Trace.logCompleteTransactionMessage(m_tasks.getTraceRing(), message, m_mailbox.getHSId());
             final CompleteTransactionTask task =
                 new CompleteTransactionTask(txn, m_pendingTasks, message, m_drGateway);
             queueOrOfferMPTask(task);
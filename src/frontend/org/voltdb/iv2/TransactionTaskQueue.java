@@ -55,7 +55,7 @@ public class TransactionTaskQueue
      */
     synchronized boolean offer(TransactionTask task)
     {
-        Iv2Trace.logTransactionTaskQueueOffer(task);
+        Iv2Trace.logTransactionTaskQueueOffer(m_taskQueue.getTraceRing(), task);
         boolean retval = false;
         if (!m_backlog.isEmpty()) {
             /*
@@ -136,7 +136,7 @@ public class TransactionTaskQueue
     // a single point we can log through.
     private void taskQueueOffer(TransactionTask task)
     {
-        Iv2Trace.logSiteTaskerQueueOffer(task);
+        Iv2Trace.logSiteTaskerQueueOffer(m_taskQueue.getTraceRing(), task);
         m_taskQueue.offer(task);
     }
 
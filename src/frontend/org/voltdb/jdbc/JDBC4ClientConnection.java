@@ -383,6 +383,15 @@ public class JDBC4ClientConnection implements Closeable {
         this.client.drain();
     }
 
+    /**
+     * Returns the number of cluster nodes the underlying client is connected to.
+     *
+     * @return the number of open connections.
+     */
+    public int getConnectedHostCount() {
+        return this.client.getConnectedHostList().size();
+    }
+
     /**
      * Blocks the current thread until there is no more backpressure or there are no more
      * connections to the database
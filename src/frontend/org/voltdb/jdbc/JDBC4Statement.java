@@ -27,10 +27,10 @@ import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -38,6 +38,7 @@ import org.voltdb.VoltTable;
 import org.voltdb.VoltType;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcCallException;
+import org.voltdb.client.ProcedureCallback;
 
 public class JDBC4Statement implements java.sql.Statement
 {
@@ -53,6 +54,8 @@ public class JDBC4Statement implements java.sql.Statement
         private final int parameterCount;
         private final byte type;
         private final Object[] parameters;
+        // SQL text with parameter markers, built on first execution
+        private String parameterizedSql = null;
         private VoltSQL(String[] sql, int parameterCount, byte type)
         {
             this.sql = sql;
@@ -92,40 +95,40 @@ public class JDBC4Statement implements java.sql.Statement
             return false;
         }
 
+        private String getProcedure()
+        {
+            return this.type == TYPE_EXEC ? this.sql[0] : "@AdHoc";
+        }
+
+        private Object[] getProcedureParameters()
+        {
+            if (this.type == TYPE_EXEC)
+                return this.parameters;
+            else if (this.parameters != null)
+            {
+                // Parameterized SQL goes first, followed by the parameter values
+                Object[] adHocParams = new Object[this.parameters.length + 1];
+                adHocParams[0] = this.sql[0];
+                System.arraycopy(this.parameters, 0, adHocParams, 1, this.parameters.length);
+                return adHocParams;
+            }
+            else
+                return new Object[] { this.sql[0] };
+        }
+
         protected VoltTable[] execute(JDBC4ClientConnection connection) throws SQLException
         {
             try
             {
-                if (this.type == TYPE_EXEC)
-                    return connection.execute(this.sql[0], this.parameters).getResults();
-                else
-                    return connection.execute("@AdHoc", this.sql[0]).getResults();
+                return connection.execute(getProcedure(), getProcedureParameters()).getResults();
             }
             catch(ProcCallException e)
             {
                 ClientResponse response = e.getClientResponse();
-                if (response != null) {
-                    // Map response status to specific JDBC exception, mostly GENERAL_ERROR except
-                    // for connection problems.
-                    switch (response.getStatus()) {
-                    case ClientResponse.CONNECTION_LOST:
-                        throw SQLError.get(e, SQLError.CONNECTION_CLOSED, "CONNECTION_LOST", e.getMessage());
-                    case ClientResponse.CONNECTION_TIMEOUT:
-                        throw SQLError.get(e, SQLError.CONNECTION_FAILURE, "CONNECTION_TIMEOUT", e.getMessage());
-                    case ClientResponse.SERVER_UNAVAILABLE:
-                        throw SQLError.get(e, SQLError.CONNECTION_FAILURE, "CONNECTION_UNAVAILABLE", e.getMessage());
-                    case ClientResponse.USER_ABORT:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "USER_ABORT", e.getMessage());
-                    case ClientResponse.UNEXPECTED_FAILURE:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "UNEXPECTED_FAILURE", e.getMessage());
-                    case ClientResponse.GRACEFUL_FAILURE:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "GRACEFUL_FAILURE", e.getMessage());
-                    default:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, String.format("status=%d", (int)response.getStatus()), e.getMessage());
-                    }
-                } else {
+                if (response != null)
+                    throw getResponseError(response, e, e.getMessage());
+                else
                     throw SQLError.get(e, SQLError.GENERAL_ERROR, e.getMessage());
-                }
             }
             catch(IOException e)
             {
@@ -133,6 +136,42 @@ public class JDBC4Statement implements java.sql.Statement
             }
         }
 
+        // Queue the statement without waiting for the response, which is passed to the callback.
+        protected void executeAsync(JDBC4ClientConnection connection, ProcedureCallback callback) throws SQLException
+        {
+            try
+            {
+                if (!connection.executeAsync(callback, getProcedure(), getProcedureParameters()))
+                    throw SQLError.get(SQLError.CONNECTION_FAILURE, "Unable to queue statement");
+            }
+            catch(IOException e)
+            {
+                throw SQLError.get(e, SQLError.CONNECTION_FAILURE, e.getMessage());
+            }
+        }
+
+        // Map response status to specific JDBC exception, mostly GENERAL_ERROR except
+        // for connection problems.
+        static SQLException getResponseError(ClientResponse response, Throwable cause, String message)
+        {
+            switch (response.getStatus()) {
+            case ClientResponse.CONNECTION_LOST:
+                return SQLError.get(cause, SQLError.CONNECTION_CLOSED, "CONNECTION_LOST", message);
+            case ClientResponse.CONNECTION_TIMEOUT:
+                return SQLError.get(cause, SQLError.CONNECTION_FAILURE, "CONNECTION_TIMEOUT", message);
+            case ClientResponse.SERVER_UNAVAILABLE:
+                return SQLError.get(cause, SQLError.CONNECTION_FAILURE, "CONNECTION_UNAVAILABLE", message);
+            case ClientResponse.USER_ABORT:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "USER_ABORT", message);
+            case ClientResponse.UNEXPECTED_FAILURE:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "UNEXPECTED_FAILURE", message);
+            case ClientResponse.GRACEFUL_FAILURE:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "GRACEFUL_FAILURE", message);
+            default:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, String.format("status=%d", (int)response.getStatus()), message);
+            }
+        }
+
         public static boolean isUpdateResult(VoltTable table)
         {
             return ((table.getColumnName(0).length() == 0 || table.getColumnName(0).equals("modified_tuples"))&& table.getRowCount() == 1 && table.getColumnCount() == 1 && table.getColumnType(0) == VoltType.BIGINT);
@@ -143,6 +182,19 @@ public class JDBC4Statement implements java.sql.Statement
             return this.sql[0];
         }
 
+        // Table targeted by a single INSERT ... VALUES statement, or null for any other statement.
+        // Inserts into the same table all route alike: single-partition on a partitioned table,
+        // multi-partition on a replicated one.
+        public String getInsertTarget()
+        {
+            if (this.type != TYPE_INSERT || this.sql.length != 1)
+                return null;
+            Matcher m = InsertValuesTarget.matcher(this.sql[0]);
+            if (!m.find())
+                return null;
+            return m.group(1).toUpperCase();
+        }
+
         public VoltSQL getExecutableQuery(Object... params) throws SQLException
         {
             if (params.length != this.parameterCount)
@@ -154,49 +206,33 @@ public class JDBC4Statement implements java.sql.Statement
                 return new VoltSQL( this.sql, 0, this.type );
             else
             {
-                StringBuilder query = new StringBuilder();
+                // Send the SQL with its parameter markers and let the server bind the values,
+                // so every execution shares the server's cached plan for the statement.
                 for(int i=0;i<params.length;i++)
                 {
-                    query.append(this.sql[i]);
-                    if (params[i] == null)
-                        query.append("null");
-                    else if (params[i].getClass().equals(Byte.class))
-                        query.append(((Byte)params[i]).byteValue());
-                    else if (params[i].getClass().equals(Short.class))
-                        query.append(((Short)params[i]).shortValue());
-                    else if (params[i].getClass().equals(Integer.class))
-                        query.append(((Integer)params[i]).intValue());
-                    else if (params[i].getClass().equals(Long.class))
-                        query.append(((Long)params[i]).longValue());
-                    else if (params[i].getClass().equals(Double.class))
-                        query.append(((Double)params[i]).doubleValue());
-                    else if (params[i] == VoltType.NULL_TIMESTAMP)
-                        query.append("null");
-                    else if (params[i].getClass().equals(Timestamp.class))
-                    {
-                        Timestamp timestamp = (Timestamp)params[i];
-                        if (timestamp.toString().length() < 26)
-                            timestamp.setNanos(timestamp.getNanos()+1);
-                        query.append("'" + timestamp.toString().substring(0,26) + "'");
-                    }
-                    else if (params[i] == VoltType.NULL_DECIMAL)
-                        query.append("null");
-                    else if (params[i].getClass().equals(BigDecimal.class))
-                        query.append("'" + ((BigDecimal)params[i]).toPlainString() + "'");
-                    else if (params[i] == VoltType.NULL_STRING_OR_VARBINARY)
-                        query.append("null");
-                    else if (params[i].getClass().equals(String.class))
+                    if (params[i] == null
+                            || params[i] == VoltType.NULL_TIMESTAMP
+                            || params[i] == VoltType.NULL_DECIMAL
+                            || params[i] == VoltType.NULL_STRING_OR_VARBINARY)
+                        continue;
+                    Class<?> cls = params[i].getClass();
+                    if (!(cls.equals(Byte.class) || cls.equals(Short.class) || cls.equals(Integer.class)
+                            || cls.equals(Long.class) || cls.equals(Double.class) || cls.equals(Timestamp.class)
+                            || cls.equals(BigDecimal.class) || cls.equals(String.class) || cls.equals(byte[].class)))
+                        throw SQLError.get(SQLError.ILLEGAL_ARGUMENT); // Unknown parameter type
+                }
+                if (this.parameterizedSql == null)
+                {
+                    StringBuilder query = new StringBuilder();
+                    for(int i=0;i<this.sql.length;i++)
                     {
-                        if (((String)params[i]).indexOf("\r") > -1 || ((String)params[i]).indexOf("\n") > -1)
-                            throw SQLError.get(SQLError.QUERY_PARSING_ERROR); // Sorry pal: no line feeds for ad-hoc queries
-                        query.append("'" + SingleQuote.matcher((String)params[i]).replaceAll("''") + "'");
+                        if (i > 0)
+                            query.append('?');
+                        query.append(this.sql[i]);
                     }
-                    else
-                        throw SQLError.get(SQLError.ILLEGAL_ARGUMENT); // Unknown parameter type
+                    this.parameterizedSql = query.toString();
                 }
-                if (this.sql.length > this.parameterCount)
-                    query.append(this.sql[this.sql.length-1]);
-                return new VoltSQL( new String[] { query.toString() }, 0, this.type);
+                return new VoltSQL( new String[] { this.parameterizedSql }, this.parameterCount, this.type, params);
             }
         }
 
@@ -218,7 +254,6 @@ public class JDBC4Statement implements java.sql.Statement
             throw SQLError.get(SQLError.ILLEGAL_STATEMENT);
         }
 
-        private static final Pattern SingleQuote = Pattern.compile("'", Pattern.MULTILINE);
         private static final Pattern EscapedSingleQuote = Pattern.compile("''", Pattern.MULTILINE);
         private static final Pattern SingleLineComments = Pattern.compile("^\\s*(\\/\\/|--).*$", Pattern.MULTILINE);
         private static final Pattern Extract = Pattern.compile("'[^']*'", Pattern.MULTILINE);
@@ -228,6 +263,7 @@ public class JDBC4Statement implements java.sql.Statement
         private static final Pattern IsInsert = Pattern.compile("^insert\\s.+", Pattern.CASE_INSENSITIVE);
         private static final Pattern IsUpdate = Pattern.compile("^update\\s.+", Pattern.CASE_INSENSITIVE);
         private static final Pattern IsDelete = Pattern.compile("^delete\\s.+", Pattern.CASE_INSENSITIVE);
+        private static final Pattern InsertValuesTarget = Pattern.compile("^\\s*insert\\s+into\\s+([^\\s(]+)\\s*(\\([^)]*\\))?\\s*values\\s*\\(", Pattern.CASE_INSENSITIVE);
         public static VoltSQL parseSQL(String queryIn) throws SQLException
         {
             if (queryIn == null || queryIn.length() == 0)
@@ -472,23 +508,127 @@ public class JDBC4Statement implements java.sql.Statement
         closeCurrentResult();
         if (batch == null || batch.size() == 0)
             return new int[0];
-        int[] updateCounts = new int[batch.size()];
-        for(int i=0;i<batch.size();i++)
+        // The batch is emptied by executeBatch() whether or not it succeeds
+        ArrayList<VoltSQL> statements = batch;
+        batch = null;
+
+        // Pipeline the statements rather than waiting for each round trip, but only where that
+        // cannot change the outcome. The cluster orders nothing between single-partition and
+        // multi-partition transactions, nor between connections, so only a run of inserts into
+        // the same table is pipelined, and only over a single connection: each partition (or
+        // the multi-partition coordinator) then sees the run in the order it was sent. Any
+        // other statement waits for everything in flight and runs on its own. Queueing stops
+        // at the first failure; statements of the run already in flight are still accounted for.
+        boolean singleConnection = sourceConnection.NativeConnection.getConnectedHostCount() == 1;
+        BatchExecution execution = new BatchExecution(statements.size());
+        SQLException submitError = null;
+        int submitted = 0;
+        String runTarget = null;
+        while (submitted < statements.size() && !execution.failed)
         {
+            VoltSQL query = statements.get(submitted);
+            String target = singleConnection ? query.getInsertTarget() : null;
+            if (target == null || !target.equals(runTarget))
+            {
+                execution.await();
+                if (execution.failed)
+                    break;
+                runTarget = target;
+            }
             try
             {
-                setCurrentResult(null, (int)batch.get(i).execute(sourceConnection.NativeConnection)[0].fetchRow(0).getLong(0));
-                updateCounts[i] = this.lastUpdateCount;
+                execution.submit(query, sourceConnection.NativeConnection, submitted);
+                submitted++;
             }
             catch(SQLException x)
+            {
+                submitError = x;
+                break;
+            }
+        }
+        execution.await();
+
+        int[] updateCounts = new int[submitError == null ? submitted : submitted + 1];
+        SQLException firstError = null;
+        for(int i=0;i<submitted;i++)
+        {
+            ClientResponse response = execution.responses[i];
+            if (response.getStatus() == ClientResponse.SUCCESS)
+            {
+                setCurrentResult(null, (int)response.getResults()[0].fetchRow(0).getLong(0));
+                updateCounts[i] = this.lastUpdateCount;
+            }
+            else
             {
                 updateCounts[i] = EXECUTE_FAILED;
-                throw new BatchUpdateException(Arrays.copyOf(updateCounts, i+1), x);
+                if (firstError == null)
+                    firstError = VoltSQL.getResponseError(response, response.getException(), response.getStatusString());
             }
         }
+        if (submitError != null)
+        {
+            updateCounts[submitted] = EXECUTE_FAILED;
+            if (firstError == null)
+                firstError = submitError;
+        }
+        if (firstError != null)
+            throw new BatchUpdateException(updateCounts, firstError);
         return updateCounts;
     }
 
+    /**
+     * Statements of an executeBatch() call that are in flight. At most
+     * MAX_BATCH_IN_FLIGHT are outstanding at a time; responses are recorded
+     * by the client's callback thread and read once all of them are in.
+     * await() is also the barrier executeBatch() uses between runs.
+     */
+    private static class BatchExecution
+    {
+        // Ad hoc statements queue for the server's single planner thread, which
+        // turns work away once AsyncCompilerAgent.MAX_QUEUE_DEPTH (250) is queued.
+        // Stay well under that so a batch leaves room for other sessions.
+        private static final int MAX_BATCH_IN_FLIGHT = 64;
+
+        private final Semaphore permits = new Semaphore(MAX_BATCH_IN_FLIGHT);
+        private final ClientResponse[] responses;
+        private volatile boolean failed = false;
+
+        BatchExecution(int size)
+        {
+            responses = new ClientResponse[size];
+        }
+
+        void submit(VoltSQL query, JDBC4ClientConnection connection, final int index) throws SQLException
+        {
+            permits.acquireUninterruptibly();
+            try
+            {
+                query.executeAsync(connection, new ProcedureCallback() {
+                    @Override
+                    public void clientCallback(ClientResponse response)
+                    {
+                        responses[index] = response;
+                        if (response.getStatus() != ClientResponse.SUCCESS)
+                            failed = true;
+                        permits.release();
+                    }
+                });
+            }
+            catch(SQLException x)
+            {
+                permits.release();
+                throw x;
+            }
+        }
+
+        // Taking every permit means every queued statement has its response.
+        void await()
+        {
+            permits.acquireUninterruptibly(MAX_BATCH_IN_FLIGHT);
+            permits.release(MAX_BATCH_IN_FLIGHT);
+        }
+    }
+
     protected ResultSet executeQuery(VoltSQL query) throws SQLException
     {
         setCurrentResult(query.execute(this.sourceConnection.NativeConnection), -1);
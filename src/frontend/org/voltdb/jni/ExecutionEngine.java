@@ -463,6 +463,12 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
      */
     public abstract long tableHashCode(int tableId);
 
+    /**
+     * Get the number of inserts, updates and deletes applied to a table.
+     * @param tableId table to get the modification count for
+     */
+    public abstract long tableModificationCount(int tableId);
+
     /**
      * Compute the partition to which the parameter value maps using the
      * ExecutionEngine's hashinator.  Currently only valid for int types
@@ -727,6 +733,13 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
      */
     protected native long nativeTableHashCode(long pointer, int tableId);
 
+    /**
+     * Get the number of inserts, updates and deletes applied to a table.
+     * @param pointer Pointer to an engine instance
+     * @param tableId table to get the modification count for
+     */
+    protected native long nativeTableModificationCount(long pointer, int tableId);
+
     /**
      * Execute an arbitrary task based on the task ID and serialized task parameters.
      * This is a generic entry point into the EE that doesn't need to be updated in the IPC
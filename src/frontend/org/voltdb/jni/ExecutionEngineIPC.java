@@ -124,7 +124,8 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         GetPoolAllocations(24),
         GetUSOs(25),
         updateHashinator(27),
-        executeTask(28);
+        executeTask(28),
+        TableModificationCount(29);
         Commands(final int id) {
             m_id = id;
         }
@@ -1300,6 +1301,32 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         }
     }
 
+    @Override
+    public long tableModificationCount(int tableId) {
+        try {
+            m_data.clear();
+            m_data.putInt(Commands.TableModificationCount.m_id);
+            m_data.putInt(tableId);
+
+            m_data.flip();
+            m_connection.write();
+
+            m_connection.readStatusByte();
+            ByteBuffer count = ByteBuffer.allocate(8);
+            while (count.hasRemaining()) {
+                int read = m_connection.m_socketChannel.read(count);
+                if (read <= 0) {
+                    throw new EOFException();
+                }
+            }
+            count.flip();
+            return count.getLong();
+        } catch (final IOException e) {
+            System.out.println("Exception: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public int hashinate(Object value, HashinatorType type, byte config[])
     {
@@ -534,6 +534,11 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         return nativeTableHashCode( pointer, tableId);
     }
 
+    @Override
+    public long tableModificationCount(int tableId) {
+        return nativeTableModificationCount( pointer, tableId);
+    }
+
     @Override
     public int hashinate(Object value, TheHashinator.HashinatorType hashinatorType, byte hashinatorConfig[])
     {
@@ -210,6 +210,12 @@ public class MockExecutionEngine extends ExecutionEngine {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public long tableModificationCount( int tableId) {
+        // No change tracking, so every snapshot treats the table as modified
+        return -1;
+    }
+
     @Override
     public int hashinate(Object value, HashinatorType type, byte config[]) {
         return 0;
@@ -1195,11 +1195,15 @@ public class PlanAssembler {
             // ensure the order of the data on each partition.
             distributedPlan = handleOrderBy(distributedPlan);
 
-            // Apply the distributed limit.
-            distLimit.addAndLinkChild(distributedPlan);
-
-            // Add the distributed work back to the plan
-            sendNode.addAndLinkChild(distLimit);
+            // Apply the distributed limit. A sort applies it itself, keeping
+            // only the top limit + offset rows as it goes.
+            if (distributedPlan instanceof OrderByPlanNode) {
+                distributedPlan.addInlinePlanNode(distLimit);
+                sendNode.addAndLinkChild(distributedPlan);
+            } else {
+                distLimit.addAndLinkChild(distributedPlan);
+                sendNode.addAndLinkChild(distLimit);
+            }
         }
 
         // Switch if has Complex aggregations
@@ -1209,17 +1213,52 @@ public class PlanAssembler {
             projectionNode.clearChildren();
             child.clearParents();
 
+            inlineTopNLimit(child);
             topLimit.addAndLinkChild(child);
             topLimit.generateOutputSchema(m_catalogDb);
             projectionNode.addAndLinkChild(topLimit);
             return projectionNode;
         } else {
+            inlineTopNLimit(root);
             topLimit.addAndLinkChild(root);
             topLimit.generateOutputSchema(m_catalogDb);
             return topLimit;
         }
     }
 
+    /**
+     * If the rows under the top limit come straight out of a sort, give the
+     * sort a limit of its own so it only keeps the first limit + offset rows
+     * instead of sorting all of its input. The top limit still applies the offset.
+     */
+    private void inlineTopNLimit(AbstractPlanNode root) {
+        if (m_parsedSelect.limit == -1 && m_parsedSelect.getLimitParameterIndex() == -1) {
+            // only an offset, every row may be needed
+            return;
+        }
+
+        // projections produce a row per input row, look through them
+        AbstractPlanNode node = root;
+        while (node instanceof ProjectionPlanNode && node.getChildCount() == 1) {
+            node = node.getChild(0);
+        }
+        if (!(node instanceof OrderByPlanNode) || node.getInlinePlanNode(PlanNodeType.LIMIT) != null) {
+            return;
+        }
+
+        LimitPlanNode topNLimit = new LimitPlanNode();
+        if (m_parsedSelect.hasLimitOrOffsetParameters()) {
+            OperatorExpression expr = new OperatorExpression(ExpressionType.OPERATOR_PLUS,
+                    m_parsedSelect.getOffsetExpression(), m_parsedSelect.getLimitExpression());
+            expr.setValueType(VoltType.INTEGER);
+            expr.setValueSize(VoltType.INTEGER.getLengthInBytesForFixedTypes());
+            topNLimit.setLimitExpression(expr);
+        } else {
+            topNLimit.setLimit((int) (m_parsedSelect.limit + m_parsedSelect.offset));
+        }
+        node.addInlinePlanNode(topNLimit);
+    }
+
     AbstractPlanNode handleAggregationOperators(AbstractPlanNode root) {
         AggregatePlanNode aggNode = null;
 
@@ -225,6 +225,11 @@ public class QueryPlanner {
         if (plan == null) {
             throw new PlanningErrorException(m_recentErrorMsg);
         }
+        // a statement written with parameter markers may be partitioned on one of them
+        int partitionIndex = partitioningParameterIndex();
+        if (partitionIndex < plan.parameters.length) {
+            plan.partitioningKeyIndex = partitionIndex;
+        }
         return plan;
     }
 
@@ -253,18 +258,26 @@ public class QueryPlanner {
         }
 
         // handle the case where the statement is partitioned on a newly parameterized value
-        int partitionIndex = -1;
+        int partitionIndex = partitioningParameterIndex();
+
+        return new Pair<Integer, Object[]>(partitionIndex, params, false);
+    }
+
+    /**
+     * @return The index of the parameter the statement is partitioned on, or -1 if
+     * it isn't partitioned on a parameter.
+     */
+    private int partitioningParameterIndex() {
         if (m_partitioning.effectivePartitioningValue() == null) {
             AbstractExpression expr = m_partitioning.effectivePartitioningExpression();
             if (expr != null) {
                 if (expr instanceof ParameterValueExpression) {
                     ParameterValueExpression pve = (ParameterValueExpression) expr;
-                    partitionIndex = pve.getParameterIndex();
+                    return pve.getParameterIndex();
                 }
             }
         }
-
-        return new Pair<Integer, Object[]>(partitionIndex, params, false);
+        return -1;
     }
 
     /**
@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.voltdb.VoltType;
 import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Table;
 import org.voltdb.expressions.AbstractExpression;
@@ -33,9 +34,11 @@ import org.voltdb.expressions.ExpressionUtil;
 import org.voltdb.expressions.TupleValueExpression;
 import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
+import org.voltdb.types.ExpressionType;
 import org.voltdb.types.JoinType;
 import org.voltdb.types.PlanNodeType;
 import org.voltdb.utils.PermutationGenerator;
@@ -921,7 +924,7 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
 
         AbstractJoinPlanNode ajNode = null;
         if (canHaveNLJ) {
-            NestLoopPlanNode nljNode = new NestLoopPlanNode();
+            AbstractJoinPlanNode nljNode = null;
             // get all the clauses that join the applicable two tables
             ArrayList<AbstractExpression> joinClauses = innerAccessPath.joinExprs;
             if (innerPlan instanceof IndexScanPlanNode) {
@@ -933,6 +936,14 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
                 AbstractExpression indexScanPredicate = ExpressionUtil.combine(innerExpr);
                 ((IndexScanPlanNode)innerPlan).setPredicate(indexScanPredicate);
             }
+            else {
+                // No index drives the inner side, so an equi-join can hash the inner rows
+                // once instead of scanning all of them for each outer row.
+                nljNode = getHashJoinNode(joinClauses, outerPlan, innerPlan);
+            }
+            if (nljNode == null) {
+                nljNode = new NestLoopPlanNode();
+            }
             nljNode.setJoinPredicate(ExpressionUtil.combine(joinClauses));
 
             // combine the tails plan graph with the new head node
@@ -980,6 +991,93 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
         return ajNode;
     }
 
+    /**
+     * Build a hash join node keyed on the join clauses that equate an expression of
+     * the outer rows with an expression of the inner rows.
+     *
+     * @param joinClauses The clauses that will make up the join predicate.
+     * @param outerPlan The outer node plan-sub-graph.
+     * @param innerPlan The inner node plan-sub-graph.
+     * @return A hash join node with its keys set but no children,
+     * or null if none of the clauses can be used as a hash key.
+     */
+    private HashJoinPlanNode getHashJoinNode(List<AbstractExpression> joinClauses,
+                                             AbstractPlanNode outerPlan,
+                                             AbstractPlanNode innerPlan)
+    {
+        HashSet<String> outerTables = new HashSet<String>();
+        outerPlan.getTablesReadByFragment(outerTables);
+        HashSet<String> innerTables = new HashSet<String>();
+        innerPlan.getTablesReadByFragment(innerTables);
+        // The keys are told apart by table name, which a self join doesn't allow.
+        for (String tableName : innerTables) {
+            if (outerTables.contains(tableName)) {
+                return null;
+            }
+        }
+
+        HashJoinPlanNode hjNode = null;
+        for (AbstractExpression clause : joinClauses) {
+            if (clause.getExpressionType() != ExpressionType.COMPARE_EQUAL) {
+                continue;
+            }
+            AbstractExpression left = clause.getLeft();
+            AbstractExpression right = clause.getRight();
+            if ( ! isHashableKeyPair(left.getValueType(), right.getValueType())) {
+                continue;
+            }
+            AbstractExpression outerKey;
+            AbstractExpression innerKey;
+            if (isKeyOfTables(left, outerTables) && isKeyOfTables(right, innerTables)) {
+                outerKey = left;
+                innerKey = right;
+            }
+            else if (isKeyOfTables(right, outerTables) && isKeyOfTables(left, innerTables)) {
+                outerKey = right;
+                innerKey = left;
+            }
+            else {
+                continue;
+            }
+            if (hjNode == null) {
+                hjNode = new HashJoinPlanNode();
+            }
+            hjNode.addHashKeys(outerKey, innerKey);
+        }
+        return hjNode;
+    }
+
+    /**
+     * Equal keys must hash alike. The EE widens integers to BIGINT before hashing;
+     * other types only pair with themselves. FLOAT is left out because 0.0 and -0.0
+     * compare equal.
+     */
+    private static boolean isHashableKeyPair(VoltType left, VoltType right)
+    {
+        if (left.isInteger() && right.isInteger() &&
+                left != VoltType.TIMESTAMP && right != VoltType.TIMESTAMP) {
+            return true;
+        }
+        return left == right && left != VoltType.FLOAT && left != VoltType.INVALID;
+    }
+
+    /**
+     * @return true if the expression references columns and all of them belong to the given tables.
+     */
+    private static boolean isKeyOfTables(AbstractExpression expr, Set<String> tableNames)
+    {
+        List<TupleValueExpression> tves = ExpressionUtil.getTupleValueExpressions(expr);
+        if (tves.isEmpty()) {
+            return false;
+        }
+        for (TupleValueExpression tve : tves) {
+            if ( ! tableNames.contains(tve.getTableName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private boolean hasReplicatedResult(AbstractPlanNode plan)
     {
         HashSet<String> tablesRead = new HashSet<String>();
@@ -0,0 +1,169 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.plannodes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json_voltpatches.JSONArray;
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONStringer;
+import org.voltdb.catalog.Cluster;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.ExpressionUtil;
+import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.types.PlanNodeType;
+
+/**
+ * Equi-join of two child plans. The EE hashes the inner (second) child's rows
+ * on the inner hash keys, then probes with the outer hash keys of each outer row.
+ * The join predicate still holds the equalities between the two key lists and is
+ * applied to every candidate pair, so the keys only narrow the pairs considered.
+ */
+public class HashJoinPlanNode extends AbstractJoinPlanNode {
+
+    public enum Members {
+        OUTER_HASH_KEYS,
+        INNER_HASH_KEYS;
+    }
+
+    // The i-th outer key equals the i-th inner key in any joined pair.
+    protected List<AbstractExpression> m_outerHashKeys = new ArrayList<AbstractExpression>();
+    protected List<AbstractExpression> m_innerHashKeys = new ArrayList<AbstractExpression>();
+
+    public HashJoinPlanNode() {
+        super();
+    }
+
+    @Override
+    public PlanNodeType getPlanNodeType() {
+        return PlanNodeType.HASHJOIN;
+    }
+
+    @Override
+    public void validate() throws Exception {
+        super.validate();
+
+        if (m_outerHashKeys.isEmpty() || m_outerHashKeys.size() != m_innerHashKeys.size()) {
+            throw new Exception("ERROR: Hash join has " + m_outerHashKeys.size() +
+                                " outer keys but " + m_innerHashKeys.size() + " inner keys");
+        }
+        for (AbstractExpression key : m_outerHashKeys) {
+            key.validate();
+        }
+        for (AbstractExpression key : m_innerHashKeys) {
+            key.validate();
+        }
+    }
+
+    /**
+     * Add a pair of expressions that must be equal for an outer and inner row to join.
+     * @param outerKey an expression of the outer child's columns
+     * @param innerKey an expression of the inner child's columns
+     */
+    public void addHashKeys(AbstractExpression outerKey, AbstractExpression innerKey) {
+        m_outerHashKeys.add((AbstractExpression) outerKey.clone());
+        m_innerHashKeys.add((AbstractExpression) innerKey.clone());
+    }
+
+    public List<AbstractExpression> getOuterHashKeys() {
+        return m_outerHashKeys;
+    }
+
+    public List<AbstractExpression> getInnerHashKeys() {
+        return m_innerHashKeys;
+    }
+
+    @Override
+    public void computeCostEstimates(long childOutputTupleCountEstimate,
+                                     Cluster cluster,
+                                     Database db,
+                                     DatabaseEstimates estimates,
+                                     ScalarValueHints[] paramHints)
+    {
+        // Each child's rows are read once, to build the table or to probe it.
+        m_estimatedOutputTupleCount = childOutputTupleCountEstimate;
+        m_estimatedProcessedTupleCount = childOutputTupleCountEstimate;
+    }
+
+    @Override
+    public void resolveColumnIndexes()
+    {
+        super.resolveColumnIndexes();
+        resolveKeys(m_outerHashKeys, m_children.get(0).getOutputSchema());
+        resolveKeys(m_innerHashKeys, m_children.get(1).getOutputSchema());
+    }
+
+    private static void resolveKeys(List<AbstractExpression> keys, NodeSchema schema)
+    {
+        for (AbstractExpression key : keys) {
+            for (TupleValueExpression tve : ExpressionUtil.getTupleValueExpressions(key)) {
+                int index = schema.getIndexOfTve(tve);
+                if (index == -1) {
+                    throw new RuntimeException("Unable to find index for hash join key TVE: " +
+                                               tve.toString());
+                }
+                tve.setColumnIndex(index);
+            }
+        }
+    }
+
+    @Override
+    public void toJSONString(JSONStringer stringer) throws JSONException
+    {
+        super.toJSONString(stringer);
+        stringer.key(Members.OUTER_HASH_KEYS.name()).array();
+        for (AbstractExpression key : m_outerHashKeys) {
+            stringer.object();
+            key.toJSONString(stringer);
+            stringer.endObject();
+        }
+        stringer.endArray();
+        stringer.key(Members.INNER_HASH_KEYS.name()).array();
+        for (AbstractExpression key : m_innerHashKeys) {
+            stringer.object();
+            key.toJSONString(stringer);
+            stringer.endObject();
+        }
+        stringer.endArray();
+    }
+
+    @Override
+    public void loadFromJSONObject( JSONObject jobj, Database db ) throws JSONException
+    {
+        super.loadFromJSONObject(jobj, db);
+        JSONArray jarray = jobj.getJSONArray(Members.OUTER_HASH_KEYS.name());
+        for (int i = 0; i < jarray.length(); i++) {
+            m_outerHashKeys.add(AbstractExpression.fromJSONObject(jarray.getJSONObject(i), db));
+        }
+        jarray = jobj.getJSONArray(Members.INNER_HASH_KEYS.name());
+        for (int i = 0; i < jarray.length(); i++) {
+            m_innerHashKeys.add(AbstractExpression.fromJSONObject(jarray.getJSONObject(i), db));
+        }
+    }
+
+    @Override
+    protected String explainPlanForNode(String indent) {
+        return "HASH " + this.m_joinType.toString() + " JOIN" + explainFilters(indent);
+    }
+
+}
@@ -441,7 +441,28 @@ public class SnapshotRestore extends VoltSystemProcedure
                 if (savefiles == null) {
                     return new DependencyPair(DEP_restoreScan, result);
                 }
-                for (File file : savefiles)
+
+                /*
+                 * Files a snapshot reuses from earlier snapshots for unchanged tables
+                 * stand in for its own and are reported with its txnId
+                 */
+                Map<String, File> unchangedTableFiles = new HashMap<String, File>();
+                Long snapshotTxnId = null;
+                try {
+                    for (JSONObject digest :
+                            SnapshotUtil.retrieveDigests(m_filePath, m_fileNonce, SNAP_LOG)) {
+                        unchangedTableFiles.putAll(
+                                SnapshotUtil.retrieveUnchangedTableFiles(m_filePath, m_fileNonce, digest));
+                        snapshotTxnId = digest.getLong("txnId");
+                    }
+                } catch (Exception e) {
+                    SNAP_LOG.warn("Unable to read the digests of snapshot " + m_fileNonce, e);
+                }
+                m_unchangedTableFiles = unchangedTableFiles;
+                List<File> scanfiles = new ArrayList<File>(Arrays.asList(savefiles));
+                scanfiles.addAll(unchangedTableFiles.values());
+
+                for (File file : scanfiles)
                 {
                     TableSaveFile savefile = null;
                     try
@@ -458,6 +479,10 @@ public class SnapshotRestore extends VoltSystemProcedure
                             {
                                 is_replicated = "TRUE";
                             }
+                            long txnId = savefile.getTxnId();
+                            if (unchangedTableFiles.containsValue(file)) {
+                                txnId = snapshotTxnId;
+                            }
                             int partitionIds[] = savefile.getPartitionIds();
                             for (int pid : partitionIds) {
                                 result.addRow(m_hostId,
@@ -467,7 +492,7 @@ public class SnapshotRestore extends VoltSystemProcedure
                                         savefile.getClusterName(),
                                         savefile.getDatabaseName(),
                                         savefile.getTableName(),
-                                        savefile.getTxnId(),
+                                        txnId,
                                         is_replicated,
                                         pid,
                                         savefile.getTotalPartitions());
@@ -1189,7 +1214,7 @@ public class SnapshotRestore extends VoltSystemProcedure
         filename_builder.append("-");
         filename_builder.append(tableName);
         filename_builder.append(".vpt");
-        return new VoltFile(m_filePath, new String(filename_builder));
+        return getSaveFile(m_filePath, new String(filename_builder));
     }
 
     private static File getSaveFileForPartitionedTable(
@@ -1204,7 +1229,16 @@ public class SnapshotRestore extends VoltSystemProcedure
         filename_builder.append("-host_");
         filename_builder.append(originalHostId);
         filename_builder.append(".vpt");
-        return new VoltFile(filePath, new String(filename_builder));
+        return getSaveFile(filePath, new String(filename_builder));
+    }
+
+    private static File getSaveFile(String filePath, String filename)
+    {
+        File unchangedTableFile = m_unchangedTableFiles.get(filename);
+        if (unchangedTableFile != null) {
+            return unchangedTableFile;
+        }
+        return new VoltFile(filePath, filename);
     }
 
     private static TableSaveFile getTableSaveFile(
@@ -1963,4 +1997,6 @@ public class SnapshotRestore extends VoltSystemProcedure
     private int m_hostId;
     private static volatile String m_filePath;
     private static volatile String m_fileNonce;
+    // Files reused for unchanged tables, keyed by the name of the file they stand in for
+    private static volatile Map<String, File> m_unchangedTableFiles = new HashMap<String, File>();
 }
@@ -164,4 +164,8 @@ public class SysProcFragmentId
 
     public static final long PF_validatePartitioning = 240;
     public static final long PF_validatePartitioningResults = 241;
+
+    // @TraceDump
+    public static final long PF_traceDump = 250;
+    public static final long PF_traceDumpResults = 251;
 }
@@ -0,0 +1,121 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb.sysprocs;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.DependencyPair;
+import org.voltdb.ParameterSet;
+import org.voltdb.ProcInfo;
+import org.voltdb.SystemProcedureExecutionContext;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.dtxn.DtxnConstants;
+import org.voltdb.iv2.Iv2TraceRing;
+import org.voltdb.utils.VoltTableUtil;
+
+/**
+ * Write the transaction trace rings of every host to a file in the given
+ * directory on that host. Iv2TraceDecoder turns the files into timelines.
+ */
+@ProcInfo(singlePartition = false)
+public class TraceDump extends VoltSystemProcedure {
+
+    static final int DEP_traceDump = (int)
+        SysProcFragmentId.PF_traceDump | DtxnConstants.MULTIPARTITION_DEPENDENCY;
+    static final int DEP_traceDumpResults = (int) SysProcFragmentId.PF_traceDumpResults;
+    private static final VoltLogger HOST_LOG = new VoltLogger("HOST");
+
+    public static final ColumnInfo resultSchema[] = new ColumnInfo[] {
+        new ColumnInfo(CNAME_HOST_ID, CTYPE_ID),
+        new ColumnInfo("HOSTNAME", VoltType.STRING),
+        new ColumnInfo("PATH", VoltType.STRING),
+        new ColumnInfo("EVENTS", VoltType.INTEGER),
+        new ColumnInfo("RESULT", VoltType.STRING),
+        new ColumnInfo("ERR_MSG", VoltType.STRING)
+    };
+
+    @Override
+    public void init() {
+        registerPlanFragment(SysProcFragmentId.PF_traceDump);
+        registerPlanFragment(SysProcFragmentId.PF_traceDumpResults);
+    }
+
+    @Override
+    public DependencyPair executePlanFragment(Map<Integer,List<VoltTable>> dependencies,
+        long fragmentId, ParameterSet params, SystemProcedureExecutionContext context)
+    {
+        if (fragmentId == SysProcFragmentId.PF_traceDump) {
+            VoltTable result = new VoltTable(resultSchema);
+            // Choose the lowest site ID on this host to write the host's rings.
+            if (context.isLowestSiteId()) {
+                String directory = (String) params.toArray()[0];
+                int hostId = context.getHostId();
+                File file = new File(directory,
+                        "iv2trace-host" + hostId + "-" + System.currentTimeMillis() + ".bin");
+                try {
+                    int events = Iv2TraceRing.dump(file, Iv2TraceRing.getRings(hostId));
+                    result.addRow(hostId, CoreUtils.getHostnameOrAddress(), file.getPath(),
+                                  events, "SUCCESS", "");
+                }
+                catch (Exception e) {
+                    HOST_LOG.warn("Unable to write transaction trace to " + file.getPath(), e);
+                    result.addRow(hostId, CoreUtils.getHostnameOrAddress(), file.getPath(),
+                                  0, "FAILURE", e.toString());
+                }
+            }
+            return new DependencyPair(DEP_traceDump, result);
+        }
+        else if (fragmentId == SysProcFragmentId.PF_traceDumpResults) {
+            VoltTable result = VoltTableUtil.unionTables(dependencies.get(DEP_traceDump));
+            return new DependencyPair(DEP_traceDumpResults, result);
+        }
+        assert(false);
+        return null;
+    }
+
+    /**
+     * @param ctx Internal parameter not visible the end-user.
+     * @param directory Directory on each host to write the trace file to
+     * @return One row per host with the file written and its event count
+     */
+    public VoltTable[] run(SystemProcedureExecutionContext ctx, String directory)
+    {
+        SynthesizedPlanFragment pfs[] = new SynthesizedPlanFragment[2];
+        pfs[0] = new SynthesizedPlanFragment();
+        pfs[0].fragmentId = SysProcFragmentId.PF_traceDump;
+        pfs[0].outputDepId = DEP_traceDump;
+        pfs[0].inputDepIds = new int[]{};
+        pfs[0].multipartition = true;
+        pfs[0].parameters = ParameterSet.fromArrayNoCopy(directory);
+
+        pfs[1] = new SynthesizedPlanFragment();
+        pfs[1].fragmentId = SysProcFragmentId.PF_traceDumpResults;
+        pfs[1].outputDepId = DEP_traceDumpResults;
+        pfs[1].inputDepIds = new int[] { DEP_traceDump };
+        pfs[1].multipartition = false;
+        pfs[1].parameters = ParameterSet.emptyParameterSet();
+
+        return executeSysProcPlanFragments(pfs, DEP_traceDumpResults);
+    }
+}
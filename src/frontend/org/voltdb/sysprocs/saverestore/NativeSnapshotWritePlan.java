@@ -21,13 +21,16 @@ import java.io.File;
 import java.io.IOException;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.json_voltpatches.JSONObject;
 
+import org.voltcore.utils.InstanceId;
 import org.voltcore.utils.Pair;
 
 import org.voltdb.catalog.Table;
@@ -56,6 +59,11 @@ import org.voltdb.VoltTable;
  * responsibility for writing them is spread round-robin across the sites on a
  * node.  Partitioned tables are written to the same target per table by every
  * site on a node.
+ *
+ * When the request data sets "skipUnchangedTables", tables that haven't changed
+ * since the last native snapshot to the same path are not written again.  The
+ * digest names the snapshot whose files hold them, see UnchangedTableState.  A
+ * table that has changed at all is written in full.
  */
 public class NativeSnapshotWritePlan extends SnapshotWritePlan
 {
@@ -81,11 +89,40 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
     {
         assert(SnapshotSiteProcessor.ExecutionSitesCurrentlySnapshotting.isEmpty());
 
+        /*
+         * A snapshot that skips unchanged tables leaves out the tables that no
+         * local site has modified since the last snapshot this host completed to
+         * the same path, as long as the file holding each of them is still there.
+         */
+        final boolean skipUnchanged = jsData != null && jsData.optBoolean("skipUnchangedTables", false);
+        final Map<Long, Map<String, Long>> modificationCounts =
+            UnchangedTableState.takeModificationCounts(txnId);
+        final Map<String, String> fileNonces = new HashMap<String, String>();
+        final Map<String, String> unchangedTables = new TreeMap<String, String>();
+        final List<Table> tables = new ArrayList<Table>();
+        for (Table table : SnapshotUtil.getTablesToSave(context.getDatabase())) {
+            String baseNonce = null;
+            if (skipUnchanged) {
+                baseNonce = UnchangedTableState.getUnchangedTableNonce(
+                        VoltDB.instance().getHostMessenger().getInstanceId(), file_path,
+                        context.getCatalogCRC(), context.getNumberOfPartitions(), table.getTypeName(),
+                        modificationCounts);
+            }
+            if (baseNonce != null &&
+                SnapshotUtil.constructFileForTable(table, file_path, baseNonce,
+                    SnapshotFormat.NATIVE, context.getHostId()).exists()) {
+                unchangedTables.put(table.getTypeName(), baseNonce);
+                fileNonces.put(table.getTypeName(), baseNonce);
+            } else {
+                tables.add(table);
+                fileNonces.put(table.getTypeName(), file_nonce);
+            }
+        }
+
         NativeSnapshotWritePlan.createFileBasedCompletionTasks(file_path, file_nonce,
                 txnId, partitionTransactionIds, context, exportSequenceNumbers, timestamp,
-                newPartitionCount);
+                newPartitionCount, unchangedTables);
 
-        final List<Table> tables = SnapshotUtil.getTablesToSave(context.getDatabase());
         final AtomicInteger numTables = new AtomicInteger(tables.size());
         final SnapshotRegistry.Snapshot snapshotRecord =
             SnapshotRegistry.startSnapshot(
@@ -97,8 +134,9 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                     tables.toArray(new Table[0]));
 
         SnapshotDataTarget sdt = null;
-        // If no targets were successfully created, that's our cue to abort.
-        boolean noTargetsCreated = true;
+        // If no targets were successfully created, that's our cue to abort,
+        // unless there was nothing to write in the first place.
+        boolean noTargetsCreated = !tables.isEmpty();
 
         final ArrayList<SnapshotTableTask> partitionedSnapshotTasks =
             new ArrayList<SnapshotTableTask>();
@@ -163,8 +201,23 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
             }
         }
 
+        for (String tableName : unchangedTables.keySet()) {
+            result.addRow(context.getHostId(),
+                    hostname,
+                    tableName,
+                    "SUCCESS",
+                    "");
+        }
+
         if (noTargetsCreated) {
             SnapshotRegistry.discardSnapshot(snapshotRecord);
+        } else if (tables.isEmpty()) {
+            SnapshotRegistry.finishSnapshot(snapshotRecord);
+        }
+        if (m_targets.size() == tables.size()) {
+            createBaseCompletionTask(file_path, context.getCatalogCRC(), context.getNumberOfPartitions(),
+                    fileNonces, modificationCounts,
+                    tracker.getSitesForHost(context.getHostId()).size());
         }
 
         // Native snapshots place the partitioned tasks on every site and round-robin the
@@ -198,12 +251,56 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                 timestamp);
     }
 
+    /**
+     * Once every table file has been closed without error, make this snapshot
+     * the base for the next snapshot on this host that skips unchanged tables.
+     */
+    private void createBaseCompletionTask(final String file_path, final long catalogCRC,
+                                          final int partitionCount,
+                                          final Map<String, String> fileNonces,
+                                          final Map<Long, Map<String, Long>> modificationCounts,
+                                          int localSiteCount)
+    {
+        // Snapshots that didn't go through SnapshotSaveAPI as native snapshots
+        // have no counts to compare against
+        if (modificationCounts.size() != localSiteCount) {
+            return;
+        }
+        final List<SnapshotDataTarget> targets = new ArrayList<SnapshotDataTarget>(m_targets);
+        final InstanceId instanceId = VoltDB.instance().getHostMessenger().getInstanceId();
+        SnapshotSiteProcessor.m_tasksOnSnapshotCompletion.offer(new Runnable() {
+            @Override
+            public void run() {
+                for (SnapshotDataTarget target : targets) {
+                    if (target.getLastWriteException() != null) {
+                        return;
+                    }
+                }
+                UnchangedTableState.setBase(instanceId, file_path, catalogCRC,
+                        partitionCount, fileNonces, modificationCounts);
+            }
+        });
+    }
+
     static void createFileBasedCompletionTasks(
             String file_path, String file_nonce,
             long txnId, Map<Integer, Long> partitionTransactionIds,
             SystemProcedureExecutionContext context,
             Map<String, Map<Integer, Pair<Long, Long>>> exportSequenceNumbers,
             long timestamp, int newPartitionCount) throws IOException
+    {
+        createFileBasedCompletionTasks(file_path, file_nonce, txnId, partitionTransactionIds,
+                context, exportSequenceNumbers, timestamp, newPartitionCount,
+                new TreeMap<String, String>());
+    }
+
+    static void createFileBasedCompletionTasks(
+            String file_path, String file_nonce,
+            long txnId, Map<Integer, Long> partitionTransactionIds,
+            SystemProcedureExecutionContext context,
+            Map<String, Map<Integer, Pair<Long, Long>>> exportSequenceNumbers,
+            long timestamp, int newPartitionCount,
+            Map<String, String> unchangedTables) throws IOException
     {
         final List<Table> tables = SnapshotUtil.getTablesToSave(context.getDatabase());
         Runnable completionTask = SnapshotUtil.writeSnapshotDigest(
@@ -217,7 +314,8 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                 partitionTransactionIds,
                 VoltDB.instance().getHostMessenger().getInstanceId(),
                 timestamp,
-                newPartitionCount);
+                newPartitionCount,
+                unchangedTables);
         if (completionTask != null) {
             SnapshotSiteProcessor.m_tasksOnSnapshotCompletion.offer(completionTask);
         }
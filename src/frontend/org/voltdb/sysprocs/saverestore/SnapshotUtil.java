@@ -36,6 +36,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -84,6 +85,8 @@ public class SnapshotUtil {
      * @param tables   List of tables present in this snapshot
      * @param hostId   Host ID where this is happening
      * @param exportSequenceNumbers  ???
+     * @param unchangedTables  Unchanged tables the snapshot left out, mapped to
+     *                         the nonce of the snapshot in the same path holding them
      * @throws IOException
      */
     public static Runnable writeSnapshotDigest(
@@ -97,7 +100,8 @@ public class SnapshotUtil {
         Map<Integer, Long> partitionTransactionIds,
         InstanceId instanceId,
         long timestamp,
-        int newPartitionCount)
+        int newPartitionCount,
+        Map<String, String> unchangedTables)
     throws IOException
     {
         final File f = new VoltFile(path, constructDigestFilenameForNonce(nonce, hostId));
@@ -118,11 +122,19 @@ public class SnapshotUtil {
                 stringer.key("timestamp").value(timestamp);
                 stringer.key("timestampString").value(SnapshotUtil.formatHumanReadableDate(timestamp));
                 stringer.key("newPartitionCount").value(newPartitionCount);
+                stringer.key("hostId").value(hostId);
                 stringer.key("tables").array();
                 for (int ii = 0; ii < tables.size(); ii++) {
                     stringer.value(tables.get(ii).getTypeName());
                 }
                 stringer.endArray();
+                if (!unchangedTables.isEmpty()) {
+                    stringer.key("unchangedTables").object();
+                    for (Map.Entry<String, String> entry : unchangedTables.entrySet()) {
+                        stringer.key(entry.getKey()).value(entry.getValue());
+                    }
+                    stringer.endObject();
+                }
                 stringer.key("exportSequenceNumbers").array();
                 for (Map.Entry<String, Map<Integer, Pair<Long, Long>>> entry : exportSequenceNumbers.entrySet()) {
                     stringer.object();
@@ -422,6 +434,8 @@ public class SnapshotUtil {
         public final List<File> m_digests = new ArrayList<File>();
         public final List<Set<String>> m_digestTables = new ArrayList<Set<String>>();
         public final Map<String, TableFiles> m_tableFiles = new TreeMap<String, TableFiles>();
+        // Files of earlier snapshots holding the unchanged tables a snapshot left out
+        public final Set<File> m_unchangedTableFiles = new HashSet<File>();
         public File m_catalogFile = null;
 
         private String m_nonce;
@@ -514,6 +528,48 @@ public class SnapshotUtil {
             int recursion,
             boolean validate,
             VoltLogger logger) {
+        retrieveSnapshotFilesInternal(directory, namedSnapshots, filter, recursion, validate, logger);
+
+        /*
+         * Add the files carried over from earlier snapshots to the snapshots
+         * that refer to them, so they look like any other snapshot.
+         * The earlier snapshot may not have matched the filter.
+         */
+        for (Snapshot s : namedSnapshots.values()) {
+            for (File f : s.m_unchangedTableFiles) {
+                boolean present = false;
+                for (TableFiles tableFiles : s.m_tableFiles.values()) {
+                    present |= tableFiles.m_files.contains(f);
+                }
+                if (present || !f.canRead()) {
+                    continue;
+                }
+                FileInputStream fis = null;
+                try {
+                    fis = new FileInputStream(f);
+                    addTableFile(s, f, fis, validate);
+                } catch (IOException e) {
+                    System.err.println(e.getMessage());
+                    System.err.println("Error: Unable to process " + f.getPath());
+                } finally {
+                    try {
+                        if (fis != null) {
+                            fis.close();
+                        }
+                    } catch (IOException e) {
+                    }
+                }
+            }
+        }
+    }
+
+    private static void retrieveSnapshotFilesInternal(
+            File directory,
+            Map<String, Snapshot> namedSnapshots,
+            FileFilter filter,
+            int recursion,
+            boolean validate,
+            VoltLogger logger) {
         if (recursion == 32) {
             return;
         }
@@ -536,7 +592,7 @@ public class SnapshotUtil {
                     System.err.println("Warning: Skipping directory " + f.getPath()
                             + " due to lack of read permission");
                 } else {
-                    retrieveSnapshotFiles( f, namedSnapshots, filter, recursion++, validate, logger);
+                    retrieveSnapshotFilesInternal( f, namedSnapshots, filter, recursion++, validate, logger);
                 }
                 continue;
             }
@@ -577,6 +633,8 @@ public class SnapshotUtil {
                     }
                     named_s.m_digestTables.add(tableSet);
                     named_s.m_digests.add(f);
+                    named_s.m_unchangedTableFiles.addAll(
+                            retrieveUnchangedTableFiles(f.getParent(), nonce, digest).values());
                 } else if (f.getName().endsWith(".jar")) {
                     String nonce = parseNonceFromSnapshotFilename(f.getName());
                     Snapshot named_s = namedSnapshots.get(nonce);
@@ -586,41 +644,13 @@ public class SnapshotUtil {
                     }
                     named_s.m_catalogFile = f;
                 } else {
-                    HashSet<Integer> partitionIds = new HashSet<Integer>();
-                    TableSaveFile saveFile = new TableSaveFile(fis.getChannel(), 1, null, true);
-                    try {
-                        for (Integer partitionId : saveFile.getPartitionIds()) {
-                            partitionIds.add(partitionId);
-                        }
-                        if (validate && saveFile.getCompleted()) {
-                            while (saveFile.hasMoreChunks()) {
-                                BBContainer cont = saveFile.getNextChunk();
-                                if (cont != null) {
-                                    cont.discard();
-                                }
-                            }
-                        }
-                        partitionIds.removeAll(saveFile.getCorruptedPartitionIds());
-                        String nonce = parseNonceFromSnapshotFilename(f.getName());
-                        Snapshot named_s = namedSnapshots.get(nonce);
-                        if (named_s == null) {
-                            named_s = new Snapshot(nonce);
-                            namedSnapshots.put(nonce, named_s);
-                        }
-                        named_s.setTxnId(saveFile.getTxnId());
-                        TableFiles namedTableFiles = named_s.m_tableFiles.get(saveFile.getTableName());
-                        if (namedTableFiles == null) {
-                            namedTableFiles = new TableFiles(saveFile.isReplicated());
-                            named_s.m_tableFiles.put(saveFile.getTableName(), namedTableFiles);
-                        }
-                        namedTableFiles.m_files.add(f);
-                        namedTableFiles.m_completed.add(saveFile.getCompleted());
-                        namedTableFiles.m_validPartitionIds.add(partitionIds);
-                        namedTableFiles.m_corruptParititionIds.add(saveFile.getCorruptedPartitionIds());
-                        namedTableFiles.m_totalPartitionCounts.add(saveFile.getTotalPartitions());
-                    } finally {
-                        saveFile.close();
+                    String nonce = parseNonceFromSnapshotFilename(f.getName());
+                    Snapshot named_s = namedSnapshots.get(nonce);
+                    if (named_s == null) {
+                        named_s = new Snapshot(nonce);
+                        namedSnapshots.put(nonce, named_s);
                     }
+                    named_s.setTxnId(addTableFile(named_s, f, fis, validate));
                 }
             } catch (IOException e) {
                 System.err.println(e.getMessage());
@@ -640,6 +670,44 @@ public class SnapshotUtil {
         }
     }
 
+    /**
+     * Add a table file to the snapshot's description and return the txnId
+     * recorded in the file.
+     */
+    private static long addTableFile(Snapshot snapshot, File f, FileInputStream fis, boolean validate)
+    throws IOException
+    {
+        HashSet<Integer> partitionIds = new HashSet<Integer>();
+        TableSaveFile saveFile = new TableSaveFile(fis.getChannel(), 4, null, true);
+        try {
+            for (Integer partitionId : saveFile.getPartitionIds()) {
+                partitionIds.add(partitionId);
+            }
+            if (validate && saveFile.getCompleted()) {
+                while (saveFile.hasMoreChunks()) {
+                    BBContainer cont = saveFile.getNextChunk();
+                    if (cont != null) {
+                        cont.discard();
+                    }
+                }
+            }
+            partitionIds.removeAll(saveFile.getCorruptedPartitionIds());
+            TableFiles namedTableFiles = snapshot.m_tableFiles.get(saveFile.getTableName());
+            if (namedTableFiles == null) {
+                namedTableFiles = new TableFiles(saveFile.isReplicated());
+                snapshot.m_tableFiles.put(saveFile.getTableName(), namedTableFiles);
+            }
+            namedTableFiles.m_files.add(f);
+            namedTableFiles.m_completed.add(saveFile.getCompleted());
+            namedTableFiles.m_validPartitionIds.add(partitionIds);
+            namedTableFiles.m_corruptParititionIds.add(saveFile.getCorruptedPartitionIds());
+            namedTableFiles.m_totalPartitionCounts.add(saveFile.getTotalPartitions());
+            return saveFile.getTxnId();
+        } finally {
+            saveFile.close();
+        }
+    }
+
     /**
      * Returns a detailed report and a boolean indicating whether the snapshot can be successfully loaded
      * @param snapshotTime
@@ -881,6 +949,16 @@ public class SnapshotUtil {
                                                          String fileNonce,
                                                          SnapshotFormat format,
                                                          int hostId)
+    {
+        return constructFilenameForTable(table.getTypeName(), table.getIsreplicated(),
+                fileNonce, format, hostId);
+    }
+
+    public static final String constructFilenameForTable(String tableName,
+                                                         boolean isReplicated,
+                                                         String fileNonce,
+                                                         SnapshotFormat format,
+                                                         int hostId)
     {
         String extension = ".vpt";
         if (format == SnapshotFormat.CSV) {
@@ -889,8 +967,8 @@ public class SnapshotUtil {
 
         StringBuilder filename_builder = new StringBuilder(fileNonce);
         filename_builder.append("-");
-        filename_builder.append(table.getTypeName());
-        if (!table.getIsreplicated())
+        filename_builder.append(tableName);
+        if (!isReplicated)
         {
             filename_builder.append("-host_");
             filename_builder.append(hostId);
@@ -960,6 +1038,42 @@ public class SnapshotUtil {
         return save_files;
     }
 
+    /**
+     * A snapshot that skips unchanged tables leaves out the tables that were
+     * unchanged since an earlier snapshot to the same path, and the digest
+     * written by each host names the snapshot whose file holds them. Returns
+     * those files, keyed by the name the table file would have had in this
+     * snapshot. Files that no longer exist are left out.
+     */
+    public static Map<String, File> retrieveUnchangedTableFiles(String filePath,
+                                                                String fileNonce,
+                                                                JSONObject digest) throws JSONException
+    {
+        Map<String, File> files = new HashMap<String, File>();
+        if (!digest.has("unchangedTables")) {
+            return files;
+        }
+        final int hostId = digest.getInt("hostId");
+        final JSONObject unchangedTables = digest.getJSONObject("unchangedTables");
+        @SuppressWarnings("unchecked")
+        Iterator<String> it = unchangedTables.keys();
+        while (it.hasNext()) {
+            final String tableName = it.next();
+            final String baseNonce = unchangedTables.getString(tableName);
+            // The digest doesn't say whether the table is replicated, only one of the names exists
+            for (boolean isReplicated : new boolean[] { false, true }) {
+                File f = new VoltFile(filePath,
+                        constructFilenameForTable(tableName, isReplicated, baseNonce,
+                            SnapshotFormat.NATIVE, hostId));
+                if (f.exists()) {
+                    files.put(constructFilenameForTable(tableName, isReplicated, fileNonce,
+                                SnapshotFormat.NATIVE, hostId), f);
+                }
+            }
+        }
+        return files;
+    }
+
     public static boolean didSnapshotRequestSucceed(VoltTable results[]) {
         final VoltTable result = results[0];
         result.resetRowPosition();
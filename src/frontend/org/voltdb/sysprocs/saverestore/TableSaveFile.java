@@ -27,7 +27,10 @@ import java.util.ArrayDeque;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.Checksum;
 
 import org.apache.hadoop_voltpatches.util.PureJavaCrc32;
@@ -36,6 +39,7 @@ import org.json_voltpatches.JSONArray;
 import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
 import org.voltcore.TransactionIdManager;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.EELibraryLoader;
@@ -82,6 +86,29 @@ public class TableSaveFile
     private static final int DEFAULT_CHUNKSIZE =
             org.voltdb.SnapshotSiteProcessor.m_snapshotBufferLength + (1024 * 256);
 
+    private static final int MAX_COMPRESSED_CHUNKSIZE =
+            CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE);
+
+    /*
+     * Verifying and decompressing version 2 chunks is CPU bound, so the chunk reader thread
+     * only does the I/O and hands each chunk to this pool. It is shared by every open save file
+     * since restore opens many at once, and the threads go away when it is idle.
+     */
+    private static ThreadPoolExecutor m_chunkDecompressor = null;
+
+    private static synchronized ThreadPoolExecutor getChunkDecompressor() {
+        if (m_chunkDecompressor == null) {
+            final int threads = CoreUtils.availableProcessors();
+            m_chunkDecompressor = new ThreadPoolExecutor(
+                    threads, threads,
+                    10, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    CoreUtils.getThreadFactory("TableSaveFile decompressor"));
+            m_chunkDecompressor.allowCoreThreadTimeOut(true);
+        }
+        return m_chunkDecompressor;
+    }
+
     public TableSaveFile(
             FileChannel dataIn,
             int readAheadChunks,
@@ -384,6 +411,17 @@ public class TableSaveFile
             }
         }
         synchronized (this) {
+            /*
+             * Chunks already handed to the decompressor are writing into buffers
+             * that are about to be freed, wait for them to land
+             */
+            while (!m_pendingChunks.isEmpty()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
             while (!m_availableChunks.isEmpty()) {
                 m_availableChunks.poll().discard();
             }
@@ -397,6 +435,9 @@ public class TableSaveFile
         while ((cont = m_buffers.poll()) != null) {
             cont.discard();
         }
+        while ((cont = m_compressedBuffers.poll()) != null) {
+            cont.discard();
+        }
     }
 
     public Set<Integer> getCorruptedPartitionIds() {
@@ -413,7 +454,7 @@ public class TableSaveFile
         if (m_chunkReaderException != null) {
             throw m_chunkReaderException;
         }
-        if (!m_hasMoreChunks) {
+        if (!m_hasMoreChunks && m_pendingChunks.isEmpty()) {
             return m_availableChunks.poll();
         }
 
@@ -424,7 +465,7 @@ public class TableSaveFile
         }
 
         Container c = null;
-        while (c == null && (m_hasMoreChunks || !m_availableChunks.isEmpty())) {
+        while (c == null && (m_hasMoreChunks || !m_pendingChunks.isEmpty() || !m_availableChunks.isEmpty())) {
             c = m_availableChunks.poll();
             if (c == null) {
                 try {
@@ -448,7 +489,7 @@ public class TableSaveFile
         if (m_chunkReaderException != null) {
             throw m_chunkReaderException;
         }
-        return m_hasMoreChunks || !m_availableChunks.isEmpty();
+        return m_hasMoreChunks || !m_pendingChunks.isEmpty() || !m_availableChunks.isEmpty();
     }
 
     private final FileChannel m_saveFile;
@@ -466,9 +507,16 @@ public class TableSaveFile
     private final int m_totalPartitions;
     private final long m_txnId;
     private final long m_timestamp;
-    private boolean m_hasMoreChunks = true;
+    private volatile boolean m_hasMoreChunks = true;
     private ConcurrentLinkedQueue<Container> m_buffers = new ConcurrentLinkedQueue<Container>();
+    private final ConcurrentLinkedQueue<BBContainer> m_compressedBuffers = new ConcurrentLinkedQueue<BBContainer>();
     private final ArrayDeque<Container> m_availableChunks = new ArrayDeque<Container>();
+    /*
+     * Chunks handed to the decompressor, in file order. They complete in any order
+     * but are only moved to m_availableChunks from the head so getNextChunk()
+     * still returns them in the order they were written.
+     */
+    private final ArrayDeque<DecompressChunkTask> m_pendingChunks = new ArrayDeque<DecompressChunkTask>();
     private final HashSet<Integer> m_relevantPartitionIds;
     private final ChecksumType m_checksumType;
 
@@ -507,11 +555,12 @@ public class TableSaveFile
         /*
          * The old method was out of hand. Going to start a new one with a different format
          * that should be easier to understand and validate.
+         *
+         * This thread only reads the chunks, the CRC check and decompression of each one
+         * is done by a DecompressChunkTask on the shared decompressor pool.
          */
         private void readChunksV2() {
-            //For reading the compressed input.
-            ByteBuffer fileInputBuffer =
-                    ByteBuffer.allocateDirect(CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE));
+            final ThreadPoolExecutor decompressor = getChunkDecompressor();
 
             while (m_hasMoreChunks) {
 
@@ -523,6 +572,10 @@ public class TableSaveFile
                 } catch (InterruptedException e) {
                     return;
                 }
+                //A chunk that failed to decompress ends the read
+                if (!m_hasMoreChunks) {
+                    return;
+                }
                 boolean expectedAnotherChunk = false;
                 try {
 
@@ -555,9 +608,7 @@ public class TableSaveFile
                     int generatedValue = (int)partitionIdCRC.getValue();
                     if (generatedValue != nextChunkPartitionIdCRC) {
                         chunkLengthB.position(0);
-                        for (int partitionId : m_partitionIds) {
-                            m_corruptedPartitions.add(partitionId);
-                        }
+                        markAllPartitionsCorrupted();
                         throw new IOException("Chunk partition ID CRC check failed. " +
                                 "This corrupts all partitions in this file");
                     }
@@ -575,101 +626,43 @@ public class TableSaveFile
                         throw new IOException("Corrupted TableSaveFile chunk has negative chunk length");
                     }
 
-                    if (nextChunkLength > fileInputBuffer.capacity()) {
+                    if (nextChunkLength > MAX_COMPRESSED_CHUNKSIZE) {
                         throw new IOException("Corrupted TableSaveFile chunk has unreasonable length " +
                                 "> DEFAULT_CHUNKSIZE bytes");
                     }
 
                     /*
-                     * Go fetch the compressed data so that the uncompressed size is known
-                     * and use that to set nextChunkLength to be the uncompressed length,
-                     * the code ahead that constructs the volt table is expecting
-                     * the uncompressed size/data since it is producing an uncompressed table
+                     * Go fetch the compressed data, the decompressor will work out
+                     * the uncompressed length from it
                      */
-                    fileInputBuffer.clear();
-                    fileInputBuffer.limit(nextChunkLength);
-                    while (fileInputBuffer.hasRemaining()) {
-                        final int read = m_saveFile.read(fileInputBuffer);
-                        if (read == -1) {
-                            throw new EOFException();
-                        }
-                    }
-                    fileInputBuffer.flip();
-                    nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
-
-                    /*
-                     * Validate the rest of the chunk. This can fail if the data is corrupted
-                     * or the length value was corrupted.
-                     */
-                    final int calculatedCRC =
-                            DBBPool.getBufferCRC32C(fileInputBuffer, 0, fileInputBuffer.remaining());
-                    if (calculatedCRC != nextChunkCRC) {
-                        m_corruptedPartitions.add(nextChunkPartitionId);
-                        if (m_continueOnCorruptedChunk) {
-                            m_chunkReads.release();
-                            continue;
-                        } else {
-                            throw new IOException("CRC mismatch in saved table chunk");
-                        }
+                    BBContainer compressed = m_compressedBuffers.poll();
+                    if (compressed == null) {
+                        compressed = DBBPool.allocateDirect(MAX_COMPRESSED_CHUNKSIZE);
                     }
-
-                    /*
-                     * Now allocate space to store the chunk using the VoltTable serialization representation.
-                     * The chunk will contain an integer row count preceding it so it can
-                     * be sucked straight in. There is a little funny business to overwrite the
-                     * partition id that is not part of the serialization format
-                     */
-                    Container c = getOutputBuffer(nextChunkPartitionId);
-
-                    /*
-                     * If the length value is wrong or not all data made it to disk this read will
-                     * not complete correctly. There could be overflow, underflow etc.
-                     * so use a try finally block to indicate that all partitions are now corrupt.
-                     * The enclosing exception handlers will do the right thing WRT to
-                     * propagating the error and closing the file.
-                     */
-                    boolean completedRead = false;
+                    boolean submitted = false;
                     try {
-                        /*
-                         * Assemble a VoltTable out of the chunk of tuples.
-                         * Put in the header that was cached in the constructor,
-                         * then copy the tuple data.
-                         */
-                        c.b.clear();
-                        c.b.limit(nextChunkLength  + m_tableHeader.capacity());
-                        m_tableHeader.position(0);
-                        c.b.put(m_tableHeader);
-                        //Doesn't move buffer position, does change the limit
-                        CompressionService.decompressBuffer(fileInputBuffer, c.b);
-                        completedRead = true;
-                    } finally {
-                        if (!completedRead) {
-                            for (int partitionId : m_partitionIds) {
-                                m_corruptedPartitions.add(partitionId);
+                        final ByteBuffer fileInputBuffer = compressed.b;
+                        fileInputBuffer.clear();
+                        fileInputBuffer.limit(nextChunkLength);
+                        while (fileInputBuffer.hasRemaining()) {
+                            final int read = m_saveFile.read(fileInputBuffer);
+                            if (read == -1) {
+                                throw new EOFException();
                             }
                         }
-                    }
+                        fileInputBuffer.flip();
 
-                    /*
-                     * Skip irrelevant chunks after CRC is calculated. Always calulate the CRC
-                     * in case it is the length value that is corrupted
-                     */
-                    if (m_relevantPartitionIds != null) {
-                        if (!m_relevantPartitionIds.contains(nextChunkPartitionId)) {
-                            c.discard();
-                            m_chunkReads.release();
-                            continue;
+                        final DecompressChunkTask task =
+                                new DecompressChunkTask(compressed, nextChunkPartitionId, nextChunkCRC);
+                        synchronized (TableSaveFile.this) {
+                            m_pendingChunks.offer(task);
+                        }
+                        decompressor.execute(task);
+                        submitted = true;
+                    } finally {
+                        if (!submitted) {
+                            m_compressedBuffers.offer(compressed);
                         }
-                    }
-
-                    /*
-                     * VoltTable wants the buffer at the home position 0
-                     */
-                    c.b.position(0);
-
-                    synchronized (TableSaveFile.this) {
-                        m_availableChunks.offer(c);
-                        TableSaveFile.this.notifyAll();
                     }
                 } catch (EOFException eof) {
                     synchronized (TableSaveFile.this) {
@@ -968,23 +961,6 @@ public class TableSaveFile
                 }
             }
         }
-        private Container getOutputBuffer(final int nextChunkPartitionId) {
-            Container c = m_buffers.poll();
-            if (c == null) {
-                final BBContainer originContainer = DBBPool.allocateDirect(DEFAULT_CHUNKSIZE);
-                final ByteBuffer b = originContainer.b;
-                final long pointer = org.voltcore.utils.DBBPool.getBufferAddress(b);
-                c = new Container(b, pointer, originContainer, nextChunkPartitionId);
-            }
-            /*
-             * Need to reconstruct the container with the partition id of the next
-             * chunk so it can be a final public field. The buffer, address, and origin
-             * container remain the same.
-             */
-            c = new Container(c.b, c.address, c.m_origin, nextChunkPartitionId);
-            return c;
-        }
-
         @Override
         public void run() {
             try {
@@ -1006,4 +982,164 @@ public class TableSaveFile
         }
 
     }
+
+    private Container getOutputBuffer(final int nextChunkPartitionId) {
+        Container c = m_buffers.poll();
+        if (c == null) {
+            final BBContainer originContainer = DBBPool.allocateDirect(DEFAULT_CHUNKSIZE);
+            final ByteBuffer b = originContainer.b;
+            final long pointer = org.voltcore.utils.DBBPool.getBufferAddress(b);
+            c = new Container(b, pointer, originContainer, nextChunkPartitionId);
+        }
+        /*
+         * Need to reconstruct the container with the partition id of the next
+         * chunk so it can be a final public field. The buffer, address, and origin
+         * container remain the same.
+         */
+        c = new Container(c.b, c.address, c.m_origin, nextChunkPartitionId);
+        return c;
+    }
+
+    private synchronized void markAllPartitionsCorrupted() {
+        for (int partitionId : m_partitionIds) {
+            m_corruptedPartitions.add(partitionId);
+        }
+    }
+
+    /*
+     * Move chunks that have finished decompressing to m_availableChunks, stopping at the
+     * first one that is still in progress. Must hold the monitor.
+     */
+    private void publishDecompressedChunks() {
+        DecompressChunkTask task;
+        while ((task = m_pendingChunks.peek()) != null && task.m_done) {
+            m_pendingChunks.poll();
+            if (task.m_error != null) {
+                m_hasMoreChunks = false;
+                if (m_chunkReaderException == null) {
+                    m_chunkReaderException = task.m_error;
+                }
+            }
+            if (task.m_result != null) {
+                m_availableChunks.offer(task.m_result);
+            } else {
+                //Skipped, doesn't count against the read ahead
+                m_chunkReads.release();
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Validate and decompress one version 2 chunk into a Container ready to be
+     * returned by getNextChunk()
+     */
+    private class DecompressChunkTask implements Runnable {
+        private final BBContainer m_compressed;
+        private final int m_partitionId;
+        private final int m_expectedCRC;
+
+        // guarded by TableSaveFile.this once the task is pending
+        private boolean m_done = false;
+        private Container m_result = null;
+        private IOException m_error = null;
+
+        DecompressChunkTask(BBContainer compressed, int partitionId, int expectedCRC) {
+            m_compressed = compressed;
+            m_partitionId = partitionId;
+            m_expectedCRC = expectedCRC;
+        }
+
+        @Override
+        public void run() {
+            Container c = null;
+            IOException error = null;
+            try {
+                final ByteBuffer fileInputBuffer = m_compressed.b;
+
+                /*
+                 * Validate the rest of the chunk. This can fail if the data is corrupted
+                 * or the length value was corrupted.
+                 */
+                final int calculatedCRC =
+                        DBBPool.getBufferCRC32C(fileInputBuffer, 0, fileInputBuffer.remaining());
+                if (calculatedCRC != m_expectedCRC) {
+                    synchronized (TableSaveFile.this) {
+                        m_corruptedPartitions.add(m_partitionId);
+                    }
+                    if (!m_continueOnCorruptedChunk) {
+                        error = new IOException("CRC mismatch in saved table chunk");
+                    }
+                    return;
+                }
+
+                /*
+                 * Skip irrelevant chunks after CRC is calculated. Always calulate the CRC
+                 * in case it is the length value that is corrupted
+                 */
+                if (m_relevantPartitionIds != null) {
+                    if (!m_relevantPartitionIds.contains(m_partitionId)) {
+                        return;
+                    }
+                }
+
+                /*
+                 * Use the uncompressed length because the code ahead that constructs
+                 * the volt table is expecting the uncompressed size/data.
+                 *
+                 * If the length value is wrong or not all data made it to disk this
+                 * will not complete correctly. There could be overflow, underflow etc.
+                 * so indicate that all partitions are now corrupt.
+                 */
+                boolean completedRead = false;
+                try {
+                    final int uncompressedLength = CompressionService.uncompressedLength(fileInputBuffer);
+                    c = getOutputBuffer(m_partitionId);
+
+                    /*
+                     * Assemble a VoltTable out of the chunk of tuples.
+                     * Put in the header that was cached in the constructor,
+                     * then copy the tuple data.
+                     */
+                    c.b.clear();
+                    c.b.limit(uncompressedLength  + m_tableHeader.capacity());
+                    final ByteBuffer tableHeader = m_tableHeader.duplicate();
+                    tableHeader.clear();
+                    c.b.put(tableHeader);
+                    //Doesn't move buffer position, does change the limit
+                    CompressionService.decompressBuffer(fileInputBuffer, c.b);
+                    completedRead = true;
+                } finally {
+                    if (!completedRead) {
+                        markAllPartitionsCorrupted();
+                    }
+                }
+
+                /*
+                 * VoltTable wants the buffer at the home position 0
+                 */
+                c.b.position(0);
+            } catch (IOException e) {
+                error = e;
+            } catch (BufferUnderflowException e) {
+                error = new IOException(e);
+            } catch (BufferOverflowException e) {
+                error = new IOException(e);
+            } catch (IndexOutOfBoundsException e) {
+                error = new IOException(e);
+            } finally {
+                m_compressedBuffers.offer(m_compressed);
+                if (error != null && c != null) {
+                    c.discard();
+                    c = null;
+                }
+                synchronized (TableSaveFile.this) {
+                    m_done = true;
+                    m_result = c;
+                    m_error = error;
+                    publishDecompressedChunks();
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,167 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.voltcore.utils.InstanceId;
+import org.voltdb.SystemProcedureExecutionContext;
+import org.voltdb.catalog.Table;
+
+/**
+ * Host-wide bookkeeping for native snapshots that skip unchanged tables.
+ *
+ * Every local site records the EE modification count of each of its tables
+ * at the snapshot transaction point. When a native snapshot completes on this
+ * host those counts become the base for the next one. A snapshot that asks to
+ * skip unchanged tables, written to the same directory with the same catalog,
+ * leaves out a table if no local site has modified it since the base, and its
+ * digest names the snapshot whose file still holds the table.
+ *
+ * This is not an incremental snapshot. Changes are tracked per table, so a
+ * table with any modification at all, even one insert, is written in full.
+ * Every table file a snapshot refers to is a complete copy, either written by
+ * that snapshot or carried over from the base, so there is nothing to replay
+ * or compact on restore. Only tables that see no writes between snapshots are
+ * saved any work.
+ */
+public class UnchangedTableState
+{
+    /**
+     * The last native snapshot that completed on this host.
+     */
+    private static class Base {
+        private final InstanceId m_instanceId;
+        private final File m_path;
+        private final long m_catalogCRC;
+        private final int m_partitionCount;
+        // Table name to the nonce of the snapshot that wrote the table's file
+        private final Map<String, String> m_fileNonces;
+        // Site HSId to the modification count of each table at the snapshot
+        private final Map<Long, Map<String, Long>> m_counts;
+
+        private Base(InstanceId instanceId, File path, long catalogCRC, int partitionCount,
+                     Map<String, String> fileNonces, Map<Long, Map<String, Long>> counts) {
+            m_instanceId = instanceId;
+            m_path = path;
+            m_catalogCRC = catalogCRC;
+            m_partitionCount = partitionCount;
+            m_fileNonces = fileNonces;
+            m_counts = counts;
+        }
+    }
+
+    // Counts recorded by the local sites for the snapshot being set up, keyed by site HSId
+    private static final Map<Long, Map<String, Long>> m_pendingCounts =
+        new HashMap<Long, Map<String, Long>>();
+    // Transaction id of the snapshot the pending counts were recorded for
+    private static long m_pendingTxnId = Long.MIN_VALUE;
+    private static Base m_base = null;
+
+    /**
+     * Record the modification counts of the site's tables as of the snapshot
+     * transaction. Called by every local site as it arrives at the setup
+     * barrier of a native snapshot, while the site is blocked in the snapshot
+     * transaction, so the counts match what the snapshot will write.
+     */
+    public static void recordModificationCounts(SystemProcedureExecutionContext context, long txnId) {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (Table table : SnapshotUtil.getTablesToSave(context.getDatabase())) {
+            counts.put(table.getTypeName(),
+                    context.getSiteProcedureConnection().getTableModificationCount(
+                        table.getRelativeIndex()));
+        }
+        recordModificationCounts(txnId, context.getSiteId(), counts);
+    }
+
+    static synchronized void recordModificationCounts(long txnId, long siteId, Map<String, Long> counts) {
+        if (txnId != m_pendingTxnId) {
+            // Left over from a snapshot whose setup never ran
+            m_pendingCounts.clear();
+            m_pendingTxnId = txnId;
+        }
+        m_pendingCounts.put(siteId, counts);
+    }
+
+    /**
+     * Remove and return the counts recorded by the local sites for the
+     * snapshot with the given transaction id. Empty if none were recorded.
+     */
+    static synchronized Map<Long, Map<String, Long>> takeModificationCounts(long txnId) {
+        Map<Long, Map<String, Long>> counts = new HashMap<Long, Map<String, Long>>();
+        if (txnId == m_pendingTxnId) {
+            counts.putAll(m_pendingCounts);
+        }
+        m_pendingCounts.clear();
+        m_pendingTxnId = Long.MIN_VALUE;
+        return counts;
+    }
+
+    /**
+     * Return the nonce of the snapshot whose file for the table can stand in
+     * for it in a snapshot to the given path, or null if the table has to be
+     * written. The caller still has to check that the file exists. Table files
+     * record the partition count, so they are only reused if it is unchanged.
+     * Counts start over with a new cluster instance, so they are only compared
+     * within one.
+     */
+    static synchronized String getUnchangedTableNonce(InstanceId instanceId, String path,
+                                                      long catalogCRC, int partitionCount,
+                                                      String tableName,
+                                                      Map<Long, Map<String, Long>> counts) {
+        if (m_base == null ||
+            counts.isEmpty() ||
+            !m_base.m_instanceId.equals(instanceId) ||
+            !m_base.m_path.equals(new File(path)) ||
+            m_base.m_catalogCRC != catalogCRC ||
+            m_base.m_partitionCount != partitionCount ||
+            !m_base.m_counts.keySet().equals(counts.keySet())) {
+            return null;
+        }
+        for (Map.Entry<Long, Map<String, Long>> e : counts.entrySet()) {
+            Long count = e.getValue().get(tableName);
+            if (count == null || count < 0 || !count.equals(m_base.m_counts.get(e.getKey()).get(tableName))) {
+                return null;
+            }
+        }
+        return m_base.m_fileNonces.get(tableName);
+    }
+
+    /**
+     * Make a completed snapshot the base for the next snapshot that skips
+     * unchanged tables.
+     * @param fileNonces the nonce of the file holding each table, which is the
+     * snapshot's own nonce unless the table was carried over from the base.
+     */
+    static synchronized void setBase(InstanceId instanceId, String path, long catalogCRC,
+                                     int partitionCount, Map<String, String> fileNonces,
+                                     Map<Long, Map<String, Long>> counts) {
+        m_base = new Base(instanceId, new File(path), catalogCRC, partitionCount, fileNonces, counts);
+    }
+
+    /**
+     * Forget the base, so the next snapshot writes every table.
+     */
+    static synchronized void clear() {
+        m_base = null;
+        m_pendingCounts.clear();
+        m_pendingTxnId = Long.MIN_VALUE;
+    }
+}
@@ -86,6 +86,7 @@ public enum IndexType {
         case BALANCED_TREE:
             return "_TREE";
         case BTREE:
+            return "_BTREE";
         case HASH_TABLE:
             return "";
         }
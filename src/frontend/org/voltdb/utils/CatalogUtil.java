@@ -1016,6 +1016,7 @@ public abstract class CatalogUtil {
             catDeployment.getSystemsettings().add("systemsettings");
         int maxtemptablesize = 100;
         int snapshotpriority = 6;
+        int snapshottargetlatency = 0;
         if (deployment.getSystemsettings() != null)
         {
             Temptables temptables = deployment.getSystemsettings().getTemptables();
@@ -1026,10 +1027,12 @@ public abstract class CatalogUtil {
             SystemSettingsType.Snapshot snapshot = deployment.getSystemsettings().getSnapshot();
             if (snapshot != null) {
                 snapshotpriority = snapshot.getPriority();
+                snapshottargetlatency = snapshot.getTargetlatency();
             }
         }
         syssettings.setMaxtemptablesize(maxtemptablesize);
         syssettings.setSnapshotpriority(snapshotpriority);
+        syssettings.setSnapshottargetlatency(snapshottargetlatency);
     }
 
     private static void validateDirectory(String type, File path, boolean crashOnFailedValidation) {
@@ -1218,6 +1221,7 @@ public abstract class CatalogUtil {
             schedule.setFrequencyvalue(frequencyInt);
             schedule.setPrefix(prefix);
             schedule.setRetain(retain);
+            schedule.setSkipunchanged(snapshotSettings.getSkipunchanged());
         }
         else
         {
@@ -0,0 +1,427 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.messaging.FastSerializer;
+import org.voltdb.sysprocs.saverestore.TableSaveFile;
+import org.voltdb.types.TimestampType;
+import org.voltdb.types.VoltDecimalHelper;
+
+/**
+ * Converts the save files of a table into a single compressed columnar file.
+ *
+ * Every chunk of a save file becomes a row group that stores each column
+ * separately and compresses it with Snappy, so a reader only decompresses the
+ * columns it wants and runs of similar values compress well. Several save
+ * files of the same table can be converted into one output file at once from
+ * different threads. Each converts and compresses its own row groups and only
+ * the append to the file is serialized. Row groups are written in the order
+ * they are finished, so rows come out in no particular order, as with CSV.
+ *
+ * All values use the big endian encoding of VoltTable serialization:
+ * <pre>
+ * int magic, int version
+ * string table name, int column count, (byte VoltType, string name) per column
+ * row groups: int row count, (int length, compressed column) per column
+ * int 0, long total row count
+ * </pre>
+ * Strings are an int length followed by UTF-8 bytes. A column holds the
+ * values of the non-null rows followed by a bitmap with a bit set for every
+ * null row. TINYINT, SMALLINT, INTEGER, BIGINT and FLOAT are stored at their
+ * native width, TIMESTAMP as microseconds since the epoch, DECIMAL as its 16
+ * byte fixed scale form, and STRING and VARBINARY as an int length followed by
+ * the bytes.
+ */
+public class ColumnarTableSaveFile {
+    public static final int MAGIC = 0x56434F4C; // "VCOL"
+    public static final int VERSION = 1;
+
+    private final File m_file;
+    private final FileOutputStream m_fos;
+    private final FileChannel m_channel;
+    private boolean m_headerWritten = false;
+    private long m_rowCount = 0;
+
+    public ColumnarTableSaveFile(File outfile) throws IOException {
+        m_file = outfile;
+        m_fos = new FileOutputStream(outfile);
+        m_channel = m_fos.getChannel();
+    }
+
+    /**
+     * Convert the chunks of one save file of the table and append them to the
+     * output. May be called concurrently for different save files.
+     *
+     * @param infile save file to convert
+     * @param partitions partitions to take from the save file, or null for all of them
+     */
+    public void convert(File infile, Integer partitions[]) throws IOException {
+        final FileInputStream fis = new FileInputStream(infile);
+        final TableSaveFile saveFile = new TableSaveFile(fis.getChannel(), 10, partitions);
+        try {
+            writeHeader(saveFile.getTableName(), emptyTable(saveFile.getTableHeader()));
+            final RowGroupEncoder encoder = new RowGroupEncoder();
+            while (saveFile.hasMoreChunks()) {
+                final BBContainer c = saveFile.getNextChunk();
+                if (c == null) {
+                    break;
+                }
+                try {
+                    final VoltTable vt = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b, true);
+                    if (vt.getRowCount() > 0) {
+                        appendRowGroup(vt.getRowCount(), encoder.encode(vt));
+                    }
+                } finally {
+                    c.discard();
+                }
+            }
+        } finally {
+            try {
+                saveFile.close();
+            } finally {
+                fis.close();
+            }
+        }
+    }
+
+    /**
+     * @return the number of rows written so far
+     */
+    public synchronized long getRowCount() {
+        return m_rowCount;
+    }
+
+    /**
+     * Write the end of the file and sync it. Call after every conversion has
+     * returned.
+     */
+    public synchronized void close() throws IOException {
+        try {
+            if (!m_headerWritten) {
+                throw new IOException("No save file was converted into " + m_file.getPath());
+            }
+            ByteBuffer footer = ByteBuffer.allocate(12);
+            footer.putInt(0);
+            footer.putLong(m_rowCount);
+            footer.flip();
+            write(footer);
+            m_fos.getFD().sync();
+        } finally {
+            m_fos.close();
+        }
+    }
+
+    /*
+     * The save file header is a VoltTable header without a row count,
+     * add one to get a table with the schema and no rows.
+     */
+    private static VoltTable emptyTable(ByteBuffer tableHeader) {
+        ByteBuffer header = tableHeader.duplicate();
+        header.clear();
+        ByteBuffer buf = ByteBuffer.allocate(header.remaining() + 4);
+        buf.put(header);
+        buf.putInt(0);
+        buf.flip();
+        return PrivateVoltTableFactory.createVoltTableFromBuffer(buf, true);
+    }
+
+    private synchronized void writeHeader(String tableName, VoltTable schema) throws IOException {
+        if (m_headerWritten) {
+            return;
+        }
+        FastSerializer fs = new FastSerializer();
+        fs.writeInt(MAGIC);
+        fs.writeInt(VERSION);
+        fs.writeString(tableName);
+        fs.writeInt(schema.getColumnCount());
+        for (int ii = 0; ii < schema.getColumnCount(); ii++) {
+            fs.writeByte(schema.getColumnType(ii).getValue());
+            fs.writeString(schema.getColumnName(ii));
+        }
+        write(fs.getBBContainer().b);
+        m_headerWritten = true;
+    }
+
+    private synchronized void appendRowGroup(int rowCount, byte columns[][]) throws IOException {
+        int length = 4;
+        for (byte column[] : columns) {
+            length += 4 + column.length;
+        }
+        ByteBuffer rowGroup = ByteBuffer.allocate(length);
+        rowGroup.putInt(rowCount);
+        for (byte column[] : columns) {
+            rowGroup.putInt(column.length);
+            rowGroup.put(column);
+        }
+        rowGroup.flip();
+        write(rowGroup);
+        m_rowCount += rowCount;
+    }
+
+    private void write(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            m_channel.write(buf);
+        }
+    }
+
+    /**
+     * Splits a chunk into compressed columns. Keeps its buffers between chunks,
+     * so each converting thread uses its own.
+     */
+    private static class RowGroupEncoder {
+        private final FastSerializer m_values = new FastSerializer();
+        private final ByteBuffer m_decimal = ByteBuffer.allocate(16);
+
+        byte[][] encode(VoltTable vt) throws IOException {
+            final int rowCount = vt.getRowCount();
+            final byte columns[][] = new byte[vt.getColumnCount()][];
+            for (int col = 0; col < columns.length; col++) {
+                final VoltType type = vt.getColumnType(col);
+                final byte nulls[] = new byte[(rowCount + 7) / 8];
+                m_values.clear();
+                vt.resetRowPosition();
+                int row = 0;
+                while (vt.advanceRow()) {
+                    switch (type) {
+                    case TINYINT:
+                    case SMALLINT:
+                    case INTEGER:
+                    case BIGINT: {
+                        final long value = vt.getLong(col);
+                        if (!vt.wasNull()) {
+                            writeInteger(type, value);
+                        }
+                        break;
+                    }
+                    case FLOAT: {
+                        final double value = vt.getDouble(col);
+                        if (!vt.wasNull()) {
+                            m_values.writeDouble(value);
+                        }
+                        break;
+                    }
+                    case TIMESTAMP: {
+                        final long value = vt.getTimestampAsLong(col);
+                        if (!vt.wasNull()) {
+                            m_values.writeLong(value);
+                        }
+                        break;
+                    }
+                    case DECIMAL: {
+                        final BigDecimal value = vt.getDecimalAsBigDecimal(col);
+                        if (!vt.wasNull()) {
+                            m_decimal.clear();
+                            VoltDecimalHelper.serializeBigDecimal(value, m_decimal);
+                            m_values.write(m_decimal.array());
+                        }
+                        break;
+                    }
+                    case STRING: {
+                        final byte value[] = vt.getStringAsBytes(col);
+                        if (!vt.wasNull()) {
+                            m_values.writeVarbinary(value);
+                        }
+                        break;
+                    }
+                    case VARBINARY: {
+                        final byte value[] = vt.getVarbinary(col);
+                        if (!vt.wasNull()) {
+                            m_values.writeVarbinary(value);
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unsupported column type " + type +
+                                " in column " + vt.getColumnName(col));
+                    }
+                    if (vt.wasNull()) {
+                        nulls[row >> 3] |= 1 << (row & 7);
+                    }
+                    row++;
+                }
+                m_values.write(nulls);
+                final ByteBuffer values = m_values.getBBContainer().b;
+                columns[col] = CompressionService.compressBytes(values.array(),
+                        values.arrayOffset(), values.limit());
+            }
+            return columns;
+        }
+
+        private void writeInteger(VoltType type, long value) throws IOException {
+            switch (type) {
+            case TINYINT:
+                m_values.writeByte((int)value);
+                break;
+            case SMALLINT:
+                m_values.writeShort((int)value);
+                break;
+            case INTEGER:
+                m_values.writeInt((int)value);
+                break;
+            default:
+                m_values.writeLong(value);
+            }
+        }
+    }
+
+    /**
+     * Reads a columnar file back one row group at a time.
+     */
+    public static class Reader {
+        private final DataInputStream m_in;
+        private final String m_tableName;
+        private final VoltTable.ColumnInfo m_columns[];
+        private final VoltType m_types[];
+        private long m_rowCount = -1;
+
+        public Reader(File file) throws IOException {
+            m_in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            boolean success = false;
+            try {
+                if (m_in.readInt() != MAGIC) {
+                    throw new IOException(file.getPath() + " is not a columnar table file");
+                }
+                final int version = m_in.readInt();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported columnar table file version " + version);
+                }
+                m_tableName = readString();
+                m_columns = new VoltTable.ColumnInfo[m_in.readInt()];
+                m_types = new VoltType[m_columns.length];
+                for (int ii = 0; ii < m_columns.length; ii++) {
+                    m_types[ii] = VoltType.get(m_in.readByte());
+                    m_columns[ii] = new VoltTable.ColumnInfo(readString(), m_types[ii]);
+                }
+                success = true;
+            } finally {
+                if (!success) {
+                    m_in.close();
+                }
+            }
+        }
+
+        public String getTableName() {
+            return m_tableName;
+        }
+
+        /**
+         * @return an empty table with the columns of the file
+         */
+        public VoltTable getSchema() {
+            return new VoltTable(m_columns);
+        }
+
+        /**
+         * @return the next row group, or null after the last one
+         */
+        public VoltTable next() throws IOException {
+            if (m_rowCount >= 0) {
+                return null;
+            }
+            final int rowCount = m_in.readInt();
+            if (rowCount == 0) {
+                m_rowCount = m_in.readLong();
+                return null;
+            }
+            final Object rows[][] = new Object[rowCount][m_columns.length];
+            for (int col = 0; col < m_columns.length; col++) {
+                final byte compressed[] = new byte[m_in.readInt()];
+                m_in.readFully(compressed);
+                final byte column[] = CompressionService.decompressBytes(compressed);
+                final int nullsOffset = column.length - (rowCount + 7) / 8;
+                final FastDeserializer values = new FastDeserializer(column);
+                final VoltType type = m_types[col];
+                for (int row = 0; row < rowCount; row++) {
+                    if ((column[nullsOffset + (row >> 3)] & (1 << (row & 7))) != 0) {
+                        rows[row][col] = null;
+                        continue;
+                    }
+                    switch (type) {
+                    case TINYINT:
+                        rows[row][col] = values.readByte();
+                        break;
+                    case SMALLINT:
+                        rows[row][col] = values.readShort();
+                        break;
+                    case INTEGER:
+                        rows[row][col] = values.readInt();
+                        break;
+                    case BIGINT:
+                        rows[row][col] = values.readLong();
+                        break;
+                    case FLOAT:
+                        rows[row][col] = values.readDouble();
+                        break;
+                    case TIMESTAMP:
+                        rows[row][col] = new TimestampType(values.readLong());
+                        break;
+                    case DECIMAL:
+                        rows[row][col] = values.readBigDecimal();
+                        break;
+                    case STRING:
+                        rows[row][col] = values.readString();
+                        break;
+                    case VARBINARY:
+                        rows[row][col] = values.readVarbinary();
+                        break;
+                    default:
+                        throw new IOException("Unsupported column type " + type);
+                    }
+                }
+            }
+            final VoltTable table = new VoltTable(m_columns);
+            for (Object row[] : rows) {
+                table.addRow(row);
+            }
+            return table;
+        }
+
+        /**
+         * @return the row count recorded at the end of the file, only known
+         * once next() has returned null
+         */
+        public long getRowCount() {
+            return m_rowCount;
+        }
+
+        public void close() throws IOException {
+            m_in.close();
+        }
+
+        private String readString() throws IOException {
+            final byte bytes[] = new byte[m_in.readInt()];
+            m_in.readFully(bytes);
+            return new String(bytes, "UTF-8");
+        }
+    }
+}
@@ -57,6 +57,7 @@ public class HTTPAdminListener {
 
     Server m_server = new Server();
     HTTPClientInterface httpClientInterface = new HTTPClientInterface();
+    final MetricsExporter m_metrics = new MetricsExporter();
     final boolean m_jsonEnabled;
     Map<String, String> m_htmlTemplates = new HashMap<String, String>();
 
@@ -198,6 +199,11 @@ public class HTTPAdminListener {
                 return;
             }
 
+            if (baseRequest.getRequestURI().startsWith("/metrics")) {
+                handleMetrics(baseRequest, response);
+                return;
+            }
+
             handleReportPage(baseRequest, response);
         }
 
@@ -221,6 +227,24 @@ public class HTTPAdminListener {
         }
     }
 
+    /**
+     * Serve the last metrics snapshot. Scrapes never collect stats
+     * themselves, see refreshMetrics().
+     */
+    void handleMetrics(Request baseRequest, HttpServletResponse response) throws IOException {
+        String snapshot = m_metrics.getSnapshot();
+        baseRequest.setHandled(true);
+        if (snapshot == null) {
+            response.setContentType("text/plain;charset=utf-8");
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.getWriter().print("Metrics have not been collected yet.\n");
+            return;
+        }
+        response.setContentType(MetricsExporter.CONTENT_TYPE);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.getWriter().print(snapshot);
+    }
+
     /**
      * Draw the memory page.
      */
@@ -400,6 +424,14 @@ public class HTTPAdminListener {
         m_server = null;
     }
 
+    /**
+     * Take a new snapshot of this host's statistics for the metrics endpoint.
+     */
+    public void refreshMetrics()
+    {
+        m_metrics.refresh(VoltDB.instance().getStatsAgent());
+    }
+
     public void notifyOfCatalogUpdate()
     {
         httpClientInterface.notifyOfCatalogUpdate();
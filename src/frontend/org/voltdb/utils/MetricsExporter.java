@@ -0,0 +1,199 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltdb.StatsAgent;
+import org.voltdb.StatsSelector;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+
+/**
+ * MetricsExporter renders the statistics of this host in the Prometheus
+ * text exposition format. Rendering reads the locally registered
+ * StatsSources through StatsAgent.getStatsAggregate, so no cluster round
+ * trip is involved. The text is produced on a schedule by refresh() and
+ * cached, so a scrape only returns the last snapshot and never waits on
+ * the stats sources.
+ *
+ * Every numeric column of a selector becomes one metric named
+ * voltdb_&lt;selector&gt;_&lt;column&gt;. String columns and ID columns become
+ * labels. The cumulative (non-interval) values are exported so that
+ * scrapes do not reset the interval counters seen by @Statistics.
+ */
+public class MetricsExporter {
+
+    private static final VoltLogger log = new VoltLogger("HOST");
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /** Milliseconds between snapshots */
+    public static final int REFRESH_INTERVAL_MS = Integer.getInteger("METRICS_REFRESH_INTERVAL_MS", 5000);
+
+    /** Selectors exported, all of which can be answered from local stats sources */
+    static final StatsSelector[] SELECTORS = new StatsSelector[] {
+        StatsSelector.MEMORY,
+        StatsSelector.IOSTATS,
+        StatsSelector.INITIATOR,
+        StatsSelector.PROCEDURE,
+        StatsSelector.TABLE,
+        StatsSelector.INDEX,
+        StatsSelector.STARVATION,
+        StatsSelector.PLANNER,
+        StatsSelector.LIVECLIENTS
+    };
+
+    private volatile String m_snapshot = null;
+
+    /**
+     * @return the last rendered snapshot, or null before the first refresh
+     */
+    public String getSnapshot() {
+        return m_snapshot;
+    }
+
+    /**
+     * Render the current statistics of the given agent and make them the
+     * snapshot returned to scrapes.
+     */
+    public void refresh(StatsAgent agent) {
+        final long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder(16 * 1024);
+        for (StatsSelector selector : SELECTORS) {
+            try {
+                VoltTable table = agent.getStatsAggregate(selector, false, now);
+                if (table != null) {
+                    appendTable(sb, "voltdb_" + selector.name().toLowerCase(), table);
+                }
+            }
+            catch (Exception e) {
+                // One broken source shouldn't take the whole endpoint down
+                log.warn("Unable to collect " + selector + " statistics for the metrics endpoint", e);
+            }
+        }
+        sb.append("# TYPE voltdb_metrics_snapshot_timestamp_ms gauge\n");
+        sb.append("voltdb_metrics_snapshot_timestamp_ms ").append(now).append('\n');
+        sb.append("# TYPE voltdb_metrics_snapshot_duration_ms gauge\n");
+        sb.append("voltdb_metrics_snapshot_duration_ms ").append(System.currentTimeMillis() - now).append('\n');
+        m_snapshot = sb.toString();
+    }
+
+    /**
+     * Append one metric family per numeric column of the table, one sample
+     * per row.
+     */
+    static void appendTable(StringBuilder sb, String prefix, VoltTable table) {
+        final int columnCount = table.getColumnCount();
+        List<Integer> labelColumns = new ArrayList<Integer>();
+        List<Integer> valueColumns = new ArrayList<Integer>();
+        for (int i = 0; i < columnCount; i++) {
+            String name = table.getColumnName(i);
+            VoltType type = table.getColumnType(i);
+            if (name.equals("TIMESTAMP")) {
+                continue;
+            }
+            if (type == VoltType.STRING || name.endsWith("_ID")) {
+                labelColumns.add(i);
+            }
+            else if (type.isNumber() || type == VoltType.DECIMAL) {
+                valueColumns.add(i);
+            }
+        }
+
+        // Labels are the same for every metric of a row
+        String[] labels = new String[table.getRowCount()];
+        table.resetRowPosition();
+        for (int row = 0; table.advanceRow(); row++) {
+            StringBuilder lsb = new StringBuilder();
+            for (int col : labelColumns) {
+                Object value = table.get(col, table.getColumnType(col));
+                if (table.wasNull()) {
+                    continue;
+                }
+                lsb.append(lsb.length() == 0 ? "{" : ",");
+                lsb.append(sanitizeName(table.getColumnName(col))).append("=\"");
+                escapeLabelValue(lsb, value.toString());
+                lsb.append('"');
+            }
+            if (lsb.length() > 0) {
+                lsb.append('}');
+            }
+            labels[row] = lsb.toString();
+        }
+
+        for (int col : valueColumns) {
+            String metric = prefix + "_" + sanitizeName(table.getColumnName(col));
+            VoltType type = table.getColumnType(col);
+            sb.append("# TYPE ").append(metric).append(" untyped\n");
+            table.resetRowPosition();
+            for (int row = 0; table.advanceRow(); row++) {
+                String value;
+                if (type == VoltType.FLOAT) {
+                    double d = table.getDouble(col);
+                    value = Double.toString(d);
+                }
+                else if (type == VoltType.DECIMAL) {
+                    Object d = table.getDecimalAsBigDecimal(col);
+                    value = d == null ? null : d.toString();
+                }
+                else {
+                    value = Long.toString(table.getLong(col));
+                }
+                if (table.wasNull()) {
+                    continue;
+                }
+                sb.append(metric).append(labels[row]).append(' ').append(value).append('\n');
+            }
+        }
+        table.resetRowPosition();
+    }
+
+    static String sanitizeName(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = Character.toLowerCase(name.charAt(i));
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_') {
+                sb.append(c);
+            }
+            else {
+                sb.append('_');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void escapeLabelValue(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                sb.append("\\\\");
+            }
+            else if (c == '"') {
+                sb.append("\\\"");
+            }
+            else if (c == '\n') {
+                sb.append("\\n");
+            }
+            else {
+                sb.append(c);
+            }
+        }
+    }
+}
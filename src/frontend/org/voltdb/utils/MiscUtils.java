@@ -594,6 +594,52 @@ public class MiscUtils {
         return statements;
     }
 
+    /**
+     * Count the '?' parameter markers in SQL text, skipping quoted strings and comments
+     * the same way splitSQLStatements() does.
+     *
+     * @param sql raw SQL text
+     * @return number of parameter markers
+     */
+    public static int countSQLParameterMarkers(final String sql) {
+        int count = 0;
+        final int len = sql.length();
+        int iCur = 0;
+        while (iCur < len) {
+            char c = sql.charAt(iCur);
+            if (c == '"' || c == '\'') {
+                // Skip the quoted string, honoring backslash and doubled quote escapes.
+                iCur++;
+                while (iCur < len) {
+                    char q = sql.charAt(iCur);
+                    if (q == '\\') {
+                        iCur += 2;
+                    } else if (q == c) {
+                        iCur++;
+                        if (iCur >= len || sql.charAt(iCur) != c) {
+                            break;
+                        }
+                        iCur++;
+                    } else {
+                        iCur++;
+                    }
+                }
+            } else if (c == '-' && sql.startsWith("--", iCur)) {
+                int end = sql.indexOf('\n', iCur);
+                iCur = (end < 0) ? len : end + 1;
+            } else if (c == '/' && sql.startsWith("/*", iCur)) {
+                int end = sql.indexOf("*/", iCur + 2);
+                iCur = (end < 0) ? len : end + 2;
+            } else {
+                if (c == '?') {
+                    count++;
+                }
+                iCur++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Concatenate an list of arrays of typed-objects
      * @param empty An empty array of the right type used for cloning
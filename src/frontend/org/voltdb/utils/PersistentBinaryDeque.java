@@ -24,7 +24,9 @@ import java.io.PrintWriter;
 import java.io.RandomAccessFile;
 import java.io.StringWriter;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -65,6 +67,11 @@ public class PersistentBinaryDeque implements BinaryDeque {
      * to insert an object that exceeds the remaining space is made. A segment can be used
      * for reading and writing, but not both at the same time.
      *
+     * Once a segment is being read it is memory mapped and polled objects are slices of
+     * the mapping, so nothing is copied or allocated per object. The mapping is released
+     * when the segment is deleted and the last slice is garbage collected. It is never
+     * unmapped explicitly because consumers such as export keep views of a slice after
+     * discarding it, and touching an unmapped buffer crashes the JVM.
      */
     private class DequeSegment {
         //Avoid unecessary sync with this flag
@@ -73,10 +80,17 @@ public class PersistentBinaryDeque implements BinaryDeque {
         private RandomAccessFile m_ras;
         private FileChannel m_fc;
 
+        //Mapping of the whole segment, created on the first poll
+        private MappedByteBuffer m_readBuffer = null;
+
         //Index of the next object to read, not an offset into the file
         //The offset is maintained by the ByteBuffer. Used to determine if there is another object
         private int m_objectReadIndex = 0;
 
+        //Number of objects in the segment, also stored at the start of the file.
+        //Only this segment writes the file so the count is kept in memory once opened
+        private int m_numEntries = 0;
+
         //ID of this segment
         private final Long m_index;
         private static final int m_chunkSize = (1024 * 1024) * 64;
@@ -91,15 +105,20 @@ public class PersistentBinaryDeque implements BinaryDeque {
         }
 
         private final ByteBuffer m_bufferForNumEntries = ByteBuffer.allocateDirect(4);
+        private final ByteBuffer m_lengthPrefix = ByteBuffer.allocateDirect(4);
 
         private int getNumEntries() throws IOException {
             if (m_fc == null) {
                 open();
             }
+            return m_numEntries;
+        }
+
+        private int readNumEntries() throws IOException {
             if (m_fc.size() > 0) {
                 m_bufferForNumEntries.clear();
                 while (m_bufferForNumEntries.hasRemaining()) {
-                    int read = m_fc.read(m_bufferForNumEntries, 0);
+                    int read = m_fc.read(m_bufferForNumEntries, m_bufferForNumEntries.position());
                     if (read == -1) {
                         throw new EOFException();
                     }
@@ -111,34 +130,23 @@ public class PersistentBinaryDeque implements BinaryDeque {
             }
         }
 
-        private void initNumEntries() throws IOException {
+        private void writeNumEntries() throws IOException {
             m_bufferForNumEntries.clear();
-            m_bufferForNumEntries.putInt(0).flip();
+            m_bufferForNumEntries.putInt(m_numEntries).flip();
             while (m_bufferForNumEntries.hasRemaining()) {
-                m_fc.write(m_bufferForNumEntries, 0);
+                m_fc.write(m_bufferForNumEntries, m_bufferForNumEntries.position());
             }
             m_syncedSinceLastEdit = false;
         }
 
-        private void incrementNumEntries() throws IOException {
-            //First read the existing amount
-            m_bufferForNumEntries.clear();
-            while (m_bufferForNumEntries.hasRemaining()) {
-                int read = m_fc.read(m_bufferForNumEntries, 0);
-                if (read == -1) {
-                    throw new EOFException();
-                }
-            }
-            m_bufferForNumEntries.flip();
+        private void initNumEntries() throws IOException {
+            m_numEntries = 0;
+            writeNumEntries();
+        }
 
-            //Then write the incremented value
-            int numEntries = m_bufferForNumEntries.getInt();
-            m_bufferForNumEntries.flip();
-            m_bufferForNumEntries.putInt(++numEntries).flip();
-            while (m_bufferForNumEntries.hasRemaining()) {
-                m_fc.write(m_bufferForNumEntries, 0);
-            }
-            m_syncedSinceLastEdit = false;
+        private void incrementNumEntries() throws IOException {
+            m_numEntries++;
+            writeNumEntries();
 
             //For when this buffer is eventually finished and starts being polled
             //Stored on disk and in memory
@@ -165,7 +173,8 @@ public class PersistentBinaryDeque implements BinaryDeque {
             m_fc = m_ras.getChannel();
             m_fc.position(4);
             if (m_fc.size() >= 4) {
-                m_discardsUntilDeletion = getNumEntries();
+                m_numEntries = readNumEntries();
+                m_discardsUntilDeletion = m_numEntries;
             }
         }
 
@@ -176,6 +185,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
         }
 
         private void close() throws IOException {
+            m_readBuffer = null;
             if (m_fc != null) {
                 m_fc.close();
                 m_ras = null;
@@ -196,41 +206,41 @@ public class PersistentBinaryDeque implements BinaryDeque {
             }
 
             //No more entries to read
-            if (m_objectReadIndex >= getNumEntries()) {
+            if (m_objectReadIndex >= m_numEntries) {
                 return null;
             }
 
+            if (m_readBuffer == null) {
+                m_readBuffer = m_fc.map(MapMode.READ_ONLY, 0, m_fc.size());
+                m_readBuffer.position(4);
+            }
+
             m_objectReadIndex++;
 
             //If this is the last object to read from this segment
             //increment the poll segment index so that the next poll
             //selects the correct segment
-            if (m_objectReadIndex >= getNumEntries()) {
+            if (m_objectReadIndex >= m_numEntries) {
                 m_currentPollSegmentIndex++;
             }
 
-            //Get the length prefix and then read the object
-            m_bufferForNumEntries.clear();
-            while (m_bufferForNumEntries.hasRemaining()) {
-                int read = m_fc.read(m_bufferForNumEntries);
-                if (read == -1) {
-                    throw new EOFException();
-                }
+            //Get the length prefix and then slice the object out of the mapping
+            if (m_readBuffer.remaining() < 4) {
+                throw new EOFException();
             }
-            m_bufferForNumEntries.flip();
-            int length = m_bufferForNumEntries.getInt();
+            int length = m_readBuffer.getInt();
             if (length < 1) {
                 throw new IOException("Read an invalid length");
             }
-
-            ByteBuffer resultBuffer = ByteBuffer.allocate(length);
-            while (resultBuffer.hasRemaining()) {
-                int read = m_fc.read(resultBuffer);
-                if (read == -1) {
-                    throw new EOFException();
-                }
+            if (length > m_readBuffer.remaining()) {
+                throw new EOFException();
             }
-            resultBuffer.flip();
+
+            final int end = m_readBuffer.position() + length;
+            ByteBuffer resultBuffer = m_readBuffer.duplicate();
+            resultBuffer.limit(end);
+            resultBuffer = resultBuffer.slice();
+            m_readBuffer.position(end);
 
             return new BBContainer( resultBuffer, 0L) {
                 private boolean discarded = false;
@@ -238,19 +248,22 @@ public class PersistentBinaryDeque implements BinaryDeque {
                 private final Throwable t = new Throwable();
                 @Override
                 public void discard() {
-                    if (!discarded) {
-                        discarded = true;
-                        m_discardsUntilDeletion--;
-                        if (m_discardsUntilDeletion == 0) {
-                            m_finishedSegments.remove(m_index);
-                            try {
-                                closeAndDelete();
-                            } catch (IOException e) {
-                                exportLog.error("Error closing and deleting binary deque segment", e);
+                    //Polled objects are discarded by whichever thread consumed them
+                    synchronized (PersistentBinaryDeque.this) {
+                        if (!discarded) {
+                            discarded = true;
+                            m_discardsUntilDeletion--;
+                            if (m_discardsUntilDeletion == 0) {
+                                m_finishedSegments.remove(m_index);
+                                try {
+                                    closeAndDelete();
+                                } catch (IOException e) {
+                                    exportLog.error("Error closing and deleting binary deque segment", e);
+                                }
                             }
+                        } else {
+                            exportLog.error("An export buffer was discarded multiple times");
                         }
-                    } else {
-                        exportLog.error("An export buffer was discarded multiple times");
                     }
                 }
 
@@ -268,38 +281,35 @@ public class PersistentBinaryDeque implements BinaryDeque {
             };
         }
 
+        /*
+         * The length prefix and all the buffers of the object go out in a single gathering write
+         */
         private void offer(BBContainer objects[]) throws IOException {
             int length = 0;
             for (BBContainer obj : objects ) {
                 length += obj.b.remaining();
             }
 
-            if (remaining() < length) {
-                throw new IOException(m_file + " has insufficient space");
-            }
+            try {
+                if (remaining() < length) {
+                    throw new IOException(m_file + " has insufficient space");
+                }
 
-            m_bufferForNumEntries.clear();
-            m_bufferForNumEntries.putInt(length).flip();
-            while (m_bufferForNumEntries.hasRemaining()) {
-                m_fc.write(m_bufferForNumEntries);
-            }
+                m_lengthPrefix.clear();
+                m_lengthPrefix.putInt(length).flip();
 
-            int objectIndex = 0;
-            for (BBContainer obj : objects ) {
-                boolean success = false;
-                try {
-                    while (obj.b.hasRemaining()) {
-                        m_fc.write(obj.b);
-                    }
+                final ByteBuffer buffers[] = new ByteBuffer[objects.length + 1];
+                buffers[0] = m_lengthPrefix;
+                for (int ii = 0; ii < objects.length; ii++) {
+                    buffers[ii + 1] = objects[ii].b;
+                }
+                long toWrite = 4 + length;
+                while (toWrite > 0) {
+                    toWrite -= m_fc.write(buffers);
+                }
+            } finally {
+                for (BBContainer obj : objects) {
                     obj.discard();
-                    success = true;
-                    objectIndex++;
-                } finally {
-                    if (!success) {
-                        for (int ii = objectIndex; ii < objects.length; ii++) {
-                            objects[ii].discard();
-                        }
-                    }
                 }
             }
             m_sizeInBytes.addAndGet(4 + length);
@@ -710,6 +720,16 @@ public class PersistentBinaryDeque implements BinaryDeque {
         if (lastSegmentIndex == null)  {
             return;
         }
+        /*
+         * The truncated segment may already be open, e.g. by isEmpty(), with the old
+         * entry count cached and a mapping of the old contents. Reopen it so both come
+         * from the file as it is now.
+         */
+        DequeSegment truncated = m_finishedSegments.get(lastSegmentIndex);
+        if (truncated != null && truncated.m_fc != null) {
+            truncated.close();
+            truncated.open();
+        }
         /*
          * Now truncate all the segments after the truncation point
          */
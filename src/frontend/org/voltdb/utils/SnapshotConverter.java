@@ -22,13 +22,19 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil.Snapshot;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil.SpecificSnapshotFilter;
@@ -129,8 +135,8 @@ public class SnapshotConverter {
                     delimiter = ',';
                 } else if (type.equalsIgnoreCase("tsv")) {
                     delimiter = '\t';
-                } else {
-                    System.err.println("Error: --type must be one of CSV or TSV");
+                } else if (!type.equalsIgnoreCase("columnar")) {
+                    System.err.println("Error: --type must be one of CSV, TSV or COLUMNAR");
                     printHelpAndQuit(-1);
                 }
                 ii++;
@@ -248,9 +254,10 @@ public class SnapshotConverter {
          * For every output file that will be created attempt to instantiate and print an error
          * if the file already exists or couldn't be created.
          */
+        final String extension = type.equalsIgnoreCase("columnar") ? "vcol" : type.toLowerCase();
         for (Map.Entry<String, Map<File, Set<Integer>>> entry : tableToFilesWithPartitions.entrySet()) {
             String tableName = entry.getKey();
-            File outfile = new File(outdir.getPath() + File.separator + tableName + "." + type.toLowerCase());
+            File outfile = new File(outdir.getPath() + File.separator + tableName + "." + extension);
             try {
                 if (!outfile.createNewFile()) {
                     System.err.println("Error: Failed to create output file "
@@ -272,40 +279,123 @@ public class SnapshotConverter {
         /*
          * Actually convert the tables and write the data to the appropriate destination
          */
-        for (Map.Entry<String, Map<File, Set<Integer>>> entry : tableToFilesWithPartitions.entrySet()) {
-            String tableName = entry.getKey();
-            File outfile = new File(outdir.getPath() + File.separator + tableName + "." + type.toLowerCase());
+        if (type.equalsIgnoreCase("columnar")) {
+            fail = !convertToColumnar(tableToFilesWithPartitions, outdir, extension);
+        } else {
+            for (Map.Entry<String, Map<File, Set<Integer>>> entry : tableToFilesWithPartitions.entrySet()) {
+                String tableName = entry.getKey();
+                File outfile = new File(outdir.getPath() + File.separator + tableName + "." + extension);
 
-            Map<File, Set<Integer>> partitionsFromFile = entry.getValue();
-            for (Map.Entry<File, Set<Integer>> e2 : partitionsFromFile.entrySet()) {
-                File infile = e2.getKey();
-                Set<Integer> partitionSet = e2.getValue();
-                Integer partitions[] = null;
-                if (partitionSet != null) {
-                    partitions = new Integer[partitionSet.size()];
-                    int ii = 0;
-                    for (Integer partition : partitionSet) {
-                        partitions[ii++] = partition;
+                Map<File, Set<Integer>> partitionsFromFile = entry.getValue();
+                for (Map.Entry<File, Set<Integer>> e2 : partitionsFromFile.entrySet()) {
+                    File infile = e2.getKey();
+                    try {
+                        CSVTableSaveFile.convertTableSaveFile(delimiter, toArray(e2.getValue()), outfile, infile);
+                    } catch (Exception e) {
+                        System.err.println(e.getMessage());
+                        System.err.println("Error: Failed to convert " + infile.getPath() + " to " + outfile.getPath());
                     }
                 }
+            }
+        }
+
+        if (fail) {
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Convert every save file on a pool of threads, one save file of a table
+     * per thread at a time. The save files of a table are written into the
+     * same columnar file, which is closed once all of them are converted.
+     *
+     * @return true if every table was converted
+     */
+    private static boolean convertToColumnar(Map<String, Map<File, Set<Integer>>> tableToFilesWithPartitions,
+                                             File outdir, String extension) {
+        boolean success = true;
+        ExecutorService es = CoreUtils.getListeningExecutorService("Snapshot converter",
+                                                                   CoreUtils.availableProcessors());
+        try {
+            Map<String, ColumnarTableSaveFile> outputs = new TreeMap<String, ColumnarTableSaveFile>();
+            Map<String, List<Future<Object>>> conversions = new TreeMap<String, List<Future<Object>>>();
+            for (Map.Entry<String, Map<File, Set<Integer>>> entry : tableToFilesWithPartitions.entrySet()) {
+                final String tableName = entry.getKey();
+                final File outfile = new File(outdir.getPath() + File.separator + tableName + "." + extension);
+                final ColumnarTableSaveFile output;
                 try {
-                    CSVTableSaveFile.convertTableSaveFile(delimiter, partitions, outfile, infile);
-                } catch (Exception e) {
+                    output = new ColumnarTableSaveFile(outfile);
+                } catch (IOException e) {
                     System.err.println(e.getMessage());
-                    System.err.println("Error: Failed to convert " + infile.getPath() + " to " + outfile.getPath());
+                    System.err.println("Error: Failed to open output file " + outfile.getPath());
+                    success = false;
+                    continue;
+                }
+                outputs.put(tableName, output);
+                List<Future<Object>> futures = new ArrayList<Future<Object>>();
+                for (Map.Entry<File, Set<Integer>> e2 : entry.getValue().entrySet()) {
+                    final File infile = e2.getKey();
+                    final Integer partitions[] = toArray(e2.getValue());
+                    futures.add(es.submit(new Callable<Object>() {
+                        @Override
+                        public Object call() throws Exception {
+                            output.convert(infile, partitions);
+                            return null;
+                        }
+                    }));
                 }
+                conversions.put(tableName, futures);
             }
+
+            for (Map.Entry<String, ColumnarTableSaveFile> entry : outputs.entrySet()) {
+                boolean converted = true;
+                for (Future<Object> f : conversions.get(entry.getKey())) {
+                    try {
+                        f.get();
+                    } catch (ExecutionException e) {
+                        System.err.println(e.getCause().getMessage());
+                        converted = false;
+                    } catch (InterruptedException e) {
+                        System.err.println("Error: Interrupted while converting " + entry.getKey());
+                        converted = false;
+                    }
+                }
+                try {
+                    entry.getValue().close();
+                } catch (IOException e) {
+                    System.err.println(e.getMessage());
+                    converted = false;
+                }
+                if (converted) {
+                    System.out.println("Converted " + entry.getValue().getRowCount() +
+                            " rows of table " + entry.getKey());
+                } else {
+                    System.err.println("Error: Failed to convert table " + entry.getKey());
+                    success = false;
+                }
+            }
+        } finally {
+            es.shutdown();
         }
+        return success;
+    }
 
-        if (fail) {
-            System.exit(-1);
+    private static Integer[] toArray(Set<Integer> partitionSet) {
+        if (partitionSet == null) {
+            return null;
+        }
+        Integer partitions[] = new Integer[partitionSet.size()];
+        int ii = 0;
+        for (Integer partition : partitionSet) {
+            partitions[ii++] = partition;
         }
+        return partitions;
     }
 
     private static void printHelpAndQuit( int code) {
         System.out.println("java -cp <classpath> -Djava.library.path=<library path> org.voltdb.utils.SnapshotConverter --help");
         System.out.println("java -cp <classpath> -Djava.library.path=<library path> org.voltdb.utils.SnapshotConverter --dir dir1 --dir dir2 --dir dir3" +
-                "--table table1 --table table2 --table table3 --type CSV|TSV --outdir dir snapshot_name --timezone GMT+0");
+                "--table table1 --table table2 --table table3 --type CSV|TSV|COLUMNAR --outdir dir snapshot_name --timezone GMT+0");
         System.exit(code);
     }
 }
@@ -71,6 +71,10 @@ const char *kUniqueIntsHash = "UniqueIntsHash";
 const char *kUniqueIntsTree = "UniqueIntsTree";
 const char *kUniqueGenericHash = "UniqueGenericHash";
 const char *kUniqueGenericTree = "UniqueGenericTree";
+const char *kMultiIntsBTree = "MultiIntsBTree";
+const char *kMultiGenericBTree = "MultiGenericBTree";
+const char *kUniqueIntsBTree = "UniqueIntsBTree";
+const char *kUniqueGenericBTree = "UniqueGenericBTree";
 
 
 struct Command {
@@ -250,6 +254,20 @@ void setNewCurrent(const char *testName,
                                             true, true, schema);
             index = voltdb::TableIndexFactory::getInstance(scheme);
         }
+        else if ((strcmp(indexName, kMultiIntsBTree) == 0) ||
+                 (strcmp(indexName, kMultiGenericBTree) == 0)) {
+            voltdb::TableIndexScheme scheme(indexName, voltdb::BTREE_INDEX,
+                                            columnIndices, TableIndex::simplyIndexColumns(),
+                                            false, false, schema);
+            index = voltdb::TableIndexFactory::getInstance(scheme);
+        }
+        else if ((strcmp(indexName, kUniqueIntsBTree) == 0) ||
+                 (strcmp(indexName, kUniqueGenericBTree) == 0)) {
+            voltdb::TableIndexScheme scheme(indexName, voltdb::BTREE_INDEX,
+                                            columnIndices, TableIndex::simplyIndexColumns(),
+                                            true, false, schema);
+            index = voltdb::TableIndexFactory::getInstance(scheme);
+        }
         else {
             cerr << "Unable to load index named: " << indexName << " on line: " << line << endl;
             exit(-1);
@@ -0,0 +1,607 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <iostream>
+#include <map>
+#include <vector>
+#include <algorithm>
+#include <cstdlib>
+#include <cstdio>
+#include <sys/time.h>
+#include "harness.h"
+#include "structures/BTreeMap.h"
+#include "structures/CompactingMap.h"
+#include "common/FixUnusedAssertHack.h"
+
+using namespace voltdb;
+using namespace std;
+
+class StringComparator {
+public:
+    inline int operator()(const std::string &lhs, const std::string &rhs) const {
+        return lhs.compare(rhs);
+    }
+};
+
+class IntComparator {
+public:
+    inline int operator()(const int64_t &lhs, const int64_t &rhs) const {
+        if (lhs > rhs) return 1;
+        else if (lhs < rhs) return -1;
+        else return 0;
+    }
+};
+
+typedef voltdb::BTreeMap<int64_t, int64_t, IntComparator> IntMap;
+// The map behind the existing tree indexes, which are all countable
+typedef voltdb::CompactingMap<int64_t, int64_t, IntComparator, true> CountingMap;
+
+class BTreeMapTest : public Test {
+public:
+    BTreeMapTest() {
+    }
+
+    ~BTreeMapTest() {
+    }
+
+    std::string keyFromInt(int i) {
+        char buf[256];
+        snprintf(buf, 256, "%010d", i);
+        std::string val = buf;
+        return val;
+    }
+
+    /*
+     * Walk both maps forward and backward and check that they hold
+     * the same entries in the same order.
+     */
+    void verifyOrder(std::multimap<int64_t, int64_t> &stl, IntMap &volt) {
+        ASSERT_TRUE(volt.verify());
+        ASSERT_TRUE(volt.size() == (int64_t)stl.size());
+
+        std::multimap<int64_t, int64_t>::iterator stli = stl.begin();
+        IntMap::iterator volti = volt.begin();
+        for (; stli != stl.end(); stli++, volti.moveNext()) {
+            ASSERT_TRUE(!volti.isEnd());
+            ASSERT_TRUE(volti.key() == stli->first);
+            ASSERT_TRUE(volti.value() == stli->second);
+        }
+        ASSERT_TRUE(volti.isEnd());
+
+        std::multimap<int64_t, int64_t>::reverse_iterator rstli = stl.rbegin();
+        volti = volt.rbegin();
+        for (; rstli != stl.rend(); rstli++, volti.movePrev()) {
+            ASSERT_TRUE(!volti.isEnd());
+            ASSERT_TRUE(volti.key() == rstli->first);
+            ASSERT_TRUE(volti.value() == rstli->second);
+        }
+        ASSERT_TRUE(volti.isEnd());
+    }
+
+    double now() {
+        timeval tp;
+        gettimeofday(&tp, NULL);
+        return static_cast<double>(tp.tv_sec) + static_cast<double>(tp.tv_usec) / 1000000.0;
+    }
+};
+
+TEST_F(BTreeMapTest, Trivial) {
+    IntMap m(true, IntComparator());
+    ASSERT_TRUE(m.verify());
+    ASSERT_TRUE(m.begin().isEnd());
+    ASSERT_TRUE(m.rbegin().isEnd());
+
+    bool success = m.insert(std::pair<int64_t,int64_t>(2,2));
+    ASSERT_TRUE(success);
+    success = m.insert(std::pair<int64_t,int64_t>(1,1));
+    ASSERT_TRUE(success);
+    success = m.insert(std::pair<int64_t,int64_t>(3,3));
+    ASSERT_TRUE(success);
+    success = m.insert(std::pair<int64_t,int64_t>(2,4));
+    ASSERT_TRUE(!success);
+    ASSERT_TRUE(m.size() == 3);
+    ASSERT_TRUE(m.find(2).value() == 2);
+    ASSERT_TRUE(m.verify());
+
+    IntMap m2(false, IntComparator());
+    for (int i = 0; i < 7; i++) {
+        success = m2.insert(std::pair<int64_t,int64_t>(1,i));
+        ASSERT_TRUE(success);
+    }
+    ASSERT_TRUE(m2.size() == 7);
+    ASSERT_TRUE(m2.verify());
+
+    ASSERT_TRUE(m.erase(1));
+    ASSERT_TRUE(m.erase(2));
+    ASSERT_TRUE(!m.erase(2));
+    ASSERT_TRUE(m.erase(3));
+    ASSERT_TRUE(m.size() == 0);
+    ASSERT_TRUE(m.bytesAllocated() == 0);
+    ASSERT_TRUE(m.verify());
+}
+
+TEST_F(BTreeMapTest, Bounds) {
+    IntMap volt(true, IntComparator());
+
+    ASSERT_TRUE(volt.lowerBound(1).isEnd());
+    ASSERT_TRUE(volt.upperBound(1).isEnd());
+
+    volt.insert(std::pair<int64_t,int64_t>(1,1));
+
+    ASSERT_TRUE(volt.lowerBound(0).key() == 1);
+    ASSERT_TRUE(volt.lowerBound(1).key() == 1);
+    ASSERT_TRUE(volt.lowerBound(2).isEnd());
+
+    ASSERT_TRUE(volt.upperBound(0).key() == 1);
+    ASSERT_TRUE(volt.upperBound(1).isEnd());
+    ASSERT_TRUE(volt.upperBound(2).isEnd());
+
+    // enough keys for several levels of nodes
+    for (int i = 3; i <= 9999; i += 2)
+        volt.insert(std::pair<int64_t,int64_t>(i,i));
+    ASSERT_TRUE(volt.verify());
+
+    ASSERT_TRUE(volt.lowerBound(9999).key() == 9999);
+    ASSERT_TRUE(volt.upperBound(9999).isEnd());
+    ASSERT_TRUE(volt.lowerBound(10000).isEnd());
+    ASSERT_TRUE(volt.upperBound(10000).isEnd());
+
+    for (int i = 0; i <= 9998; i += 2) {
+        ASSERT_TRUE(volt.upperBound(i).key() == i + 1);
+        ASSERT_TRUE(volt.lowerBound(i).key() == i + 1);
+        ASSERT_TRUE(volt.find(i).isEnd());
+    }
+    for (int i = 1; i <= 9998; i += 2) {
+        ASSERT_TRUE(volt.upperBound(i).key() == i + 2);
+        ASSERT_TRUE(volt.lowerBound(i).key() == i);
+        ASSERT_TRUE(volt.find(i).key() == i);
+    }
+
+    // test range
+    IntMap volt2(false, IntComparator());
+
+    volt2.insert(std::pair<int64_t,int64_t>(0,0));
+    volt2.insert(std::pair<int64_t,int64_t>(1,666));
+    volt2.insert(std::pair<int64_t,int64_t>(1,1));
+    volt2.insert(std::pair<int64_t,int64_t>(1,777));
+    volt2.insert(std::pair<int64_t,int64_t>(2,2));
+    volt2.insert(std::pair<int64_t,int64_t>(3,888));
+    volt2.insert(std::pair<int64_t,int64_t>(3,3));
+    volt2.insert(std::pair<int64_t,int64_t>(3,3));
+    volt2.insert(std::pair<int64_t,int64_t>(3,999));
+
+    std::pair<IntMap::iterator, IntMap::iterator> p;
+
+    p = volt2.equalRange(1);
+    ASSERT_TRUE(p.first.value() == 666);
+    ASSERT_TRUE(p.second.value() == 2);
+
+    p = volt2.equalRange(3);
+    ASSERT_TRUE(p.first.value() == 888);
+    ASSERT_TRUE(p.second.isEnd());
+
+    p = volt2.equalRange(2);
+    ASSERT_TRUE(p.first.value() == 2);
+    ASSERT_TRUE(p.second.value() == 888);
+
+    // equal keys spread over many leaves
+    IntMap volt3(false, IntComparator());
+    for (int i = 0; i < 1000; i++) {
+        volt3.insert(std::pair<int64_t,int64_t>(5,i));
+        volt3.insert(std::pair<int64_t,int64_t>(i % 10,i));
+    }
+    ASSERT_TRUE(volt3.verify());
+    p = volt3.equalRange(5);
+    int count = 0;
+    for (IntMap::iterator iter = p.first; !iter.equals(p.second); iter.moveNext()) {
+        ASSERT_TRUE(iter.key() == 5);
+        count++;
+    }
+    ASSERT_TRUE(count == 1100);
+    ASSERT_TRUE(p.second.key() == 6);
+    IntMap::iterator iter = p.first;
+    iter.movePrev();
+    ASSERT_TRUE(iter.key() == 4);
+}
+
+TEST_F(BTreeMapTest, Sequential) {
+    const int COUNT = 20000;
+    IntMap volt(true, IntComparator());
+
+    for (int i = 0; i < COUNT; i++) {
+        ASSERT_TRUE(volt.insert(std::pair<int64_t,int64_t>(i, -i)));
+    }
+    ASSERT_TRUE(volt.verify());
+    ASSERT_TRUE(volt.size() == COUNT);
+    // ascending inserts fill their leaves
+    size_t ascendingBytes = volt.bytesAllocated();
+
+    IntMap::iterator iter = volt.begin();
+    for (int i = 0; i < COUNT; i++, iter.moveNext()) {
+        ASSERT_TRUE(iter.key() == i);
+        ASSERT_TRUE(iter.value() == -i);
+    }
+    ASSERT_TRUE(iter.isEnd());
+
+    for (int i = 0; i < COUNT; i += 2) {
+        ASSERT_TRUE(volt.erase(i));
+    }
+    ASSERT_TRUE(volt.verify());
+    ASSERT_TRUE(volt.size() == COUNT / 2);
+    for (int i = COUNT - 1; i >= 0; i -= 2) {
+        ASSERT_TRUE(volt.erase(i));
+        if ((i % 1001) == 0) {
+            ASSERT_TRUE(volt.verify());
+        }
+    }
+    ASSERT_TRUE(volt.verify());
+    ASSERT_TRUE(volt.size() == 0);
+    ASSERT_TRUE(volt.bytesAllocated() == 0);
+
+    IntMap descending(true, IntComparator());
+    for (int i = COUNT - 1; i >= 0; i--) {
+        ASSERT_TRUE(descending.insert(std::pair<int64_t,int64_t>(i, -i)));
+    }
+    ASSERT_TRUE(descending.verify());
+    ASSERT_TRUE(ascendingBytes < descending.bytesAllocated());
+
+    iter = descending.rbegin();
+    for (int i = COUNT - 1; i >= 0; i--, iter.movePrev()) {
+        ASSERT_TRUE(iter.key() == i);
+    }
+    ASSERT_TRUE(iter.isEnd());
+}
+
+TEST_F(BTreeMapTest, RandomUnique) {
+    const int ITERATIONS = 100001;
+    const int BIGGEST_VAL = 5000;
+
+    const int INSERT = 0;
+    const int DELETE = 1;
+    const int LBOUND = 2;
+    const int UBOUND = 3;
+
+    std::map<int64_t,int64_t> stl;
+    IntMap volt(true, IntComparator());
+    ASSERT_TRUE(volt.verify());
+
+    std::map<int64_t,int64_t>::const_iterator stli;
+    IntMap::iterator volti;
+
+    srand(0);
+
+    for (int i = 0; i < ITERATIONS; i++) {
+        if ((i % 1000) == 0) {
+            ASSERT_TRUE(volt.verify());
+            ASSERT_TRUE(volt.size() == (int64_t)stl.size());
+        }
+
+        int op = rand() % 4;
+        int64_t val = rand() % BIGGEST_VAL;
+        if (op == INSERT) {
+            stli = stl.find(val);
+            volti = volt.find(val);
+            if (stli == stl.end()) {
+                ASSERT_TRUE(volti.isEnd());
+
+                stl.insert(std::pair<int64_t,int64_t>(val, i));
+                bool success = volt.insert(std::pair<int64_t,int64_t>(val, i));
+                ASSERT_TRUE(success);
+            }
+            else {
+                ASSERT_TRUE(!volti.isEnd());
+                ASSERT_TRUE(stli->first == volti.key());
+                ASSERT_TRUE(stli->second == volti.value());
+
+                bool success = volt.insert(std::pair<int64_t,int64_t>(val, i));
+                ASSERT_TRUE(!success);
+            }
+        }
+        if (op == DELETE) {
+            stli = stl.find(val);
+            volti = volt.find(val);
+            if (stli == stl.end()) {
+                ASSERT_TRUE(volti.isEnd());
+                bool success = volt.erase(val);
+                ASSERT_TRUE(!success);
+            }
+            else {
+                ASSERT_TRUE(!volti.isEnd());
+                ASSERT_TRUE(stli->first == volti.key());
+
+                stl.erase(val);
+                bool success = volt.erase(val);
+                ASSERT_TRUE(success);
+            }
+        }
+        if (op == LBOUND || op == UBOUND) {
+            stli = (op == LBOUND) ? stl.lower_bound(val) : stl.upper_bound(val);
+            volti = (op == LBOUND) ? volt.lowerBound(val) : volt.upperBound(val);
+            // compare a short scan from the bound in the chosen direction
+            bool forward = (rand() % 2) == 0;
+            for (int j = 0; j < 50; j++) {
+                if (stli == stl.end()) {
+                    ASSERT_TRUE(volti.isEnd());
+                    break;
+                }
+                ASSERT_TRUE(!volti.isEnd());
+                ASSERT_TRUE(stli->first == volti.key());
+                if (forward) {
+                    stli++;
+                    volti.moveNext();
+                }
+                else {
+                    if (stli == stl.begin()) {
+                        volti.movePrev();
+                        ASSERT_TRUE(volti.isEnd());
+                        break;
+                    }
+                    stli--;
+                    volti.movePrev();
+                }
+            }
+        }
+    }
+
+    std::multimap<int64_t,int64_t> all(stl.begin(), stl.end());
+    verifyOrder(all, volt);
+}
+
+TEST_F(BTreeMapTest, RandomMulti) {
+    const int ITERATIONS  = 20001;
+    const int BIGGEST_VAL = 300;
+
+    const int INSERT = 0;
+    const int ERASE = 1;
+    const int ERASE_IT = 2;
+    const int EQ_RANGE = 3;
+    const int TOTAL_OPS = 4;
+
+    std::multimap<int64_t, int64_t> stl;
+    IntMap volt(false, IntComparator());
+
+    srand(0);
+
+    for (int i = 0; i < ITERATIONS; i++) {
+        if ((i % 1000) == 0) {
+            verifyOrder(stl, volt);
+        }
+
+        int op = rand() % TOTAL_OPS;
+        int64_t val = rand() % BIGGEST_VAL;
+
+        if (op == INSERT) {
+            // equal keys keep their insertion order in both maps
+            for (int j = 0; j < 4; j++) {
+                stl.insert(std::pair<int64_t, int64_t>(val, i * 4 + j));
+                ASSERT_TRUE(volt.insert(std::pair<int64_t, int64_t>(val, i * 4 + j)));
+            }
+        }
+        else if (op == ERASE) {
+            // erasing by key removes the first entry with it
+            std::multimap<int64_t, int64_t>::iterator stli = stl.find(val);
+            if (stli == stl.end()) {
+                ASSERT_TRUE(!volt.erase(val));
+            }
+            else {
+                ASSERT_TRUE(volt.find(val).value() == stli->second);
+                stl.erase(stli);
+                ASSERT_TRUE(volt.erase(val));
+            }
+        }
+        else if (op == ERASE_IT) {
+            std::pair<std::multimap<int64_t, int64_t>::iterator,
+                      std::multimap<int64_t, int64_t>::iterator> stlRange = stl.equal_range(val);
+            int64_t count = std::distance(stlRange.first, stlRange.second);
+            if (count == 0) {
+                continue;
+            }
+            int64_t skip = rand() % count;
+            std::multimap<int64_t, int64_t>::iterator stli = stlRange.first;
+            IntMap::iterator volti = volt.find(val);
+            for (int64_t j = 0; j < skip; j++) {
+                stli++;
+                volti.moveNext();
+            }
+            ASSERT_TRUE(volti.key() == val);
+            ASSERT_TRUE(volti.value() == stli->second);
+            stl.erase(stli);
+            ASSERT_TRUE(volt.erase(volti));
+        }
+        else if (op == EQ_RANGE) {
+            std::pair<std::multimap<int64_t, int64_t>::iterator,
+                      std::multimap<int64_t, int64_t>::iterator> stlRange = stl.equal_range(val);
+            std::pair<IntMap::iterator, IntMap::iterator> voltRange = volt.equalRange(val);
+            IntMap::iterator volti = voltRange.first;
+            for (std::multimap<int64_t, int64_t>::iterator stli = stlRange.first;
+                 stli != stlRange.second;
+                 stli++, volti.moveNext()) {
+                ASSERT_TRUE(!volti.equals(voltRange.second));
+                ASSERT_TRUE(volti.value() == stli->second);
+            }
+            ASSERT_TRUE(volti.equals(voltRange.second));
+        }
+    }
+    verifyOrder(stl, volt);
+
+    // empty it out in random order
+    while (!stl.empty()) {
+        int64_t val = stl.begin()->first + rand() % BIGGEST_VAL;
+        std::multimap<int64_t, int64_t>::iterator stli = stl.lower_bound(val);
+        if (stli == stl.end()) {
+            stli = stl.begin();
+        }
+        IntMap::iterator volti = volt.find(stli->first);
+        ASSERT_TRUE(volti.value() == stli->second);
+        stl.erase(stli);
+        volt.erase(volti);
+    }
+    verifyOrder(stl, volt);
+    ASSERT_TRUE(volt.bytesAllocated() == 0);
+}
+
+TEST_F(BTreeMapTest, StringKeys) {
+    const int COUNT = 5000;
+    voltdb::BTreeMap<std::string, std::string, StringComparator> volt(true, StringComparator());
+
+    srand(1);
+    std::vector<int> order;
+    for (int i = 0; i < COUNT; i++) {
+        order.push_back(i);
+    }
+    std::random_shuffle(order.begin(), order.end());
+
+    for (int i = 0; i < COUNT; i++) {
+        std::string key = keyFromInt(order[i]);
+        ASSERT_TRUE(volt.insert(std::pair<std::string, std::string>(key, key)));
+    }
+    ASSERT_TRUE(volt.verify());
+
+    voltdb::BTreeMap<std::string, std::string, StringComparator>::iterator iter = volt.begin();
+    for (int i = 0; i < COUNT; i++, iter.moveNext()) {
+        ASSERT_TRUE(iter.value() == keyFromInt(i));
+    }
+    ASSERT_TRUE(iter.isEnd());
+
+    for (int i = 0; i < COUNT; i++) {
+        if (order[i] % 3) {
+            ASSERT_TRUE(volt.erase(keyFromInt(order[i])));
+        }
+    }
+    ASSERT_TRUE(volt.verify());
+    for (int i = 0; i < COUNT; i++) {
+        ASSERT_TRUE(volt.find(keyFromInt(i)).isEnd() == ((i % 3) != 0));
+    }
+}
+
+/*
+ * Compare inserts, point lookups, range scans and deletes of random keys
+ * against CompactingMap. Runs
+ * small unless BTREEMAP_BENCHMARK_KEYS asks for more keys, in which case
+ * it also prints the timings.
+ */
+TEST_F(BTreeMapTest, Benchmark) {
+    int64_t keys = 100000;
+    const char *keysEnv = getenv("BTREEMAP_BENCHMARK_KEYS");
+    if (keysEnv) {
+        keys = atoll(keysEnv);
+    }
+    const int64_t LOOKUPS = 1000000;
+    const int64_t SCANS = 100000;
+    const int SCAN_LENGTH = 100;
+
+    // a permutation of 0..keys-1, in an order unrelated to the key order
+    std::vector<int64_t> order(keys);
+    for (int64_t i = 0; i < keys; i++) {
+        order[i] = i;
+    }
+    srand(0);
+    for (int64_t i = keys - 1; i > 0; i--) {
+        int64_t j = ((int64_t)rand() * RAND_MAX + rand()) % (i + 1);
+        std::swap(order[i], order[j]);
+    }
+
+    double results[2][5];
+    size_t bytes[2];
+    int64_t checksums[2];
+    for (int pass = 0; pass < 2; pass++) {
+        IntMap btree(true, IntComparator());
+        CountingMap rbtree(true, IntComparator());
+        int64_t checksum = 0;
+
+        double start = now();
+        for (int64_t i = 0; i < keys; i++) {
+            if (pass == 0) btree.insert(order[i], i);
+            else rbtree.insert(order[i], i);
+        }
+        results[pass][0] = now() - start;
+        bytes[pass] = (pass == 0) ? btree.bytesAllocated() : rbtree.bytesAllocated();
+
+        start = now();
+        for (int64_t i = 0; i < LOOKUPS; i++) {
+            int64_t key = order[i % keys];
+            if (pass == 0) checksum += btree.find(key).value();
+            else checksum += rbtree.find(key).value();
+        }
+        results[pass][1] = now() - start;
+
+        start = now();
+        for (int64_t i = 0; i < SCANS; i++) {
+            int64_t key = order[(i * 7) % keys];
+            if (pass == 0) {
+                IntMap::iterator iter = btree.lowerBound(key);
+                for (int j = 0; j < SCAN_LENGTH && !iter.isEnd(); j++, iter.moveNext()) {
+                    checksum += iter.value();
+                }
+            }
+            else {
+                CountingMap::iterator iter = rbtree.lowerBound(key);
+                for (int j = 0; j < SCAN_LENGTH && !iter.isEnd(); j++, iter.moveNext()) {
+                    checksum += iter.value();
+                }
+            }
+        }
+        results[pass][2] = now() - start;
+
+        start = now();
+        if (pass == 0) {
+            for (IntMap::iterator iter = btree.begin(); !iter.isEnd(); iter.moveNext()) {
+                checksum += iter.value();
+            }
+        }
+        else {
+            for (CountingMap::iterator iter = rbtree.begin();
+                 !iter.isEnd(); iter.moveNext()) {
+                checksum += iter.value();
+            }
+        }
+        results[pass][3] = now() - start;
+
+        start = now();
+        for (int64_t i = 0; i < keys; i++) {
+            if (pass == 0) btree.erase(order[keys - 1 - i]);
+            else rbtree.erase(order[keys - 1 - i]);
+        }
+        results[pass][4] = now() - start;
+        checksums[pass] = checksum;
+        ASSERT_TRUE(btree.size() == 0);
+        ASSERT_TRUE(rbtree.size() == 0);
+    }
+    ASSERT_TRUE(checksums[0] == checksums[1]);
+
+    if (keysEnv) {
+        const char *names[] = { "insert", "find", "range scan", "full scan", "erase" };
+        printf("\n%lld random keys       BTreeMap  CompactingMap\n", (long long)keys);
+        for (int i = 0; i < 5; i++) {
+            printf("%-20s %9.3fs %12.3fs\n", names[i], results[0][i], results[1][i]);
+        }
+        printf("%-20s %8.1fMB %11.1fMB\n", "memory",
+               static_cast<double>(bytes[0]) / (1024.0 * 1024.0),
+               static_cast<double>(bytes[1]) / (1024.0 * 1024.0));
+        fflush(stdout);
+    }
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
@@ -0,0 +1,179 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.network;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Round trip latency and pipelined throughput of small messages between two
+ * VoltNetworkPools over loopback, with the JDK selector, with epoll and with
+ * epoll busy polling. One side echoes, the other keeps a window of messages
+ * in flight and sends the next as each echo arrives.
+ *
+ * args: [message size] [round trips] [window]
+ */
+public class NetworkTransportBenchmark {
+
+    static abstract class Handler extends VoltProtocolHandler {
+        @Override
+        public int getMaxRead() {
+            return 1024 * 32;
+        }
+
+        @Override
+        public Runnable onBackPressure() {
+            return null;
+        }
+
+        @Override
+        public Runnable offBackPressure() {
+            return null;
+        }
+
+        @Override
+        public QueueMonitor writestreamMonitor() {
+            return null;
+        }
+    }
+
+    static class EchoHandler extends Handler {
+        @Override
+        public void handleMessage(ByteBuffer message, Connection c) {
+            ByteBuffer echo = ByteBuffer.allocate(4 + message.remaining());
+            echo.putInt(message.remaining());
+            echo.put(message);
+            echo.flip();
+            c.writeStream().enqueue(echo);
+        }
+    }
+
+    static class SenderHandler extends Handler {
+        private final int m_messageSize;
+        private final long m_latencies[];
+        private final long m_sendTimes[];
+        private int m_sent = 0;
+        private int m_received = 0;
+        final CountDownLatch m_done = new CountDownLatch(1);
+
+        SenderHandler(int messageSize, int messages, int window) {
+            m_messageSize = messageSize;
+            m_latencies = new long[messages];
+            m_sendTimes = new long[window];
+        }
+
+        synchronized void send(Connection c) {
+            if (m_sent == m_latencies.length) {
+                return;
+            }
+            ByteBuffer message = ByteBuffer.allocate(4 + m_messageSize);
+            message.putInt(m_messageSize);
+            message.putInt(m_sent % m_sendTimes.length);
+            message.position(message.limit());
+            message.flip();
+            m_sendTimes[m_sent % m_sendTimes.length] = System.nanoTime();
+            m_sent++;
+            c.writeStream().enqueue(message);
+        }
+
+        @Override
+        public void handleMessage(ByteBuffer message, Connection c) {
+            final int slot = message.getInt();
+            synchronized (this) {
+                m_latencies[m_received++] = System.nanoTime() - m_sendTimes[slot];
+            }
+            if (m_received == m_latencies.length) {
+                m_done.countDown();
+            } else {
+                send(c);
+            }
+        }
+    }
+
+    static void run(String name, boolean epoll, int busyPollMicros,
+                    int messageSize, int messages, int window) throws Exception {
+        VoltNetworkPool serverPool = new VoltNetworkPool(1, null, epoll, busyPollMicros);
+        VoltNetworkPool clientPool = new VoltNetworkPool(1, null, epoll, busyPollMicros);
+        serverPool.start();
+        clientPool.start();
+
+        ServerSocketChannel listener = ServerSocketChannel.open();
+        listener.socket().bind(new InetSocketAddress("localhost", 0));
+        SocketChannel client = SocketChannel.open(listener.socket().getLocalSocketAddress());
+        SocketChannel server = listener.accept();
+        client.socket().setTcpNoDelay(true);
+        server.socket().setTcpNoDelay(true);
+
+        SenderHandler sender = new SenderHandler(Math.max(4, messageSize), messages, window);
+        serverPool.registerChannel(server, new EchoHandler());
+        Connection c = clientPool.registerChannel(client, sender);
+
+        final long start = System.nanoTime();
+        for (int ii = 0; ii < window; ii++) {
+            sender.send(c);
+        }
+        sender.m_done.await();
+        final long nanos = System.nanoTime() - start;
+
+        clientPool.shutdown();
+        serverPool.shutdown();
+        listener.close();
+
+        long latencies[] = sender.m_latencies;
+        Arrays.sort(latencies);
+        long total = 0;
+        for (long latency : latencies) {
+            total += latency;
+        }
+        System.out.printf("%-14s window %3d: %8.0f messages/sec, latency avg %6.1f us, p50 %6.1f us, p99 %7.1f us%n",
+                name, window, messages / (nanos / 1e9),
+                total / (double)latencies.length / 1000.0,
+                latencies[latencies.length / 2] / 1000.0,
+                latencies[(int)(latencies.length * 0.99)] / 1000.0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int messageSize = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        final int messages = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        final int window = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        if (EPollSelector.unavailableReason() != null) {
+            System.out.println("epoll unavailable: " + EPollSelector.unavailableReason());
+        }
+
+        // warm up every path before measuring
+        run("warmup", false, 0, messageSize, messages / 10, 1);
+        run("warmup", true, 0, messageSize, messages / 10, 1);
+        for (int i = 0; i < 3; i++) {
+            for (int w : new int[] { 1, window }) {
+                run("nio", false, 0, messageSize, messages, w);
+                run("epoll", true, 0, messageSize, messages, w);
+                run("epoll busy 50", true, 50, messageSize, messages, w);
+            }
+        }
+    }
+}
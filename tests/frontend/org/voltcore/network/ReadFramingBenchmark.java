@@ -0,0 +1,160 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.network;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Cost of VoltProtocolHandler framing on the network thread, the way
+ * TCPThroughput drives it: a socket full of small length prefixed messages
+ * read through pooled buffers. Reports time and bytes allocated per message
+ * for heap copies and for shared read buffer slices.
+ *
+ * args: [message size] [messages]
+ */
+public class ReadFramingBenchmark {
+
+    /** Endless stream of identical framed messages */
+    static class FramedChannel implements ReadableByteChannel {
+        private final byte[] m_framed;
+        private int m_offset = 0;
+
+        FramedChannel(int messageSize) {
+            ByteBuffer b = ByteBuffer.allocate(4 + messageSize);
+            b.putInt(messageSize);
+            m_framed = b.array();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            int read = 0;
+            while (dst.hasRemaining()) {
+                int length = Math.min(dst.remaining(), m_framed.length - m_offset);
+                dst.put(m_framed, m_offset, length);
+                m_offset = (m_offset + length) % m_framed.length;
+                read += length;
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    static class Handler extends VoltProtocolHandler {
+        private final boolean m_shared;
+        long m_bytes = 0;
+
+        Handler(boolean shared) {
+            m_shared = shared;
+        }
+
+        @Override
+        protected boolean useSharedReadBuffers() {
+            return m_shared;
+        }
+
+        @Override
+        public int getMaxRead() {
+            return 1024 * 32;
+        }
+
+        @Override
+        public void handleMessage(ByteBuffer message, Connection c) {
+            m_bytes += message.remaining();
+        }
+
+        @Override
+        public Runnable onBackPressure() {
+            return null;
+        }
+
+        @Override
+        public Runnable offBackPressure() {
+            return null;
+        }
+
+        @Override
+        public QueueMonitor writestreamMonitor() {
+            return null;
+        }
+    }
+
+    static void run(String name, boolean shared, int messageSize, long messages) throws Exception {
+        final NIOReadStream stream = new NIOReadStream();
+        final NetworkDBBPool pool = new NetworkDBBPool();
+        final FramedChannel channel = new FramedChannel(messageSize);
+        final Handler handler = new Handler(shared);
+        final MockConnection c = new MockConnection() {
+            @Override
+            public NIOReadStream readStream() {
+                return stream;
+            }
+        };
+        final com.sun.management.ThreadMXBean mx =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long tid = Thread.currentThread().getId();
+
+        long handled = 0;
+        final long startAlloc = mx.getThreadAllocatedBytes(tid);
+        final long start = System.nanoTime();
+        while (handled < messages) {
+            stream.read(channel, handler.getMaxRead(), pool);
+            ByteBuffer message;
+            while ((message = handler.retrieveNextMessage(c)) != null) {
+                handler.handleMessage(message, c);
+                handled++;
+            }
+        }
+        final long nanos = System.nanoTime() - start;
+        final long alloc = mx.getThreadAllocatedBytes(tid) - startAlloc;
+        handler.stopped(c);
+        stream.shutdown();
+        pool.clear();
+
+        System.out.printf("%-7s %5d byte messages: %6.1f ns/message, %7.1f bytes allocated/message%n",
+                name, messageSize, nanos / (double) handled, alloc / (double) handled);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int messageSize = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        final long messages = args.length > 1 ? Long.parseLong(args[1]) : 20000000;
+
+        // warm up both paths before measuring
+        run("warmup", false, messageSize, messages / 10);
+        run("warmup", true, messageSize, messages / 10);
+        for (int i = 0; i < 3; i++) {
+            run("copy", false, messageSize, messages);
+            run("shared", true, messageSize, messages);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class TestEPollSelector extends TestCase {
+
+    private ServerSocketChannel m_server;
+    private SocketChannel m_local;
+    private SocketChannel m_remote;
+
+    @Override
+    public void setUp() throws IOException {
+        m_server = ServerSocketChannel.open();
+        m_server.socket().bind(new InetSocketAddress("localhost", 0));
+        m_remote = SocketChannel.open(m_server.socket().getLocalSocketAddress());
+        m_local = m_server.accept();
+        m_local.configureBlocking(false);
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        m_local.close();
+        m_remote.close();
+        m_server.close();
+    }
+
+    private static boolean available() {
+        if (EPollSelector.unavailableReason() != null) {
+            System.err.println("Skipping epoll test: " + EPollSelector.unavailableReason());
+            return false;
+        }
+        return true;
+    }
+
+    private void send(int bytes) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(bytes);
+        while (buf.hasRemaining()) {
+            m_remote.write(buf);
+        }
+    }
+
+    public void testReadReadinessKeptUntilDrained() throws Exception {
+        if (!available()) return;
+        EPollSelector selector = EPollSelector.open(0);
+        try {
+            EPollSelector.Key key = selector.register(m_local, SelectionKey.OP_READ, "attachment");
+            assertEquals("attachment", key.attachment());
+            assertEquals(0, selector.selectNow());
+
+            send(100);
+            assertEquals(1, selector.select(5000));
+            assertTrue(selector.selectedKeys().contains(key));
+            assertEquals(SelectionKey.OP_READ, key.readyOps());
+            selector.selectedKeys().clear();
+
+            // The kernel won't report the input again, the key has to remember it
+            key.consumed(key.readyOps(), false);
+            assertEquals(1, selector.selectNow());
+            selector.selectedKeys().clear();
+
+            // Not interested in reading, the readiness waits for interest
+            key.interestOps(0);
+            assertEquals(0, selector.selectNow());
+            key.interestOps(SelectionKey.OP_READ);
+            assertEquals(1, selector.selectNow());
+            selector.selectedKeys().clear();
+
+            m_local.read(ByteBuffer.allocate(200));
+            key.consumed(key.readyOps(), true);
+            assertEquals(0, selector.selectNow());
+
+            // New input is a new edge
+            send(10);
+            assertEquals(1, selector.select(5000));
+            assertEquals(SelectionKey.OP_READ, key.readyOps());
+        } finally {
+            selector.close();
+        }
+    }
+
+    public void testWriteInterest() throws Exception {
+        if (!available()) return;
+        EPollSelector selector = EPollSelector.open(0);
+        try {
+            EPollSelector.Key key = selector.register(m_local, SelectionKey.OP_READ, null);
+            assertEquals(0, selector.selectNow());
+
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            assertEquals(1, selector.select(5000));
+            assertEquals(SelectionKey.OP_WRITE, key.readyOps());
+            selector.selectedKeys().clear();
+            key.consumed(key.readyOps(), false);
+
+            // Consumed by the write attempt, reported again when interest is re-registered
+            assertEquals(0, selector.selectNow());
+            key.interestOps(SelectionKey.OP_READ);
+            assertEquals(0, selector.selectNow());
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            assertEquals(1, selector.selectNow());
+        } finally {
+            selector.close();
+        }
+    }
+
+    public void testWakeupAndBusyPoll() throws Exception {
+        if (!available()) return;
+        for (int busyPoll : new int[] { 0, 1000 }) {
+            final EPollSelector selector = EPollSelector.open(busyPoll);
+            try {
+                final CountDownLatch selecting = new CountDownLatch(1);
+                final CountDownLatch woken = new CountDownLatch(1);
+                Thread t = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            selecting.countDown();
+                            selector.select();
+                            woken.countDown();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                };
+                t.start();
+                selecting.await();
+                Thread.sleep(50);
+                selector.wakeup();
+                assertTrue(woken.await(5, TimeUnit.SECONDS));
+                t.join();
+
+                // A wakeup before selecting makes the next select return immediately
+                selector.wakeup();
+                assertEquals(0, selector.select());
+
+                long start = System.nanoTime();
+                assertEquals(0, selector.select(20));
+                assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(15));
+            } finally {
+                selector.close();
+            }
+        }
+    }
+
+    public void testCancel() throws Exception {
+        if (!available()) return;
+        EPollSelector selector = EPollSelector.open(0);
+        try {
+            EPollSelector.Key key = selector.register(m_local, SelectionKey.OP_READ, null);
+            assertEquals(1, selector.keys().size());
+            send(10);
+            key.cancel();
+            assertEquals(0, selector.select(100));
+            assertTrue(selector.keys().isEmpty());
+            assertTrue(selector.selectedKeys().isEmpty());
+
+            // The same channel can be registered again
+            key = selector.register(m_local, SelectionKey.OP_READ, null);
+            send(10);
+            assertEquals(1, selector.select(5000));
+        } finally {
+            selector.close();
+        }
+        assertFalse(selector.isOpen());
+    }
+
+    /**
+     * Echoes each message. Reads at most 1000 bytes at a time so larger
+     * messages take several runs of the port without a new edge.
+     */
+    private static class EchoHandler extends VoltProtocolHandler {
+        @Override
+        public int getMaxRead() {
+            return 1000;
+        }
+
+        @Override
+        public void handleMessage(ByteBuffer message, Connection c) {
+            ByteBuffer echo = ByteBuffer.allocate(message.remaining() + 4);
+            echo.putInt(message.remaining());
+            echo.put(message);
+            echo.flip();
+            c.writeStream().enqueue(echo);
+        }
+
+        @Override
+        public Runnable offBackPressure() {
+            return new Runnable() {
+                @Override
+                public void run() {}
+            };
+        }
+
+        @Override
+        public Runnable onBackPressure() {
+            return new Runnable() {
+                @Override
+                public void run() {}
+            };
+        }
+
+        @Override
+        public QueueMonitor writestreamMonitor() {
+            return null;
+        }
+    }
+
+    public void testEchoThroughNetworkPool() throws Exception {
+        if (!available()) return;
+        for (int busyPoll : new int[] { 0, 50 }) {
+            VoltNetworkPool pool = new VoltNetworkPool(1, null, true, busyPoll);
+            pool.start();
+            SocketChannel local = m_local;
+            try {
+                pool.registerChannel(local, new EchoHandler());
+
+                Random r = new Random(busyPoll);
+                for (int ii = 0; ii < 20; ii++) {
+                    byte payload[] = new byte[1 + r.nextInt(ii % 5 == 0 ? 4 * 1024 * 1024 : 100)];
+                    r.nextBytes(payload);
+                    ByteBuffer out = ByteBuffer.allocate(payload.length + 4);
+                    out.putInt(payload.length);
+                    out.put(payload);
+                    out.flip();
+                    while (out.hasRemaining()) {
+                        m_remote.write(out);
+                    }
+
+                    ByteBuffer in = ByteBuffer.allocate(payload.length + 4);
+                    while (in.hasRemaining()) {
+                        if (m_remote.read(in) < 0) {
+                            fail("Connection closed");
+                        }
+                    }
+                    in.flip();
+                    assertEquals(payload.length, in.getInt());
+                    byte echoed[] = new byte[payload.length];
+                    in.get(echoed);
+                    assertTrue(Arrays.equals(payload, echoed));
+                }
+            } finally {
+                pool.shutdown();
+            }
+            tearDown();
+            setUp();
+        }
+    }
+}
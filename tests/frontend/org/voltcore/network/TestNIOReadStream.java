@@ -53,13 +53,31 @@ package org.voltcore.network;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.ByteBuffer;
 import org.voltcore.network.NIOReadStream;
+import org.voltcore.utils.DBBPool.BBContainer;
 import junit.framework.TestCase;
 import java.io.IOException;
 
 public class TestNIOReadStream extends TestCase {
     MockReadableByteChannel channel;
     NIOReadStream stream;
-    NetworkDBBPool pool;
+    CountingPool pool;
+
+    private static class CountingPool extends NetworkDBBPool {
+        int outstanding = 0;
+
+        @Override
+        BBContainer acquire() {
+            final BBContainer c = super.acquire();
+            outstanding++;
+            return new BBContainer(c.b, c.address) {
+                @Override
+                public void discard() {
+                    outstanding--;
+                    c.discard();
+                }
+            };
+        }
+    }
 
     private static class MockReadableByteChannel implements ReadableByteChannel {
         @Override
@@ -104,7 +122,7 @@ public class TestNIOReadStream extends TestCase {
     public void setUp() {
         channel = new MockReadableByteChannel();
         stream = new NIOReadStream();
-        pool = new NetworkDBBPool();
+        pool = new CountingPool();
     }
 
     @Override
@@ -199,6 +217,115 @@ public class TestNIOReadStream extends TestCase {
         assertEquals(252, stream.getInt());
     }
 
+    public void testReadIntSpanningBuffers() throws IOException {
+        final int SIZE = 1024 * 32 + 2;
+        channel.nextRead = new byte[SIZE];
+        channel.nextRead[SIZE - 4] = 1;
+        channel.nextRead[SIZE - 3] = 2;
+        channel.nextRead[SIZE - 2] = 3;
+        channel.nextRead[SIZE - 1] = 4;
+        assertEquals(SIZE, stream.read(channel, SIZE, pool));
+        stream.getBytes(new byte[SIZE - 4]);
+        assertEquals(0x01020304, stream.getInt());
+        assertStreamIsEmpty();
+        assertEquals(0, pool.outstanding);
+    }
+
+    public void testSliceHoldsPooledBuffer() throws IOException {
+        channel.nextRead = new byte[]{0, 1, 2, 3, 4, 5, 6, 7};
+        assertEquals(8, stream.read(channel, 8, pool));
+        stream.getBytes(new byte[2]);
+
+        BBContainer slice = stream.getSlice(6);
+        assertNotNull(slice);
+        assertEquals(6, slice.b.remaining());
+        assertEquals(6, slice.b.capacity());
+        assertEquals(2, slice.b.get(0));
+        assertEquals(7, slice.b.get(5));
+        assertEquals(0, stream.dataAvailable());
+
+        // The stream is done with the buffer but the slice still references it
+        assertEquals(1, pool.outstanding);
+        channel.nextRead = new byte[]{8, 9};
+        assertEquals(2, stream.read(channel, 2, pool));
+        assertEquals(2, pool.outstanding);
+        assertEquals(2, slice.b.get(0));
+
+        slice.discard();
+        assertEquals(1, pool.outstanding);
+        byte[] rest = new byte[2];
+        stream.getBytes(rest);
+        assertEquals(8, rest[0]);
+        assertEquals(0, pool.outstanding);
+    }
+
+    public void testSliceSpanningBuffers() throws IOException {
+        final int SIZE = 1024 * 32 + 100;
+        channel.nextRead = new byte[SIZE];
+        assertEquals(SIZE, stream.read(channel, SIZE, pool));
+        stream.getBytes(new byte[1024 * 32 - 100]);
+
+        // Spans the two pooled buffers so nothing is consumed
+        assertNull(stream.getSlice(200));
+        assertEquals(200, stream.dataAvailable());
+        stream.getBytes(new byte[100]);
+
+        BBContainer slice = stream.getSlice(100);
+        assertNotNull(slice);
+        assertStreamIsEmpty();
+        slice.discard();
+        assertEquals(0, pool.outstanding);
+    }
+
+    public void testSharedReadBuffersHandler() throws IOException {
+        channel.nextRead = new byte[]{0, 0, 0, 2, 42, 43, 0, 0, 0, 1, 44};
+        assertEquals(11, stream.read(channel, 11, pool));
+        final MockConnection c = new MockConnection() {
+            @Override
+            public NIOReadStream readStream() {
+                return stream;
+            }
+        };
+        final VoltProtocolHandler handler = new VoltProtocolHandler() {
+            @Override
+            protected boolean useSharedReadBuffers() {
+                return true;
+            }
+            @Override
+            public int getMaxRead() {
+                return Integer.MAX_VALUE;
+            }
+            @Override
+            public void handleMessage(ByteBuffer message, Connection c) {
+            }
+            @Override
+            public Runnable onBackPressure() {
+                return null;
+            }
+            @Override
+            public Runnable offBackPressure() {
+                return null;
+            }
+            @Override
+            public QueueMonitor writestreamMonitor() {
+                return null;
+            }
+        };
+
+        ByteBuffer message = handler.retrieveNextMessage(c);
+        assertTrue(message.isDirect());
+        assertEquals(2, message.remaining());
+        assertEquals(42, message.get(0));
+        message = handler.retrieveNextMessage(c);
+        assertEquals(1, message.remaining());
+        assertEquals(44, message.get(0));
+        assertEquals(1, pool.outstanding);
+
+        // Retrieving the next message releases the previous one
+        assertNull(handler.retrieveNextMessage(c));
+        assertEquals(0, pool.outstanding);
+    }
+
     public void testEndReadComplete() throws IOException {
         channel.nextRead = new byte[]{1, 2, 3,4 };
         channel.end = true;
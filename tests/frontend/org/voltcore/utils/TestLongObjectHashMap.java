@@ -0,0 +1,96 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TestLongObjectHashMap extends TestCase {
+
+    public void testBasicOperations() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<String>();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+
+        assertNull(map.put(0, "zero"));
+        assertNull(map.put(-1, "minus one"));
+        assertNull(map.put(Long.MIN_VALUE, "min"));
+        assertEquals(3, map.size());
+        assertEquals("zero", map.get(0));
+        assertEquals("minus one", map.get(-1));
+        assertEquals("min", map.get(Long.MIN_VALUE));
+        assertTrue(map.containsKey(0));
+        assertFalse(map.containsKey(1));
+
+        assertEquals("zero", map.put(0, "nil"));
+        assertEquals(3, map.size());
+        assertEquals("nil", map.remove(0));
+        assertNull(map.remove(0));
+        assertEquals(2, map.size());
+        assertEquals(2, map.values().size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(-1));
+
+        try {
+            map.put(5, null);
+            fail();
+        } catch (IllegalArgumentException expected) {}
+    }
+
+    /*
+     * Compare against HashMap through growth and lots of removes, which
+     * exercises the backward shift deletion with wrapped probe runs.
+     */
+    public void testAgainstHashMap() {
+        Random r = new Random(42);
+        LongObjectHashMap<Long> map = new LongObjectHashMap<Long>(4);
+        Map<Long, Long> expected = new HashMap<Long, Long>();
+        for (int i = 0; i < 200000; i++) {
+            // small key space forces collisions and reuse of slots
+            long key = r.nextInt(5000) | ((long)r.nextInt(4) << 48);
+            switch (r.nextInt(3)) {
+            case 0:
+            case 1:
+                assertEquals(expected.put(key, (long)i), map.put(key, (long)i));
+                break;
+            default:
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<Long, Long> e : expected.entrySet()) {
+            assertEquals(e.getValue(), map.get(e.getKey()));
+        }
+        assertEquals(expected.size(), map.values().size());
+        for (Long key : expected.keySet().toArray(new Long[0])) {
+            assertEquals(expected.remove(key), map.remove(key));
+        }
+        assertTrue(map.isEmpty());
+    }
+}
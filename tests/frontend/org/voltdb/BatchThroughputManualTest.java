@@ -0,0 +1,131 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.voltdb;
+
+import java.io.File;
+
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientConfig;
+import org.voltdb.client.ClientFactory;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ClientStatsContext;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.compiler.VoltProjectBuilder;
+import org.voltdb.regressionsuites.LocalCluster;
+
+public class BatchThroughputManualTest {
+
+    /**
+     * Voter style inserts against a local server, sent one invocation at a
+     * time or in batches.
+     * @param args [batch size [invocations [target latency]]], a batch size of 1
+     * sends single invocations, and a target latency in ms turns on adaptive limiting
+     */
+    public static void main(String[] args) throws Exception {
+        final int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        final int invocations = args.length > 1 ? Integer.parseInt(args[1]) : 500000;
+        final int targetLatency = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        try {
+            String simpleSchema =
+                    "create table votes (" +
+                    "phone_number bigint not null, " +
+                    "state varchar(2) not null, " +
+                    "contestant_number integer not null);";
+
+            VoltProjectBuilder builder = new VoltProjectBuilder();
+            builder.addLiteralSchema(simpleSchema);
+            builder.addStmtProcedure("Vote", "insert into votes values (?, ?, ?);", "votes.phone_number: 0");
+            builder.addPartitionInfo("votes", "phone_number");
+
+            LocalCluster cluster = new LocalCluster("batchthroughput.jar",
+                    2, 1, 0, BackendTarget.NATIVE_EE_JNI);
+            cluster.setHasLocalServer(true);
+            boolean success = cluster.compile(builder);
+            assert(success);
+
+            cluster.startUp(true);
+
+            final ClientConfig config = new ClientConfig();
+            if (targetLatency > 0) {
+                config.enableAdaptiveLimiting(targetLatency);
+            }
+            final Client client = ClientFactory.createClient(config);
+            client.createConnection(cluster.getListenerAddresses().get(0));
+
+            final ProcedureCallback callback = new ProcedureCallback() {
+                @Override
+                public void clientCallback(ClientResponse clientResponse) {
+                    if (clientResponse.getStatus() != ClientResponse.SUCCESS) {
+                        System.err.println(clientResponse.getStatusString());
+                    }
+                }
+            };
+            final ProcedureCallback callbacks[] = new ProcedureCallback[batchSize];
+            final String procNames[] = new String[batchSize];
+            final Object parameters[][] = new Object[batchSize][];
+            for (int i = 0; i < batchSize; i++) {
+                callbacks[i] = callback;
+                procNames[i] = "Vote";
+            }
+
+            // warm up before timing
+            for (int i = 0; i < invocations / 10; i++) {
+                client.callProcedure(callback, "Vote", 5550000000L + i, "MA", i % 6);
+            }
+            client.drain();
+
+            final ClientStatsContext stats = client.createStatsContext();
+            long start = System.nanoTime();
+            for (int i = 0; i < invocations; i += batchSize) {
+                if (batchSize == 1) {
+                    client.callProcedure(callback, "Vote", 6170000000L + i, "MA", i % 6);
+                } else {
+                    for (int j = 0; j < batchSize; j++) {
+                        parameters[j] = new Object[] { 6170000000L + i + j, "MA", (i + j) % 6 };
+                    }
+                    client.callProcedures(callbacks, procNames, parameters);
+                }
+            }
+            client.drain();
+            long end = System.nanoTime();
+
+            double seconds = (end - start) / 1000000000.0;
+            final int p99 = stats.fetch().getStats().kPercentileLatency(0.99);
+
+            client.close();
+            cluster.shutDown();
+
+            System.out.printf("Batches of %d: %.0f invocations/sec, 99th percentile latency %d ms.\n",
+                    batchSize, invocations / seconds, p99);
+
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+        finally {
+            File jar = new File("batchthroughput.jar");
+            jar.delete();
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.util.Random;
+
+import org.voltcore.network.Connection;
+import org.voltcore.network.WriteStream;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Measures getHandle()/findHandle() throughput for a single connection with
+ * thousands of transactions in flight, spread over a number of partitions and
+ * mixed with short circuit reads. Transactions complete in the order they
+ * were issued and each completion issues a new one, so the number in flight
+ * stays constant.
+ *
+ * args: [inflight per connection] [partitions] [short circuit read percent] [seconds]
+ */
+public class ClientInterfaceHandleManagerMicrobench {
+
+    public static void main(String[] args) throws Exception {
+        final int inflight = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        final int partitions = args.length > 1 ? Integer.parseInt(args[1]) : 24;
+        final int scrPercent = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        final int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        Connection connection = mock(Connection.class);
+        doReturn(mock(WriteStream.class)).when(connection).writeStream();
+        ClientInterfaceHandleManager cihm =
+                new ClientInterfaceHandleManager(false, connection, AdmissionControlGroup.getDummy());
+
+        Random r = new Random(0);
+        long[] handles = new long[inflight];
+        for (int i = 0; i < inflight; i++) {
+            handles[i] = newHandle(cihm, r, partitions, scrPercent);
+        }
+
+        // warm up, then measure
+        for (int pass = 0; pass < 2; pass++) {
+            final long duration = pass == 0 ? 2000 : seconds * 1000L;
+            long txns = 0;
+            final long start = System.currentTimeMillis();
+            long now = start;
+            while (now - start < duration) {
+                for (int i = 0; i < 10000; i++) {
+                    // complete the oldest outstanding txn and refill its slot
+                    int slot = (int)(txns % inflight);
+                    long handle = handles[slot];
+                    if (cihm.findHandle(handle) == null) {
+                        throw new RuntimeException("Lost handle " + ClientInterfaceHandleManager.handleToString(handle));
+                    }
+                    handles[slot] = newHandle(cihm, r, partitions, scrPercent);
+                    txns++;
+                }
+                now = System.currentTimeMillis();
+            }
+            if (pass == 1) {
+                double secs = (now - start) / 1000.0;
+                System.out.printf("%d in flight, %d partitions, %d%% short circuit reads: %.0f txns/sec%n",
+                        inflight, partitions, scrPercent, txns / secs);
+            }
+        }
+        if (cihm.getOutstandingTxns() != inflight) {
+            throw new RuntimeException("Expected " + inflight + " outstanding, found " + cihm.getOutstandingTxns());
+        }
+    }
+
+    private static long newHandle(ClientInterfaceHandleManager cihm, Random r, int partitions, int scrPercent) {
+        boolean scr = r.nextInt(100) < scrPercent;
+        boolean readOnly = scr || r.nextBoolean();
+        return cihm.getHandle(true, r.nextInt(partitions), 0, 100, 0, "bench", 0, readOnly, scr);
+    }
+}
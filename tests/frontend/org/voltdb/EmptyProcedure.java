@@ -30,8 +30,8 @@ import org.voltdb.ProcInfo;
     partitionInfo = "WAREHOUSE.W_ID: 0",
     singlePartition = true
 )
-public class EmptyProcedure {
-    public static VoltTable[] run(long arg) {
+public class EmptyProcedure extends VoltProcedure {
+    public VoltTable[] run(short arg) {
         return new VoltTable[0];
     }
 }
@@ -0,0 +1,91 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.voltdb;
+
+import java.io.File;
+
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientFactory;
+import org.voltdb.client.NullCallback;
+import org.voltdb.compiler.VoltProjectBuilder;
+import org.voltdb.utils.BuildDirectoryUtils;
+
+/**
+ * Latency of equi-joins between two replicated tables on unindexed columns
+ * in an in-process server. Without an index on the inner table the join
+ * either loops over every pair of rows or hashes the inner rows once.
+ *
+ * args: [rows per table] [queries per phase]
+ */
+public class HashJoinBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final int queries = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        String jar = BuildDirectoryUtils.getBuildDirectoryPath() + File.separator + "hashjoinbenchmark.jar";
+        VoltProjectBuilder pb = new VoltProjectBuilder();
+        pb.addLiteralSchema("CREATE TABLE O (ID BIGINT NOT NULL, K BIGINT NOT NULL, PRIMARY KEY (ID));" +
+                            "CREATE TABLE I (ID BIGINT NOT NULL, K BIGINT NOT NULL, PRIMARY KEY (ID));");
+        pb.addStmtProcedure("InnerJoin", "SELECT COUNT(*) FROM O JOIN I ON O.K = I.K;");
+        pb.addStmtProcedure("LeftJoin", "SELECT COUNT(*) FROM O LEFT JOIN I ON O.K = I.K;");
+        pb.compile(jar, 1, 0);
+
+        ServerThread server = new ServerThread(jar, pb.getPathToDeployment(), BackendTarget.NATIVE_EE_JNI);
+        server.start();
+        server.waitForInitialization();
+
+        Client client = ClientFactory.createClient();
+        client.createConnection("localhost");
+        try {
+            // each key of O matches one row of I, half of I's keys match nothing
+            for (int i = 0; i < rows; i++) {
+                client.callProcedure(new NullCallback(), "O.insert", i, (i * 7919L) % rows);
+                client.callProcedure(new NullCallback(), "I.insert", i, i * 2L);
+            }
+            client.drain();
+
+            // warm up
+            run(client, "InnerJoin", queries / 5, (rows + 1) / 2);
+
+            run(client, "InnerJoin", queries, (rows + 1) / 2);
+            run(client, "LeftJoin", queries, rows);
+        } finally {
+            client.close();
+            server.shutdown();
+            new File(jar).delete();
+        }
+    }
+
+    private static void run(Client client, String proc, int queries, long expected) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            long count = client.callProcedure(proc).getResults()[0].asScalarLong();
+            if (count != expected) {
+                throw new RuntimeException("Expected " + expected + " but got " + count);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-9s %8.3f ms/query%n", proc, nanos / 1000000.0 / queries);
+    }
+}
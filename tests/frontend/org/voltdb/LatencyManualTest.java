@@ -27,6 +27,7 @@ import java.io.File;
 import java.io.IOException;
 
 import org.voltdb.client.Client;
+import org.voltdb.client.ClientConfig;
 import org.voltdb.client.ClientFactory;
 import org.voltdb.compiler.VoltProjectBuilder;
 import org.voltdb.regressionsuites.LocalCluster;
@@ -34,10 +35,17 @@ import org.voltdb.regressionsuites.LocalCluster;
 public class LatencyManualTest {
 
     /**
-     * @param args
+     * @param args [epoll [busy poll micros]] to do network IO with epoll
+     * in the local server and the client
      * @throws IOException
      */
     public static void main(String[] args) throws Exception {
+        final boolean epoll = args.length > 0 && args[0].equals("epoll");
+        final int busyPollMicros = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        if (epoll) {
+            System.setProperty("networkEPoll", "true");
+            System.setProperty("networkBusyPollMicros", String.valueOf(busyPollMicros));
+        }
         try {
             String simpleSchema =
                     "create table blah (" +
@@ -61,7 +69,9 @@ public class LatencyManualTest {
             cluster.startUp(true);
 
             final String listener = cluster.getListenerAddresses().get(0);
-            final Client client = ClientFactory.createClient();
+            final ClientConfig config = new ClientConfig();
+            config.setEPoll(epoll, busyPollMicros);
+            final Client client = ClientFactory.createClient(config);
             client.createConnection(listener);
 
             long iterations = 10000;
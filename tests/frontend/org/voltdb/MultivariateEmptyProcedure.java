@@ -29,11 +29,11 @@ import org.voltdb.VoltTable;
 import org.voltdb.ProcInfo;
 
 @ProcInfo (
-    partitionInfo = "WAREHOUSE.W_ID: 0",
+    partitionInfo = "WAREHOUSE.W_ID: 2",
     singlePartition = true
 )
-public class MultivariateEmptyProcedure {
-    public static VoltTable[] run(long c_id, long c_d_id, long c_w_id,
+public class MultivariateEmptyProcedure extends VoltProcedure {
+    public VoltTable[] run(long c_id, long c_d_id, short c_w_id,
             String c_first, String c_middle, String c_last,
             String c_street_1, String c_street_2, String d_city, String d_state, String d_zip,
             String c_phone, Date c_since, String c_credit, double c_credit_lim, double c_discount,
@@ -0,0 +1,105 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientFactory;
+import org.voltdb.client.NullCallback;
+import org.voltdb.compiler.VoltProjectBuilder;
+import org.voltdb.utils.BuildDirectoryUtils;
+
+/**
+ * Latency of ORDER BY ... LIMIT queries over an unindexed column of a
+ * partitioned table in an in-process server. Each partition sorts its rows
+ * and sends its top rows to the coordinator, so the sort dominates the cost.
+ *
+ * args: [rows] [queries per phase]
+ */
+public class OrderByLimitBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int queries = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        String jar = BuildDirectoryUtils.getBuildDirectoryPath() + File.separator + "orderbylimitbenchmark.jar";
+        VoltProjectBuilder pb = new VoltProjectBuilder();
+        pb.addLiteralSchema("CREATE TABLE T (ID BIGINT NOT NULL, VAL BIGINT NOT NULL, " +
+                            "NAME VARCHAR(32) NOT NULL, PRIMARY KEY (ID));");
+        pb.addPartitionInfo("T", "ID");
+        pb.addStmtProcedure("TopN", "SELECT ID, VAL, NAME FROM T ORDER BY VAL DESC LIMIT ? OFFSET ?;");
+        pb.addStmtProcedure("Sorted", "SELECT ID, VAL, NAME FROM T ORDER BY VAL DESC;");
+        pb.compile(jar, 2, 0);
+
+        ServerThread server = new ServerThread(jar, pb.getPathToDeployment(), BackendTarget.NATIVE_EE_JNI);
+        server.start();
+        server.waitForInitialization();
+
+        Client client = ClientFactory.createClient();
+        client.createConnection("localhost");
+        try {
+            // values in a scrambled order so the sort has real work to do
+            for (int i = 0; i < rows; i++) {
+                long val = (i * 7919L) % rows;
+                client.callProcedure(new NullCallback(), "T.insert", i, val, "name " + i);
+            }
+            client.drain();
+
+            // warm up
+            run(client, "TopN", queries / 5, rows, 10, 0);
+
+            run(client, "TopN", queries, rows, 10, 0);
+            run(client, "TopN", queries, rows, 10, 90);
+            run(client, "TopN", queries, rows, 1000, 0);
+            run(client, "Sorted", queries / 10, rows, -1, -1);
+        } finally {
+            client.close();
+            server.shutdown();
+            new File(jar).delete();
+        }
+    }
+
+    private static void run(Client client, String proc, int queries, int rows,
+                            int limit, int offset) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            VoltTable result;
+            if (limit >= 0) {
+                result = client.callProcedure(proc, limit, offset).getResults()[0];
+            } else {
+                result = client.callProcedure(proc).getResults()[0];
+            }
+            // the values are a permutation of 0 .. rows - 1
+            result.advanceRow();
+            long expected = rows - 1 - Math.max(offset, 0);
+            if (result.getLong(1) != expected) {
+                throw new RuntimeException("Expected " + expected + " but got " + result.getLong(1));
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-6s limit %5d offset %3d over %d rows: %8.3f ms/query%n",
+                proc, limit, offset, rows, nanos / 1000000.0 / queries);
+    }
+}
@@ -23,6 +23,7 @@
 
 package org.voltdb;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.concurrent.Callable;
@@ -42,7 +43,59 @@ public class ProcedureCallMicrobench {
         public abstract void run(Client client) throws Exception;
     };
 
-    public static void main(String[] args) throws Exception {
+    public static class MultivariateProcedure extends VoltProcedure {
+        public VoltTable[] run(long c_id, long c_d_id, long c_w_id,
+                String c_first, String c_middle, String c_last,
+                String c_street_1, String c_street_2, String d_city, String d_state, String d_zip,
+                String c_phone, Date c_since, String c_credit, double c_credit_lim, double c_discount,
+                double c_balance, double c_ytd_payment, long c_payment_cnt, long c_delivery_cnt,
+                String c_data) {
+            return null;
+        }
+    }
+
+    /**
+     * Time the call from ProcedureRunner into run() on its own, reflective
+     * against generated, with the parameter conversion done on every call.
+     */
+    static void invokerMicrobench() throws Throwable {
+        Method run = null;
+        for (Method m : MultivariateProcedure.class.getDeclaredMethods()) {
+            if (m.getName().equals("run")) {
+                run = m;
+            }
+        }
+        Class<?>[] types = run.getParameterTypes();
+        Object[] params = new Object[] { 0L, 0L, 0L,
+                "String c_first", "String c_middle", "String c_last", "String c_street_1",
+                "String c_street_2", "String d_city", "String d_state", "String d_zip",
+                "String c_phone", new Date(), "String c_credit", 0.0,
+                0.0, 0.0, 0.0, 0L, 0L, "String c_data" };
+        MultivariateProcedure proc = new MultivariateProcedure();
+        ProcedureInvoker[] invokers = new ProcedureInvoker[] {
+                new ProcedureInvoker.ReflectiveInvoker(run), ProcedureInvoker.forMethod(run) };
+        String[] names = new String[] { "reflective", "generated" };
+        final int calls = 5000000;
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < invokers.length; i++) {
+                long start = System.nanoTime();
+                for (int call = 0; call < calls; call++) {
+                    Object[] converted = params.clone();
+                    for (int p = 0; p < types.length; p++) {
+                        converted[p] = ParameterConverter.tryToMakeCompatible(types[p], converted[p]);
+                    }
+                    invokers[i].invoke(proc, converted);
+                }
+                double nanos = System.nanoTime() - start;
+                System.out.printf("%s invoker, round %d: %.1f ns/call%n", names[i], round, nanos / calls);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Throwable {
+        invokerMicrobench();
+
         int siteCount = 1;
 
         TPCCProjectBuilder pb = new TPCCProjectBuilder();
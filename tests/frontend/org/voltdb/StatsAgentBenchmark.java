@@ -0,0 +1,154 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Latency of StatsAgent calls while monitoring tools poll it. One thread
+ * polls a slow selector (many sources, each with many rows) in a loop,
+ * while another polls a cheap selector and a third registers sources and
+ * drops the procedure sources the way a catalog update does. Reports the
+ * latency seen by the cheap poller and by registration.
+ *
+ * args: [seconds] [slow pollers]
+ */
+public class StatsAgentBenchmark {
+
+    static class RowsSource extends StatsSource {
+        private final int m_rows;
+
+        RowsSource(int rows) {
+            super(false);
+            m_rows = rows;
+        }
+
+        @Override
+        protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+            super.populateColumnSchema(columns);
+            columns.add(new ColumnInfo("NAME", VoltType.STRING));
+            columns.add(new ColumnInfo("COUNT", VoltType.BIGINT));
+        }
+
+        @Override
+        protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+            List<Object> keys = new ArrayList<Object>(m_rows);
+            for (int i = 0; i < m_rows; i++) {
+                keys.add(i);
+            }
+            return keys.iterator();
+        }
+
+        @Override
+        protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+            super.updateStatsRow(rowKey, rowValues);
+            rowValues[columnNameToIndex.get("NAME")] = "proc" + rowKey;
+            rowValues[columnNameToIndex.get("COUNT")] = ((Integer) rowKey).longValue();
+        }
+    }
+
+    static String percentiles(List<Long> nanos) {
+        Long[] sorted = nanos.toArray(new Long[0]);
+        Arrays.sort(sorted);
+        if (sorted.length == 0) {
+            return "no samples";
+        }
+        return String.format("n=%d p50=%.3fms p99=%.3fms max=%.3fms", sorted.length,
+                sorted[sorted.length / 2] / 1e6,
+                sorted[(int)(sorted.length * 0.99)] / 1e6,
+                sorted[sorted.length - 1] / 1e6);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        final int slowPollers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+        final StatsAgent agent = new StatsAgent();
+        for (long site = 0; site < 8; site++) {
+            agent.registerStatsSource(StatsSelector.PROCEDURE, site, new RowsSource(2000));
+            agent.registerStatsSource(StatsSelector.STARVATION, site, new RowsSource(1));
+        }
+        agent.registerStatsSource(StatsSelector.MEMORY, 0, new RowsSource(1));
+
+        final long end = System.currentTimeMillis() + seconds * 1000;
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < slowPollers; i++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    while (System.currentTimeMillis() < end) {
+                        agent.getStatsAggregate(StatsSelector.PROCEDURE, false, System.currentTimeMillis());
+                    }
+                }
+            });
+        }
+
+        final List<Long> pollLatency = new ArrayList<Long>();
+        threads.add(new Thread() {
+            @Override
+            public void run() {
+                while (System.currentTimeMillis() < end) {
+                    long start = System.nanoTime();
+                    agent.getStatsAggregate(StatsSelector.MEMORY, false, System.currentTimeMillis());
+                    agent.getStatsAggregate(StatsSelector.STARVATION, false, System.currentTimeMillis());
+                    pollLatency.add(System.nanoTime() - start);
+                    try { Thread.sleep(1); } catch (InterruptedException e) {}
+                }
+            }
+        });
+
+        final List<Long> registerLatency = new ArrayList<Long>();
+        threads.add(new Thread() {
+            @Override
+            public void run() {
+                while (System.currentTimeMillis() < end) {
+                    long start = System.nanoTime();
+                    agent.registerStatsSource(StatsSelector.PLANNER, -1, new RowsSource(1));
+                    agent.notifyOfCatalogUpdate();
+                    for (long site = 0; site < 8; site++) {
+                        agent.registerStatsSource(StatsSelector.PROCEDURE, site, new RowsSource(2000));
+                    }
+                    registerLatency.add(System.nanoTime() - start);
+                    try { Thread.sleep(10); } catch (InterruptedException e) {}
+                }
+            }
+        });
+
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        agent.shutdown();
+
+        System.out.println("cheap poll:   " + percentiles(pollLatency));
+        System.out.println("registration: " + percentiles(registerLatency));
+    }
+}
@@ -200,6 +200,63 @@ public class TestAdHocQueries extends AdHocQueryTester {
         }
     }
 
+    @Test
+    public void testProcedureAdhocPlanCache() throws Exception {
+        VoltDB.Configuration config = setUpSPDB();
+        ServerThread localServer = new ServerThread(config);
+
+        try {
+            localServer.start();
+            localServer.waitForInitialization();
+
+            m_client = ClientFactory.createClient();
+            m_client.createConnection("localhost", config.m_port);
+
+            m_client.callProcedure("@AdHoc", "insert into PARTED1 values ( 23, 3 )");
+
+            // the same sql text again and again is planned once per site, the
+            // cached plans still see each call's changes
+            for (int i = 1; i <= 3; i++) {
+                VoltTable results[] = m_client.callProcedure("executeSQLSPWRITE", 23,
+                        "update PARTED1 set NONPART = NONPART + 1 where PARTVAL = 23").getResults();
+                assertEquals(1, results[0].asScalarLong());
+                assertTrue(results[1].advanceRow());
+                assertEquals(3 + i, results[1].getLong("NONPART"));
+            }
+
+            long hits = 0;
+            long waits = 0;
+            VoltTable stats = m_client.callProcedure("@Statistics", "PROCEDURE", 0).getResults()[0];
+            while (stats.advanceRow()) {
+                if (stats.getString("PROCEDURE").endsWith("executeSQLSPWRITE")) {
+                    hits += stats.getLong("INLINE_ADHOC_CACHE_HITS");
+                    waits += stats.getLong("INLINE_ADHOC_PLANNER_WAITS");
+                    assertTrue(stats.getLong("INLINE_ADHOC_PLANNER_WAIT_TIME") > 0);
+                }
+            }
+            assertEquals(2, waits);
+            assertEquals(4, hits);
+
+            // a cached plan for a read only procedure still refuses DML
+            for (int i = 0; i < 2; i++) {
+                try {
+                    m_client.callProcedure("executeSQLSP", 23, "delete from PARTED1 where PARTVAL = 23");
+                    fail("Procedure call should not have succeded");
+                } catch (ProcCallException e) {}
+            }
+        }
+        finally {
+            if (m_client != null) m_client.close();
+            m_client = null;
+
+            if (localServer != null) {
+                localServer.shutdown();
+                localServer.join();
+            }
+            localServer = null;
+        }
+    }
+
     @Test
     public void testSP() throws Exception {
         VoltDB.Configuration config = setUpSPDB();
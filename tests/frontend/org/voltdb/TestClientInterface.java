@@ -28,6 +28,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
@@ -37,6 +38,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -57,13 +59,16 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.voltcore.messaging.HostMessenger;
 import org.voltcore.messaging.LocalObjectMessage;
+import org.voltcore.messaging.VoltMessage;
 import org.voltcore.network.Connection;
 import org.voltcore.network.VoltNetworkPool;
+import org.voltcore.network.WriteStream;
 import org.voltdb.ClientInterface.ClientInputHandler;
 import org.voltdb.VoltDB.Configuration;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.catalog.Catalog;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureInvocation;
 import org.voltdb.client.ProcedureInvocationType;
 import org.voltdb.common.Constants;
 import org.voltdb.compiler.AdHocPlannedStatement;
@@ -453,6 +458,98 @@ public class TestClientInterface {
         assertEquals(1, invocation.getParameterAtIndex(0));
     }
 
+    @Test
+    public void testBatch() throws Exception {
+        ByteBuffer msg = createBatch(createMsg("hello", 1), createMsg("hellooooo", 1), createMsg("hello", 2));
+
+        // a real handler so the batch is taken apart
+        ClientInputHandler handler = m_ci.new ClientInputHandler("", false);
+        Connection cxn = mock(Connection.class);
+        WriteStream ws = mock(WriteStream.class);
+        doReturn(handler.connectionId()).when(cxn).connectionId();
+        doReturn(ws).when(cxn).writeStream();
+        m_ci.bindAdapter(cxn);
+        handler.handleMessage(msg, cxn);
+
+        // both good invocations are their own transaction
+        ArgumentCaptor<Iv2InitiateTaskMessage> messageCaptor =
+                ArgumentCaptor.forClass(Iv2InitiateTaskMessage.class);
+        verify(m_messenger, times(2)).send(any(Long.class), messageCaptor.capture());
+        assertEquals(1, messageCaptor.getAllValues().get(0).getStoredProcedureInvocation().getParameterAtIndex(0));
+        assertEquals(2, messageCaptor.getAllValues().get(1).getStoredProcedureInvocation().getParameterAtIndex(0));
+
+        // and the bad one gets its own response
+        ArgumentCaptor<ByteBuffer[]> errorCaptor = ArgumentCaptor.forClass(ByteBuffer[].class);
+        verify(ws).enqueue(errorCaptor.capture());
+        assertEquals(1, errorCaptor.getValue().length);
+        ByteBuffer error = errorCaptor.getValue()[0];
+        assertEquals(error.remaining() - 4, error.getInt());
+        ClientResponseImpl resp = new ClientResponseImpl();
+        resp.initFromBuffer(error);
+        assertEquals(ClientResponse.UNEXPECTED_FAILURE, resp.getStatus());
+    }
+
+    @Test
+    public void testReadFromSharedBuffer() throws Exception {
+        // as handed out from a pooled network read buffer
+        ByteBuffer heap = createMsg("hello", 1);
+        ByteBuffer msg = ByteBuffer.allocateDirect(heap.remaining());
+        msg.put(heap).flip();
+        ClientResponseImpl resp = m_ci.handleRead(msg, m_handler, m_cxn);
+        assertNull(resp);
+
+        // the buffer is reused for the next read, the invocation must not see that
+        while (msg.hasRemaining()) {
+            msg.put((byte) 0);
+        }
+        ArgumentCaptor<Iv2InitiateTaskMessage> messageCaptor =
+                ArgumentCaptor.forClass(Iv2InitiateTaskMessage.class);
+        verify(m_messenger).send(any(Long.class), messageCaptor.capture());
+        StoredProcedureInvocation invocation = messageCaptor.getValue().getStoredProcedureInvocation();
+        assertEquals(1, invocation.getParameterAtIndex(0));
+        assertEquals(1, invocation.getParams().toArray()[0]);
+    }
+
+    @Test
+    public void testBatchWithBadLength() throws Exception {
+        ByteBuffer msg = createBatch(createMsg("hello", 1), createMsg("hello", 2));
+        // claim more bytes for the last invocation than the message holds
+        msg.putInt(msg.limit() - createMsg("hello", 2).remaining() - 4, Integer.MAX_VALUE);
+
+        ClientInputHandler handler = m_ci.new ClientInputHandler("", false);
+        Connection cxn = mock(Connection.class);
+        WriteStream ws = mock(WriteStream.class);
+        doReturn(handler.connectionId()).when(cxn).connectionId();
+        doReturn(ws).when(cxn).writeStream();
+        m_ci.bindAdapter(cxn);
+        try {
+            handler.handleMessage(msg, cxn);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        // the malformed batch is rejected as a whole, nothing is dispatched
+        verify(m_messenger, never()).send(any(Long.class), any(VoltMessage.class));
+        verify(ws, never()).enqueue(any(ByteBuffer[].class));
+    }
+
+    private static ByteBuffer createBatch(ByteBuffer... invocations) {
+        int size = 1 + 4;
+        for (ByteBuffer invocation : invocations) {
+            size += 4 + invocation.remaining();
+        }
+        ByteBuffer msg = ByteBuffer.allocate(size);
+        msg.put(ProcedureInvocation.BATCH_VERSION);
+        msg.putInt(invocations.length);
+        for (ByteBuffer invocation : invocations) {
+            msg.putInt(invocation.remaining());
+            msg.put(invocation);
+        }
+        msg.flip();
+        return msg;
+    }
+
     @Test
     public void testSystemInformation() throws Exception {
         ByteBuffer msg = createMsg("@SystemInformation");
@@ -113,4 +113,65 @@ public class TestClientInterfaceHandleManager {
             assertEquals(31337 + i, inf.m_clientHandle);
         }
     }
+
+    @Test
+    public void testShortCircuitReadsDontDisturbPartitionQueues() throws Exception
+    {
+        Connection mockConnection = mock(Connection.class);
+        doReturn(mock(org.voltcore.network.WriteStream.class)).when(mockConnection).writeStream();
+        ClientInterfaceHandleManager dut =
+                new ClientInterfaceHandleManager(
+                        false,
+                        mockConnection,
+                        AdmissionControlGroup.getDummy());
+        long write = dut.getHandle(true, 0, 1, 10, 10l, "foo", 0, false, false);
+        long mp = dut.getHandle(false, 0, 2, 10, 10l, "bar", 0, false, false);
+        List<Long> reads = new ArrayList<Long>();
+        for (int i = 0; i < 1000; i++) {
+            long handle = dut.getHandle(true, 0, 100 + i, 10, 10l, "baz", 0, true, true);
+            assertTrue(ClientInterfaceHandleManager.isShortCircuitHandle(handle));
+            reads.add(handle);
+        }
+        assertFalse(ClientInterfaceHandleManager.isShortCircuitHandle(write));
+        assertFalse(ClientInterfaceHandleManager.isShortCircuitHandle(mp));
+        assertEquals(1002, dut.getOutstandingTxns());
+
+        // short circuit reads complete in any order
+        for (int i = reads.size() - 1; i >= 0; i--) {
+            assertEquals(100 + i, dut.findHandle(reads.get(i)).m_clientHandle);
+        }
+        // a stale short circuit handle must not drain partition 0
+        assertNull(dut.findHandle(reads.get(0)));
+        assertEquals(2, dut.getOutstandingTxns());
+
+        assertEquals(2, dut.findHandle(mp).m_clientHandle);
+        assertEquals(1, dut.findHandle(write).m_clientHandle);
+        assertEquals(0, dut.getOutstandingTxns());
+    }
+
+    @Test
+    public void testRemoveHandlesForPartitionAndInitiator() throws Exception
+    {
+        Connection mockConnection = mock(Connection.class);
+        ClientInterfaceHandleManager dut =
+                new ClientInterfaceHandleManager(
+                        false,
+                        mockConnection,
+                        AdmissionControlGroup.getDummy());
+        dut.getHandle(true, 3, 1, 10, 10l, "foo", 100, false, false);
+        dut.getHandle(true, 3, 2, 10, 10l, "foo", 200, true, false);
+        dut.getHandle(false, 3, 3, 10, 10l, "foo", 100, false, false);
+        long kept = dut.getHandle(true, 3, 4, 10, 10l, "foo", 200, false, false);
+
+        assertTrue(dut.removeHandlesForPartitionAndInitiator(5, 200L).isEmpty());
+        List<ClientInterfaceHandleManager.Iv2InFlight> removed =
+                dut.removeHandlesForPartitionAndInitiator(3, 200L);
+        assertEquals(1, removed.size());
+        assertEquals(1, removed.get(0).m_clientHandle);
+        assertEquals(3, dut.getOutstandingTxns());
+        assertEquals(4, dut.findHandle(kept).m_clientHandle);
+
+        dut.freeOutstandingTxns();
+        assertEquals(0, dut.getOutstandingTxns());
+    }
 }
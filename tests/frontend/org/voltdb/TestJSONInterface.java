@@ -857,6 +857,71 @@ public class TestJSONInterface extends TestCase {
     }
     }
 
+    public void testMetricsEndpoint() throws Exception {
+    try {
+        String simpleSchema =
+            "CREATE TABLE foo (\n" +
+            "    bar BIGINT NOT NULL,\n" +
+            "    PRIMARY KEY (bar)\n" +
+            ");";
+
+        VoltProjectBuilder builder = new VoltProjectBuilder();
+        builder.addLiteralSchema(simpleSchema);
+        builder.addPartitionInfo("foo", "bar");
+        builder.addStmtProcedure("Insert", "insert into foo values (?);");
+        builder.setHTTPDPort(8095);
+        boolean success = builder.compile(Configuration.getPathToCatalogForTest("json.jar"));
+        assertTrue(success);
+
+        VoltDB.Configuration config = new VoltDB.Configuration();
+        config.m_pathToCatalog = config.setPathToCatalogForTest("json.jar");
+        config.m_pathToDeployment = builder.getPathToDeployment();
+        server = new ServerThread(config);
+        server.start();
+        server.waitForInitialization();
+
+        Response r = responseFromJSON(callProcOverJSON("Insert", ParameterSet.fromArrayNoCopy(1), null, null, false));
+        assertEquals(ClientResponse.SUCCESS, r.status);
+
+        // The endpoint serves snapshots taken on the periodic work thread
+        String metrics = null;
+        long deadline = System.currentTimeMillis() + 30 * 1000;
+        while (System.currentTimeMillis() < deadline) {
+            HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:8095/metrics").openConnection();
+            if (conn.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                assertTrue(conn.getContentType().startsWith("text/plain; version=0.0.4"));
+                BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream(), "UTF-8"));
+                StringBuilder sb = new StringBuilder();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    sb.append(line).append('\n');
+                }
+                in.close();
+                if (sb.indexOf("procedure=\"Insert\"") != -1) {
+                    metrics = sb.toString();
+                    break;
+                }
+            }
+            else {
+                assertEquals(HttpURLConnection.HTTP_UNAVAILABLE, conn.getResponseCode());
+            }
+            conn.disconnect();
+            Thread.sleep(500);
+        }
+        assertNotNull(metrics);
+        assertTrue(metrics.contains("# TYPE voltdb_table_tuple_count untyped"));
+        assertTrue(metrics.contains("table_name=\"FOO\""));
+        assertTrue(metrics.contains("voltdb_memory_rss{"));
+        assertTrue(metrics.contains("voltdb_metrics_snapshot_timestamp_ms "));
+    } finally {
+        if (server != null) {
+            server.shutdown();
+            server.join();
+        }
+        server = null;
+    }
+    }
+
     public void testLongProc() throws Exception {
     try {
         String simpleSchema =
@@ -0,0 +1,178 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+
+import junit.framework.TestCase;
+
+import org.voltdb.types.TimestampType;
+
+public class TestProcedureInvoker extends TestCase
+{
+    public static class ManyTypes extends VoltProcedure {
+        public Object[] seen;
+
+        public VoltTable[] run(long a, int b, short c, byte d, double e, String f,
+                byte[] g, long[] h, TimestampType i, BigDecimal j, VoltTable k,
+                String[] l, long m)
+        {
+            seen = new Object[] { a, b, c, d, e, f, g, h, i, j, k, l, m };
+            return new VoltTable[] { k };
+        }
+    }
+
+    public static class ReturnsLong extends VoltProcedure {
+        public long run(long value) {
+            if (value < 0) {
+                throw new VoltAbortException("negative " + value);
+            }
+            return value * 2;
+        }
+    }
+
+    public static class ReturnsNothing extends VoltProcedure {
+        public int calls = 0;
+
+        public void run() {
+            calls++;
+        }
+    }
+
+    public static class ThrowsClassCast extends VoltProcedure {
+        public long run(Object value) {
+            return (Long) value;
+        }
+    }
+
+    static class Hidden extends VoltProcedure {
+        public long run(long value) {
+            return value + 1;
+        }
+    }
+
+    private static ProcedureInvoker invokerFor(Class<?> procClass) {
+        for (Method m : procClass.getDeclaredMethods()) {
+            if (m.getName().equals("run")) {
+                return ProcedureInvoker.forMethod(m);
+            }
+        }
+        throw new RuntimeException("no run method");
+    }
+
+    public void testAllParameterTypes() throws Throwable
+    {
+        ProcedureInvoker invoker = invokerFor(ManyTypes.class);
+        assertFalse(invoker instanceof ProcedureInvoker.ReflectiveInvoker);
+
+        VoltTable table = new VoltTable(new VoltTable.ColumnInfo("C", VoltType.BIGINT));
+        Object[] params = new Object[] {
+                Long.MAX_VALUE, 7, (short) 3, (byte) 1, 2.5, "str",
+                new byte[] { 1, 2 }, new long[] { 4, 5 }, new TimestampType(1000),
+                new BigDecimal("1.5"), table, new String[] { "x" }, VoltType.NULL_BIGINT };
+        ManyTypes proc = new ManyTypes();
+        Object result = invoker.invoke(proc, params.clone());
+
+        assertTrue(result instanceof VoltTable[]);
+        assertSame(table, ((VoltTable[]) result)[0]);
+        for (int i = 0; i < params.length; i++) {
+            if (params[i] instanceof Number || params[i] instanceof String ||
+                    params[i] instanceof TimestampType) {
+                assertEquals(params[i], proc.seen[i]);
+            } else {
+                assertSame(params[i], proc.seen[i]);
+            }
+        }
+    }
+
+    public void testReturnValuesAndExceptions() throws Throwable
+    {
+        ProcedureInvoker invoker = invokerFor(ReturnsLong.class);
+        assertEquals(42L, invoker.invoke(new ReturnsLong(), new Object[] { 21L }));
+        try {
+            invoker.invoke(new ReturnsLong(), new Object[] { -1L });
+            fail("expected the procedure's exception");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof VoltProcedure.VoltAbortException);
+            assertEquals("negative -1", e.getCause().getMessage());
+        }
+
+        ReturnsNothing nothing = new ReturnsNothing();
+        assertNull(invokerFor(ReturnsNothing.class).invoke(nothing, new Object[0]));
+        assertEquals(1, nothing.calls);
+    }
+
+    private static void assertBadArguments(ProcedureInvoker invoker, Object procedure,
+            Object... params) throws Throwable
+    {
+        try {
+            invoker.invoke(procedure, params);
+            fail("expected a bad argument");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testMismatchedParameter() throws Throwable
+    {
+        // reported as bad arguments like Method.invoke does, not as thrown by run()
+        ProcedureInvoker invoker = invokerFor(ReturnsLong.class);
+        assertBadArguments(invoker, new ReturnsLong(), "21");
+        assertBadArguments(invoker, new ReturnsLong(), (Object) null);
+        assertBadArguments(invoker, new ReturnsLong());
+        assertBadArguments(invoker, new Hidden(), 21L);
+
+        invoker = invokerFor(Hidden.class);
+        assertBadArguments(invoker, new Hidden(), "21");
+        assertBadArguments(invoker, new Hidden(), (Object) null);
+        assertBadArguments(invoker, new Hidden());
+    }
+
+    public void testClassCastInRun() throws Throwable
+    {
+        try {
+            invokerFor(ThrowsClassCast.class).invoke(new ThrowsClassCast(), new Object[] { "x" });
+            fail("expected the procedure's exception");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof ClassCastException);
+        }
+    }
+
+    public void testInvokerSharedPerProcedureClass() throws Throwable
+    {
+        ProcedureInvoker first = invokerFor(ReturnsLong.class);
+        assertSame(first, invokerFor(ReturnsLong.class));
+        assertNotSame(first, invokerFor(ReturnsNothing.class));
+        // runners of a reflective procedure get their own
+        assertNotSame(invokerFor(Hidden.class), invokerFor(Hidden.class));
+    }
+
+    public void testNonPublicFallsBackToReflection() throws Throwable
+    {
+        ProcedureInvoker invoker = invokerFor(Hidden.class);
+        assertTrue(invoker instanceof ProcedureInvoker.ReflectiveInvoker);
+        assertEquals(2L, invoker.invoke(new Hidden(), new Object[] { 1L }));
+    }
+}
@@ -0,0 +1,182 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.iv2.SiteTasker;
+import org.voltdb.iv2.SiteTaskerQueue;
+import org.voltdb.iv2.SnapshotTask;
+import org.voltdb.rejoin.TaskLog;
+
+public class TestSnapshotThrottle {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private SiteTaskerQueue m_queue;
+
+    private static class Transaction extends SiteTasker {
+        @Override
+        public void run(SiteProcedureConnection siteConnection) {}
+
+        @Override
+        public void runForRejoin(SiteProcedureConnection siteConnection, TaskLog rejoinTaskLog)
+        throws IOException {}
+    }
+
+    @Before
+    public void setUp() {
+        m_queue = new SiteTaskerQueue();
+    }
+
+    private static Map<String, Object> getStats(SnapshotThrottle throttle, boolean interval) {
+        ArrayList<ColumnInfo> columns = throttle.getColumnSchema();
+        Object[] row = throttle.getStatsRows(interval, System.currentTimeMillis())[0];
+        Map<String, Object> stats = new HashMap<String, Object>();
+        for (int ii = 0; ii < columns.size(); ii++) {
+            stats.put(columns.get(ii).name, row[ii]);
+        }
+        return stats;
+    }
+
+    @Test
+    public void testFixedPriority() {
+        SnapshotThrottle throttle = new SnapshotThrottle(0, 0, m_queue);
+        assertFalse(throttle.isAdaptive());
+        m_queue.offer(new Transaction());
+        for (int ii = 0; ii < 10; ii++) {
+            throttle.quantumCompleted(1, 50 * MS);
+        }
+        assertEquals(1, throttle.getQuantum());
+        assertEquals(0, throttle.getDelay());
+    }
+
+    @Test
+    public void testIdleSiteGrowsQuantum() {
+        SnapshotThrottle throttle = new SnapshotThrottle(0, 10, m_queue);
+        assertTrue(throttle.isAdaptive());
+        // Queued snapshot work doesn't make the site busy
+        m_queue.offer(new SnapshotTask());
+        for (int ii = 0; ii < 10; ii++) {
+            throttle.quantumCompleted(throttle.getQuantum(), throttle.getQuantum() * MS);
+        }
+        assertEquals(SnapshotThrottle.MAX_QUANTUM, throttle.getQuantum());
+        assertEquals(0, throttle.getDelay());
+
+        // but only as far as the quantum stays within the target
+        throttle = new SnapshotThrottle(0, 10, m_queue);
+        for (int ii = 0; ii < 10; ii++) {
+            throttle.quantumCompleted(throttle.getQuantum(), throttle.getQuantum() * 4 * MS);
+        }
+        assertEquals(2, throttle.getQuantum());
+    }
+
+    @Test
+    public void testBusySiteBacksOff() {
+        SnapshotThrottle throttle = new SnapshotThrottle(0, 10, m_queue);
+        for (int ii = 0; ii < 10; ii++) {
+            throttle.quantumCompleted(throttle.getQuantum(), throttle.getQuantum() * MS);
+        }
+        assertEquals(SnapshotThrottle.MAX_QUANTUM, throttle.getQuantum());
+
+        // Transactions are waiting behind quanta over the target, shrink the quantum first
+        m_queue.offer(new Transaction());
+        throttle.quantumCompleted(throttle.getQuantum(), 20 * MS);
+        assertEquals(SnapshotThrottle.MAX_QUANTUM / 2, throttle.getQuantum());
+        assertEquals(0, throttle.getDelay());
+        while (throttle.getQuantum() > 1) {
+            throttle.quantumCompleted(throttle.getQuantum(), 20 * MS);
+        }
+
+        // then space out the quanta
+        throttle.quantumCompleted(1, 20 * MS);
+        assertEquals(1, throttle.getDelay());
+        throttle.quantumCompleted(1, 20 * MS);
+        assertEquals(2, throttle.getDelay());
+        for (int ii = 0; ii < 20; ii++) {
+            throttle.quantumCompleted(1, 20 * MS);
+        }
+        assertEquals(SnapshotThrottle.MAX_DELAY, throttle.getDelay());
+
+        // Within the target the delay comes down slowly while the site is busy
+        throttle.quantumCompleted(1, 5 * MS);
+        assertEquals(SnapshotThrottle.MAX_DELAY - 1, throttle.getDelay());
+        assertEquals(1, throttle.getQuantum());
+
+        // and quickly once it is idle
+        m_queue.poll();
+        throttle.quantumCompleted(1, 5 * MS);
+        assertEquals((SnapshotThrottle.MAX_DELAY - 1) / 2, throttle.getDelay());
+    }
+
+    @Test
+    public void testDiskPacesQuanta() {
+        SnapshotThrottle throttle = new SnapshotThrottle(0, 10, m_queue);
+        for (int ii = 0; ii < 10; ii++) {
+            throttle.writeCompleted(100 * MS);
+        }
+        throttle.quantumCompleted(1, MS);
+        // A slow disk keeps the quantum from growing and holds back the next one
+        assertEquals(1, throttle.getQuantum());
+        assertEquals(100 / SnapshotThrottle.MAX_QUANTUM, throttle.getDelay());
+    }
+
+    @Test
+    public void testStats() {
+        SnapshotThrottle throttle = new SnapshotThrottle(0, 10, m_queue);
+        throttle.quantumCompleted(1, 2 * MS);
+        m_queue.offer(new Transaction());
+        throttle.quantumCompleted(1, 4 * MS);
+        throttle.quantumCompleted(1, 8 * MS);
+
+        Map<String, Object> stats = getStats(throttle, false);
+        assertEquals(10, stats.get("TARGET_LATENCY"));
+        assertEquals(3L, stats.get("QUANTA"));
+        assertEquals(2L, stats.get("WAITING_QUANTA"));
+        assertEquals(6000L, stats.get("AVG_WAIT"));
+        assertEquals(8000L, stats.get("MAX_WAIT"));
+
+        // Interval stats start over after being read
+        assertEquals(3L, getStats(throttle, true).get("QUANTA"));
+        throttle.quantumCompleted(1, 2 * MS);
+        stats = getStats(throttle, true);
+        assertEquals(1L, stats.get("QUANTA"));
+        assertEquals(1L, stats.get("WAITING_QUANTA"));
+        assertEquals(2000L, stats.get("MAX_WAIT"));
+        stats = getStats(throttle, false);
+        assertEquals(4L, stats.get("QUANTA"));
+        assertEquals(8000L, stats.get("MAX_WAIT"));
+    }
+}
@@ -174,6 +174,79 @@ public class TestStatsAgent {
         }
     }
 
+    private ParameterSet historyRange(String subselector, int interval, long from, long to)
+    {
+        return ParameterSet.fromArrayWithCopy(subselector, interval, from, to);
+    }
+
+    @Test
+    public void testCollectStatsHistory() throws Exception {
+        MockStatsSource.columns = Arrays.asList(new VoltTable.ColumnInfo[] {
+                new VoltTable.ColumnInfo("TIMESTAMP", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("PROCEDURE", VoltType.STRING),
+                new VoltTable.ColumnInfo("INVOCATIONS", VoltType.BIGINT)
+        });
+        final long[] invocations = new long[] { 1 };
+        MockStatsSource source = new MockStatsSource(new Object[][] { { 0L, "Insert", 0L } }) {
+            @Override
+            protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+                rowValues[0] = System.currentTimeMillis();
+                rowValues[1] = "Insert";
+                rowValues[2] = invocations[0];
+            }
+        };
+        m_mvoltdb.getStatsAgent().registerStatsSource(StatsSelector.PROCEDURE, 0, source);
+
+        long start = System.currentTimeMillis();
+        m_mvoltdb.getStatsAgent().sampleHistory();
+        invocations[0] = 5;
+        Thread.sleep(5);
+        m_mvoltdb.getStatsAgent().sampleHistory();
+        long end = System.currentTimeMillis();
+
+        m_mvoltdb.getStatsAgent().performOpsAction(m_mockConnection, 32, OpsSelector.STATISTICS,
+                historyRange("PROCEDURE", 0, start, end));
+        ClientResponseImpl response = responses.take();
+        assertEquals(ClientResponse.SUCCESS, response.getStatus());
+        VoltTable results[] = response.getResults();
+        assertEquals(1, results.length);
+        assertEquals(2, results[0].getRowCount());
+        results[0].advanceRow();
+        assertEquals(1, results[0].getLong("INVOCATIONS"));
+        results[0].advanceRow();
+        assertEquals(5, results[0].getLong("INVOCATIONS"));
+
+        // A range without samples still describes the selector
+        m_mvoltdb.getStatsAgent().performOpsAction(m_mockConnection, 32, OpsSelector.STATISTICS,
+                historyRange("PROCEDURE", 0, 0, start - 1));
+        response = responses.take();
+        assertEquals(ClientResponse.SUCCESS, response.getStatus());
+        assertEquals(0, response.getResults()[0].getRowCount());
+        assertEquals(3, response.getResults()[0].getColumnCount());
+    }
+
+    @Test
+    public void testInvalidStatsHistoryRequests() throws Exception {
+        m_mvoltdb.getStatsAgent().performOpsAction(m_mockConnection, 32, OpsSelector.STATISTICS,
+                ParameterSet.fromArrayWithCopy("PROCEDURE", 0, 0L));
+        ClientResponseImpl response = responses.take();
+        assertEquals(ClientResponse.GRACEFUL_FAILURE, response.getStatus());
+        assertEquals("Incorrect number of arguments to @Statistics (expects 1, 2, or 4 with a time range, received 3)",
+                response.getStatusString());
+
+        m_mvoltdb.getStatsAgent().performOpsAction(m_mockConnection, 32, OpsSelector.STATISTICS,
+                historyRange("PROCEDURE", 1, 0, Long.MAX_VALUE));
+        response = responses.take();
+        assertEquals(ClientResponse.GRACEFUL_FAILURE, response.getStatus());
+        assertTrue(response.getStatusString().contains("interval argument must be 0"));
+
+        m_mvoltdb.getStatsAgent().performOpsAction(m_mockConnection, 32, OpsSelector.STATISTICS,
+                historyRange("TOPO", 0, 0, Long.MAX_VALUE));
+        response = responses.take();
+        assertEquals(ClientResponse.GRACEFUL_FAILURE, response.getStatus());
+        assertEquals("No history is kept for @Statistics selector TOPO", response.getStatusString());
+    }
+
     @Test
     public void testCollectUnavailableStats() throws Exception {
         for (StatsSelector selector : StatsSelector.values()) {
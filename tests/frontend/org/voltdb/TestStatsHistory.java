@@ -0,0 +1,116 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import junit.framework.TestCase;
+
+public class TestStatsHistory extends TestCase {
+
+    private static VoltTable table(long timestamp, long... counters) {
+        VoltTable table = new VoltTable(
+                new VoltTable.ColumnInfo("TIMESTAMP", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("NAME", VoltType.STRING),
+                new VoltTable.ColumnInfo("COUNT", VoltType.BIGINT));
+        for (int i = 0; i < counters.length; i++) {
+            table.addRow(timestamp, "row" + i, counters[i]);
+        }
+        return table;
+    }
+
+    private static long[] timestamps(VoltTable table) {
+        long[] result = new long[table.getRowCount()];
+        table.resetRowPosition();
+        for (int i = 0; table.advanceRow(); i++) {
+            result[i] = table.getLong("TIMESTAMP");
+        }
+        return result;
+    }
+
+    public void testRoundTripThroughKeyframes() throws Exception {
+        StatsHistory history = new StatsHistory(100, 4, 10);
+        assertNull(history.get(StatsSelector.PROCEDURE, 0, Long.MAX_VALUE));
+        // Row counts and string lengths change between samples, which
+        // changes the layout the deltas are taken against
+        for (int t = 0; t < 10; t++) {
+            long[] counters = new long[1 + t % 3];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = t * 1000 + i;
+            }
+            history.add(StatsSelector.PROCEDURE, t, table(t, counters));
+        }
+
+        VoltTable result = history.get(StatsSelector.PROCEDURE, 0, 9);
+        for (int t = 0; t < 10; t++) {
+            for (int i = 0; i < 1 + t % 3; i++) {
+                assertTrue(result.advanceRow());
+                assertEquals(t, result.getLong("TIMESTAMP"));
+                assertEquals("row" + i, result.getString("NAME"));
+                assertEquals(t * 1000 + i, result.getLong("COUNT"));
+            }
+        }
+        assertFalse(result.advanceRow());
+
+        // Ranges are inclusive on both ends
+        result = history.get(StatsSelector.PROCEDURE, 3, 4);
+        assertEquals(1 + 2, result.getRowCount());
+    }
+
+    public void testDownsampling() throws Exception {
+        // Keep 8 samples at full resolution, then one in 4 for 3 more
+        StatsHistory history = new StatsHistory(8, 4, 3);
+        for (int t = 0; t < 40; t++) {
+            history.add(StatsSelector.MEMORY, t, table(t, t));
+        }
+        long[] kept = timestamps(history.get(StatsSelector.MEMORY, 0, Long.MAX_VALUE));
+        assertEquals(3 + 8, kept.length);
+        // Coarse samples are the keyframes that aged out
+        assertEquals(20, kept[0]);
+        assertEquals(24, kept[1]);
+        assertEquals(28, kept[2]);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(32 + i, kept[3 + i]);
+        }
+
+        // Deltas still decode after their keyframe moved to the coarse buffer
+        long[] recent = timestamps(history.get(StatsSelector.MEMORY, 33, 35));
+        assertEquals(3, recent.length);
+        assertEquals(33, recent[0]);
+
+        // No samples in range gives an empty table with the selector's schema
+        VoltTable empty = history.get(StatsSelector.MEMORY, 0, 10);
+        assertEquals(0, empty.getRowCount());
+        assertEquals(3, empty.getColumnCount());
+    }
+
+    public void testSelectorsWithoutHistory() throws Exception {
+        StatsHistory history = new StatsHistory();
+        assertTrue(StatsHistory.isKept(StatsSelector.PROCEDURE));
+        assertFalse(StatsHistory.isKept(StatsSelector.TOPO));
+        try {
+            history.add(StatsSelector.TOPO, 0, table(0, 0));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
@@ -155,6 +155,13 @@ public class MockVoltClient implements Client, ReplicaProcCaller{
         return false;
     }
 
+    @Override
+    public boolean callProcedures(ProcedureCallback callbacks[], String procNames[],
+            Object[]... parameters) throws NoConnectionsException {
+        // TODO Auto-generated method stub
+        return false;
+    }
+
     @Override
     public void drain() {
         // TODO Auto-generated method stub
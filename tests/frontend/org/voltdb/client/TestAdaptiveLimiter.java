@@ -0,0 +1,166 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayDeque;
+
+import junit.framework.TestCase;
+
+public class TestAdaptiveLimiter extends TestCase {
+
+    /**
+     * Run a client that keeps its limit full against a server that completes
+     * a fixed number of transactions each millisecond in order, so latency
+     * grows with the number outstanding.
+     * @return the highest latency and the lowest and highest limit seen over the last half
+     */
+    private int[] simulate(AdaptiveLimiter limiter, int txnsPerMs, int durationMs) {
+        return simulate(limiter, txnsPerMs, 0, durationMs);
+    }
+
+    /**
+     * @param minLatency milliseconds every transaction takes, however few are outstanding
+     */
+    private int[] simulate(AdaptiveLimiter limiter, int txnsPerMs, int minLatency, int durationMs) {
+        final ArrayDeque<Long> queue = new ArrayDeque<Long>();
+        int maxLatency = 0;
+        int minLimit = Integer.MAX_VALUE;
+        int maxLimit = 0;
+        for (long now = 0; now < durationMs; now++) {
+            while (queue.size() < limiter.getLimit()) {
+                limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(now, false);
+                queue.add(now);
+            }
+            for (int ii = 0; ii < txnsPerMs && !queue.isEmpty() && now - queue.peek() >= minLatency; ii++) {
+                final int latency = (int)(now - queue.poll());
+                limiter.transactionResponseReceived(now, latency);
+                if (now >= durationMs / 2) {
+                    maxLatency = Math.max(maxLatency, latency);
+                }
+            }
+            if (now >= durationMs / 2) {
+                minLimit = Math.min(minLimit, limiter.getLimit());
+                maxLimit = Math.max(maxLimit, limiter.getLimit());
+            }
+        }
+        return new int[] { maxLatency, minLimit, maxLimit };
+    }
+
+    public void testConvergesOnTarget() {
+        // 10 transactions per ms meet a 10ms target with about 100 outstanding
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 0.99, 3000);
+        int result[] = simulate(limiter, 10, 20000);
+        assertTrue(result[0] <= 20);
+        assertTrue(result[1] >= 50);
+        assertTrue(result[2] <= 150);
+
+        // a slower server gets fewer
+        limiter = new AdaptiveLimiter(10, 0.99, 3000);
+        result = simulate(limiter, 2, 20000);
+        assertTrue(result[0] <= 20);
+        assertTrue(result[1] >= 10);
+        assertTrue(result[2] <= 30);
+    }
+
+    public void testSlowStart() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 0.99, 3000);
+        simulate(limiter, 10, 500);
+        // doubling gets there in a few intervals, adding 5 at a time would not
+        assertTrue(limiter.getLimit() >= 80);
+    }
+
+    public void testStaysWithinBounds() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 0.99, 50);
+        int result[] = simulate(limiter, 100, 5000);
+        assertEquals(50, result[1]);
+        assertEquals(50, result[2]);
+
+        // even a server too slow for the target keeps one going
+        limiter = new AdaptiveLimiter(10, 0.99, 50);
+        result = simulate(limiter, 100, 20, 10000);
+        assertEquals(1, result[1]);
+    }
+
+    public void testPercentile() {
+        final long start = 1000000;
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 0.99, 1000);
+        // one slow transaction in a hundred is within the 99th percentile
+        for (int ii = 0; ii < 100; ii++) {
+            limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(start, true);
+        }
+        for (int ii = 0; ii < 100; ii++) {
+            limiter.transactionResponseReceived(start + 1, ii == 0 ? 100 : 1);
+        }
+        // the first response of the next interval ends this one
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(start + 101, true);
+        limiter.transactionResponseReceived(start + 101, 1);
+        assertEquals(AdaptiveLimiter.INITIAL_LIMIT * 2, limiter.getLimit());
+
+        // but five are not
+        for (int ii = 0; ii < 100; ii++) {
+            limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(start + 101, true);
+        }
+        for (int ii = 0; ii < 100; ii++) {
+            limiter.transactionResponseReceived(start + 102, ii < 5 ? 100 : 1);
+        }
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(start + 201, true);
+        limiter.transactionResponseReceived(start + 201, 1);
+        assertEquals((int)(AdaptiveLimiter.INITIAL_LIMIT * 2 * AdaptiveLimiter.DECREASE), limiter.getLimit());
+    }
+
+    public void testBackpressure() {
+        final long start = 1000000;
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 0.99, 1000);
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(start, false);
+        limiter.transactionResponseReceived(start, 1);
+        limiter.backpressure();
+        // cut at the end of the interval even without enough samples
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(start, false);
+        limiter.transactionResponseReceived(start + AdaptiveLimiter.INTERVAL, -1);
+        assertEquals((int)(AdaptiveLimiter.INITIAL_LIMIT * AdaptiveLimiter.DECREASE), limiter.getLimit());
+    }
+
+    public void testBlocksAtLimit() throws Exception {
+        final AdaptiveLimiter limiter = new AdaptiveLimiter(10, 0.99, 1);
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.currentTimeMillis(), false);
+        // ignoring backpressure goes over the limit
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.currentTimeMillis(), true);
+
+        Thread sender = new Thread() {
+            @Override
+            public void run() {
+                limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.currentTimeMillis(), false);
+            }
+        };
+        sender.start();
+        sender.join(200);
+        assertTrue(sender.isAlive());
+
+        limiter.transactionResponseReceived(System.currentTimeMillis(), 1);
+        sender.join(200);
+        assertTrue(sender.isAlive());
+        limiter.transactionResponseReceived(System.currentTimeMillis(), 1);
+        sender.join();
+    }
+}
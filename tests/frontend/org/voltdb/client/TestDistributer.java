@@ -28,6 +28,9 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -59,6 +62,23 @@ public class TestDistributer extends TestCase {
 
         @Override
         public void handleMessage(ByteBuffer message, Connection c) {
+            messages.incrementAndGet();
+            if (message.get(message.position()) == ProcedureInvocation.BATCH_VERSION) {
+                message.get();
+                final int count = message.getInt();
+                for (int ii = 0; ii < count; ii++) {
+                    final int length = message.getInt();
+                    ByteBuffer invocation = message.slice();
+                    invocation.limit(length);
+                    message.position(message.position() + length);
+                    handleInvocation(invocation, c);
+                }
+            } else {
+                handleInvocation(message, c);
+            }
+        }
+
+        private void handleInvocation(ByteBuffer message, Connection c) {
             try {
                 FastDeserializer fds = new FastDeserializer(message);
                 StoredProcedureInvocation spi = fds.readObject(StoredProcedureInvocation.class);
@@ -114,6 +134,7 @@ public class TestDistributer extends TestCase {
 
         }
         AtomicInteger roundTrips = new AtomicInteger();
+        AtomicInteger messages = new AtomicInteger();
 
         @Override
         public Runnable offBackPressure() {
@@ -371,6 +392,125 @@ public class TestDistributer extends TestCase {
     }
 
 
+    /**
+     * With callback threads, callbacks run off the network thread, in the order
+     * their responses arrived, and the time responses wait for a slow callback
+     * shows up in the stats.
+     */
+    @Test
+    public void testCallbackThreads() throws Exception {
+        MockVolt volt0 = new MockVolt(20000);
+        volt0.start();
+        Distributer dist = null;
+        try {
+            dist = new Distributer(false,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_MS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    false, false, 0, 2);
+            dist.createConnection("localhost", "", "", 20000);
+
+            final int count = 50;
+            final List<Long> handles = Collections.synchronizedList(new ArrayList<Long>());
+            final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+            final List<Long> threadIds = dist.getThreadIds();
+            class OrderCallback implements ProcedureCallback {
+                private final long m_handle;
+                OrderCallback(long handle) {
+                    m_handle = handle;
+                }
+
+                @Override
+                public void clientCallback(ClientResponse clientResponse) throws Exception {
+                    if (m_handle == 1) {
+                        // hold up the rest of the connection's responses
+                        Thread.sleep(200);
+                    }
+                    assertEquals(ClientResponse.SUCCESS, clientResponse.getStatus());
+                    handles.add(m_handle);
+                    threads.add(Thread.currentThread().getName());
+                    // the client refuses to block the callback threads
+                    assertTrue(threadIds.contains(Thread.currentThread().getId()));
+                }
+            }
+            for (int ii = 1; ii <= count; ii++) {
+                dist.queue(new ProcedureInvocation(ii, "i1", new Integer(1)), new OrderCallback(ii), true);
+            }
+            dist.drain();
+
+            assertEquals(count, handles.size());
+            for (int ii = 0; ii < count; ii++) {
+                assertEquals(ii + 1, handles.get(ii).longValue());
+                assertTrue(threads.get(ii).startsWith("VoltDB Client Callback Thread"));
+            }
+
+            ClientStats stats = ClientStats.merge(dist.getStatsSnapshot().values().iterator().next().values());
+            assertEquals(count, stats.getInvocationsCompleted());
+            assertTrue(stats.getAverageCallbackQueueTime() > 0);
+            assertTrue(stats.getAverageCallbackQueueTime() <= stats.getAverageLatency() + 1);
+        }
+        finally {
+            if (dist != null) {
+                dist.shutdown();
+            }
+            volt0.shutdown();
+            volt0.join();
+        }
+    }
+
+    @Test
+    public void testQueueBatch() throws Exception {
+        MockVolt volt0 = new MockVolt(20000);
+        volt0.start();
+        Distributer dist = null;
+        try {
+            dist = new Distributer();
+            dist.createConnection("localhost", "", "", 20000);
+            while (volt0.handler == null) {
+                Thread.sleep(10);
+            }
+
+            final int count = 10;
+            final List<Long> handles = Collections.synchronizedList(new ArrayList<Long>());
+            ProcedureInvocation invocations[] = new ProcedureInvocation[count];
+            ProcedureCallback callbacks[] = new ProcedureCallback[count];
+            for (int ii = 0; ii < count; ii++) {
+                final long handle = ii + 1;
+                invocations[ii] = new ProcedureInvocation(handle, "i1", new Integer(ii), "batch");
+                callbacks[ii] = new ProcedureCallback() {
+                    @Override
+                    public void clientCallback(ClientResponse clientResponse) throws Exception {
+                        assertEquals(ClientResponse.SUCCESS, clientResponse.getStatus());
+                        handles.add(handle);
+                    }
+                };
+            }
+            assertTrue(dist.queueBatch(invocations, callbacks, true));
+            dist.drain();
+
+            // one message carried every invocation, and each got its own response
+            assertEquals(1, volt0.handler.messages.get());
+            assertEquals(count, volt0.handler.roundTrips.get());
+            assertEquals(count, handles.size());
+            for (int ii = 0; ii < count; ii++) {
+                assertEquals(ii + 1, handles.get(ii).longValue());
+            }
+
+            // a batch of one is sent as a plain invocation
+            assertTrue(dist.queueBatch(new ProcedureInvocation[] { new ProcedureInvocation(count + 1, "i1") },
+                                       new ProcedureCallback[] { new ProcCallback() }, true));
+            dist.drain();
+            assertEquals(2, volt0.handler.messages.get());
+            assertEquals(count + 1, volt0.handler.roundTrips.get());
+        }
+        finally {
+            if (dist != null) {
+                dist.shutdown();
+            }
+            volt0.shutdown();
+            volt0.join();
+        }
+    }
+
     /**
      * Test connection timeouts.
      * Create a fake voltdb that runs all happy for a while, but
@@ -48,10 +48,12 @@ import org.voltdb.catalog.ConnectorTableInfo;
 import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Group;
 import org.voltdb.catalog.GroupRef;
+import org.voltdb.catalog.Index;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.SnapshotSchedule;
 import org.voltdb.catalog.Table;
 import org.voltdb.compiler.VoltCompiler.Feedback;
+import org.voltdb.types.ExpressionType;
 import org.voltdb.types.IndexType;
 import org.voltdb.utils.BuildDirectoryUtils;
 import org.voltdb.utils.CatalogUtil;
@@ -1607,6 +1609,56 @@ public class TestVoltCompiler extends TestCase {
         }
     }
 
+    public void testDDLCompilerBTreeIndexAllowed()
+    {
+        for (int i = 0; i < column_types.length; i++)
+        {
+            final String s =
+                "create table t(id " + column_types[i] + " not null, num integer not null,\n" +
+                "constraint pk_btree primary key (id, num));\n" +
+                "create index idx_t_id_btree on t(id);\n" +
+                "create index idx_t_id_tree on t(id);";
+            VoltCompiler c = compileForDDLTest(getPathForSchema(s), true);
+            assertFalse(c.hasErrors());
+            Table t = c.m_catalog.getClusters().get("cluster").getDatabases().get("database").
+                getTables().getIgnoreCase("t");
+            Index btree = t.getIndexes().getIgnoreCase("idx_t_id_btree");
+            assertEquals(IndexType.BTREE.getValue(), btree.getType());
+            assertFalse(btree.getCountable());
+            Index tree = t.getIndexes().getIgnoreCase("idx_t_id_tree");
+            assertEquals(IndexType.BALANCED_TREE.getValue(), tree.getType());
+            assertTrue(tree.getCountable());
+            Index pkey = t.getConstraints().getIgnoreCase("pk_btree").getIndex();
+            assertEquals(IndexType.BTREE.getValue(), pkey.getType());
+            assertFalse(pkey.getCountable());
+        }
+    }
+
+    public void testDDLCompilerMatViewMinMax()
+    {
+        final String s =
+            "create table t(id integer not null, num integer, wage float, name varchar(32));\n" +
+            "create view v (num, total, min_wage, max_wage, max_name) as\n" +
+            "select num, count(*), min(wage), max(wage), max(name) from t group by num;";
+        VoltCompiler c = compileForDDLTest(getPathForSchema(s), true);
+        assertFalse(c.hasErrors());
+        Table v = c.m_catalog.getClusters().get("cluster").getDatabases().get("database").
+            getTables().getIgnoreCase("v");
+        assertEquals(ExpressionType.AGGREGATE_MIN.getValue(),
+                     v.getColumns().getIgnoreCase("min_wage").getAggregatetype());
+        assertEquals(ExpressionType.AGGREGATE_MAX.getValue(),
+                     v.getColumns().getIgnoreCase("max_wage").getAggregatetype());
+        assertEquals("NAME", v.getColumns().getIgnoreCase("max_name").getMatviewsource().getTypeName());
+
+        final String avg =
+            "create table t(id integer not null, num integer, wage float);\n" +
+            "create view v (num, total, avg_wage) as\n" +
+            "select num, count(*), avg(wage) from t group by num;";
+        c = compileForDDLTest(getPathForSchema(avg), false);
+        assertTrue(isFeedbackPresent("must have non-group by columns aggregated by sum, count, min or max",
+                                     c.m_errors));
+    }
+
     public void testUniqueIndexAllowed()
     {
         final String s =
@@ -0,0 +1,120 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.voltdb.VoltTable;
+import org.voltdb.export.ExportProtoMessage.AdvertisedDataSource;
+import org.voltdb.exportclient.AsyncExportFileWriter.Compression;
+import org.voltdb.exportclient.AsyncExportFileWriter.SyncPolicy;
+import org.voltdb.exportclient.ExportToFileClient.ExportToFileDecoder;
+import org.voltdb.types.TimestampType;
+import org.voltdb.utils.VoltFile;
+
+/**
+ * Compares ExportToFileClient output formats by pushing pre-encoded export
+ * rows through a decoder and reporting rows/sec and resulting file size.
+ *
+ * usage: ExportToFileMicrobench [rows] [outdir]
+ */
+public class ExportToFileMicrobench {
+
+    static final int ROWS_PER_BLOCK = 1000;
+
+    static List<byte[]> makeRows(AdvertisedDataSource source, int rowCount) throws Exception {
+        VoltTable.ColumnInfo[] columns = new VoltTable.ColumnInfo[source.columnNames.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new VoltTable.ColumnInfo(source.columnNames.get(i), source.columnTypes.get(i));
+        }
+        VoltTable table = new VoltTable(columns);
+        for (int i = 0; i < rowCount; i++) {
+            table.addRow((byte) (i % 100), (short) (i % 30000), i, (long) i * 31, i / 7.0,
+                    new TimestampType(System.currentTimeMillis() * 1000),
+                    "some string value " + i,
+                    new BigDecimal(i).divide(new BigDecimal(3), 12, BigDecimal.ROUND_HALF_UP));
+        }
+        List<byte[]> rows = new ArrayList<byte[]>(rowCount);
+        table.resetRowPosition();
+        while (table.advanceRow()) {
+            rows.add(ExportEncoder.encodeRow(table));
+        }
+        return rows;
+    }
+
+    static void run(String name, File outdir, List<byte[]> rows, boolean binary, Compression compression)
+    throws Exception {
+        File dir = new VoltFile(outdir, name);
+        dir.mkdirs();
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+
+        ExportToFileClient client = new ExportToFileClient(',', "bench", dir, 60, "yyyyMMddHHmmss",
+                null, 0, false, false, false, 0, false, TimeZone.getDefault(),
+                ExportToFileClient.BinaryEncoding.HEX, binary, compression, SyncPolicy.NONE, 1);
+        AdvertisedDataSource source = TestExportDecoderBase.constructTestSource(0);
+        ExportToFileDecoder decoder = client.constructExportDecoder(source);
+
+        long start = System.nanoTime();
+        int i = 0;
+        while (i < rows.size()) {
+            decoder.onBlockStart();
+            for (int j = 0; j < ROWS_PER_BLOCK && i < rows.size(); j++, i++) {
+                byte[] row = rows.get(i);
+                decoder.processRow(row.length, row);
+            }
+            decoder.onBlockCompletion();
+        }
+        client.shutdown();
+        long elapsed = System.nanoTime() - start;
+
+        long bytes = 0;
+        for (File f : dir.listFiles()) {
+            bytes += f.length();
+        }
+        System.out.printf("%-14s %12.0f rows/sec %12.2f MB on disk%n",
+                name, rows.size() / (elapsed / 1000000000.0), bytes / (1024.0 * 1024.0));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        File outdir = new VoltFile(args.length > 1 ? args[1] : "/tmp/" + System.getProperty("user.name") + "-exportbench");
+
+        List<byte[]> rows = makeRows(TestExportDecoderBase.constructTestSource(0), rowCount);
+        for (int pass = 0; pass < 2; pass++) {
+            // first pass warms up the JIT
+            System.out.println(pass == 0 ? "Warmup:" : "Results:");
+            run("csv", outdir, rows, false, Compression.NONE);
+            run("csv-gzip", outdir, rows, false, Compression.GZIP);
+            run("binary", outdir, rows, true, Compression.NONE);
+            run("binary-gzip", outdir, rows, true, Compression.GZIP);
+            run("binary-snappy", outdir, rows, true, Compression.SNAPPY);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+
+import org.voltdb.exportclient.AsyncExportFileWriter.Compression;
+import org.voltdb.exportclient.AsyncExportFileWriter.SyncPolicy;
+import org.xerial.snappy.SnappyInputStream;
+
+public class TestAsyncExportFileWriter extends TestCase {
+
+    ExecutorService m_es;
+    File m_file;
+
+    @Override
+    public void setUp() throws Exception {
+        m_es = Executors.newFixedThreadPool(2);
+        m_file = File.createTempFile("asyncexportwriter", ".csv");
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        m_es.shutdown();
+        m_es.awaitTermination(10, TimeUnit.SECONDS);
+        m_file.delete();
+    }
+
+    private static String line(int i) {
+        // mix in a supplementary character so surrogate pairs straddle buffer boundaries
+        return i + ",row number " + i + ",\uD83D\uDE00";
+    }
+
+    private void writeAndVerify(Compression compression, SyncPolicy policy) throws Exception {
+        final int rows = 50000;
+        AtomicLong bytes = new AtomicLong();
+        AsyncExportFileWriter writer =
+                new AsyncExportFileWriter(m_file, compression, policy, m_es, bytes);
+        for (int i = 0; i < rows; i++) {
+            writer.write(line(i));
+            writer.write('\n');
+            if (i % 1000 == 0) {
+                writer.flush();
+            }
+        }
+        writer.close();
+        // close is idempotent
+        writer.close();
+
+        InputStream in = new FileInputStream(m_file);
+        if (compression == Compression.GZIP) {
+            in = new GZIPInputStream(in);
+        } else if (compression == Compression.SNAPPY) {
+            in = new SnappyInputStream(in);
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        long uncompressedBytes = 0;
+        for (int i = 0; i < rows; i++) {
+            String l = reader.readLine();
+            assertEquals(line(i), l);
+            uncompressedBytes += l.getBytes("UTF-8").length + 1;
+        }
+        assertNull(reader.readLine());
+        reader.close();
+        assertEquals(uncompressedBytes, bytes.get());
+    }
+
+    public void testUncompressed() throws Exception {
+        writeAndVerify(Compression.NONE, SyncPolicy.NONE);
+    }
+
+    public void testGzip() throws Exception {
+        writeAndVerify(Compression.GZIP, SyncPolicy.ROLL);
+    }
+
+    public void testSnappy() throws Exception {
+        writeAndVerify(Compression.SNAPPY, SyncPolicy.BLOCK);
+    }
+
+    public void testWriteAfterClose() throws Exception {
+        AsyncExportFileWriter writer =
+                new AsyncExportFileWriter(m_file, Compression.NONE, SyncPolicy.NONE, m_es, null);
+        writer.write("foo");
+        writer.close();
+        assertEquals(3, m_file.length());
+        try {
+            writer.write("bar");
+            fail();
+        } catch (IOException expected) {}
+    }
+}
@@ -27,18 +27,27 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.math.BigDecimal;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
 
 import junit.framework.TestCase;
 
 import org.voltdb.BackendTarget;
+import org.voltdb.VoltTable;
 import org.voltdb.client.Client;
 import org.voltdb.client.ClientFactory;
 import org.voltdb.compiler.VoltProjectBuilder;
 import org.voltdb.export.ExportProtoMessage.AdvertisedDataSource;
+import org.voltdb.exportclient.AsyncExportFileWriter.Compression;
+import org.voltdb.exportclient.AsyncExportFileWriter.SyncPolicy;
 import org.voltdb.exportclient.ExportToFileClient.ExportToFileDecoder;
 import org.voltdb.regressionsuites.LocalCluster;
+import org.voltdb.types.TimestampType;
 import org.voltdb.utils.VoltFile;
 
 public class TestExportToFileClient extends TestCase {
@@ -67,6 +76,199 @@ public class TestExportToFileClient extends TestCase {
         decoder0.sourceNoLongerAdvertised(source0);
     }
 
+    public void testBinaryFormat() throws Exception {
+        File outdir = new VoltFile("/tmp/" + System.getProperty("user.name") + "-binaryexport");
+        outdir.mkdirs();
+        for (File f : outdir.listFiles()) {
+            f.delete();
+        }
+
+        ExportToFileClient exportClient =
+            new ExportToFileClient(
+                ',',
+                "binnonce",
+                outdir,
+                60,
+                "yyyyMMddHHmmss",
+                null,
+                0,
+                false,
+                false,
+                false,
+                0,
+                false,
+                TimeZone.getDefault(),
+                ExportToFileClient.BinaryEncoding.HEX,
+                true,
+                Compression.GZIP,
+                SyncPolicy.ROLL,
+                2);
+        AdvertisedDataSource source = TestExportDecoderBase.constructTestSource(0);
+        ExportToFileDecoder decoder = exportClient.constructExportDecoder(source);
+
+        VoltTable.ColumnInfo[] columns = new VoltTable.ColumnInfo[source.columnNames.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new VoltTable.ColumnInfo(source.columnNames.get(i), source.columnTypes.get(i));
+        }
+        VoltTable table = new VoltTable(columns);
+        final int rowCount = 1000;
+        for (int i = 0; i < rowCount; i++) {
+            table.addRow((byte) (i % 100), (short) i, i, (long) i, i / 2.0,
+                    new TimestampType(i * 1000L), "row" + i,
+                    new BigDecimal(i).setScale(12));
+        }
+
+        decoder.onBlockStart();
+        table.resetRowPosition();
+        while (table.advanceRow()) {
+            byte[] rowData = ExportEncoder.encodeRow(table);
+            assertTrue(decoder.processRow(rowData.length, rowData));
+        }
+        decoder.onBlockCompletion();
+        exportClient.shutdown();
+
+        File[] files = outdir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.getName().startsWith("binnonce") &&
+                       pathname.getName().endsWith(ExportBinaryFormat.EXTENSION + ".gz");
+            }
+        });
+        assertEquals(1, files.length);
+
+        ExportBinaryFileReader reader = new ExportBinaryFileReader(files[0]);
+        assertEquals(source.tableName, reader.getTableName());
+        assertEquals(source.columnTypes, reader.getColumnTypes());
+        assertEquals(source.columnNames, reader.getColumnNames());
+        Object[] row;
+        int i = 0;
+        while ((row = reader.nextRow()) != null) {
+            assertEquals((byte) (i % 100), row[0]);
+            assertEquals((short) i, row[1]);
+            assertEquals(i, row[2]);
+            assertEquals((long) i, row[3]);
+            assertEquals(i / 2.0, row[4]);
+            assertEquals(new TimestampType(i * 1000L), row[5]);
+            assertEquals("row" + i, row[6]);
+            assertEquals(0, new BigDecimal(i).compareTo((BigDecimal) row[7]));
+            i++;
+        }
+        assertEquals(rowCount, i);
+        reader.close();
+    }
+
+    public void testBinaryFormatConcurrentPartitions() throws Exception {
+        File outdir = new VoltFile("/tmp/" + System.getProperty("user.name") + "-binaryexport2");
+        outdir.mkdirs();
+        for (File f : outdir.listFiles()) {
+            f.delete();
+        }
+
+        final ExportToFileClient exportClient =
+            new ExportToFileClient(
+                ',',
+                "binnonce2",
+                outdir,
+                60,
+                "yyyyMMddHHmmss",
+                null,
+                0,
+                false,
+                false,
+                false,
+                0,
+                false,
+                TimeZone.getDefault(),
+                ExportToFileClient.BinaryEncoding.HEX,
+                true,
+                Compression.NONE,
+                SyncPolicy.NONE,
+                2);
+
+        // partitions of the same table share one decoder and one file,
+        // but deliver their blocks on different threads
+        final int partitions = 4;
+        final int rowCount = 20000;
+        final int rowsPerBlock = 500;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CyclicBarrier start = new CyclicBarrier(partitions);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < partitions; p++) {
+            AdvertisedDataSource source = TestExportDecoderBase.constructTestSource(p);
+            final ExportToFileDecoder decoder = exportClient.constructExportDecoder(source);
+
+            VoltTable.ColumnInfo[] columns = new VoltTable.ColumnInfo[source.columnNames.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new VoltTable.ColumnInfo(source.columnNames.get(i), source.columnTypes.get(i));
+            }
+            VoltTable table = new VoltTable(columns);
+            for (int i = 0; i < rowCount; i++) {
+                table.addRow((byte) p, (short) i, i, (long) p, i / 2.0,
+                        new TimestampType(i * 1000L), "partition" + p + "row" + i,
+                        new BigDecimal(i).setScale(12));
+            }
+            final List<byte[]> rows = new ArrayList<byte[]>();
+            table.resetRowPosition();
+            while (table.advanceRow()) {
+                rows.add(ExportEncoder.encodeRow(table));
+            }
+
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < rows.size(); i += rowsPerBlock) {
+                            decoder.onBlockStart();
+                            for (byte[] rowData : rows.subList(i, Math.min(rows.size(), i + rowsPerBlock))) {
+                                assertTrue(decoder.processRow(rowData.length, rowData));
+                            }
+                            decoder.onBlockCompletion();
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (failure.get() != null) {
+            throw new RuntimeException(failure.get());
+        }
+        exportClient.shutdown();
+
+        File[] files = outdir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.getName().startsWith("binnonce2") &&
+                       pathname.getName().endsWith(ExportBinaryFormat.EXTENSION);
+            }
+        });
+        assertEquals(1, files.length);
+
+        // every row must come back whole, and each partition's rows in order
+        ExportBinaryFileReader reader = new ExportBinaryFileReader(files[0]);
+        int[] nextRow = new int[partitions];
+        Object[] row;
+        while ((row = reader.nextRow()) != null) {
+            int p = (int) ((Long) row[3]).longValue();
+            int i = nextRow[p]++;
+            assertEquals((byte) p, row[0]);
+            assertEquals(i, row[2]);
+            assertEquals("partition" + p + "row" + i, row[6]);
+            assertEquals(0, new BigDecimal(i).compareTo((BigDecimal) row[7]));
+        }
+        reader.close();
+        for (int p = 0; p < partitions; p++) {
+            assertEquals(rowCount, nextRow[p]);
+        }
+    }
+
     public void testNoAutoDiscovery() throws Exception {
         final FileFilter filter = new FileFilter() {
             @Override
@@ -0,0 +1,157 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.voltcore.utils.CoreUtils;
+
+public class TestIv2TraceRing extends TestCase
+{
+    private File m_file;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        m_file = File.createTempFile("iv2trace", ".bin");
+    }
+
+    @Override
+    public void tearDown()
+    {
+        m_file.delete();
+    }
+
+    public void testCapacityRoundsUp()
+    {
+        assertEquals(8, new Iv2TraceRing(0, 5).getCapacity());
+        assertEquals(8, new Iv2TraceRing(0, 8).getCapacity());
+        assertEquals(2, new Iv2TraceRing(0, 0).getCapacity());
+    }
+
+    public void testRoundTrip() throws Exception
+    {
+        long hsId = CoreUtils.getHSIdFromHostAndSite(3, 7);
+        Iv2TraceRing ring = new Iv2TraceRing(hsId, 16);
+        ring.record(Iv2TraceRing.RX_INIT_MSG | Iv2TraceRing.FLAG_SINGLE_PARTITION, 100, 101, 102, 103, 104);
+        ring.record(Iv2TraceRing.FINISH_TXN | (4 << Iv2TraceRing.STATUS_SHIFT), 100, 101, 102, 103, 0);
+
+        assertEquals(2, Iv2TraceRing.dump(m_file, Arrays.asList(ring)));
+        List<Iv2TraceDecoder.Event> events = Iv2TraceDecoder.read(m_file);
+        assertEquals(2, events.size());
+
+        Iv2TraceDecoder.Event first = events.get(0);
+        assertEquals(hsId, first.hsId);
+        assertEquals(0, first.sequence);
+        assertEquals(Iv2TraceRing.RX_INIT_MSG, first.getType());
+        assertTrue(first.hasFlag(Iv2TraceRing.FLAG_SINGLE_PARTITION));
+        assertFalse(first.hasFlag(Iv2TraceRing.FLAG_READ_ONLY));
+        assertEquals(100, first.txnId);
+        assertEquals(101, first.spHandle);
+        assertEquals(102, first.ciHandle);
+        assertEquals(103, first.peerHSId);
+        assertEquals(104, first.extra);
+
+        Iv2TraceDecoder.Event second = events.get(1);
+        assertEquals(Iv2TraceRing.FINISH_TXN, second.getType());
+        assertEquals(4, second.getStatus());
+        assertTrue(second.wallNanos >= first.wallNanos);
+        // Wall clock reconstruction should land near now
+        assertTrue(Math.abs(second.wallNanos / 1000000L - System.currentTimeMillis()) < 60 * 1000);
+        assertTrue(Iv2TraceDecoder.format(first, -1).contains("rxInitMsg"));
+        assertTrue(Iv2TraceDecoder.format(second, 0).contains("status 4"));
+    }
+
+    public void testWrapAroundKeepsNewest() throws Exception
+    {
+        Iv2TraceRing ring = new Iv2TraceRing(0, 8);
+        for (int i = 0; i < 20; i++) {
+            ring.record(Iv2TraceRing.EXECUTE_START, i, i, 0, 0, 0);
+        }
+        assertEquals(8, Iv2TraceRing.dump(m_file, Arrays.asList(ring)));
+        List<Iv2TraceDecoder.Event> events = Iv2TraceDecoder.read(m_file);
+        assertEquals(8, events.size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(12 + i, events.get(i).sequence);
+            assertEquals(12 + i, events.get(i).txnId);
+        }
+    }
+
+    public void testMergeRingsByTime() throws Exception
+    {
+        Iv2TraceRing ring1 = new Iv2TraceRing(1, 8);
+        Iv2TraceRing ring2 = new Iv2TraceRing(2, 8);
+        ring1.record(Iv2TraceRing.CREATE_TXN, 1, 0, 0, 0, 0);
+        Thread.sleep(1);
+        ring2.record(Iv2TraceRing.RX_INIT_MSG, 1, 0, 0, 0, 0);
+        Thread.sleep(1);
+        ring1.record(Iv2TraceRing.FINISH_TXN, 1, 0, 0, 0, 0);
+        Iv2TraceRing.dump(m_file, Arrays.asList(ring2, ring1));
+
+        List<Iv2TraceDecoder.Event> events = Iv2TraceDecoder.read(m_file);
+        Iv2TraceDecoder.sortByTime(events);
+        assertEquals(Iv2TraceRing.CREATE_TXN, events.get(0).getType());
+        assertEquals(Iv2TraceRing.RX_INIT_MSG, events.get(1).getType());
+        assertEquals(Iv2TraceRing.FINISH_TXN, events.get(2).getType());
+    }
+
+    public void testConcurrentWriters() throws Exception
+    {
+        final Iv2TraceRing ring = new Iv2TraceRing(0, 1024);
+        final int perThread = 10000;
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long id = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        // Every field of an event carries the same value so a torn copy shows
+                        long v = (id << 32) | i;
+                        ring.record(Iv2TraceRing.EXECUTE_END, v, v, v, v, v);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        // Dump while the writers run; every event read must be whole
+        for (int d = 0; d < 20; d++) {
+            Iv2TraceRing.dump(m_file, Arrays.asList(ring));
+            for (Iv2TraceDecoder.Event event : Iv2TraceDecoder.read(m_file)) {
+                assertEquals(event.txnId, event.spHandle);
+                assertEquals(event.txnId, event.ciHandle);
+                assertEquals(event.txnId, event.peerHSId);
+                assertEquals(event.txnId, event.extra);
+            }
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(1024, Iv2TraceRing.dump(m_file, Arrays.asList(ring)));
+    }
+}
@@ -0,0 +1,122 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jdbc;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.voltdb.BackendTarget;
+import org.voltdb.ServerThread;
+import org.voltdb.compiler.VoltProjectBuilder;
+import org.voltdb.utils.BuildDirectoryUtils;
+
+/**
+ * Prepared statement throughput through the JDBC driver against an in-process
+ * server. Every execution binds new values, so a driver that inlines the values
+ * into the SQL text presents the planner with a new statement each time.
+ * The last phase sends the inserts through executeBatch().
+ *
+ * args: [statements per phase]
+ */
+public class JDBCPreparedStatementBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+        String jar = BuildDirectoryUtils.getBuildDirectoryPath() + File.separator + "jdbcbenchmark.jar";
+        VoltProjectBuilder pb = new VoltProjectBuilder();
+        pb.addLiteralSchema("CREATE TABLE KV (ID BIGINT NOT NULL, NAME VARCHAR(32) NOT NULL, " +
+                            "VAL FLOAT NOT NULL, PRIMARY KEY (ID));");
+        pb.addPartitionInfo("KV", "ID");
+        pb.compile(jar, 2, 0);
+
+        ServerThread server = new ServerThread(jar, pb.getPathToDeployment(), BackendTarget.NATIVE_EE_JNI);
+        server.start();
+        server.waitForInitialization();
+
+        Class.forName("org.voltdb.jdbc.Driver");
+        Connection conn = DriverManager.getConnection("jdbc:voltdb://localhost:21212");
+        try {
+            PreparedStatement ins = conn.prepareStatement("insert into KV values (?, ?, ?)");
+            PreparedStatement sel = conn.prepareStatement("select NAME, VAL from KV where ID = ?");
+
+            // warm up the JIT and the plan caches
+            run(ins, sel, 0, count / 4);
+
+            long start = System.nanoTime();
+            run(ins, sel, count, count);
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%d inserts + %d selects in %.2f s, %.0f statements/s%n",
+                    count, count, nanos / 1000000000.0, (2.0 * count) / (nanos / 1000000000.0));
+
+            start = System.nanoTime();
+            runBatches(ins, 2 * count, count, 1000);
+            nanos = System.nanoTime() - start;
+            System.out.printf("%d batched inserts in %.2f s, %.0f statements/s%n",
+                    count, nanos / 1000000000.0, count / (nanos / 1000000000.0));
+        } finally {
+            conn.close();
+            server.shutdown();
+            new File(jar).delete();
+        }
+    }
+
+    private static void run(PreparedStatement ins, PreparedStatement sel, int first, int count) throws Exception {
+        long checksum = 0;
+        for (int i = first; i < first + count; i++) {
+            ins.setLong(1, i);
+            ins.setString(2, "name " + i);
+            ins.setDouble(3, i / 2.0);
+            ins.executeUpdate();
+        }
+        for (int i = first; i < first + count; i++) {
+            sel.setLong(1, i);
+            ResultSet rs = sel.executeQuery();
+            while (rs.next()) {
+                checksum += rs.getString(1).length();
+            }
+        }
+        if (checksum == 0) {
+            throw new RuntimeException("Read back no rows");
+        }
+    }
+
+    private static void runBatches(PreparedStatement ins, int first, int count, int batchSize) throws Exception {
+        for (int i = first; i < first + count; i++) {
+            ins.setLong(1, i);
+            ins.setString(2, "name " + i);
+            ins.setDouble(3, i / 2.0);
+            ins.addBatch();
+            if ((i - first + 1) % batchSize == 0) {
+                ins.executeBatch();
+                ins.clearBatch();
+            }
+        }
+        ins.executeBatch();
+        ins.clearBatch();
+    }
+}
@@ -29,12 +29,15 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.sql.BatchUpdateException;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Types;
 import java.util.Arrays;
 import java.util.List;
@@ -377,6 +380,121 @@ public class TestJDBCDriver {
         }
     }
 
+    @Test
+    public void testPreparedStatementParameters() throws SQLException {
+        PreparedStatement ins = conn.prepareStatement(
+                "insert into WAREHOUSE values (?, ?, 'street', 'street', 'city', 'ST', 'zip', ?, 0)");
+        ins.setShort(1, (short) 31);
+        ins.setString(2, "O'Brien?");
+        ins.setDouble(3, 0.5);
+        assertEquals(1, ins.executeUpdate());
+        ins.setInt(1, 32);
+        ins.setNull(2, Types.VARCHAR);
+        ins.setDouble(3, 0.25);
+        assertEquals(1, ins.executeUpdate());
+
+        PreparedStatement sel = conn.prepareStatement(
+                "select W_NAME, W_TAX from WAREHOUSE where W_ID = ? and W_NAME <> '?'");
+        sel.setInt(1, 31);
+        ResultSet rs = sel.executeQuery();
+        assertTrue(rs.next());
+        assertEquals("O'Brien?", rs.getString(1));
+        assertEquals(0.5, rs.getDouble(2), 0.0);
+        assertFalse(rs.next());
+
+        sel = conn.prepareStatement("select W_NAME from WAREHOUSE where W_ID = ?");
+        sel.setLong(1, 32);
+        rs = sel.executeQuery();
+        assertTrue(rs.next());
+        rs.getString(1);
+        assertTrue(rs.wasNull());
+        assertFalse(rs.next());
+    }
+
+    @Test
+    public void testExecuteBatch() throws SQLException {
+        final int rows = 600;
+        PreparedStatement ins = conn.prepareStatement("insert into NEW_ORDER values (?, ?, ?)");
+        for (int i = 0; i < rows; i++) {
+            ins.setInt(1, 1000 + i);
+            ins.setByte(2, (byte) 5);
+            ins.setShort(3, (short) 7);
+            ins.addBatch();
+        }
+        int[] counts = ins.executeBatch();
+        assertEquals(rows, counts.length);
+        for (int count : counts) {
+            assertEquals(1, count);
+        }
+
+        Statement st = conn.createStatement();
+        st.addBatch("update NEW_ORDER set NO_O_ID = NO_O_ID + 10000 where NO_O_ID = 1000 and NO_D_ID = 5 and NO_W_ID = 7");
+        st.addBatch("delete from NEW_ORDER where NO_O_ID = 1001 and NO_D_ID = 5 and NO_W_ID = 7");
+        st.addBatch("delete from NEW_ORDER where NO_O_ID = 1001 and NO_D_ID = 5 and NO_W_ID = 7");
+        counts = st.executeBatch();
+        assertTrue(Arrays.equals(new int[] { 1, 1, 0 }, counts));
+
+        // a failure is reported with the count of every statement that was sent
+        ins.setInt(1, 5000);
+        ins.setByte(2, (byte) 5);
+        ins.setShort(3, (short) 7);
+        ins.addBatch();
+        ins.setInt(1, 1002);
+        ins.setByte(2, (byte) 5);
+        ins.setShort(3, (short) 7);
+        ins.addBatch();
+        try {
+            ins.executeBatch();
+            fail();
+        }
+        catch (BatchUpdateException e) {
+            counts = e.getUpdateCounts();
+            assertEquals(2, counts.length);
+            assertEquals(1, counts[0]);
+            assertEquals(Statement.EXECUTE_FAILED, counts[1]);
+        }
+    }
+
+    @Test
+    public void testExecuteBatchKeepsOrder() throws SQLException {
+        // Every insert after the first two only succeeds if the statement before it
+        // ran first; the multi-partition delete has no partitioning column.
+        Statement st = conn.createStatement();
+        st.addBatch("insert into NEW_ORDER values (2000, 5, 7)");
+        st.addBatch("insert into NEW_ORDER values (2001, 5, 7)");
+        st.addBatch("update NEW_ORDER set NO_O_ID = 3000 where NO_O_ID = 2000 and NO_D_ID = 5 and NO_W_ID = 7");
+        st.addBatch("insert into NEW_ORDER values (2000, 5, 7)");
+        st.addBatch("delete from NEW_ORDER where NO_O_ID = 2001");
+        st.addBatch("insert into NEW_ORDER values (2001, 5, 7)");
+        st.addBatch("insert into NEW_ORDER values (2002, 5, 7)");
+        st.addBatch("insert into NEW_ORDER values (2001, 5, 7)");
+        st.addBatch("insert into NEW_ORDER values (2003, 5, 7)");
+        try {
+            st.executeBatch();
+            fail();
+        }
+        catch (BatchUpdateException e) {
+            // the duplicate is the one that fails, after the statements sent before it
+            int[] counts = e.getUpdateCounts();
+            assertTrue(counts.length >= 8);
+            for (int i = 0; i < 7; i++) {
+                assertEquals(1, counts[i]);
+            }
+            assertEquals(Statement.EXECUTE_FAILED, counts[7]);
+            // a statement of the same run already in flight is reported as it ran
+            ResultSet rs = st.executeQuery("select count(*) from NEW_ORDER where NO_O_ID = 2003");
+            assertTrue(rs.next());
+            assertEquals(counts.length == 9 ? 1 : 0, rs.getLong(1));
+        }
+
+        ResultSet rs = st.executeQuery("select NO_O_ID from NEW_ORDER where NO_O_ID >= 2000 and NO_O_ID <= 3000 and NO_O_ID <> 2003 order by NO_O_ID");
+        for (int id : new int[] { 2000, 2001, 2002, 3000 }) {
+            assertTrue(rs.next());
+            assertEquals(id, rs.getInt(1));
+        }
+        assertFalse(rs.next());
+    }
+
     public void testVersionMetadata() throws SQLException {
         int major = conn.getMetaData().getDatabaseMajorVersion();
         int minor = conn.getMetaData().getDatabaseMinorVersion();
@@ -154,6 +154,44 @@ public class TestExecutionEngine extends TestCase {
         assertEquals(1000, sourceEngine.serializeTable(STOCK_TABLEID).getRowCount());
     }
 
+    public void testTableModificationCount() throws Exception {
+        sourceEngine.loadCatalog( 0, m_catalog.serialize());
+
+        int WAREHOUSE_TABLEID = warehouseTableId(m_catalog);
+        int STOCK_TABLEID = stockTableId(m_catalog);
+
+        assertEquals(0, sourceEngine.tableModificationCount(WAREHOUSE_TABLEID));
+        assertEquals(0, sourceEngine.tableModificationCount(STOCK_TABLEID));
+
+        loadTestTables( sourceEngine, m_catalog);
+
+        long warehouseCount = sourceEngine.tableModificationCount(WAREHOUSE_TABLEID);
+        long stockCount = sourceEngine.tableModificationCount(STOCK_TABLEID);
+        assertTrue(warehouseCount >= 200);
+        assertTrue(stockCount >= 1000);
+
+        // Reading doesn't count as a modification
+        sourceEngine.serializeTable(STOCK_TABLEID);
+        assertEquals(stockCount, sourceEngine.tableModificationCount(STOCK_TABLEID));
+
+        // and a change to one table leaves the other's count alone
+        VoltTable warehousedata = new VoltTable(
+                new VoltTable.ColumnInfo("W_ID", VoltType.SMALLINT),
+                new VoltTable.ColumnInfo("W_NAME", VoltType.STRING),
+                new VoltTable.ColumnInfo("W_STREET_1", VoltType.STRING),
+                new VoltTable.ColumnInfo("W_STREET_2", VoltType.STRING),
+                new VoltTable.ColumnInfo("W_CITY", VoltType.STRING),
+                new VoltTable.ColumnInfo("W_STATE", VoltType.STRING),
+                new VoltTable.ColumnInfo("W_ZIP", VoltType.STRING),
+                new VoltTable.ColumnInfo("W_TAX", VoltType.FLOAT),
+                new VoltTable.ColumnInfo("W_YTD", VoltType.FLOAT)
+        );
+        warehousedata.addRow(200, "name200", "st1", "st2", "city", "ST", "zip", 0, 0);
+        sourceEngine.loadTable(WAREHOUSE_TABLEID, warehousedata, 0, 0, false, Long.MAX_VALUE);
+        assertEquals(warehouseCount + 1, sourceEngine.tableModificationCount(WAREHOUSE_TABLEID));
+        assertEquals(stockCount, sourceEngine.tableModificationCount(STOCK_TABLEID));
+    }
+
     public void testStreamTables() throws Exception {
         sourceEngine.loadCatalog( 0, m_catalog.serialize());
 
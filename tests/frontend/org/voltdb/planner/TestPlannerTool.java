@@ -29,6 +29,7 @@ import java.io.IOException;
 import junit.framework.TestCase;
 
 import org.voltdb.CatalogContext;
+import org.voltdb.VoltType;
 import org.voltdb.benchmark.tpcc.TPCCProjectBuilder;
 import org.voltdb.catalog.Catalog;
 import org.voltdb.compiler.AdHocPlannedStatement;
@@ -160,4 +161,81 @@ public class TestPlannerTool extends TestCase {
         // would return a Stream Closed error
         m_pt.planSql("select * from A;", false, true, false);
     }
+
+    public void testUserParams() throws IOException
+    {
+        VoltProjectBuilder builder = new VoltProjectBuilder();
+        builder.addLiteralSchema("CREATE TABLE A (C1 BIGINT NOT NULL, C2 VARCHAR(10), PRIMARY KEY(C1));");
+        builder.addPartitionInfo("A", "C1");
+        builder.addStmtProcedure("MakeCompileHappy",
+                                 "SELECT * FROM A WHERE C1 = ?;",
+                                 "A.C1: 0");
+
+        final File jar = new File("testuserparams-oop.jar");
+        jar.deleteOnExit();
+        builder.compile("testuserparams-oop.jar");
+        byte[] bytes = CatalogUtil.toBytes(new File("testuserparams-oop.jar"));
+        String serializedCatalog = CatalogUtil.loadCatalogFromJar(bytes, null);
+        Catalog c = new Catalog();
+        c.execute(serializedCatalog);
+        CatalogContext context = new CatalogContext(0, 0, c, bytes, 0, 0, 0);
+
+        m_pt = new PlannerTool(context.cluster, context.database, 0);
+
+        String sql = "select * from A where C1 = ? and C2 = ?;";
+        AdHocPlannedStatement first = m_pt.planSql(sql, null, true, false, new Object[] { 5L, "five" });
+        assertEquals(2, first.extractedParamValues.size());
+        assertEquals(5L, first.extractedParamValues.toArray()[0]);
+        assertEquals("five", first.extractedParamValues.toArray()[1]);
+        assertEquals(5L, first.partitionParam);
+
+        // the second execution binds new values to the cached plan, converting them
+        AdHocPlannedStatement second = m_pt.planSql(sql, null, true, false, new Object[] { 7, "seven" });
+        assertSame(first.core, second.core);
+        assertEquals(7L, second.extractedParamValues.toArray()[0]);
+        assertEquals(7L, second.partitionParam);
+
+        // nulls become the null value of the parameter type
+        AdHocPlannedStatement third = m_pt.planSql(sql, null, true, false, new Object[] { 9L, null });
+        assertSame(VoltType.NULL_STRING_OR_VARBINARY, third.extractedParamValues.toArray()[1]);
+
+        try {
+            m_pt.planSql(sql, null, true, false, new Object[] { 5L });
+            fail();
+        }
+        catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("expected 2, passed 1"));
+        }
+
+        // without values the statement is still rejected, even once planned with them
+        try {
+            m_pt.planSql(sql, null, true, false);
+            fail();
+        }
+        catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("PARAMETERIZATION"));
+        }
+        try {
+            m_pt.planSql("select * from A where C1 = ?;", null, true, false);
+            fail();
+        }
+        catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("PARAMETERIZATION"));
+        }
+
+        // nor does a plan for literals complete the statement without values
+        m_pt.planSql("select * from A where C1 = 5 and C2 = 'five';", null, true, false);
+        try {
+            m_pt.planSql("select * from A where C1 = ? and C2 = ?;", null, true, false);
+            fail();
+        }
+        catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("PARAMETERIZATION"));
+        }
+
+        // and the plan for values is still there
+        AdHocPlannedStatement fourth = m_pt.planSql(sql, null, true, false, new Object[] { 11L, "eleven" });
+        assertSame(first.core, fourth.core);
+        assertEquals(11L, fourth.partitionParam);
+    }
 }
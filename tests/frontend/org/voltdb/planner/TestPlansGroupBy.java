@@ -33,6 +33,7 @@ import org.voltdb.plannodes.LimitPlanNode;
 import org.voltdb.plannodes.OrderByPlanNode;
 import org.voltdb.plannodes.ProjectionPlanNode;
 import org.voltdb.plannodes.ReceivePlanNode;
+import org.voltdb.types.PlanNodeType;
 
 public class TestPlansGroupBy extends PlannerTestCase {
     @Override
@@ -125,10 +126,11 @@ public class TestPlansGroupBy extends PlannerTestCase {
         assertTrue(p.getChild(0).getChild(0) instanceof OrderByPlanNode);
         assertTrue(p.getChild(0).getChild(0).getChild(0) instanceof AggregatePlanNode);
 
+        // The partition sort keeps only the top rows itself
         p = pns.get(1).getChild(0);
-        assertTrue(p instanceof LimitPlanNode);
-        assertTrue(p.getChild(0) instanceof OrderByPlanNode);
-        assertTrue(p.getChild(0).getChild(0) instanceof AggregatePlanNode);
+        assertTrue(p instanceof OrderByPlanNode);
+        assertNotNull(p.getInlinePlanNode(PlanNodeType.LIMIT));
+        assertTrue(p.getChild(0) instanceof AggregatePlanNode);
     }
 
     public void testComplexAggwithDistinct() {
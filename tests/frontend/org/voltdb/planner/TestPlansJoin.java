@@ -26,9 +26,11 @@ package org.voltdb.planner;
 import java.util.List;
 
 import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.TupleValueExpression;
 import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AbstractScanPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
@@ -45,7 +47,7 @@ public class TestPlansJoin extends PlannerTestCase {
         // select * with ON clause should return all columns from all tables
         AbstractPlanNode pn = compile("select * FROM R1 JOIN R2 ON R1.C = R2.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         //assertEquals(JoinType.INNER, nlj.getJoinType());
         for (int ii = 0; ii < 2; ii++) {
             assertTrue(n.getChild(ii) instanceof SeqScanPlanNode);
@@ -54,22 +56,22 @@ public class TestPlansJoin extends PlannerTestCase {
 
         // select * with USING clause should contain only one column for each column from the USING expression
         pn = compile("select * FROM R1 JOIN R2 USING(C)");
-        assertTrue(pn.getChild(0).getChild(0) instanceof NestLoopPlanNode);
+        assertTrue(pn.getChild(0).getChild(0) instanceof HashJoinPlanNode);
         assertEquals(4, pn.getOutputSchema().getColumns().size());
 
         pn = compile("select A,C,D FROM R1 JOIN R2 ON R1.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertEquals(3, pn.getOutputSchema().getColumns().size());
 
         pn = compile("select A,C,D FROM R1 JOIN R2 USING(C)");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertEquals(3, pn.getOutputSchema().getColumns().size());
 
         pn = compile("select R1.A, R2.C, R1.D FROM R1 JOIN R2 ON R1.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertEquals(3, pn.getOutputSchema().getColumns().size());
         assertTrue("R1".equalsIgnoreCase(pn.getOutputSchema().getColumns().get(0).getTableName()));
         assertTrue("R2".equalsIgnoreCase(pn.getOutputSchema().getColumns().get(1).getTableName()));
@@ -78,7 +80,7 @@ public class TestPlansJoin extends PlannerTestCase {
         pn = compile("select R1.A, C, R1.D FROM R1 JOIN R2 USING(C)");
         n = pn.getChild(0).getChild(0);
         String table = pn.getOutputSchema().getColumns().get(1).getTableName();
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertEquals(3, pn.getOutputSchema().getColumns().size());
         assertTrue(pn.getOutputSchema().getColumns().get(0).getTableName().equalsIgnoreCase("R1"));
         assertTrue("R2".equalsIgnoreCase(table) || "R1".equalsIgnoreCase(table));
@@ -97,27 +99,27 @@ public class TestPlansJoin extends PlannerTestCase {
     public void testBasicThreeTableInnerJoin() {
         AbstractPlanNode pn = compile("select * FROM R1 JOIN R2 ON R1.C = R2.C JOIN R3 ON R3.C = R2.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        assertTrue(n.getChild(0) instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
+        assertTrue(n.getChild(0) instanceof HashJoinPlanNode);
         assertTrue(n.getChild(1) instanceof SeqScanPlanNode);
         assertEquals(7, pn.getOutputSchema().getColumns().size());
 
         pn = compile("select R1.C, R2.C R3.C FROM R1 INNER JOIN R2 ON R1.C = R2.C INNER JOIN R3 ON R3.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        assertTrue(n.getChild(0) instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
+        assertTrue(n.getChild(0) instanceof HashJoinPlanNode);
         assertTrue(n.getChild(1) instanceof SeqScanPlanNode);
 
         pn = compile("select C FROM R1 INNER JOIN R2 USING (C) INNER JOIN R3 USING(C)");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        assertTrue(n.getChild(0) instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
+        assertTrue(n.getChild(0) instanceof HashJoinPlanNode);
         assertTrue(n.getChild(1) instanceof SeqScanPlanNode);
         assertEquals(1, pn.getOutputSchema().getColumns().size());
 
         pn = compile("select C FROM R1 INNER JOIN R2 USING (C), R3 WHERE R1.A = R3.A");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertTrue(n.getChild(0) instanceof NestLoopIndexPlanNode);
         assertTrue(n.getChild(1) instanceof SeqScanPlanNode);
         assertEquals(1, pn.getOutputSchema().getColumns().size());
@@ -403,8 +405,8 @@ public class TestPlansJoin extends PlannerTestCase {
 
         pn = compile("select * FROM R3 JOIN R2 ON R3.A = R2.A JOIN R1 ON R2.A = R1.A WHERE R3.C > 0 and R2.C >= 5");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        p = ((NestLoopPlanNode) n).getJoinPredicate();
+        assertTrue(n instanceof HashJoinPlanNode);
+        p = ((AbstractJoinPlanNode) n).getJoinPredicate();
         assertEquals(ExpressionType.COMPARE_EQUAL, p.getExpressionType());
         assertEquals(ExpressionType.VALUE_TUPLE, p.getLeft().getExpressionType());
         assertEquals(ExpressionType.VALUE_TUPLE, p.getRight().getExpressionType());
@@ -434,16 +436,16 @@ public class TestPlansJoin extends PlannerTestCase {
        // Test multi column condition on non index columns
        AbstractPlanNode pn = compile("select A, C FROM R2 JOIN R1 USING(A, C)");
        AbstractPlanNode n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       NestLoopPlanNode nlj = (NestLoopPlanNode) n;
+       assertTrue(n instanceof HashJoinPlanNode);
+       AbstractJoinPlanNode nlj = (AbstractJoinPlanNode) n;
        AbstractExpression pred = nlj.getJoinPredicate();
        assertNotNull(pred);
        assertEquals(ExpressionType.CONJUNCTION_AND, pred.getExpressionType());
 
        pn = compile("select R1.A, R2.A FROM R2 JOIN R1 on R1.A = R2.A and R1.C = R2.C");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       nlj = (NestLoopPlanNode) n;
+       assertTrue(n instanceof HashJoinPlanNode);
+       nlj = (AbstractJoinPlanNode) n;
        pred = nlj.getJoinPredicate();
        assertNotNull(pred);
        assertEquals(ExpressionType.CONJUNCTION_AND, pred.getExpressionType());
@@ -479,6 +481,48 @@ public class TestPlansJoin extends PlannerTestCase {
        assertEquals(ExpressionType.COMPARE_EQUAL, pred.getExpressionType());
        }
 
+   public void testHashJoin() {
+       // Equality on non index columns hashes the inner table
+       AbstractPlanNode pn = compile("select * FROM R1 JOIN R2 ON R1.C = R2.C");
+       AbstractPlanNode n = pn.getChild(0).getChild(0);
+       assertTrue(n instanceof HashJoinPlanNode);
+       HashJoinPlanNode hj = (HashJoinPlanNode) n;
+       assertEquals(1, hj.getOuterHashKeys().size());
+       assertEquals(1, hj.getInnerHashKeys().size());
+       String outerTable = ((SeqScanPlanNode) hj.getChild(0)).getTargetTableName();
+       String innerTable = ((SeqScanPlanNode) hj.getChild(1)).getTargetTableName();
+       assertTrue(outerTable.equalsIgnoreCase(((TupleValueExpression) hj.getOuterHashKeys().get(0)).getTableName()));
+       assertTrue(innerTable.equalsIgnoreCase(((TupleValueExpression) hj.getInnerHashKeys().get(0)).getTableName()));
+       // The whole join predicate is still checked for each matching pair
+       assertEquals(ExpressionType.COMPARE_EQUAL, hj.getJoinPredicate().getExpressionType());
+
+       // Each equality becomes a key, other conditions stay in the join predicate
+       pn = compile("select * FROM R1 JOIN R2 ON R1.A = R2.A AND R1.C = R2.C AND R1.D > R2.C");
+       n = pn.getChild(0).getChild(0);
+       assertTrue(n instanceof HashJoinPlanNode);
+       hj = (HashJoinPlanNode) n;
+       assertEquals(2, hj.getOuterHashKeys().size());
+       assertEquals(2, hj.getInnerHashKeys().size());
+       assertEquals(ExpressionType.CONJUNCTION_AND, hj.getJoinPredicate().getExpressionType());
+
+       // No equality, no hash join
+       pn = compile("select * FROM R1 JOIN R2 ON R1.C > R2.C");
+       n = pn.getChild(0).getChild(0);
+       assertTrue(n instanceof NestLoopPlanNode);
+
+       // A usable index on the inner table is preferred
+       pn = compile("select * FROM R2 JOIN R3 ON R2.C = R3.A");
+       n = pn.getChild(0).getChild(0);
+       assertTrue(n instanceof NestLoopIndexPlanNode);
+
+       // Outer joins hash the inner table too
+       pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C AND R2.A > 0");
+       n = pn.getChild(0).getChild(0);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(JoinType.LEFT, ((HashJoinPlanNode) n).getJoinType());
+       assertTrue(((SeqScanPlanNode) n.getChild(0)).getTargetTableName().equalsIgnoreCase("R1"));
+   }
+
    public void testDistributedInnerJoin() {
        // JOIN replicated and one distributed table
        AbstractPlanNode pn = compile("select * FROM R1 JOIN P2 ON R1.C = P2.A");
@@ -499,8 +543,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // select * with ON clause should return all columns from all tables
         AbstractPlanNode pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nl = (AbstractJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         assertEquals(2, nl.getChildCount());
         AbstractPlanNode c0 = nl.getChild(0);
@@ -512,8 +556,8 @@ public class TestPlansJoin extends PlannerTestCase {
 
         pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C AND R1.A = 5");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (AbstractJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         assertEquals(2, nl.getChildCount());
         c0 = nl.getChild(0);
@@ -528,8 +572,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // select * FROM R1 RIGHT JOIN R2 ON R1.C = R2.C => select * FROM R2 LEFT JOIN R1 ON R1.C = R2.C
         AbstractPlanNode pn = compile("select * FROM R1 RIGHT JOIN R2 ON R1.C = R2.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nl = (AbstractJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         assertEquals(2, nl.getChildCount());
         AbstractPlanNode c0 = nl.getChild(0);
@@ -542,8 +586,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // Same but with distributed table
         pn = compile("select * FROM P1 RIGHT JOIN R2 ON P1.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (AbstractJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         assertEquals(2, nl.getChildCount());
         c0 = nl.getChild(0);
@@ -558,8 +602,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // R1.C = R2.C Inner-Outer join Expr stays at the NLJ as Join predicate
         AbstractPlanNode pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nl = (AbstractJoinPlanNode) n;
         assertEquals(ExpressionType.COMPARE_EQUAL, nl.getJoinPredicate().getExpressionType());
         assertNull(nl.getWherePredicate());
         assertEquals(2, nl.getChildCount());
@@ -573,8 +617,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // R2.A < 0 Inner Join Expr is pushed down to the inner SeqScan node
         pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C AND R1.A > 0 AND R2.A < 0");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (AbstractJoinPlanNode) n;
         assertNotNull(nl.getPreJoinPredicate());
         AbstractExpression p = nl.getPreJoinPredicate();
         assertEquals(ExpressionType.COMPARE_GREATERTHAN, p.getExpressionType());
@@ -594,8 +638,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // (R1.A > 0 OR R2.A < 0) Inner-Outer join Expr stays at the NLJ as Join predicate
         pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C AND (R1.A > 0 OR R2.A < 0)");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (AbstractJoinPlanNode) n;
         p = nl.getJoinPredicate();
         assertEquals(ExpressionType.CONJUNCTION_AND, p.getExpressionType());
         assertEquals(ExpressionType.CONJUNCTION_OR, p.getLeft().getExpressionType());
@@ -612,8 +656,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // (R1.C > R2.C OR R2.C IS NULL) Inner-Outer Where stays at the the NLJ as post join (where) predicate
         pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE R1.A > 0 AND R2.A IS NULL AND (R1.C > R2.C OR R2.C IS NULL)");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (AbstractJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         assertNotNull(nl.getJoinPredicate());
         p = nl.getJoinPredicate();
@@ -634,8 +678,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // R3.C < 0 non-index Outer where expr pushed down to IndexScanPlanNode as a predicate
         pn = compile("select * FROM R3 LEFT JOIN R2 ON R3.A = R2.A WHERE R3.A > 3 AND R3.C < 0");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (AbstractJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         AbstractPlanNode outerScan = n.getChild(0);
         assertTrue(outerScan instanceof IndexScanPlanNode);
@@ -653,7 +697,7 @@ public class TestPlansJoin extends PlannerTestCase {
         lpn = compileToFragments("select * FROM P1 LEFT JOIN R2 ON P1.C = R2.C");
         assertEquals(2, lpn.size());
         n = lpn.get(1).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertEquals(2, n.getChildCount());
         assertTrue(n.getChild(0) instanceof SeqScanPlanNode);
         assertTrue(n.getChild(1) instanceof SeqScanPlanNode);
@@ -661,8 +705,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // Distributed Inner table
         pn = compile("select * FROM R2 LEFT JOIN P1 ON P1.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nl = (AbstractJoinPlanNode) n;
         assertEquals(2, nl.getChildCount());
         assertTrue(nl.getChild(0) instanceof SeqScanPlanNode);
         assertTrue(nl.getChild(1) instanceof ReceivePlanNode);
@@ -671,7 +715,7 @@ public class TestPlansJoin extends PlannerTestCase {
         lpn = compileToFragments("select * FROM P1 LEFT JOIN P4 ON P1.A = P4.A");
         assertEquals(2, lpn.size());
         n = lpn.get(1).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertEquals(2, n.getChildCount());
         assertTrue(n.getChild(0) instanceof SeqScanPlanNode);
         assertTrue(n.getChild(1) instanceof SeqScanPlanNode);
@@ -686,8 +730,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // so index can't be used
         AbstractPlanNode pn = compile("select * FROM R3 LEFT JOIN R2 ON R3.A = R2.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nl = (AbstractJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         assertEquals(2, nl.getChildCount());
         AbstractPlanNode c0 = nl.getChild(0);
@@ -700,8 +744,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // R3 is indexed but it's the outer table so index can't be used
         pn = compile("select * FROM R2 RIGHT JOIN R3 ON R3.A = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (AbstractJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         assertEquals(2, nl.getChildCount());
         c0 = nl.getChild(0);
@@ -921,38 +965,38 @@ public class TestPlansJoin extends PlannerTestCase {
    public void testOuterJoinSimplification() {
        AbstractPlanNode pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE R2.C IS NOT NULL");
        AbstractPlanNode n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE R2.C > 0");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
 
        pn = compile("select * FROM R1 RIGHT JOIN R2 ON R1.C = R2.C WHERE R1.C > 0");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE ABS(R2.C) <  10");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
 
        pn = compile("select * FROM R1 RIGHT JOIN R2 ON R1.C = R2.C WHERE ABS(R1.C) <  10");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE ABS(R1.C) <  10");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.LEFT);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.LEFT);
 
        pn = compile("select * FROM R1 RIGHT JOIN R2 ON R1.C = R2.C WHERE ABS(R2.C) <  10");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.LEFT);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.LEFT);
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE ABS(R2.C) <  10 AND R1.C = 3");
        n = pn.getChild(0).getChild(0);
@@ -961,18 +1005,18 @@ public class TestPlansJoin extends PlannerTestCase {
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE ABS(R2.C) <  10 OR R2.C IS NOT NULL");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE ABS(R1.C) <  10 AND R1.C > 3");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.LEFT);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.LEFT);
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE ABS(R1.C) <  10 OR R2.C IS NOT NULL");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.LEFT);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.LEFT);
    }
 
     @Override
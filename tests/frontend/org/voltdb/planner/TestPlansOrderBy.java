@@ -23,7 +23,11 @@
 
 package org.voltdb.planner;
 
+import java.util.List;
+
 import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.LimitPlanNode;
+import org.voltdb.plannodes.OrderByPlanNode;
 import org.voltdb.types.PlanNodeType;
 
 public class TestPlansOrderBy extends PlannerTestCase {
@@ -177,4 +181,74 @@ public class TestPlansOrderBy extends PlannerTestCase {
         validatePlan("SELECT * FROM T WHERE T_D0 = 2 ORDER BY T_D1", true, false, false, false);
         validatePlan("SELECT * FROM T WHERE T_D0 = 2 ORDER BY T_D1 DESC", true, false, false, false);
     }
+
+    /// Find the single sort in a plan fragment and return its inline limit, if any.
+    private LimitPlanNode inlineSortLimit(AbstractPlanNode pn)
+    {
+        List<AbstractPlanNode> sorts = pn.findAllNodesOfType(PlanNodeType.ORDERBY);
+        assertEquals(1, sorts.size());
+        OrderByPlanNode sort = (OrderByPlanNode) sorts.get(0);
+        return (LimitPlanNode) sort.getInlinePlanNode(PlanNodeType.LIMIT);
+    }
+
+    public void testTopNLimit()
+    {
+        // The sort keeps limit + offset rows, the limit above it skips the offset
+        AbstractPlanNode pn = compile("SELECT * FROM Tnokey ORDER BY T_D2 LIMIT 5 OFFSET 3");
+        LimitPlanNode topN = inlineSortLimit(pn);
+        assertNotNull(topN);
+        assertEquals(8, topN.getLimit());
+        assertEquals(0, topN.getOffset());
+        List<AbstractPlanNode> limits = pn.findAllNodesOfType(PlanNodeType.LIMIT);
+        assertEquals(2, limits.size());
+        limits.remove(topN);
+        LimitPlanNode top = (LimitPlanNode) limits.get(0);
+        assertEquals(5, top.getLimit());
+        assertEquals(3, top.getOffset());
+
+        pn = compile("SELECT * FROM Tnokey ORDER BY T_D2 DESC LIMIT 5");
+        topN = inlineSortLimit(pn);
+        assertNotNull(topN);
+        assertEquals(5, topN.getLimit());
+    }
+
+    public void testTopNParameterizedLimit()
+    {
+        AbstractPlanNode pn = compile("SELECT * FROM Tnokey ORDER BY T_D2 LIMIT ? OFFSET ?");
+        LimitPlanNode topN = inlineSortLimit(pn);
+        assertNotNull(topN);
+        assertNotNull(topN.getLimitExpression());
+    }
+
+    public void testTopNNotForUnsortedOrIndexedOrder()
+    {
+        // An index scan already delivers rows in order, there is no sort to limit
+        AbstractPlanNode pn = compile("SELECT * FROM T ORDER BY T_D0 LIMIT 5");
+        assertFalse(pn.hasAnyNodeOfType(PlanNodeType.ORDERBY));
+
+        // Without an ORDER BY the plain limit is unchanged
+        pn = compile("SELECT * FROM Tnokey LIMIT 5");
+        assertFalse(pn.hasAnyNodeOfType(PlanNodeType.ORDERBY));
+        assertEquals(1, pn.findAllNodesOfType(PlanNodeType.LIMIT).size());
+    }
+
+    public void testTopNDistributed()
+    {
+        List<AbstractPlanNode> pns = compileToFragments("SELECT * FROM Tpart ORDER BY T_D2 LIMIT 5 OFFSET 3");
+        assertEquals(2, pns.size());
+
+        // Each partition sends only its top limit + offset rows
+        AbstractPlanNode partition = pns.get(1);
+        LimitPlanNode topN = inlineSortLimit(partition);
+        assertNotNull(topN);
+        assertEquals(8, topN.getLimit());
+        assertEquals(1, partition.findAllNodesOfType(PlanNodeType.LIMIT).size());
+
+        // and the coordinator merges them the same way before applying the offset
+        AbstractPlanNode coordinator = pns.get(0);
+        topN = inlineSortLimit(coordinator);
+        assertNotNull(topN);
+        assertEquals(8, topN.getLimit());
+        assertEquals(2, coordinator.findAllNodesOfType(PlanNodeType.LIMIT).size());
+    }
 }
@@ -18,3 +18,11 @@ CREATE TABLE Tmanykeys (
 	CONSTRAINT T_TREE_3 PRIMARY KEY (T_D0, T_D1, T_D2)
 );
 
+
+CREATE TABLE Tpart (
+	T_D0   INTEGER NOT NULL,
+	T_D1   INTEGER NOT NULL,
+	T_D2   INTEGER NOT NULL,
+);
+
+PARTITION TABLE Tpart ON COLUMN T_D0;
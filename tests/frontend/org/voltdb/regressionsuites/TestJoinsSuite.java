@@ -62,6 +62,8 @@ public class TestJoinsSuite extends RegressionSuite {
         subtestThreeTableSeqInnerMultiJoin(client);
         clearSeqTables(client);
         subtestSeqOuterJoin(client);
+        clearSeqTables(client);
+        subtestSeqJoinNullKeys(client);
     }
 
     /**
@@ -483,6 +485,52 @@ public class TestJoinsSuite extends RegressionSuite {
         assertEquals(2, result.getRowCount());
     }
 
+    /**
+     * Two table hash joins on nullable columns
+     * @throws NoConnectionsException
+     * @throws IOException
+     * @throws ProcCallException
+     */
+    private void subtestSeqJoinNullKeys(Client client)
+            throws NoConnectionsException, IOException, ProcCallException
+    {
+        client.callProcedure("InsertR1", 1, 1, null); // matches nothing
+        client.callProcedure("InsertR1", 2, 2, 2); // 2,2,2,2,2
+        client.callProcedure("InsertR1", 3, 3, 3); // 3,3,3,3,3 3,3,3,4,3
+        client.callProcedure("InsertR1", 4, 4, 3); // 4,4,3,3,3 4,4,3,4,3
+        client.callProcedure("InsertR2", 1, null); // matches nothing
+        client.callProcedure("InsertR2", 2, 2);
+        client.callProcedure("InsertR2", 3, 3);
+        client.callProcedure("InsertR2", 4, 3);
+        VoltTable result = client.callProcedure("@AdHoc", "SELECT * FROM R1 JOIN R2 ON R1.D = R2.C;")
+                                 .getResults()[0];
+        assertEquals(5, result.getRowCount());
+        // INTEGER key against a BIGINT key
+        result = client.callProcedure("@AdHoc", "SELECT * FROM R1 JOIN R2 ON R1.D = R2.C + 0;")
+                .getResults()[0];
+        assertEquals(5, result.getRowCount());
+
+        // R1 1st - joined with R2 null
+        result = client.callProcedure("@AdHoc", "SELECT * FROM R1 LEFT JOIN R2 ON R1.D = R2.C;")
+                .getResults()[0];
+        assertEquals(6, result.getRowCount());
+
+        // R2 1st - joined with R1 null
+        result = client.callProcedure("@AdHoc", "SELECT * FROM R2 LEFT JOIN R1 ON R1.D = R2.C;")
+                .getResults()[0];
+        assertEquals(6, result.getRowCount());
+
+        result = client.callProcedure("@AdHoc", "SELECT R1.A FROM R1 LEFT JOIN R2 ON R1.D = R2.C WHERE R2.A IS NULL;")
+                .getResults()[0];
+        assertEquals(1, result.getRowCount());
+        assertEquals(1, result.asScalarLong());
+
+        // Only the pairs passing the rest of the join predicate
+        result = client.callProcedure("@AdHoc", "SELECT * FROM R1 LEFT JOIN R2 ON R1.D = R2.C AND R1.A = R2.A;")
+                .getResults()[0];
+        assertEquals(4, result.getRowCount());
+    }
+
     /**
      * Two table left and right NLIJ
      * @throws NoConnectionsException
@@ -269,6 +269,7 @@ public class TestMaterializedViewSuite extends RegressionSuite {
         subtestInsertAndOverflowSum();
         subtestENG798();
         subtestIndexed();
+        subtestMinMax();
     }
 
     private void subtestMultiPartitionSimple() throws IOException, ProcCallException
@@ -581,6 +582,95 @@ public class TestMaterializedViewSuite extends RegressionSuite {
         assertEquals("Concord", results[0].getString(0));
     }
 
+    private void assertDeptExtremes(VoltTable table, long dept, long total, long minAge,
+                                    Double maxSalary, String maxName)
+    {
+        assertTrue(table.advanceRow());
+        assertEquals(dept, table.getLong(0));
+        assertEquals(total, table.getLong(1));
+        assertEquals(minAge, table.getLong(2));
+        double salary = table.getDouble(3);
+        if (maxSalary == null) {
+            // the HSQL backend hands back a NULL float as 0.0
+            if (!isHSQL()) {
+                assertTrue(table.wasNull());
+            }
+        } else {
+            assertEquals(maxSalary, salary, 0.001);
+        }
+        assertEquals(maxName, table.getString(4));
+    }
+
+    private void assertAgeExtremes(VoltTable table, long age, long total, double minSalary)
+    {
+        assertTrue(table.advanceRow());
+        assertEquals(age, table.getLong(0));
+        assertEquals(total, table.getLong(1));
+        assertEquals(minSalary, table.getDouble(2), 0.001);
+    }
+
+    private void subtestMinMax() throws IOException, ProcCallException
+    {
+        Client client = getClient();
+        truncateBeforeTest(client);
+        VoltTable results;
+
+        client.callProcedure("DEPT_PEOPLE.insert", 1, 1, 30, 1000.0, "Alice");
+        client.callProcedure("DEPT_PEOPLE.insert", 2, 1, 25, 3000.0, "Bob");
+        client.callProcedure("DEPT_PEOPLE.insert", 3, 1, 25, 2000.0, "Carol");
+        client.callProcedure("DEPT_PEOPLE.insert", 4, 2, 40, null, null);
+        client.callProcedure("DEPT_PEOPLE.insert", 5, 2, 35, 500.0, "Dan");
+
+        results = client.callProcedure("@AdHoc",
+                "SELECT * FROM V_DEPT_EXTREMES ORDER BY dept").getResults()[0];
+        assertEquals(2, results.getRowCount());
+        assertDeptExtremes(results, 1, 3, 25, 3000.0, "Carol");
+        assertDeptExtremes(results, 2, 2, 35, 500.0, "Dan");
+
+        results = client.callProcedure("@AdHoc",
+                "SELECT * FROM V_AGE_EXTREMES ORDER BY age").getResults()[0];
+        assertEquals(3, results.getRowCount());
+        assertAgeExtremes(results, 25, 2, 2000.0);
+        assertAgeExtremes(results, 30, 1, 1000.0);
+        assertAgeExtremes(results, 35, 1, 500.0);
+
+        // delete the max salary of its dept, and one of two min ages
+        client.callProcedure("@AdHoc", "DELETE FROM DEPT_PEOPLE WHERE id = 2");
+        // move the min age and max salary and name of dept 1 away
+        client.callProcedure("@AdHoc",
+                "UPDATE DEPT_PEOPLE SET age = 50, salary = 500.0, name = 'Abe' WHERE id = 3");
+        // leave dept 2 with only NULL salaries and names
+        client.callProcedure("@AdHoc", "DELETE FROM DEPT_PEOPLE WHERE id = 5");
+
+        results = client.callProcedure("@AdHoc",
+                "SELECT * FROM V_DEPT_EXTREMES ORDER BY dept").getResults()[0];
+        assertEquals(2, results.getRowCount());
+        assertDeptExtremes(results, 1, 2, 30, 1000.0, "Alice");
+        assertDeptExtremes(results, 2, 1, 40, null, null);
+
+        results = client.callProcedure("@AdHoc",
+                "SELECT * FROM V_AGE_EXTREMES ORDER BY age").getResults()[0];
+        assertEquals(2, results.getRowCount());
+        assertAgeExtremes(results, 30, 1, 1000.0);
+        assertAgeExtremes(results, 50, 1, 500.0);
+
+        client.callProcedure("DEPT_PEOPLE.insert", 6, 2, 20, 10.0, "Zed");
+        client.callProcedure("DEPT_PEOPLE.insert", 7, 1, 30, 900.0, "Al");
+        client.callProcedure("@AdHoc", "DELETE FROM DEPT_PEOPLE WHERE id = 1");
+
+        results = client.callProcedure("@AdHoc",
+                "SELECT * FROM V_DEPT_EXTREMES ORDER BY dept").getResults()[0];
+        assertEquals(2, results.getRowCount());
+        assertDeptExtremes(results, 1, 2, 30, 900.0, "Al");
+        assertDeptExtremes(results, 2, 2, 20, 10.0, "Zed");
+
+        results = client.callProcedure("@AdHoc",
+                "SELECT * FROM V_AGE_EXTREMES ORDER BY age").getResults()[0];
+        assertEquals(3, results.getRowCount());
+        assertAgeExtremes(results, 20, 1, 10.0);
+        assertAgeExtremes(results, 30, 1, 900.0);
+        assertAgeExtremes(results, 50, 1, 500.0);
+    }
 
     /**
      * Build a list of the tests that will be run when TestTPCCSuite gets run by JUnit.
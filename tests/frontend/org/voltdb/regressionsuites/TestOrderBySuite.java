@@ -623,6 +623,59 @@ public class TestOrderBySuite extends RegressionSuite {
         }
     }
 
+    public void testOrderByTopN() throws Exception
+    {
+        Client client = getClient();
+        load(client);
+
+        // a_int holds 0 to 19 spread over the partitions, compare each
+        // limited sort with the matching slice of the full order
+        int[][] limitOffsets = { {1, 0}, {5, 0}, {5, 3}, {1, 19}, {20, 0}, {25, 10}, {3, 30} };
+        for (int[] limitOffset : limitOffsets) {
+            int limit = limitOffset[0];
+            int offset = limitOffset[1];
+            int expectedRows = Math.max(0, Math.min(limit, 20 - offset));
+
+            VoltTable vt = client.callProcedure("@AdHoc",
+                    "select PKEY, A_INT from O1 order by A_INT limit " + limit +
+                    " offset " + offset + ";").getResults()[0];
+            assertEquals(expectedRows, vt.getRowCount());
+            for (int i = 0; i < expectedRows; i++) {
+                assertEquals(offset + i, vt.fetchRow(i).getLong(1));
+            }
+
+            vt = client.callProcedure("@AdHoc",
+                    "select A_INT, A_INLINE_STR from O1 order by A_INT desc limit " + limit +
+                    " offset " + offset + ";").getResults()[0];
+            assertEquals(expectedRows, vt.getRowCount());
+            for (int i = 0; i < expectedRows; i++) {
+                assertEquals(19 - offset - i, vt.fetchRow(i).getLong(0));
+            }
+
+            vt = client.callProcedure("OrderByTopN", limit, offset).getResults()[0];
+            assertEquals(expectedRows, vt.getRowCount());
+            for (int i = 0; i < expectedRows; i++) {
+                assertEquals(19 - offset - i, vt.fetchRow(i).getLong(0));
+            }
+        }
+    }
+
+    public void testOrderByTopNWithDupes() throws Exception
+    {
+        Client client = getClient();
+        loadWithDupes(client);
+
+        // the sort keys tie across partitions, the second key picks the rows
+        VoltTable vt = client.callProcedure("@AdHoc",
+                "select PKEY from O1 order by A_INT desc, PKEY limit 4 offset 1;").getResults()[0];
+        System.out.println(vt.toString());
+        long[] expected = { 6, 9, 2, 5 };
+        assertEquals(expected.length, vt.getRowCount());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], vt.fetchRow(i).getLong(0));
+        }
+    }
+
     public void testEng1133() throws Exception
     {
         Client client = getClient();
@@ -689,6 +742,7 @@ public class TestOrderBySuite extends RegressionSuite {
         project.addPartitionInfo("a", "a");
         project.addStmtProcedure("InsertA", "INSERT INTO A VALUES(?);");
         project.addStmtProcedure("InsertB", "INSERT INTO B VALUES(?);");
+        project.addStmtProcedure("OrderByTopN", "SELECT A_INT FROM O1 ORDER BY A_INT DESC LIMIT ? OFFSET ?;");
         project.addProcedures(PROCEDURES);
 
         config = new LocalCluster("testorderby-onesite.jar", 1, 1, 0, BackendTarget.NATIVE_EE_JNI);
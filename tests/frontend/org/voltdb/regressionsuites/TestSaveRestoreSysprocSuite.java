@@ -1696,6 +1696,80 @@ public class TestSaveRestoreSysprocSuite extends SaveRestoreBase {
         validateSnapshot(true);
     }
 
+    public void testSkipUnchangedTablesSaveAndRestore()
+    throws Exception
+    {
+        if (isValgrind()) return; // snapshot doesn't run in valgrind ENG-4034
+
+        System.out.println("Starting testSkipUnchangedTablesSaveAndRestore");
+        // Not prefixed by TESTNONCE, which @SnapshotDelete would match too
+        final String skipNonce = "skipunchangednonce";
+        Client client = getClient();
+
+        loadTable(client, "REPLICATED_TESTER", true, createReplicatedTable(200, 0, null));
+        loadTable(client, "PARTITION_TESTER", false, createPartitionedTable(120, 0));
+        client.drain();
+        saveTablesWithDefaultOptions(client);
+
+        // Only the partitioned table changes before the snapshot that skips unchanged tables
+        loadTable(client, "PARTITION_TESTER", false, createPartitionedTable(120, 120));
+        client.drain();
+        JSONObject jsObj = new JSONObject();
+        jsObj.put("uripath", String.format("file://%s", TMPDIR));
+        jsObj.put("nonce", skipNonce);
+        jsObj.put("block", true);
+        jsObj.put("skipUnchangedTables", true);
+        VoltTable results[] = client.callProcedure("@SnapshotSave", jsObj.toString()).getResults();
+        while (results[0].advanceRow()) {
+            assertEquals(results[0].getString("ERR_MSG"), "SUCCESS", results[0].getString("RESULT"));
+        }
+
+        final File fullReplicated = new File(TMPDIR, TESTNONCE + "-REPLICATED_TESTER.vpt");
+        final File fullPartitioned = new File(TMPDIR, TESTNONCE + "-PARTITION_TESTER-host_0.vpt");
+        assertFalse(new File(TMPDIR, skipNonce + "-REPLICATED_TESTER.vpt").exists());
+        assertTrue(new File(TMPDIR, skipNonce + "-PARTITION_TESTER-host_0.vpt").exists());
+        JSONObject digest = SnapshotUtil.CRCCheck(new VoltFile(TMPDIR, skipNonce + "-host_0.digest"), LOG);
+        assertEquals(TESTNONCE, digest.getJSONObject("unchangedTables").getString("REPLICATED_TESTER"));
+        assertFalse(digest.getJSONObject("unchangedTables").has("PARTITION_TESTER"));
+
+        VoltTable scanResults[] = client.callProcedure("@SnapshotScan", TMPDIR).getResults();
+        boolean found = false;
+        while (scanResults[0].advanceRow()) {
+            if (scanResults[0].getString("NONCE").equals(skipNonce)) {
+                found = true;
+                assertEquals("", scanResults[0].getString("TABLES_MISSING"));
+                assertEquals("TRUE", scanResults[0].getString("COMPLETE"));
+            }
+        }
+        assertTrue(found);
+
+        // Deleting the full snapshot keeps the file the skipping one still uses
+        client.callProcedure("@SnapshotDelete", new String[] {TMPDIR}, new String[] {TESTNONCE});
+        for (int ii = 0; ii < 50 && fullPartitioned.exists(); ii++) {
+            Thread.sleep(100);
+        }
+        assertFalse(fullPartitioned.exists());
+        assertTrue(fullReplicated.exists());
+
+        m_config.shutDown();
+        m_config.startUp();
+
+        client = getClient();
+        results = client.callProcedure("@SnapshotRestore", TMPDIR, skipNonce).getResults();
+        while (results[0].advanceRow()) {
+            assertEquals(results[0].getString("ERR_MSG"), "SUCCESS", results[0].getString("RESULT"));
+        }
+        checkTable(client, "REPLICATED_TESTER", "RT_ID", 200);
+        checkTable(client, "PARTITION_TESTER", "PT_ID", 240);
+
+        // and deleting the skipping snapshot too cleans it up
+        client.callProcedure("@SnapshotDelete", new String[] {TMPDIR}, new String[] {skipNonce});
+        for (int ii = 0; ii < 50 && fullReplicated.exists(); ii++) {
+            Thread.sleep(100);
+        }
+        assertFalse(fullReplicated.exists());
+    }
+
     public void testSaveAndRestorePartitionedTable()
     throws Exception
     {
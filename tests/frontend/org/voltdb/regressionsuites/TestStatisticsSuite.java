@@ -158,7 +158,7 @@ public class TestStatisticsSuite extends SaveRestoreBase {
             // to check specifically for this error, otherwise things that
             // crash the cluster also turn into ProcCallExceptions and don't
             // trigger failure (ENG-2347)
-            assertEquals("Incorrect number of arguments to @Statistics (expects 2, received 0)",
+            assertEquals("Incorrect number of arguments to @Statistics (expects 1, 2, or 4 with a time range, received 0)",
                          ex.getMessage());
         }
         try {
@@ -167,7 +167,7 @@ public class TestStatisticsSuite extends SaveRestoreBase {
             fail();
         }
         catch (ProcCallException ex) {
-            assertEquals("Incorrect number of arguments to @Statistics (expects 2, received 3)",
+            assertEquals("Incorrect number of arguments to @Statistics (expects 1, 2, or 4 with a time range, received 3)",
                          ex.getMessage());
         }
         try {
@@ -399,7 +399,7 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         System.out.println("\n\nTESTING PROCEDURE STATS\n\n\n");
         Client client  = getFullyConnectedClient();
 
-        ColumnInfo[] expectedSchema = new ColumnInfo[19];
+        ColumnInfo[] expectedSchema = new ColumnInfo[22];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -419,6 +419,9 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         expectedSchema[16] = new ColumnInfo("AVG_PARAMETER_SET_SIZE", VoltType.INTEGER);
         expectedSchema[17] = new ColumnInfo("ABORTS", VoltType.BIGINT);
         expectedSchema[18] = new ColumnInfo("FAILURES", VoltType.BIGINT);
+        expectedSchema[19] = new ColumnInfo("INLINE_ADHOC_CACHE_HITS", VoltType.BIGINT);
+        expectedSchema[20] = new ColumnInfo("INLINE_ADHOC_PLANNER_WAITS", VoltType.BIGINT);
+        expectedSchema[21] = new ColumnInfo("INLINE_ADHOC_PLANNER_WAIT_TIME", VoltType.BIGINT);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         VoltTable[] results = null;
@@ -23,7 +23,9 @@
 
 package org.voltdb.regressionsuites;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.Random;
 
 import junit.framework.Test;
@@ -38,6 +40,7 @@ import org.voltdb.client.ClientResponse;
 import org.voltdb.client.NullCallback;
 import org.voltdb.client.ProcCallException;
 import org.voltdb.compiler.VoltProjectBuilder;
+import org.voltdb.iv2.Iv2TraceDecoder;
 import org.voltdb_testprocs.regressionsuites.malicious.GoSleep;
 
 public class TestSystemProcedureSuite extends RegressionSuite {
@@ -142,6 +145,27 @@ public class TestSystemProcedureSuite extends RegressionSuite {
         assertEquals(results[0].get(0, VoltType.BIGINT), new Long(0));
     }
 
+    public void testTraceDump() throws Exception {
+        Client client = getClient();
+        // Give the rings something to hold
+        client.callProcedure("@Statistics", "table", 0);
+        File dir = new File(System.getProperty("java.io.tmpdir"));
+        VoltTable results[] = client.callProcedure("@TraceDump", dir.getPath()).getResults();
+        assertEquals(1, results.length);
+        assertTrue(results[0].getRowCount() > 0);
+        while (results[0].advanceRow()) {
+            assertEquals("SUCCESS", results[0].getString("RESULT"));
+            File file = new File(results[0].getString("PATH"));
+            try {
+                List<Iv2TraceDecoder.Event> events = Iv2TraceDecoder.read(file);
+                assertEquals(results[0].getLong("EVENTS"), events.size());
+                assertTrue(events.size() > 0);
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
     public void testLoadMultipartitionTableAndIndexStatsAndValidatePartitioning() throws Exception {
         Client client = getClient();
 
@@ -25,6 +25,8 @@ package org.voltdb.sysprocs.saverestore;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
@@ -280,4 +282,90 @@ public class TestTableSaveFile extends TestCase {
         }
         assertEquals(table, reaggregate_table);
     }
+
+    /*
+     * Chunks are decompressed in parallel, make sure skipped chunks
+     * don't disturb the order of the ones that are returned
+     */
+    public void testRelevantPartitionChunksInOrder() throws Exception {
+        Pair<VoltTable, File> generated = generateTestTable(100000);
+        File f = generated.getSecond();
+
+        Integer relevant[] = new Integer[50];
+        for (int ii = 0; ii < relevant.length; ii++) {
+            relevant[ii] = ii * 2 + 1;
+        }
+        FileInputStream fis = new FileInputStream(f);
+        TableSaveFile savefile = new TableSaveFile(fis.getChannel(), 8, relevant);
+        try {
+            int expectedPartitionId = 1;
+            while (savefile.hasMoreChunks()) {
+                final BBContainer c = savefile.getNextChunk();
+                if (c == null) {
+                    continue;
+                }
+                try {
+                    assertEquals(expectedPartitionId, ((TableSaveFile.Container)c).partitionId);
+                    VoltTable test_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b, false);
+                    assertEquals(1000, test_table.getRowCount());
+                    test_table.advanceRow();
+                    assertEquals(expectedPartitionId * 1000, test_table.getLong(0));
+                } finally {
+                    c.discard();
+                }
+                expectedPartitionId += 2;
+            }
+            assertEquals(101, expectedPartitionId);
+        } finally {
+            savefile.close();
+        }
+    }
+
+    public void testCorruptedChunk() throws Exception {
+        Pair<VoltTable, File> generated = generateTestTable(100000);
+        File f = generated.getSecond();
+
+        // flip a byte in the compressed data of the last chunk
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        raf.seek(raf.length() - 10);
+        byte b = raf.readByte();
+        raf.seek(raf.length() - 10);
+        raf.writeByte(~b);
+        raf.close();
+
+        FileInputStream fis = new FileInputStream(f);
+        TableSaveFile savefile = new TableSaveFile(fis.getChannel(), 8, null, true);
+        int chunks = 0;
+        try {
+            while (savefile.hasMoreChunks()) {
+                final BBContainer c = savefile.getNextChunk();
+                if (c == null) {
+                    continue;
+                }
+                assertEquals(chunks++, ((TableSaveFile.Container)c).partitionId);
+                c.discard();
+            }
+        } finally {
+            savefile.close();
+        }
+        assertEquals(99, chunks);
+        assertEquals(1, savefile.getCorruptedPartitionIds().size());
+        assertTrue(savefile.getCorruptedPartitionIds().contains(99));
+
+        fis = new FileInputStream(f);
+        savefile = new TableSaveFile(fis.getChannel(), 8, null);
+        try {
+            while (savefile.hasMoreChunks()) {
+                final BBContainer c = savefile.getNextChunk();
+                if (c != null) {
+                    c.discard();
+                }
+            }
+            fail("Expected a CRC mismatch");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("CRC mismatch"));
+        } finally {
+            savefile.close();
+        }
+    }
 }
@@ -0,0 +1,172 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.json_voltpatches.JSONObject;
+import org.voltcore.utils.InstanceId;
+
+public class TestUnchangedTableState extends TestCase {
+    private static final InstanceId ID = new InstanceId(0, 1234);
+    private static final String PATH = "/tmp/snapshots";
+    private static final long CRC = 1234;
+    private static final int PARTITIONS = 2;
+
+    private static Map<Long, Map<String, Long>> counts(long site0A, long site0B, long site1A, long site1B) {
+        Map<Long, Map<String, Long>> counts = new HashMap<Long, Map<String, Long>>();
+        Map<String, Long> site0 = new HashMap<String, Long>();
+        site0.put("A", site0A);
+        site0.put("B", site0B);
+        counts.put(0L, site0);
+        Map<String, Long> site1 = new HashMap<String, Long>();
+        site1.put("A", site1A);
+        site1.put("B", site1B);
+        counts.put(1L, site1);
+        return counts;
+    }
+
+    private static Map<String, String> fileNonces(String a, String b) {
+        Map<String, String> nonces = new HashMap<String, String>();
+        nonces.put("A", a);
+        nonces.put("B", b);
+        return nonces;
+    }
+
+    @Override
+    public void setUp() {
+        UnchangedTableState.clear();
+    }
+
+    @Override
+    public void tearDown() {
+        UnchangedTableState.clear();
+    }
+
+    public void testNoBase() {
+        assertNull(UnchangedTableState.getUnchangedTableNonce(ID, PATH, CRC, PARTITIONS, "A",
+                    counts(1, 1, 1, 1)));
+    }
+
+    public void testUnchangedTables() {
+        UnchangedTableState.setBase(ID, PATH, CRC, PARTITIONS, fileNonces("full", "full"),
+                counts(5, 7, 3, 0));
+
+        // B changed at one site only, A at none
+        Map<Long, Map<String, Long>> counts = counts(5, 7, 3, 2);
+        assertEquals("full",
+                UnchangedTableState.getUnchangedTableNonce(ID, PATH, CRC, PARTITIONS, "A", counts));
+        assertNull(UnchangedTableState.getUnchangedTableNonce(ID, PATH, CRC, PARTITIONS, "B", counts));
+
+        // Once the skipping snapshot completes, A still lives in the full snapshot's file
+        UnchangedTableState.setBase(ID, PATH, CRC, PARTITIONS, fileNonces("full", "incr1"), counts);
+        assertEquals("full",
+                UnchangedTableState.getUnchangedTableNonce(ID, PATH, CRC, PARTITIONS, "A", counts));
+        assertEquals("incr1",
+                UnchangedTableState.getUnchangedTableNonce(ID, PATH, CRC, PARTITIONS, "B", counts));
+    }
+
+    public void testBaseMismatch() {
+        Map<Long, Map<String, Long>> counts = counts(5, 7, 3, 0);
+        UnchangedTableState.setBase(ID, PATH, CRC, PARTITIONS, fileNonces("full", "full"), counts);
+
+        assertNull(UnchangedTableState.getUnchangedTableNonce(ID, "/tmp/other", CRC, PARTITIONS, "A", counts));
+        assertNull(UnchangedTableState.getUnchangedTableNonce(new InstanceId(0, 5678), PATH, CRC,
+                    PARTITIONS, "A", counts));
+        assertNull(UnchangedTableState.getUnchangedTableNonce(ID, PATH, CRC + 1, PARTITIONS, "A", counts));
+        assertNull(UnchangedTableState.getUnchangedTableNonce(ID, PATH, CRC, PARTITIONS + 1, "A", counts));
+        assertNull(UnchangedTableState.getUnchangedTableNonce(ID, PATH, CRC, PARTITIONS, "C", counts));
+
+        // A different set of sites
+        Map<Long, Map<String, Long>> fewerSites = counts(5, 7, 3, 0);
+        fewerSites.remove(1L);
+        assertNull(UnchangedTableState.getUnchangedTableNonce(ID, PATH, CRC, PARTITIONS, "A", fewerSites));
+        assertNull(UnchangedTableState.getUnchangedTableNonce(ID, PATH, CRC, PARTITIONS, "A",
+                    new HashMap<Long, Map<String, Long>>()));
+
+        // Counts from an engine that doesn't track changes
+        UnchangedTableState.setBase(ID, PATH, CRC, PARTITIONS, fileNonces("full", "full"),
+                counts(-1, -1, -1, -1));
+        assertNull(UnchangedTableState.getUnchangedTableNonce(ID, PATH, CRC, PARTITIONS, "A",
+                    counts(-1, -1, -1, -1)));
+    }
+
+    public void testTakeModificationCounts() {
+        Map<Long, Map<String, Long>> counts = counts(5, 7, 3, 0);
+        UnchangedTableState.recordModificationCounts(100L, 0L, counts.get(0L));
+        UnchangedTableState.recordModificationCounts(100L, 1L, counts.get(1L));
+        assertEquals(counts, UnchangedTableState.takeModificationCounts(100L));
+        assertTrue(UnchangedTableState.takeModificationCounts(100L).isEmpty());
+
+        // Counts left over from a snapshot whose setup never ran are not used
+        UnchangedTableState.recordModificationCounts(200L, 0L, counts(9, 9, 9, 9).get(0L));
+        UnchangedTableState.recordModificationCounts(300L, 0L, counts.get(0L));
+        UnchangedTableState.recordModificationCounts(300L, 1L, counts.get(1L));
+        assertEquals(counts, UnchangedTableState.takeModificationCounts(300L));
+
+        // nor are counts recorded for another snapshot
+        UnchangedTableState.recordModificationCounts(400L, 0L, counts.get(0L));
+        assertTrue(UnchangedTableState.takeModificationCounts(500L).isEmpty());
+        assertTrue(UnchangedTableState.takeModificationCounts(400L).isEmpty());
+    }
+
+    public void testRetrieveUnchangedTableFiles() throws Exception {
+        File dir = File.createTempFile("unchanged", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        try {
+            // A partitioned table P and a replicated table R were left out of incr
+            File partitioned = new File(dir, "full-P-host_3.vpt");
+            File replicated = new File(dir, "full-R.vpt");
+            assertTrue(partitioned.createNewFile());
+            assertTrue(replicated.createNewFile());
+
+            JSONObject digest = new JSONObject();
+            digest.put("hostId", 3);
+            JSONObject unchanged = new JSONObject();
+            unchanged.put("P", "full");
+            unchanged.put("R", "full");
+            unchanged.put("GONE", "deleted");
+            digest.put("unchangedTables", unchanged);
+
+            Map<String, File> files =
+                SnapshotUtil.retrieveUnchangedTableFiles(dir.getPath(), "incr", digest);
+            assertEquals(2, files.size());
+            assertEquals(partitioned, files.get("incr-P-host_3.vpt"));
+            assertEquals(replicated, files.get("incr-R.vpt"));
+
+            assertTrue(SnapshotUtil.retrieveUnchangedTableFiles(dir.getPath(), "full",
+                        new JSONObject()).isEmpty());
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+
+/**
+ * Export overflow throughput when the export client falls behind. Blocks the size of
+ * export buffers are offered to a PersistentBinaryDeque the way StreamBlockQueue
+ * does (USO followed by row data) until the backlog is built up, then the backlog
+ * is polled and read while new blocks keep arriving at a lower rate.
+ *
+ * args: [directory] [backlog megabytes] [block kilobytes]
+ */
+public class PersistentBinaryDequeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final File dir = new File(args.length > 0 ? args[0] : "/tmp/pbd_benchmark");
+        final int backlogMB = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        final int blockKB = args.length > 2 ? Integer.parseInt(args[2]) : 2048;
+        final int blockSize = blockKB * 1024;
+        final int blocks = (int)((backlogMB * 1024L * 1024L) / blockSize);
+
+        dir.mkdirs();
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+
+        ByteBuffer data = ByteBuffer.allocateDirect(blockSize);
+        while (data.remaining() > 7) {
+            data.putLong(data.position());
+        }
+        ByteBuffer uso = ByteBuffer.allocateDirect(8);
+
+        PersistentBinaryDeque pbd = new PersistentBinaryDeque("benchmark", dir);
+        try {
+            /*
+             * Client is stalled, everything overflows
+             */
+            long start = System.nanoTime();
+            for (int ii = 0; ii < blocks; ii++) {
+                pbd.offer(block(uso, data, ii));
+            }
+            pbd.sync();
+            report("overflow (offer + sync)", blocks, blockSize, System.nanoTime() - start);
+
+            /*
+             * Client catches up, polls twice as fast as new data arrives
+             */
+            start = System.nanoTime();
+            long checksum = 0;
+            int polled = 0;
+            int offered = 0;
+            BBContainer cont;
+            while ((cont = pbd.poll()) != null) {
+                checksum += cont.b.getLong();
+                while (cont.b.remaining() > 7) {
+                    checksum += cont.b.getLong();
+                }
+                cont.discard();
+                if (++polled % 2 == 0 && offered < blocks / 2) {
+                    pbd.offer(block(uso, data, blocks + offered++));
+                }
+            }
+            report("drain (poll + read + discard)", polled, blockSize, System.nanoTime() - start);
+            System.out.println("checksum " + checksum);
+        } finally {
+            pbd.closeAndDelete();
+        }
+    }
+
+    private static BBContainer[] block(ByteBuffer uso, ByteBuffer data, long usoValue) {
+        uso.clear();
+        uso.putLong(0, usoValue);
+        data.clear();
+        return new BBContainer[] { DBBPool.wrapBB(uso), DBBPool.wrapBB(data) };
+    }
+
+    private static void report(String phase, int blocks, int blockSize, long nanos) {
+        double seconds = nanos / 1000000000.0;
+        double mb = ((long)blocks * (blockSize + 8)) / (1024.0 * 1024.0);
+        System.out.printf("%s: %d blocks, %.0f MB in %.2f s, %.1f MB/s%n",
+                phase, blocks, mb, seconds, mb / seconds);
+    }
+}
@@ -0,0 +1,179 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.DefaultSnapshotDataTarget;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.messaging.FastSerializer;
+import org.voltdb.types.TimestampType;
+
+import com.google.common.util.concurrent.Callables;
+
+/**
+ * Snapshot conversion throughput of the CSV and columnar formats. Writes a
+ * number of save files of one partitioned table, the way the save files of
+ * several hosts would look, then converts them the way SnapshotConverter does:
+ * to CSV one save file after the other, and to the columnar format with the
+ * save files spread over a thread per core.
+ *
+ * args: [directory] [save files] [rows per save file]
+ */
+public class SnapshotConverterBenchmark {
+
+    private static final ColumnInfo COLUMNS[] = new ColumnInfo[] {
+        new ColumnInfo("ID", VoltType.BIGINT),
+        new ColumnInfo("CUSTOMER", VoltType.INTEGER),
+        new ColumnInfo("STATUS", VoltType.TINYINT),
+        new ColumnInfo("AMOUNT", VoltType.DECIMAL),
+        new ColumnInfo("RATE", VoltType.FLOAT),
+        new ColumnInfo("CREATED", VoltType.TIMESTAMP),
+        new ColumnInfo("REGION", VoltType.STRING),
+        new ColumnInfo("NOTE", VoltType.STRING) };
+
+    private static final String REGIONS[] = { "north", "south", "east", "west" };
+
+    public static void main(String[] args) throws Exception {
+        final File dir = new File(args.length > 0 ? args[0] : "/tmp/converter_benchmark");
+        final int fileCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        final int rowsPerFile = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+
+        dir.mkdirs();
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        org.voltdb.EELibraryLoader.loadExecutionEngineLibrary(true);
+
+        long start = System.nanoTime();
+        final List<File> saveFiles = new ArrayList<File>();
+        long inputBytes = 0;
+        for (int ii = 0; ii < fileCount; ii++) {
+            File f = new File(dir, "BENCHMARK-host_" + ii + ".vpt");
+            writeSaveFile(f, ii, fileCount, rowsPerFile);
+            saveFiles.add(f);
+            inputBytes += f.length();
+        }
+        final long rows = (long)fileCount * rowsPerFile;
+        report("write save files", rows, inputBytes, inputBytes, System.nanoTime() - start);
+
+        File csv = new File(dir, "BENCHMARK.csv");
+        start = System.nanoTime();
+        for (File f : saveFiles) {
+            CSVTableSaveFile.convertTableSaveFile(',', null, csv, f);
+        }
+        report("csv", rows, inputBytes, csv.length(), System.nanoTime() - start);
+
+        File vcol = new File(dir, "BENCHMARK.vcol");
+        start = System.nanoTime();
+        final ColumnarTableSaveFile columnar = new ColumnarTableSaveFile(vcol);
+        ExecutorService es = Executors.newFixedThreadPool(CoreUtils.availableProcessors());
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (final File f : saveFiles) {
+                futures.add(es.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        columnar.convert(f, null);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> f : futures) {
+                f.get();
+            }
+        } finally {
+            es.shutdown();
+        }
+        columnar.close();
+        report("columnar", columnar.getRowCount(), inputBytes, vcol.length(), System.nanoTime() - start);
+
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+    }
+
+    private static void writeSaveFile(File f, int partition, int partitionCount, int rows) throws Exception {
+        List<Integer> partitions = new ArrayList<Integer>();
+        partitions.add(partition);
+        DefaultSnapshotDataTarget target = new DefaultSnapshotDataTarget(f, partition, "cluster", "database",
+                "BENCHMARK", partitionCount, false, partitions, new VoltTable(COLUMNS),
+                1, System.currentTimeMillis(), new int[] { 0, 0, 0, 2 });
+        VoltTable chunk = new VoltTable(COLUMNS);
+        for (long id = (long)partition * rows; id < (long)(partition + 1) * rows; id++) {
+            chunk.addRow(id,
+                         (int)(id % 10007),
+                         (byte)(id % 4),
+                         new BigDecimal(id % 100000).movePointLeft(2),
+                         (id % 1000) / 1000.0,
+                         new TimestampType(1370000000000000L + id * 1000),
+                         REGIONS[(int)(id % REGIONS.length)],
+                         id % 10 == 0 ? null : "order note " + (id % 5000));
+            // about the size of the chunks a snapshot writes
+            if (chunk.getBuffer().limit() > 2 * 1024 * 1024) {
+                serializeChunk(chunk, target, partition);
+                chunk = new VoltTable(COLUMNS);
+            }
+        }
+        if (chunk.getRowCount() > 0) {
+            serializeChunk(chunk, target, partition);
+        }
+        target.close();
+    }
+
+    private static void serializeChunk(VoltTable chunk, DefaultSnapshotDataTarget target,
+                                       int partitionId) throws Exception {
+        FastSerializer fs = new FastSerializer();
+        chunk.writeExternal(fs);
+        ByteBuffer b = fs.getBBContainer().b;
+        b.getInt();
+        int headerLength = b.getInt();
+        b.position(b.position() + headerLength);
+        BBContainer container = DBBPool.allocateDirectWithAddress(b.remaining() + 4);
+        container.b.putInt(partitionId);
+        container.b.put(b);
+        container.b.flip();
+        target.write(Callables.returning(container), null).get();
+    }
+
+    private static void report(String phase, long rows, long inputBytes, long outputBytes, long nanos) {
+        double seconds = nanos / 1000000000.0;
+        double inputMB = inputBytes / (1024.0 * 1024.0);
+        System.out.printf("%s: %d rows in %.2f s, %.0f rows/s, %.1f MB/s of save files, %.1f MB written%n",
+                phase, rows, seconds, rows / seconds, inputMB / seconds, outputBytes / (1024.0 * 1024.0));
+    }
+}
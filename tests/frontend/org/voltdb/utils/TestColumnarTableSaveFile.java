@@ -0,0 +1,244 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.DefaultSnapshotDataTarget;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.messaging.FastSerializer;
+import org.voltdb.types.TimestampType;
+
+import com.google.common.util.concurrent.Callables;
+
+public class TestColumnarTableSaveFile extends TestCase {
+    private static final int[] VERSION2 = { 0, 0, 0, 2 };
+    private static final String TABLE_NAME = "TEST_TABLE";
+    private static final int TOTAL_PARTITIONS = 4;
+
+    private static final ColumnInfo COLUMNS[] = new ColumnInfo[] {
+        new ColumnInfo("ID", VoltType.INTEGER),
+        new ColumnInfo("TINY", VoltType.TINYINT),
+        new ColumnInfo("SMALL", VoltType.SMALLINT),
+        new ColumnInfo("BIG", VoltType.BIGINT),
+        new ColumnInfo("RATIO", VoltType.FLOAT),
+        new ColumnInfo("WHEN", VoltType.TIMESTAMP),
+        new ColumnInfo("PRICE", VoltType.DECIMAL),
+        new ColumnInfo("NAME", VoltType.STRING),
+        new ColumnInfo("DATA", VoltType.VARBINARY) };
+
+    static {
+        org.voltdb.EELibraryLoader.loadExecutionEngineLibrary(true);
+    }
+
+    private final List<File> m_files = new ArrayList<File>();
+
+    @Override
+    public void tearDown() {
+        for (File f : m_files) {
+            f.delete();
+        }
+    }
+
+    private File tempFile() throws Exception {
+        File f = File.createTempFile("columnar", "test");
+        m_files.add(f);
+        return f;
+    }
+
+    private static Object[] row(int id) {
+        // every column is NULL in some rows, in a different pattern
+        return new Object[] {
+            id,
+            id % 3 == 0 ? null : (byte)(id % 100),
+            id % 5 == 0 ? null : (short)(id * 7 % 30000),
+            id % 7 == 0 ? null : id * 1000000007L,
+            id % 11 == 0 ? null : id / 3.0,
+            id % 13 == 0 ? null : new TimestampType(1370000000000000L + id),
+            id % 17 == 0 ? null : new BigDecimal(id).divide(new BigDecimal(8)),
+            id % 19 == 0 ? null : "name_é_" + id,
+            id % 23 == 0 ? null : new byte[] { (byte)id, (byte)(id >> 8) } };
+    }
+
+    private static void serializeChunk(VoltTable chunk, DefaultSnapshotDataTarget target,
+                                       int partitionId) throws Exception {
+        FastSerializer fs = new FastSerializer();
+        chunk.writeExternal(fs);
+        ByteBuffer b = fs.getBBContainer().b;
+        b.getInt();
+        int headerLength = b.getInt();
+        b.position(b.position() + headerLength);
+        BBContainer container = DBBPool.allocateDirectWithAddress(b.remaining() + 4);
+        container.b.putInt(partitionId);
+        container.b.put(b);
+        container.b.flip();
+        target.write(Callables.returning(container), null);
+    }
+
+    /**
+     * Write a save file for the given partitions with chunks of 100 rows,
+     * giving every partition the ids in [first, first + rows).
+     */
+    private File writeSaveFile(List<Integer> partitions, int first, int rows) throws Exception {
+        File f = tempFile();
+        DefaultSnapshotDataTarget target = new DefaultSnapshotDataTarget(f, 0, "cluster", "database",
+                TABLE_NAME, TOTAL_PARTITIONS, false, partitions, new VoltTable(COLUMNS),
+                1, 1, VERSION2);
+        for (int partition : partitions) {
+            VoltTable chunk = new VoltTable(COLUMNS);
+            for (int id = first; id < first + rows; id++) {
+                chunk.addRow(row(partition * 100000 + id));
+                if (chunk.getRowCount() == 100) {
+                    serializeChunk(chunk, target, partition);
+                    chunk = new VoltTable(COLUMNS);
+                }
+            }
+            if (chunk.getRowCount() > 0) {
+                serializeChunk(chunk, target, partition);
+            }
+        }
+        target.close();
+        return f;
+    }
+
+    private static TreeMap<Integer, Object[]> readRows(File f, long expectedRows) throws Exception {
+        TreeMap<Integer, Object[]> rows = new TreeMap<Integer, Object[]>();
+        ColumnarTableSaveFile.Reader reader = new ColumnarTableSaveFile.Reader(f);
+        try {
+            assertEquals(TABLE_NAME, reader.getTableName());
+            VoltTable expected = new VoltTable(COLUMNS);
+            VoltTable schema = reader.getSchema();
+            assertEquals(COLUMNS.length, schema.getColumnCount());
+            for (int ii = 0; ii < COLUMNS.length; ii++) {
+                assertEquals(expected.getColumnName(ii), schema.getColumnName(ii));
+                assertEquals(expected.getColumnType(ii), schema.getColumnType(ii));
+            }
+            VoltTable rowGroup;
+            while ((rowGroup = reader.next()) != null) {
+                while (rowGroup.advanceRow()) {
+                    Object values[] = new Object[COLUMNS.length];
+                    for (int ii = 0; ii < COLUMNS.length; ii++) {
+                        values[ii] = rowGroup.get(ii, expected.getColumnType(ii));
+                        if (rowGroup.wasNull()) {
+                            values[ii] = null;
+                        }
+                    }
+                    assertNull(rows.put((Integer)values[0], values));
+                }
+            }
+            assertEquals(expectedRows, reader.getRowCount());
+        } finally {
+            reader.close();
+        }
+        assertEquals(expectedRows, rows.size());
+        return rows;
+    }
+
+    private static void assertRow(Object expected[], Object actual[]) {
+        for (int ii = 0; ii < expected.length; ii++) {
+            if (expected[ii] == null) {
+                assertNull(actual[ii]);
+            } else if (expected[ii] instanceof byte[]) {
+                assertTrue(Arrays.equals((byte[])expected[ii], (byte[])actual[ii]));
+            } else if (expected[ii] instanceof BigDecimal) {
+                assertEquals(0, ((BigDecimal)expected[ii]).compareTo((BigDecimal)actual[ii]));
+            } else {
+                assertEquals(expected[ii], actual[ii]);
+            }
+        }
+    }
+
+    public void testRoundTripWithConcurrentConversions() throws Exception {
+        final File first = writeSaveFile(Arrays.asList(0, 1), 0, 1050);
+        final File second = writeSaveFile(Arrays.asList(2, 3), 0, 1050);
+        File out = tempFile();
+        final ColumnarTableSaveFile columnar = new ColumnarTableSaveFile(out);
+        ExecutorService es = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (final File infile : new File[] { first, second }) {
+                futures.add(es.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        columnar.convert(infile, null);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> f : futures) {
+                f.get();
+            }
+        } finally {
+            es.shutdown();
+        }
+        columnar.close();
+        assertEquals(4200, columnar.getRowCount());
+
+        TreeMap<Integer, Object[]> rows = readRows(out, 4200);
+        for (int partition = 0; partition < TOTAL_PARTITIONS; partition++) {
+            for (int id = 0; id < 1050; id++) {
+                int key = partition * 100000 + id;
+                assertRow(row(key), rows.get(key));
+            }
+        }
+    }
+
+    public void testPartitionFilter() throws Exception {
+        File in = writeSaveFile(Arrays.asList(0, 1, 2), 10, 250);
+        File out = tempFile();
+        ColumnarTableSaveFile columnar = new ColumnarTableSaveFile(out);
+        columnar.convert(in, new Integer[] { 1 });
+        columnar.close();
+
+        TreeMap<Integer, Object[]> rows = readRows(out, 250);
+        assertEquals(100010, (int)rows.firstKey());
+        assertEquals(100259, (int)rows.lastKey());
+    }
+
+    public void testEmptyTable() throws Exception {
+        File in = writeSaveFile(Arrays.asList(0), 0, 0);
+        File out = tempFile();
+        ColumnarTableSaveFile columnar = new ColumnarTableSaveFile(out);
+        columnar.convert(in, null);
+        columnar.close();
+
+        assertTrue(readRows(out, 0).isEmpty());
+    }
+}
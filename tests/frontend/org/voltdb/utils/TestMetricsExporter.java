@@ -0,0 +1,125 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2013 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltdb.MockStatsSource;
+import org.voltdb.MockVoltDB;
+import org.voltdb.StatsSelector;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+public class TestMetricsExporter {
+
+    private MockVoltDB m_mvoltdb;
+
+    @Before
+    public void setUp() throws Exception {
+        m_mvoltdb = new MockVoltDB();
+        VoltDB.replaceVoltDBInstanceForTest(m_mvoltdb);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        m_mvoltdb.shutdown(null);
+        VoltDB.replaceVoltDBInstanceForTest(null);
+    }
+
+    @Test
+    public void testAppendTable() {
+        VoltTable table = new VoltTable(
+                new ColumnInfo("TIMESTAMP", VoltType.BIGINT),
+                new ColumnInfo("HOST_ID", VoltType.INTEGER),
+                new ColumnInfo("HOSTNAME", VoltType.STRING),
+                new ColumnInfo("PROCEDURE", VoltType.STRING),
+                new ColumnInfo("INVOCATIONS", VoltType.BIGINT),
+                new ColumnInfo("AVG_TIME", VoltType.FLOAT));
+        table.addRow(1000L, 0, "host0", "Insert\"Quote", 5L, 1.5);
+        table.addRow(1000L, 0, "host0", "Select", 7L, null);
+
+        StringBuilder sb = new StringBuilder();
+        MetricsExporter.appendTable(sb, "voltdb_procedure", table);
+        String text = sb.toString();
+
+        assertTrue(text.contains("# TYPE voltdb_procedure_invocations untyped\n"));
+        assertTrue(text.contains(
+                "voltdb_procedure_invocations{host_id=\"0\",hostname=\"host0\",procedure=\"Insert\\\"Quote\"} 5\n"));
+        assertTrue(text.contains(
+                "voltdb_procedure_invocations{host_id=\"0\",hostname=\"host0\",procedure=\"Select\"} 7\n"));
+        assertTrue(text.contains(
+                "voltdb_procedure_avg_time{host_id=\"0\",hostname=\"host0\",procedure=\"Insert\\\"Quote\"} 1.5\n"));
+        // Null values are left out rather than exported as a sentinel
+        assertEquals(1, text.split("voltdb_procedure_avg_time\\{").length - 1);
+        // The timestamp is neither a metric nor a label
+        assertFalse(text.contains("timestamp"));
+    }
+
+    @Test
+    public void testSanitizeName() {
+        assertEquals("tuple_count", MetricsExporter.sanitizeName("TUPLE_COUNT"));
+        assertEquals("p95_ms_", MetricsExporter.sanitizeName("P95 MS%"));
+    }
+
+    @Test
+    public void testRefreshFromLocalSources() {
+        MockStatsSource.columns = Arrays.asList(new ColumnInfo[] {
+                new ColumnInfo("SITE_ID", VoltType.INTEGER),
+                new ColumnInfo("TABLE_NAME", VoltType.STRING),
+                new ColumnInfo("TUPLE_COUNT", VoltType.BIGINT)
+        });
+        MockStatsSource source = new MockStatsSource(new Object[][] {
+                { 1, "WAREHOUSE", 10L },
+                { 1, "ITEM", 20L }
+        });
+        m_mvoltdb.getStatsAgent().registerStatsSource(StatsSelector.TABLE, 1, source);
+
+        MetricsExporter exporter = new MetricsExporter();
+        assertNull(exporter.getSnapshot());
+        exporter.refresh(m_mvoltdb.getStatsAgent());
+        String text = exporter.getSnapshot();
+        assertTrue(text.contains("voltdb_table_tuple_count{site_id=\"1\",table_name=\"WAREHOUSE\"} 10\n"));
+        assertTrue(text.contains("voltdb_table_tuple_count{site_id=\"1\",table_name=\"ITEM\"} 20\n"));
+        assertTrue(text.contains("voltdb_metrics_snapshot_timestamp_ms "));
+        // Selectors without sources are skipped
+        assertFalse(text.contains("voltdb_procedure_"));
+
+        // Scrapes see the snapshot, not live values, until the next refresh
+        source = new MockStatsSource(new Object[][] { { 2, "NEW_ORDER", 30L } });
+        m_mvoltdb.getStatsAgent().registerStatsSource(StatsSelector.TABLE, 2, source);
+        assertFalse(exporter.getSnapshot().contains("NEW_ORDER"));
+        exporter.refresh(m_mvoltdb.getStatsAgent());
+        assertTrue(exporter.getSnapshot().contains("voltdb_table_tuple_count{site_id=\"2\",table_name=\"NEW_ORDER\"} 30\n"));
+    }
+}
@@ -32,6 +32,8 @@ import static org.junit.Assert.fail;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.TreeSet;
 
 import org.junit.After;
@@ -541,6 +543,126 @@ public class TestPersistentBinaryDeque {
         pbd.close();
     }
 
+    @Test
+    public void testOfferBufferChainsThenPollAndDiscardOutOfOrder() throws Exception {
+        //Objects made of several buffers come back as one buffer, across a segment boundary
+        final int objects = 40;
+        for (int ii = 0; ii < objects; ii++) {
+            ByteBuffer first = ByteBuffer.allocateDirect(8);
+            first.putLong(ii).flip();
+            ByteBuffer second = getFilledBuffer(ii);
+            m_pbd.offer(new BBContainer[] { DBBPool.wrapBB(first), DBBPool.wrapBB(second) });
+        }
+        assertTrue(getSortedDirectoryListing().size() > 1);
+
+        final List<BBContainer> polled = new ArrayList<BBContainer>();
+        BBContainer cont;
+        while ((cont = m_pbd.poll()) != null) {
+            assertEquals(8 + 1024 * 1024 * 2, cont.b.remaining());
+            assertEquals(polled.size(), cont.b.getLong());
+            assertEquals(polled.size(), cont.b.getLong(cont.b.limit() - 8));
+            polled.add(cont);
+        }
+        assertEquals(objects, polled.size());
+        assertTrue(m_pbd.isEmpty());
+
+        //Export discards polled buffers from other threads, in any order
+        Thread discarder = new Thread() {
+            @Override
+            public void run() {
+                for (int ii = polled.size() - 1; ii >= 0; ii--) {
+                    polled.get(ii).discard();
+                }
+            }
+        };
+        discarder.start();
+        discarder.join();
+
+        //Only the current write segment is left
+        assertEquals(1, getSortedDirectoryListing().size());
+        assertEquals(0, m_pbd.sizeInBytes());
+    }
+
+    @Test
+    public void testDrainDeletesSegments() throws Exception {
+        //More than one segment's worth
+        for (int ii = 0; ii < 40; ii++) {
+            defaultBuffer.clear();
+            m_pbd.offer(defaultContainer);
+        }
+        assertTrue(getSortedDirectoryListing().size() > 1);
+
+        BBContainer cont;
+        int polled = 0;
+        while ((cont = m_pbd.poll()) != null) {
+            polled++;
+            cont.discard();
+        }
+        assertEquals(40, polled);
+
+        assertEquals(1, getSortedDirectoryListing().size());
+        assertEquals(0, m_pbd.sizeInBytes());
+    }
+
+    @Test
+    public void testSliceReadableAfterDiscard() throws Exception {
+        for (int ii = 0; ii < 40; ii++) {
+            m_pbd.offer(new BBContainer[] { DBBPool.wrapBB(getFilledBuffer(ii)) });
+        }
+
+        //Keep a view of the first object, like export does with the blocks it sends
+        BBContainer first = m_pbd.poll();
+        ByteBuffer kept = first.b.asReadOnlyBuffer();
+        first.discard();
+
+        BBContainer cont;
+        while ((cont = m_pbd.poll()) != null) {
+            cont.discard();
+        }
+        //The segment the view points into has been deleted
+        assertEquals(1, getSortedDirectoryListing().size());
+
+        assertEquals(1024 * 1024 * 2, kept.remaining());
+        while (kept.remaining() > 7) {
+            assertEquals(0, kept.getLong());
+        }
+    }
+
+    @Test
+    public void testTruncateAfterIsEmpty() throws Exception {
+        for (int ii = 0; ii < 96; ii++) {
+            m_pbd.offer(new BBContainer[] { DBBPool.wrapBB(getFilledBuffer(ii)) });
+        }
+        m_pbd.close();
+        m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR );
+
+        //Opens the first segment and reads its entry count
+        assertFalse(m_pbd.isEmpty());
+
+        m_pbd.parseAndTruncate(new BinaryDequeTruncator() {
+            @Override
+            public ByteBuffer parse(ByteBuffer b) {
+                if (b.getLong(0) == 10) {
+                    return ByteBuffer.allocate(0);
+                }
+                return null;
+            }
+        });
+
+        BBContainer cont;
+        long polled = 0;
+        while ((cont = m_pbd.poll()) != null) {
+            assertEquals(polled, cont.b.getLong(0));
+            polled++;
+            cont.discard();
+        }
+        assertEquals(10, polled);
+
+        //Discarding everything left in the truncated segment deletes it
+        assertEquals(1, getSortedDirectoryListing().size());
+        assertEquals(0, m_pbd.sizeInBytes());
+    }
+
     @Before
     public void setUp() throws Exception {
         if (TEST_DIR.exists()) {
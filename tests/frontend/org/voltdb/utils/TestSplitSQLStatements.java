@@ -66,4 +66,18 @@ public class TestSplitSQLStatements {
         checkSplitter("a\r\nb;c\r\nd;", "a\r\nb", "c\r\nd");
     }
 
+    @Test
+    public void testCountParameterMarkers() {
+        assertEquals(0, MiscUtils.countSQLParameterMarkers(""));
+        assertEquals(0, MiscUtils.countSQLParameterMarkers("select * from t where a = 1;"));
+        assertEquals(1, MiscUtils.countSQLParameterMarkers("select * from t where a = ?;"));
+        assertEquals(2, MiscUtils.countSQLParameterMarkers("insert into t values (?,?);"));
+        assertEquals(1, MiscUtils.countSQLParameterMarkers("select * from t where a = ? and b = '?';"));
+        assertEquals(1, MiscUtils.countSQLParameterMarkers("select * from t where b = 'it''s ?' and a = ?"));
+        assertEquals(1, MiscUtils.countSQLParameterMarkers("select * from t where b = \"?\" and a = ?"));
+        assertEquals(1, MiscUtils.countSQLParameterMarkers("select * from t -- what?\nwhere a = ?"));
+        assertEquals(1, MiscUtils.countSQLParameterMarkers("select /* why? */ * from t where a = ?"));
+        assertEquals(0, MiscUtils.countSQLParameterMarkers("select 'unterminated ?"));
+    }
+
 }
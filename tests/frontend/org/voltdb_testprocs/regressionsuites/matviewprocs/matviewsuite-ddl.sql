@@ -78,3 +78,25 @@ CREATE INDEX runners_and_times ON V_TEAM_TIMES ( total, 0-SINCE_EPOCH(MILLISECON
 -- optimize alternative ordering of group by columns
 CREATE INDEX times_and_teams ON V_TEAM_TIMES ( finish, team );
 
+-- replicated, so each group is in a single view row
+CREATE TABLE DEPT_PEOPLE (
+    id INTEGER NOT NULL,
+    dept INTEGER NOT NULL,
+    age INTEGER,
+    salary FLOAT,
+    name VARCHAR(64),
+    PRIMARY KEY (id)
+);
+
+-- recompute a deleted extreme from the index leading with the group by column
+CREATE INDEX dept_and_age ON DEPT_PEOPLE ( dept, age );
+CREATE VIEW V_DEPT_EXTREMES(dept, total, min_age, max_salary, max_name)
+    AS SELECT dept, COUNT(*), MIN(age), MAX(salary), MAX(name)
+    FROM DEPT_PEOPLE
+    GROUP BY dept;
+
+-- recompute a deleted extreme by scanning the table, no index leads with age
+CREATE VIEW V_AGE_EXTREMES(age, total, min_salary)
+    AS SELECT age, COUNT(*), MIN(salary)
+    FROM DEPT_PEOPLE WHERE salary > 0
+    GROUP BY age;